@@ -0,0 +1,100 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the 
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1 
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library; 
+ *  if not, see <https://www.gnu.org/licenses/>.  
+ */
+package heigit.ors.common;
+
+import heigit.ors.exceptions.RequestTimeoutException;
+
+/**
+ * Point in time by which a request has to be answered. The deadline of the request processed by a thread is available
+ * through {@link #current()}, so search algorithms can pick it up when they are created and abort once it has passed.
+ */
+public class RequestDeadline
+{
+	// the clock is read only on every 1024th check in loops
+	private static final int CHECK_INTERVAL_MASK = 0x3FF;
+	private static final ThreadLocal<RequestDeadline> CURRENT = new ThreadLocal<RequestDeadline>();
+
+	private final long _timeout;
+	private final long _expiryTime;
+	private final int _errorCode;
+
+	/**
+	 * @param timeout the time budget in milliseconds starting now
+	 * @param errorCode the internal error code reported when the deadline has passed
+	 */
+	public RequestDeadline(long timeout, int errorCode)
+	{
+		_timeout = timeout;
+		_expiryTime = System.nanoTime() + timeout * 1000000L;
+		_errorCode = errorCode;
+	}
+
+	/**
+	 * @return the deadline of the request processed by the calling thread or null if it has none
+	 */
+	public static RequestDeadline current()
+	{
+		return CURRENT.get();
+	}
+
+	/**
+	 * Sets the deadline of the request processed by the calling thread, null removes it.
+	 */
+	public static void setCurrent(RequestDeadline deadline)
+	{
+		if (deadline == null)
+			CURRENT.remove();
+		else
+			CURRENT.set(deadline);
+	}
+
+	public long getTimeout()
+	{
+		return _timeout;
+	}
+
+	public int getErrorCode()
+	{
+		return _errorCode;
+	}
+
+	public long getRemainingTime()
+	{
+		return Math.max(0, (_expiryTime - System.nanoTime()) / 1000000L);
+	}
+
+	public boolean isExpired()
+	{
+		return System.nanoTime() - _expiryTime >= 0;
+	}
+
+	/**
+	 * @throws RequestTimeoutException if the deadline has passed
+	 */
+	public void check()
+	{
+		if (isExpired())
+			throw new RequestTimeoutException(_errorCode, "The request could not be completed within " + _timeout + " ms.");
+	}
+
+	/**
+	 * Checks the deadline only if the counter is a multiple of 1024, cheap enough to be called for every node a
+	 * search settles.
+	 */
+	public void check(int counter)
+	{
+		if ((counter & CHECK_INTERVAL_MASK) == 0)
+			check();
+	}
+}
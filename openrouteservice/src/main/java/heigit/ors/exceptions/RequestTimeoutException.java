@@ -11,19 +11,26 @@
  *  You should have received a copy of the GNU Lesser General Public License along with this library; 
  *  if not, see <https://www.gnu.org/licenses/>.  
  */
-package heigit.ors.routing.traffic;
+package heigit.ors.exceptions;
 
-public class AvoidEdgeInfo extends EdgeInfo {
-     
-	public AvoidEdgeInfo(Integer edgeId, short[] codes) {
-	  super(edgeId, codes);
-   }
-   
-   public String toString(){
-	   
-	   return "Avoiding Edge info";
-   }
-}
+/**
+ * Thrown when a request has exceeded its {@link heigit.ors.common.RequestDeadline}. It is unchecked, so it can leave
+ * the search loops of the algorithms through the GraphHopper interfaces.
+ */
+public class RequestTimeoutException extends RuntimeException
+{
+	private static final long serialVersionUID = 2839516406263750611L;
 
+	private final int _internalCode;
 
+	public RequestTimeoutException(int internalCode, String message)
+	{
+		super(message);
+		_internalCode = internalCode;
+	}
 
+	public int getInternalCode()
+	{
+		return _internalCode;
+	}
+}
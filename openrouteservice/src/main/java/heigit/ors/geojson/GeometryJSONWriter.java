@@ -0,0 +1,261 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.geojson;
+
+import java.io.IOException;
+
+import org.geotools.geometry.jts.coordinatesequence.CoordinateSequences;
+
+import com.graphhopper.util.PointList;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.CoordinateSequence;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryCollection;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.MultiLineString;
+import com.vividsolutions.jts.geom.MultiPoint;
+import com.vividsolutions.jts.geom.MultiPolygon;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+
+import heigit.ors.util.JsonStreamWriter;
+
+/**
+ * Writes GeoJSON geometries of JTS geometries and GraphHopper point lists directly to a {@link JsonStreamWriter}. The
+ * coordinates are rounded to a fixed number of decimals and written as they are, without creating an array object per
+ * coordinate like {@link GeometryJSON#toJSON(Geometry, StringBuffer)} does. With the default precision the output is
+ * the same as the one of {@link GeometryJSON}.
+ * <p>
+ * Polygon rings are oriented as required by RFC 7946, exterior rings counterclockwise and holes clockwise.
+ */
+public class GeometryJSONWriter {
+	public static final int DEFAULT_DECIMALS = 6;
+	public static final int DEFAULT_ELEVATION_DECIMALS = 1;
+
+	private final JsonStreamWriter _writer;
+	private final int _decimals;
+	private final int _elevationDecimals;
+	private final double _scale;
+	private boolean _quantize;
+
+	public GeometryJSONWriter(JsonStreamWriter writer) {
+		this(writer, DEFAULT_DECIMALS, DEFAULT_ELEVATION_DECIMALS);
+	}
+
+	/**
+	 * @param decimals number of decimals of longitudes and latitudes, at most 8
+	 * @param elevationDecimals number of decimals of elevations, at most 8
+	 */
+	public GeometryJSONWriter(JsonStreamWriter writer, int decimals, int elevationDecimals) {
+		if (decimals < 0 || decimals > 8 || elevationDecimals < 0 || elevationDecimals > 8)
+			throw new IllegalArgumentException("The number of decimals must be within 0 and 8.");
+
+		_writer = writer;
+		_decimals = decimals;
+		_elevationDecimals = elevationDecimals;
+		_scale = Math.pow(10, decimals);
+	}
+
+	/**
+	 * Quantized lines and rings of JTS geometries leave out every point which is rounded to the same position as the
+	 * point written before it, so that a coarse precision also reduces the number of points. Lines keep at least 2
+	 * and rings at least 4 points. Must not be used for lines whose point indices are referred to, like the way points
+	 * of routes.
+	 */
+	public GeometryJSONWriter setQuantize(boolean quantize) {
+		_quantize = quantize;
+		return this;
+	}
+
+	public JsonStreamWriter getWriter() {
+		return _writer;
+	}
+
+	/**
+	 * Writes the geometry object with its type and coordinates.
+	 *
+	 * @throws IllegalArgumentException if the geometry type is not supported
+	 */
+	public void writeGeometry(Geometry geom) throws IOException {
+		_writer.beginObject();
+		_writer.name("type").value(geom.getGeometryType());
+
+		if (geom.getClass() == GeometryCollection.class) {
+			_writer.name("geometries").beginArray();
+			for (int i = 0; i < geom.getNumGeometries(); i++)
+				writeGeometry(geom.getGeometryN(i));
+			_writer.endArray();
+		} else {
+			_writer.name("coordinates");
+			writeCoordinates(geom);
+		}
+
+		_writer.endObject();
+	}
+
+	/**
+	 * Writes the points as LineString geometry object.
+	 */
+	public void writeLineString(PointList points, boolean includeElevation) throws IOException {
+		_writer.beginObject();
+		_writer.name("type").value("LineString");
+		_writer.name("coordinates");
+		writeCoordinates(points, includeElevation);
+		_writer.endObject();
+	}
+
+	/**
+	 * Writes the coordinates member of the geometry, streaming counterpart of
+	 * {@link GeometryJSON#toJSON(Geometry, StringBuffer)}.
+	 *
+	 * @throws IllegalArgumentException if the geometry type is not supported
+	 */
+	public void writeCoordinates(Geometry geom) throws IOException {
+		if (geom instanceof Polygon) {
+			writePolygon((Polygon) geom);
+		} else if (geom instanceof LineString) {
+			writeSequence(((LineString) geom).getCoordinateSequence(), false, 2);
+		} else if (geom instanceof Point) {
+			writeCoordinate(((Point) geom).getCoordinate());
+		} else if (geom instanceof MultiPolygon || geom instanceof MultiLineString || geom instanceof MultiPoint) {
+			_writer.beginArray();
+			for (int i = 0; i < geom.getNumGeometries(); i++)
+				writeCoordinates(geom.getGeometryN(i));
+			_writer.endArray();
+		} else {
+			throw new IllegalArgumentException("writeCoordinates function is not implemented for " + geom.getGeometryType());
+		}
+	}
+
+	public void writeCoordinates(PointList points, boolean includeElevation) throws IOException {
+		int size = points.getSize();
+		boolean is3D = points.is3D();
+
+		_writer.beginArray();
+		for (int i = 0; i < size; i++) {
+			_writer.beginArray();
+			_writer.value(points.getLon(i), _decimals);
+			_writer.value(points.getLat(i), _decimals);
+			if (includeElevation)
+				_writer.value(is3D ? points.getEle(i) : Double.NaN, _elevationDecimals);
+			_writer.endArray();
+		}
+		_writer.endArray();
+	}
+
+	/**
+	 * Streaming counterpart of {@link GeometryJSON#toJSON(Coordinate[], boolean)}.
+	 */
+	public void writeCoordinates(Coordinate[] coords, boolean includeElevation) throws IOException {
+		_writer.beginArray();
+		for (int i = 0; i < coords.length; i++) {
+			Coordinate c = coords[i];
+			_writer.beginArray();
+			_writer.value(c.x, _decimals);
+			_writer.value(c.y, _decimals);
+			if (includeElevation)
+				_writer.value(c.z, _elevationDecimals);
+			_writer.endArray();
+		}
+		_writer.endArray();
+	}
+
+	/**
+	 * Streaming counterpart of {@link GeometryJSON#toJSON(Coordinate)}.
+	 */
+	public void writeCoordinate(Coordinate c) throws IOException {
+		_writer.beginArray();
+		_writer.value(c.x, _decimals);
+		_writer.value(c.y, _decimals);
+		_writer.endArray();
+	}
+
+	/**
+	 * Streaming counterpart of {@link GeometryJSON#toJSON(double, double, double, double)}.
+	 */
+	public void writeBBox(double minX, double minY, double maxX, double maxY) throws IOException {
+		_writer.beginArray();
+		_writer.value(minX, _decimals);
+		_writer.value(minY, _decimals);
+		_writer.value(maxX, _decimals);
+		_writer.value(maxY, _decimals);
+		_writer.endArray();
+	}
+
+	private void writePolygon(Polygon poly) throws IOException {
+		_writer.beginArray();
+
+		LineString shell = poly.getExteriorRing();
+		boolean reverse = shell.getNumPoints() > 1 && !CoordinateSequences.isCCW(shell.getCoordinateSequence());
+		writeSequence(shell.getCoordinateSequence(), reverse, 4);
+
+		for (int i = 0; i < poly.getNumInteriorRing(); i++) {
+			LineString ring = poly.getInteriorRingN(i);
+			reverse = ring.getNumPoints() > 1 && CoordinateSequences.isCCW(ring.getCoordinateSequence());
+			writeSequence(ring.getCoordinateSequence(), reverse, 4);
+		}
+
+		_writer.endArray();
+	}
+
+	/**
+	 * @param minPoints the minimum number of points a quantized sequence has to keep
+	 */
+	private void writeSequence(CoordinateSequence seq, boolean reverse, int minPoints) throws IOException {
+		int size = seq.size();
+		boolean quantize = _quantize && countQuantizedPoints(seq) >= minPoints;
+		long prevX = 0;
+		long prevY = 0;
+
+		_writer.beginArray();
+		for (int i = 0; i < size; i++) {
+			int index = reverse ? size - i - 1 : i;
+			double x = seq.getX(index);
+			double y = seq.getY(index);
+
+			if (quantize) {
+				long gridX = Math.round(x * _scale);
+				long gridY = Math.round(y * _scale);
+				if (i > 0 && gridX == prevX && gridY == prevY)
+					continue;
+				prevX = gridX;
+				prevY = gridY;
+			}
+
+			_writer.beginArray();
+			_writer.value(x, _decimals);
+			_writer.value(y, _decimals);
+			_writer.endArray();
+		}
+		_writer.endArray();
+	}
+
+	/**
+	 * @return the number of points which are left of the sequence when it is quantized, the same in both directions
+	 */
+	private int countQuantizedPoints(CoordinateSequence seq) {
+		int count = 0;
+		long prevX = 0;
+		long prevY = 0;
+		for (int i = 0; i < seq.size(); i++) {
+			long gridX = Math.round(seq.getX(i) * _scale);
+			long gridY = Math.round(seq.getY(i) * _scale);
+			if (i == 0 || gridX != prevX || gridY != prevY)
+				count++;
+			prevX = gridX;
+			prevY = gridY;
+		}
+		return count;
+	}
+}
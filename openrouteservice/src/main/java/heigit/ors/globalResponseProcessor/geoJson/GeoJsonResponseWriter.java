@@ -25,13 +25,17 @@
 
 package heigit.ors.globalResponseProcessor.geoJson;
 
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.shapes.BBox;
 import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.LineString;
 import heigit.ors.isochrones.IsochroneRequest;
 import heigit.ors.routing.RouteResult;
 import heigit.ors.routing.RoutingRequest;
+import heigit.ors.geojson.GeometryJSONWriter;
 import heigit.ors.services.routing.requestprocessors.json.JsonRoutingResponseWriter;
+import heigit.ors.util.JsonStreamWriter;
 import org.geotools.feature.DefaultFeatureCollection;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.geojson.feature.FeatureJSON;
@@ -42,6 +46,7 @@ import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.util.HashMap;
@@ -74,13 +79,19 @@ public class GeoJsonResponseWriter {
      * @throws Exception Throws an error if the JsonRoute could not be calculated
      */
     public static JSONObject toGeoJson(RoutingRequest rreq, RouteResult[] routeResult) throws Exception {
+        return toGeoJson(JsonRoutingResponseWriter.toJson(rreq, routeResult), routeResult);
+    }
+
+    /**
+     * Builds the FeatureCollection of {@link #toGeoJson(RoutingRequest, RouteResult[])} from the JSON route response.
+     */
+    static JSONObject toGeoJson(JSONObject jsonRoutes, RouteResult[] routeResult) throws Exception {
         HashMap<String, HashMap<String, Object>> featurePropertiesMap = new HashMap<>();
         HashMap<String, Object> defaultFeatureCollectionProperties = new HashMap<>();
         SimpleFeatureType ROUTINGFEATURETYPE = new SimpleFeatureTypes(SimpleFeatureTypes.RouteFeatureType.routeFeature).create();
         DefaultFeatureCollection defaultFeatureCollection = new DefaultFeatureCollection("routing", ROUTINGFEATURETYPE);
 
         GeometryFactory geometryFactory = new GeometryFactory();
-        JSONObject jsonRoutes = JsonRoutingResponseWriter.toJson(rreq, routeResult);
         for (int i = 0; i < jsonRoutes.getJSONArray("routes").length(); i++) {
             JSONObject route = jsonRoutes.getJSONArray("routes").getJSONObject(i);
             SimpleFeatureBuilder routingFeatureBuilder = new SimpleFeatureBuilder(ROUTINGFEATURETYPE);
@@ -114,6 +125,53 @@ public class GeoJsonResponseWriter {
 
     }
 
+    /**
+     * The function streams the same {@link DefaultFeatureCollection} as {@link #toGeoJson(RoutingRequest, RouteResult[])} to the output stream.
+     * The route geometries are written directly from their points and the properties while they are generated,
+     * instead of encoding the features with GeoTools, parsing them again and merging them with a complete route response.
+     *
+     * @param rreq        A {@link RoutingRequest} holding the initial Request.
+     * @param routeResult A {@link RouteResult}.
+     * @param out         The {@link OutputStream} the FeatureCollection is written to.
+     * @throws Exception Throws an error if the routes could not be written.
+     */
+    public static void writeGeoJson(RoutingRequest rreq, RouteResult[] routeResult, OutputStream out) throws Exception {
+        writeGeoJson(rreq, routeResult, JsonRoutingResponseWriter.createInfo(rreq).toString(), out);
+    }
+
+    /**
+     * @param info the serialized info block of the FeatureCollection
+     */
+    static void writeGeoJson(RoutingRequest rreq, RouteResult[] routeResult, String info, OutputStream out) throws Exception {
+        JsonStreamWriter writer = new JsonStreamWriter(out);
+        // elevations get the same precision as longitudes and latitudes, like the FeatureJSON above writes them
+        GeometryJSONWriter geometryWriter = new GeometryJSONWriter(writer, GeometryJSONWriter.DEFAULT_DECIMALS, GeometryJSONWriter.DEFAULT_DECIMALS);
+        BBox bbox = new BBox(0, 0, 0, 0);
+
+        writer.beginObject();
+        writer.name("type").value("FeatureCollection");
+        writer.name("features").beginArray();
+        for (RouteResult route : routeResult) {
+            PointList points = route.getPoints() != null ? route.getPoints() : PointList.EMPTY;
+
+            writer.beginObject();
+            writer.name("type").value("Feature");
+            writer.name("geometry");
+            geometryWriter.writeLineString(points, points.is3D());
+            writer.name("properties");
+            JsonRoutingResponseWriter.writeFeatureProperties(geometryWriter, rreq, route, bbox);
+            writer.name("id").value(SimpleFeatureBuilder.createDefaultFeatureId());
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.name("bbox");
+        geometryWriter.writeBBox(bbox.minLon, bbox.minLat, bbox.maxLon, bbox.maxLat);
+        writer.name("info").rawValue(info);
+        writer.endObject();
+
+        writer.flush();
+    }
+
     /**
      * This is an example class and not yet integrated. It is reflecting the way additional GeoJSON exports should be integrated.
      *
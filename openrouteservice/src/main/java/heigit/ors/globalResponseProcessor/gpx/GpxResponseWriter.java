@@ -26,6 +26,7 @@
 package heigit.ors.globalResponseProcessor.gpx;
 
 
+import com.graphhopper.util.PointList;
 import com.graphhopper.util.shapes.BBox;
 import com.vividsolutions.jts.geom.LineString;
 import com.vividsolutions.jts.geom.Point;
@@ -54,9 +55,16 @@ import heigit.ors.globalResponseProcessor.gpx.beans.RteTypeExtensions;
 import heigit.ors.globalResponseProcessor.gpx.beans.WptType;
 import heigit.ors.globalResponseProcessor.gpx.beans.WptTypeExtensions;
 
+import javax.xml.bind.annotation.XmlSchema;
+import javax.xml.datatype.DatatypeConstants;
 import javax.xml.datatype.DatatypeFactory;
 import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.List;
@@ -64,10 +72,14 @@ import java.util.List;
 
 /**
  * {@link GpxResponseWriter} converts OpenRouteService {@link RouteResult} to GPX in a well formatted xml string representation.
+ * {@link #writeGPX(RoutingRequest, RouteResult[], OutputStream)} streams the same document with an {@link XMLStreamWriter}
+ * instead, without creating a bean per route point.
  *
  * @author Julian Psotta, julian@openrouteservice.org
  */
 public class GpxResponseWriter {
+    private static final String NAMESPACE = Gpx.class.getPackage().getAnnotation(XmlSchema.class).namespace();
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
 
     /**
      * toGPX can be used to convert a  {@link RoutingRequest} and {@link RouteResult} to a gpx.
@@ -79,12 +91,30 @@ public class GpxResponseWriter {
      * @throws Exception The class throws Exception cases
      */
     public static String toGPX(RoutingRequest rreq, RouteResult[] routeResults) throws Exception {
+        return createGpx(rreq, routeResults, getCreator(), createMetadata(routeResults), createExtensions(rreq)).build();
+    }
+
+    /**
+     * writeGPX writes the same gpx as {@link #toGPX(RoutingRequest, RouteResult[])} to the stream while it is generated.
+     * The route points are read from the {@link RouteResult} and written directly, no {@link WptType} is created for them.
+     *
+     * @param rreq         The {@link RoutingRequest} object holds route specific information like language...
+     * @param routeResults The function needs a {@link RouteResult} as input.
+     * @param out          The stream the gpx is written to, it is not closed.
+     * @throws Exception The class throws Exception cases
+     */
+    public static void writeGPX(RoutingRequest rreq, RouteResult[] routeResults, OutputStream out) throws Exception {
+        XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(out, "UTF-8");
+        writeGPX(writer, rreq, routeResults, getCreator(), createMetadata(routeResults), createExtensions(rreq));
+        writer.close();
+    }
+
+    /**
+     * Creates the bean tree of the gpx, the config dependent parts are passed in.
+     */
+    static Gpx createGpx(RoutingRequest rreq, RouteResult[] routeResults, String creator, MetadataType metadata, GpxExtensions extensions) {
         boolean includeElevation = rreq.getIncludeElevation();
         Gpx gpx = new Gpx();
-        BBox bbox = null;
-        // In case of multiple routes there is no general BBox. So the first route will always deliver the general BBox.
-        // When multiple routes are integrated, a method should be integrated to calculate a BBox of multiple BBoxes... For now it's enough!
-        bbox = routeResults[0].getSummary().getBBox();
         // Access routeresults
         for (RouteResult route : routeResults) {
             RteType routeType = new RteType();
@@ -173,27 +203,227 @@ public class GpxResponseWriter {
                 rteTypeExtensions.setDescent(route_summary.getDescent());
                 rteTypeExtensions.setDistance(route_summary.getDistance());
                 rteTypeExtensions.setDuration(route_summary.getDuration());
-                BoundsType bounds = new BoundsType();
-                BBox routeBBox = route.getSummary().getBBox();
-                bounds.setMinlat(BigDecimal.valueOf(routeBBox != null ? routeBBox.minLat : 0));
-                bounds.setMinlon(BigDecimal.valueOf(routeBBox != null ? routeBBox.minLon : 0));
-                bounds.setMaxlat(BigDecimal.valueOf(routeBBox != null ? routeBBox.maxLat : 0));
-                bounds.setMaxlon(BigDecimal.valueOf(routeBBox != null ? routeBBox.maxLon : 0));
-                rteTypeExtensions.setBounds(bounds);
+                rteTypeExtensions.setBounds(createBounds(route.getSummary().getBBox()));
                 routeType.setExtensions(rteTypeExtensions);
                 gpx.getRte().add(routeType);
             }
         }
+        gpx.setMetadata(metadata);
+        gpx.setCreator(creator);
+        gpx.setExtensions(extensions);
+        return gpx;
+    }
+
+    /**
+     * Streaming counterpart of {@link #createGpx(RoutingRequest, RouteResult[], String, MetadataType, GpxExtensions)}.
+     * The elements are written in the order of the bean properties, empty properties are left out like JAXB does.
+     */
+    static void writeGPX(XMLStreamWriter writer, RoutingRequest rreq, RouteResult[] routeResults, String creator, MetadataType metadata, GpxExtensions extensions) throws Exception {
+        writer.writeStartDocument("UTF-8", "1.0");
+        writer.setDefaultNamespace(NAMESPACE);
+        writer.writeStartElement(NAMESPACE, "gpx");
+        writer.writeDefaultNamespace(NAMESPACE);
+        writer.writeAttribute("version", new Gpx().getVersion());
+        writeAttribute(writer, "creator", creator);
+
+        writeMetadata(writer, metadata);
+        for (RouteResult route : routeResults) {
+            if (route.getSummary() != null)
+                writeRoute(writer, rreq, route);
+        }
+        writeExtensions(writer, extensions);
+
+        writer.writeEndElement();
+        writer.writeEndDocument();
+        writer.flush();
+    }
+
+    private static void writeRoute(XMLStreamWriter writer, RoutingRequest rreq, RouteResult route) throws XMLStreamException {
+        PointList points = route.getPoints();
+        int size = points != null ? points.getSize() : 0;
+        // a 2D line has no elevation to write, the bean tree cannot be marshalled in this case
+        boolean includeElevation = rreq.getIncludeElevation() && size > 0 && points.is3D();
+        List<RouteStep> steps = null;
+        int[] pointSteps = null;
+        if (rreq.getIncludeInstructions() && route.getSegments().size() > 0) {
+            steps = route.getSegments().get(0).getSteps();
+            pointSteps = getPointSteps(steps, size);
+        }
+
+        writer.writeStartElement("rte");
+        for (int i = 0; i < size; i++) {
+            writer.writeStartElement("rtept");
+            writer.writeAttribute("lat", BigDecimal.valueOf(points.getLat(i)).toPlainString());
+            writer.writeAttribute("lon", BigDecimal.valueOf(points.getLon(i)).toPlainString());
+            if (includeElevation)
+                writeElement(writer, "ele", BigDecimal.valueOf(points.getEle(i)).toPlainString());
+
+            if (pointSteps != null && pointSteps[i] >= 0) {
+                RouteStep routeStep = steps.get(pointSteps[i]);
+                writeElement(writer, "name", routeStep.getName());
+                writeElement(writer, "desc", routeStep.getInstruction());
+                writer.writeStartElement("extensions");
+                writeElement(writer, "distance", printDouble(routeStep.getDistance()));
+                writeElement(writer, "duration", printDouble(routeStep.getDuration()));
+                writeElement(writer, "type", Integer.toString(routeStep.getType()));
+                writeElement(writer, "step", Integer.toString(i));
+                writer.writeEndElement();
+            }
+            writer.writeEndElement();
+        }
+
+        RouteSummary routeSummary = route.getSummary();
+        writer.writeStartElement("extensions");
+        writeElement(writer, "distance", printDouble(routeSummary.getDistance()));
+        writeElement(writer, "duration", printDouble(routeSummary.getDuration()));
+        writeElement(writer, "distanceActual", printDouble(0));
+        writeElement(writer, "ascent", printDouble(routeSummary.getAscent()));
+        writeElement(writer, "descent", printDouble(routeSummary.getDescent()));
+        writeElement(writer, "avgSpeed", printDouble(routeSummary.getAverageSpeed()));
+        writeBounds(writer, createBounds(routeSummary.getBBox()));
+        writer.writeEndElement();
+
+        writer.writeEndElement();
+    }
+
+    /**
+     * @return the index of the step whose instruction is attached to each point, or -1. Like in the bean tree a later
+     * step overrides an earlier one, the first point of a step is skipped as it is the last point of the step before.
+     */
+    private static int[] getPointSteps(List<RouteStep> steps, int pointCount) {
+        int[] pointSteps = new int[pointCount];
+        Arrays.fill(pointSteps, -1);
+        for (int i = 0; i < steps.size(); i++) {
+            int[] wayPointNumber = steps.get(i).getWayPoints();
+            int startPoint = wayPointNumber[0];
+            if (startPoint != 0 || wayPointNumber.length == 1) {
+                startPoint += 1;
+            }
+            int endPoint = Math.min(wayPointNumber[1], pointCount - 1);
+            for (int j = startPoint; j <= endPoint; j++)
+                pointSteps[j] = i;
+        }
+        return pointSteps;
+    }
+
+    private static void writeMetadata(XMLStreamWriter writer, MetadataType metadata) throws Exception {
+        writer.writeStartElement("metadata");
+        writeElement(writer, "name", metadata.getName());
+        writeElement(writer, "desc", metadata.getDesc());
+
+        PersonType author = metadata.getAuthor();
+        if (author != null) {
+            writer.writeStartElement("author");
+            writeElement(writer, "name", author.getName());
+            EmailType email = author.getEmail();
+            if (email != null) {
+                writer.writeEmptyElement("email");
+                writeAttribute(writer, "id", email.getId());
+                writeAttribute(writer, "domain", email.getDomain());
+            }
+            if (author.getLink() != null)
+                writeLink(writer, author.getLink());
+            writer.writeEndElement();
+        }
+
+        CopyrightType copyright = metadata.getCopyright();
+        if (copyright != null) {
+            writer.writeStartElement("copyright");
+            writeAttribute(writer, "author", copyright.getAuthor());
+            if (copyright.getYear() != null)
+                writeElement(writer, "year", formatYear(copyright.getYear()));
+            writeElement(writer, "license", copyright.getLicense());
+            writer.writeEndElement();
+        }
+
+        for (LinkType link : metadata.getLink())
+            writeLink(writer, link);
+        if (metadata.getTime() != null)
+            writeElement(writer, "time", metadata.getTime().toXMLFormat());
+        writeElement(writer, "keywords", metadata.getKeywords());
+        if (metadata.getBounds() != null)
+            writeBounds(writer, metadata.getBounds());
+        writer.writeEndElement();
+    }
 
-        // Create and set boundaries
+    private static void writeExtensions(XMLStreamWriter writer, GpxExtensions extensions) throws XMLStreamException {
+        writer.writeStartElement("extensions");
+        writeElement(writer, "attribution", extensions.getAttribution());
+        writeElement(writer, "engine", extensions.getEngine());
+        writeElement(writer, "build_date", extensions.getBuild_date());
+        writeElement(writer, "profile", extensions.getProfile());
+        writeElement(writer, "preference", extensions.getPreference());
+        writeElement(writer, "language", extensions.getLanguage());
+        writeElement(writer, "distance-units", extensions.getDistance_units());
+        writeElement(writer, "duration-units", extensions.getDuration_units());
+        writeElement(writer, "instructions", extensions.getInstructions());
+        writeElement(writer, "elevation", extensions.getElevation());
+        writer.writeEndElement();
+    }
+
+    private static void writeLink(XMLStreamWriter writer, LinkType link) throws XMLStreamException {
+        writer.writeStartElement("link");
+        writeAttribute(writer, "href", link.getHref());
+        writeElement(writer, "text", link.getText());
+        writeElement(writer, "type", link.getType());
+        writer.writeEndElement();
+    }
+
+    private static void writeBounds(XMLStreamWriter writer, BoundsType bounds) throws XMLStreamException {
+        writer.writeEmptyElement("bounds");
+        writeAttribute(writer, "minlat", bounds.getMinlat());
+        writeAttribute(writer, "minlon", bounds.getMinlon());
+        writeAttribute(writer, "maxlat", bounds.getMaxlat());
+        writeAttribute(writer, "maxlon", bounds.getMaxlon());
+    }
+
+    private static void writeElement(XMLStreamWriter writer, String name, String text) throws XMLStreamException {
+        if (text == null)
+            return;
+        writer.writeStartElement(name);
+        writer.writeCharacters(text);
+        writer.writeEndElement();
+    }
+
+    private static void writeAttribute(XMLStreamWriter writer, String name, Object value) throws XMLStreamException {
+        if (value != null)
+            writer.writeAttribute(name, value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : value.toString());
+    }
+
+    /**
+     * @return the double as JAXB prints it
+     */
+    private static String printDouble(double value) {
+        if (Double.isNaN(value))
+            return "NaN";
+        if (Double.isInfinite(value))
+            return value > 0 ? "INF" : "-INF";
+        return Double.toString(value);
+    }
+
+    /**
+     * @return the year of the calendar with its time zone, which is what JAXB writes for a gYear
+     */
+    private static String formatYear(XMLGregorianCalendar cal) throws Exception {
+        return DatatypeFactory.newInstance().newXMLGregorianCalendarDate(cal.getYear(), DatatypeConstants.FIELD_UNDEFINED, DatatypeConstants.FIELD_UNDEFINED, cal.getTimezone()).toXMLFormat();
+    }
+
+    private static BoundsType createBounds(BBox bbox) {
         BoundsType bounds = new BoundsType();
         bounds.setMinlat(BigDecimal.valueOf(bbox != null ? bbox.minLat : 0));
         bounds.setMinlon(BigDecimal.valueOf(bbox != null ? bbox.minLon : 0));
         bounds.setMaxlat(BigDecimal.valueOf(bbox != null ? bbox.maxLat : 0));
         bounds.setMaxlon(BigDecimal.valueOf(bbox != null ? bbox.maxLon : 0));
+        return bounds;
+    }
+
+    private static MetadataType createMetadata(RouteResult[] routeResults) throws Exception {
+        // In case of multiple routes there is no general BBox. So the first route will always deliver the general BBox.
+        // When multiple routes are integrated, a method should be integrated to calculate a BBox of multiple BBoxes... For now it's enough!
+        BBox bbox = routeResults[0].getSummary().getBBox();
         // create and set gpx metadata in a if and else check process to avoid interruption
         MetadataType metadata = new MetadataType();
-        metadata.setBounds(bounds);
+        metadata.setBounds(createBounds(bbox));
         PersonType orsPerson = new PersonType();
         EmailType orsMail = new EmailType();
         if (AppConfig.Global().getParameter("info", "support_mail") != null) {
@@ -279,16 +509,21 @@ public class GpxResponseWriter {
             new MissingConfigParameterException(GpxResponseWriter.class, "routing_name");
         }
         metadata.setTime(cal);
-        gpx.setMetadata(metadata);
+        return metadata;
+    }
+
+    private static String getCreator() {
         // set author_tag
         if (AppConfig.Global().getParameter("info", "author_tag") != null) {
-            gpx.setCreator(AppConfig.Global().getParameter("info", "author_tag"));
+            return AppConfig.Global().getParameter("info", "author_tag");
         } else {
-            gpx.setCreator("");
             new MissingConfigParameterException(GpxResponseWriter.class, "author_tag");
+            return "";
         }
+    }
 
-        // set gpx extensions
+    private static GpxExtensions createExtensions(RoutingRequest rreq) {
+        boolean includeElevation = rreq.getIncludeElevation();
         GpxExtensions gpxExtensions = new GpxExtensions();
         gpxExtensions.setAttribution(RoutingServiceSettings.getAttribution());
         gpxExtensions.setElevation(String.valueOf(includeElevation));
@@ -299,7 +534,6 @@ public class GpxResponseWriter {
         gpxExtensions.setPreference(RoutingProfileType.getName(rreq.getSearchParameters().getWeightingMethod()));
         gpxExtensions.setProfile(WeightingMethod.getName(rreq.getSearchParameters().getProfileType()));
         gpxExtensions.setDistance_units(rreq.getUnits().name());
-        gpx.setExtensions(gpxExtensions);
-        return gpx.build();
+        return gpxExtensions;
     }
 }
@@ -0,0 +1,784 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Pure Java Brotli encoder (RFC 7932), a replacement of the native jbrotli library which crashed the JVM.
+ * <p>
+ * The data is split into meta-blocks of at most 64 KB. Each meta-block is LZ77 compressed against a window of 256 KB
+ * with a hash table of the recently seen positions and stored with one prefix code per alphabet, without block
+ * splitting, context modeling and the static dictionary. Meta-blocks which would become larger than their data are
+ * stored uncompressed. The compression ratio is therefore closer to the one of gzip than to the one of the reference
+ * encoder, the output is decodable by any Brotli decoder.
+ * <p>
+ * The buffers, the window and the hash table start small and grow with the data, so that short streams do not
+ * allocate the memory needed for long ones.
+ * <p>
+ * {@link #flush()} encodes the data written so far and pads the stream to a byte boundary, so that the decoder is able
+ * to decode everything up to this point.
+ */
+public class BrotliOutputStream extends OutputStream {
+	public static final int MIN_QUALITY = 0;
+	public static final int MAX_QUALITY = 11;
+	public static final int DEFAULT_QUALITY = 5;
+
+	private static final int WINDOW_BITS = 18;
+	// the decoder keeps 16 bytes less than the window size
+	private static final int MAX_DISTANCE = (1 << WINDOW_BITS) - 16;
+	private static final int BLOCK_SIZE = 1 << 16;
+	private static final int MIN_WINDOW_SIZE = 1 << 14;
+	// room for the window and the data which has not been encoded yet
+	private static final int MAX_WINDOW_SIZE = (1 << WINDOW_BITS) + 2 * BLOCK_SIZE;
+	private static final int MIN_MATCH = 4;
+	// the maximum number of hash table entries, divided into buckets of 1 to 8 entries
+	private static final int TABLE_BITS = 16;
+	private static final int MIN_COMMANDS = 256;
+	private static final int MAX_HUFFMAN_BITS = 15;
+
+	private static final int NUM_LITERAL_SYMBOLS = 256;
+	private static final int NUM_COMMAND_SYMBOLS = 704;
+	// 16 short codes and 48 distance codes, without direct distance codes and postfix bits
+	private static final int NUM_DISTANCE_SYMBOLS = 64;
+	private static final int NUM_CODE_LENGTH_CODES = 18;
+	private static final int REPEAT_PREVIOUS_CODE_LENGTH = 16;
+	private static final int REPEAT_ZERO_CODE_LENGTH = 17;
+	private static final int INITIAL_REPEATED_CODE_LENGTH = 8;
+
+	private static final int[] INSERT_BASE = { 0, 1, 2, 3, 4, 5, 6, 8, 10, 14, 18, 26, 34, 50, 66, 98, 130, 194, 322, 578,
+			1090, 2114, 6210, 22594 };
+	private static final int[] INSERT_EXTRA = { 0, 0, 0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 7, 8, 9, 10, 12, 14, 24 };
+	private static final int[] COPY_BASE = { 2, 3, 4, 5, 6, 7, 8, 9, 10, 12, 14, 18, 22, 30, 38, 54, 70, 102, 134, 198, 326,
+			582, 1094, 2118 };
+	private static final int[] COPY_EXTRA = { 0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 7, 8, 9, 10, 24 };
+	// the first command code of the cells of insert and copy length codes with an explicit distance, indexed by
+	// (copy code >> 3) + 3 * (insert code >> 3)
+	private static final int[] COMMAND_CELL_BASE = { 128, 192, 384, 256, 320, 512, 448, 576, 640 };
+
+	private static final int[] CODE_LENGTH_STORAGE_ORDER = { 1, 2, 3, 4, 0, 5, 17, 6, 16, 7, 8, 9, 10, 11, 12, 13, 14, 15 };
+	// the fixed prefix code of the code length code lengths 0 to 5
+	private static final int[] CODE_LENGTH_LENGTH_SYMBOLS = { 0, 7, 3, 2, 1, 15 };
+	private static final int[] CODE_LENGTH_LENGTH_BITS = { 2, 4, 3, 2, 2, 4 };
+
+	private final OutputStream _out;
+	private final int _bucketBits;
+	private int _hashShift;
+	private final boolean _insertAll;
+	private final boolean _lazyMatching;
+	private int[] _table;
+	private byte[] _window = new byte[MIN_WINDOW_SIZE];
+	// the data from _blockStart to _end has not been encoded yet
+	private int _blockStart;
+	private int _end;
+	private int _matchDistance;
+
+	// the commands of the current meta-block, a copy length of 0 marks the final insert without copy
+	private int[] _insertLengths = new int[MIN_COMMANDS];
+	private int[] _copyLengths = new int[MIN_COMMANDS];
+	private int[] _distances = new int[MIN_COMMANDS];
+	private int _commandCount;
+
+	private final int[] _literalHistogram = new int[NUM_LITERAL_SYMBOLS];
+	private final int[] _commandHistogram = new int[NUM_COMMAND_SYMBOLS];
+	private final int[] _distanceHistogram = new int[NUM_DISTANCE_SYMBOLS];
+	private final byte[] _literalDepths = new byte[NUM_LITERAL_SYMBOLS];
+	private final byte[] _commandDepths = new byte[NUM_COMMAND_SYMBOLS];
+	private final byte[] _distanceDepths = new byte[NUM_DISTANCE_SYMBOLS];
+	private final int[] _literalCodes = new int[NUM_LITERAL_SYMBOLS];
+	private final int[] _commandCodes = new int[NUM_COMMAND_SYMBOLS];
+	private final int[] _distanceCodes = new int[NUM_DISTANCE_SYMBOLS];
+	private final byte[] _tree = new byte[NUM_COMMAND_SYMBOLS];
+	private final byte[] _treeExtraBits = new byte[NUM_COMMAND_SYMBOLS];
+	private int _treeSize;
+
+	private byte[] _bits = new byte[4096];
+	private int _bitsLength;
+	private long _bitBuffer;
+	private int _bitCount;
+	private boolean _closed;
+
+	public BrotliOutputStream(OutputStream out) {
+		this(out, DEFAULT_QUALITY);
+	}
+
+	/**
+	 * @param quality from {@link #MIN_QUALITY} to {@link #MAX_QUALITY}, higher qualities search more positions for
+	 * longer matches
+	 */
+	public BrotliOutputStream(OutputStream out, int quality) {
+		if (quality < MIN_QUALITY || quality > MAX_QUALITY)
+			throw new IllegalArgumentException("The quality must be within " + MIN_QUALITY + " and " + MAX_QUALITY + ".");
+
+		_out = out;
+		_bucketBits = quality < 5 ? 0 : (quality < 8 ? 2 : 3);
+		_insertAll = quality >= 2;
+		_lazyMatching = quality >= 5;
+		resizeTable(getTableBits(MIN_WINDOW_SIZE));
+
+		// WBITS
+		writeBits(1, 1);
+		writeBits(3, WINDOW_BITS - 17);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (_closed)
+			throw new IOException("Cannot write to a closed output stream");
+
+		while (len > 0) {
+			if (_end == _window.length) {
+				if (_window.length < MAX_WINDOW_SIZE)
+					growWindow();
+				else
+					slideWindow();
+			}
+
+			int n = Math.min(len, Math.min(_window.length - _end, BLOCK_SIZE - (_end - _blockStart)));
+			System.arraycopy(b, off, _window, _end, n);
+			_end += n;
+			off += n;
+			len -= n;
+
+			if (_end - _blockStart == BLOCK_SIZE)
+				encodeMetaBlock();
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (_closed)
+			throw new IOException("Cannot flush a closed output stream");
+
+		if (_end > _blockStart)
+			encodeMetaBlock();
+
+		if (_bitCount > 0) {
+			// empty metadata meta-block (ISLAST 0, MNIBBLES 0, reserved bit, MSKIPBYTES 0) to reach a byte boundary
+			writeBits(6, 6);
+			alignToByte();
+		}
+
+		writeOutput();
+		_out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (_closed)
+			return;
+
+		try {
+			if (_end > _blockStart)
+				encodeMetaBlock();
+
+			// ISLAST and ISLASTEMPTY
+			writeBits(2, 3);
+			alignToByte();
+			writeOutput();
+		} finally {
+			_closed = true;
+			_out.close();
+		}
+	}
+
+	/**
+	 * Doubles the window, the hash table grows along with it. The window grows before it slides, so all positions
+	 * from the start of the stream are still in it.
+	 */
+	private void growWindow() {
+		_window = Arrays.copyOf(_window, Math.min(_window.length * 2, MAX_WINDOW_SIZE));
+
+		int tableBits = getTableBits(_window.length);
+		if (_table.length < 1 << tableBits) {
+			resizeTable(tableBits);
+			// the positions of the current meta-block are inserted when it is encoded
+			for (int pos = 0; pos <= _blockStart - MIN_MATCH; pos++)
+				insertHash(pos);
+		}
+	}
+
+	/**
+	 * @return about one hash table entry per four bytes of the window
+	 */
+	private static int getTableBits(int windowSize) {
+		return Math.min(TABLE_BITS, 29 - Integer.numberOfLeadingZeros(windowSize));
+	}
+
+	private void resizeTable(int tableBits) {
+		_table = new int[1 << tableBits];
+		Arrays.fill(_table, -1);
+		_hashShift = 32 - (tableBits - _bucketBits);
+	}
+
+	/**
+	 * Moves the data to the start of the window, keeping as much of the encoded data as can be referred to.
+	 */
+	private void slideWindow() {
+		int shift = _blockStart - Math.min(_blockStart, 1 << WINDOW_BITS);
+		System.arraycopy(_window, shift, _window, 0, _end - shift);
+		_blockStart -= shift;
+		_end -= shift;
+
+		for (int i = 0; i < _table.length; i++) {
+			int pos = _table[i] - shift;
+			_table[i] = pos < 0 ? -1 : pos;
+		}
+	}
+
+	private void encodeMetaBlock() throws IOException {
+		int start = _blockStart;
+		int length = _end - start;
+
+		findCommands(start, _end);
+
+		int markLength = _bitsLength;
+		long markBuffer = _bitBuffer;
+		int markCount = _bitCount;
+
+		writeCompressedMetaBlock(start, length);
+
+		long compressedBits = (_bitsLength - markLength) * 8L + _bitCount - markCount;
+		if (compressedBits > (length + 4L) * 8) {
+			_bitsLength = markLength;
+			_bitBuffer = markBuffer;
+			_bitCount = markCount;
+			writeUncompressedMetaBlock(start, length);
+		}
+
+		_blockStart = _end;
+		writeOutput();
+	}
+
+	private void findCommands(int start, int end) {
+		_commandCount = 0;
+
+		int pos = start;
+		int literalStart = start;
+		int limit = end - MIN_MATCH;
+
+		while (pos <= limit) {
+			int length = findMatch(pos, end);
+			if (length < MIN_MATCH) {
+				insertHash(pos);
+				pos++;
+				continue;
+			}
+
+			int distance = _matchDistance;
+			insertHash(pos);
+
+			if (_lazyMatching) {
+				// prefer a longer match starting at the next position
+				while (pos < limit) {
+					int nextLength = findMatch(pos + 1, end);
+					if (nextLength <= length)
+						break;
+
+					pos++;
+					length = nextLength;
+					distance = _matchDistance;
+					insertHash(pos);
+				}
+			}
+
+			addCommand(pos - literalStart, length, distance);
+
+			int matchEnd = pos + length;
+			if (_insertAll) {
+				for (int p = pos + 1; p < matchEnd && p <= limit; p++)
+					insertHash(p);
+			}
+
+			pos = matchEnd;
+			literalStart = matchEnd;
+		}
+
+		if (literalStart < end)
+			addCommand(end - literalStart, 0, 0);
+	}
+
+	private void addCommand(int insertLength, int copyLength, int distance) {
+		if (_commandCount == _insertLengths.length) {
+			_insertLengths = Arrays.copyOf(_insertLengths, _commandCount * 2);
+			_copyLengths = Arrays.copyOf(_copyLengths, _commandCount * 2);
+			_distances = Arrays.copyOf(_distances, _commandCount * 2);
+		}
+
+		_insertLengths[_commandCount] = insertLength;
+		_copyLengths[_commandCount] = copyLength;
+		_distances[_commandCount] = distance;
+		_commandCount++;
+	}
+
+	private int hash(int pos) {
+		byte[] w = _window;
+		int v = (w[pos] & 0xFF) | (w[pos + 1] & 0xFF) << 8 | (w[pos + 2] & 0xFF) << 16 | (w[pos + 3] & 0xFF) << 24;
+		return (v * 0x1E35A7BD) >>> _hashShift;
+	}
+
+	private void insertHash(int pos) {
+		int bucket = hash(pos) << _bucketBits;
+		int size = 1 << _bucketBits;
+		if (size > 1)
+			System.arraycopy(_table, bucket, _table, bucket + 1, size - 1);
+		_table[bucket] = pos;
+	}
+
+	/**
+	 * @return the length of the longest match of the data at the position within the end, its distance is stored in
+	 * _matchDistance
+	 */
+	private int findMatch(int pos, int end) {
+		byte[] w = _window;
+		int bucket = hash(pos) << _bucketBits;
+		int size = 1 << _bucketBits;
+		int maxLength = end - pos;
+		int bestLength = 0;
+
+		// the bucket is ordered from the newest to the oldest position
+		for (int i = 0; i < size; i++) {
+			int candidate = _table[bucket + i];
+			int distance = pos - candidate;
+			if (candidate < 0 || distance > MAX_DISTANCE)
+				break;
+			if (distance <= 0 || w[candidate + bestLength] != w[pos + bestLength])
+				continue;
+
+			int length = 0;
+			while (length < maxLength && w[candidate + length] == w[pos + length])
+				length++;
+
+			if (length > bestLength) {
+				bestLength = length;
+				_matchDistance = distance;
+				if (length == maxLength)
+					break;
+			}
+		}
+
+		return bestLength;
+	}
+
+	private void writeMetaBlockHeader(int length, boolean uncompressed) {
+		int nibbles = length - 1 < (1 << 16) ? 4 : (length - 1 < (1 << 20) ? 5 : 6);
+		// ISLAST
+		writeBits(1, 0);
+		writeBits(2, nibbles - 4);
+		writeBits(nibbles * 4, length - 1);
+		writeBits(1, uncompressed ? 1 : 0);
+	}
+
+	private void writeUncompressedMetaBlock(int start, int length) {
+		writeMetaBlockHeader(length, true);
+		alignToByte();
+		ensureCapacity(length);
+		System.arraycopy(_window, start, _bits, _bitsLength, length);
+		_bitsLength += length;
+	}
+
+	private void writeCompressedMetaBlock(int start, int length) {
+		Arrays.fill(_literalHistogram, 0);
+		Arrays.fill(_commandHistogram, 0);
+		Arrays.fill(_distanceHistogram, 0);
+
+		int pos = start;
+		for (int i = 0; i < _commandCount; i++) {
+			int insertLength = _insertLengths[i];
+			int copyLength = _copyLengths[i];
+			for (int j = 0; j < insertLength; j++)
+				_literalHistogram[_window[pos + j] & 0xFF]++;
+			_commandHistogram[getCommandCode(insertLength, copyLength)]++;
+			if (copyLength > 0)
+				_distanceHistogram[getDistanceCode(_distances[i])]++;
+			pos += insertLength + copyLength;
+		}
+
+		writeMetaBlockHeader(length, false);
+		// one block type per category (NBLTYPESL, NBLTYPESI, NBLTYPESD), NPOSTFIX and NDIRECT 0, the context mode
+		// of the literals and one prefix code of literals and distances (NTREESL, NTREESD)
+		writeBits(13, 0);
+
+		writePrefixCode(_literalHistogram, NUM_LITERAL_SYMBOLS, 8, _literalDepths, _literalCodes);
+		writePrefixCode(_commandHistogram, NUM_COMMAND_SYMBOLS, 10, _commandDepths, _commandCodes);
+		writePrefixCode(_distanceHistogram, NUM_DISTANCE_SYMBOLS, 6, _distanceDepths, _distanceCodes);
+
+		pos = start;
+		for (int i = 0; i < _commandCount; i++) {
+			int insertLength = _insertLengths[i];
+			int copyLength = _copyLengths[i];
+			int insertCode = getInsertLengthCode(insertLength);
+			int copyCode = getCopyLengthCode(copyLength);
+			int command = getCommandCode(insertLength, copyLength);
+
+			writeBits(_commandDepths[command], _commandCodes[command]);
+			writeBits(INSERT_EXTRA[insertCode], insertLength - INSERT_BASE[insertCode]);
+			writeBits(COPY_EXTRA[copyCode], copyLength == 0 ? 0 : copyLength - COPY_BASE[copyCode]);
+
+			for (int j = 0; j < insertLength; j++) {
+				int literal = _window[pos + j] & 0xFF;
+				writeBits(_literalDepths[literal], _literalCodes[literal]);
+			}
+
+			if (copyLength > 0) {
+				// distance codes from 16 on, with NPOSTFIX and NDIRECT 0
+				int d = _distances[i] + 3;
+				int bits = 30 - Integer.numberOfLeadingZeros(d);
+				int prefix = (d >>> bits) & 1;
+				int code = 16 + 2 * (bits - 1) + prefix;
+				writeBits(_distanceDepths[code], _distanceCodes[code]);
+				writeBits(bits, d - ((2 + prefix) << bits));
+			}
+
+			pos += insertLength + copyLength;
+		}
+	}
+
+	private static int getDistanceCode(int distance) {
+		int d = distance + 3;
+		int bits = 30 - Integer.numberOfLeadingZeros(d);
+		return 16 + 2 * (bits - 1) + ((d >>> bits) & 1);
+	}
+
+	private static int getInsertLengthCode(int length) {
+		if (length < 6)
+			return length;
+		if (length < 130) {
+			int bits = log2Floor(length - 2) - 1;
+			return (bits << 1) + ((length - 2) >>> bits) + 2;
+		}
+		if (length < 2114)
+			return log2Floor(length - 66) + 10;
+		if (length < 6210)
+			return 21;
+		return length < 22594 ? 22 : 23;
+	}
+
+	/**
+	 * @return the code of the copy length, 0 for the final insert without copy whose copy length is ignored
+	 */
+	private static int getCopyLengthCode(int length) {
+		if (length < 10)
+			return Math.max(length - 2, 0);
+		if (length < 134) {
+			int bits = log2Floor(length - 6) - 1;
+			return (bits << 1) + ((length - 6) >>> bits) + 4;
+		}
+		return length < 2118 ? log2Floor(length - 70) + 12 : 23;
+	}
+
+	private static int getCommandCode(int insertLength, int copyLength) {
+		int insertCode = getInsertLengthCode(insertLength);
+		int copyCode = getCopyLengthCode(copyLength);
+		return COMMAND_CELL_BASE[(copyCode >> 3) + 3 * (insertCode >> 3)] | ((insertCode & 7) << 3) | (copyCode & 7);
+	}
+
+	private static int log2Floor(int v) {
+		return 31 - Integer.numberOfLeadingZeros(v);
+	}
+
+	/**
+	 * Creates the prefix code of the histogram and writes it, as simple prefix code if at most one symbol is used.
+	 */
+	private void writePrefixCode(int[] histogram, int alphabetSize, int alphabetBits, byte[] depths, int[] codes) {
+		int used = 0;
+		int symbol = 0;
+		for (int i = 0; i < alphabetSize; i++) {
+			if (histogram[i] != 0) {
+				used++;
+				symbol = i;
+			}
+		}
+
+		if (used <= 1) {
+			// HSKIP 1 and NSYM 1, the only symbol is coded with 0 bits
+			writeBits(2, 1);
+			writeBits(2, 0);
+			writeBits(alphabetBits, symbol);
+			Arrays.fill(depths, (byte) 0);
+			Arrays.fill(codes, 0);
+			return;
+		}
+
+		createHuffmanDepths(histogram, alphabetSize, MAX_HUFFMAN_BITS, depths);
+		convertDepthsToCodes(depths, alphabetSize, codes);
+		writeHuffmanTree(depths, alphabetSize);
+	}
+
+	/**
+	 * Writes a complex prefix code, the code lengths run length encoded and coded with the code length code.
+	 */
+	private void writeHuffmanTree(byte[] depths, int size) {
+		createTree(depths, size);
+
+		int[] histogram = new int[NUM_CODE_LENGTH_CODES];
+		for (int i = 0; i < _treeSize; i++)
+			histogram[_tree[i]]++;
+
+		int numCodes = 0;
+		int code = 0;
+		for (int i = 0; i < NUM_CODE_LENGTH_CODES; i++) {
+			if (histogram[i] != 0) {
+				numCodes++;
+				code = i;
+			}
+		}
+
+		byte[] codeLengthDepths = new byte[NUM_CODE_LENGTH_CODES];
+		int[] codeLengthCodes = new int[NUM_CODE_LENGTH_CODES];
+		createHuffmanDepths(histogram, NUM_CODE_LENGTH_CODES, 5, codeLengthDepths);
+		convertDepthsToCodes(codeLengthDepths, NUM_CODE_LENGTH_CODES, codeLengthCodes);
+
+		int codesToStore = NUM_CODE_LENGTH_CODES;
+		if (numCodes > 1) {
+			while (codesToStore > 0 && codeLengthDepths[CODE_LENGTH_STORAGE_ORDER[codesToStore - 1]] == 0)
+				codesToStore--;
+		}
+		int skip = 0;
+		if (codeLengthDepths[CODE_LENGTH_STORAGE_ORDER[0]] == 0 && codeLengthDepths[CODE_LENGTH_STORAGE_ORDER[1]] == 0)
+			skip = codeLengthDepths[CODE_LENGTH_STORAGE_ORDER[2]] == 0 ? 3 : 2;
+
+		writeBits(2, skip);
+		for (int i = skip; i < codesToStore; i++) {
+			int length = codeLengthDepths[CODE_LENGTH_STORAGE_ORDER[i]];
+			writeBits(CODE_LENGTH_LENGTH_BITS[length], CODE_LENGTH_LENGTH_SYMBOLS[length]);
+		}
+
+		// a single code length symbol is coded with 0 bits
+		if (numCodes == 1)
+			codeLengthDepths[code] = 0;
+
+		for (int i = 0; i < _treeSize; i++) {
+			int symbol = _tree[i];
+			writeBits(codeLengthDepths[symbol], codeLengthCodes[symbol]);
+			if (symbol == REPEAT_PREVIOUS_CODE_LENGTH)
+				writeBits(2, _treeExtraBits[i]);
+			else if (symbol == REPEAT_ZERO_CODE_LENGTH)
+				writeBits(3, _treeExtraBits[i]);
+		}
+	}
+
+	/**
+	 * Run length encodes the code lengths into _tree and _treeExtraBits, leaving out the trailing zeros.
+	 */
+	private void createTree(byte[] depths, int size) {
+		_treeSize = 0;
+		while (size > 0 && depths[size - 1] == 0)
+			size--;
+
+		int previous = INITIAL_REPEATED_CODE_LENGTH;
+		for (int i = 0; i < size;) {
+			int value = depths[i];
+			int reps = 1;
+			while (i + reps < size && depths[i + reps] == value)
+				reps++;
+
+			if (value == 0) {
+				writeZeroRepetitions(reps);
+			} else {
+				writeRepetitions(previous, value, reps);
+				previous = value;
+			}
+			i += reps;
+		}
+	}
+
+	private void writeRepetitions(int previous, int value, int reps) {
+		if (previous != value) {
+			addTreeSymbol(value, 0);
+			reps--;
+		}
+		if (reps == 7) {
+			addTreeSymbol(value, 0);
+			reps--;
+		}
+		if (reps < 3) {
+			for (int i = 0; i < reps; i++)
+				addTreeSymbol(value, 0);
+		} else {
+			int start = _treeSize;
+			reps -= 3;
+			while (true) {
+				addTreeSymbol(REPEAT_PREVIOUS_CODE_LENGTH, reps & 3);
+				reps >>= 2;
+				if (reps == 0)
+					break;
+				reps--;
+			}
+			reverseTree(start);
+		}
+	}
+
+	private void writeZeroRepetitions(int reps) {
+		if (reps == 11) {
+			addTreeSymbol(0, 0);
+			reps--;
+		}
+		if (reps < 3) {
+			for (int i = 0; i < reps; i++)
+				addTreeSymbol(0, 0);
+		} else {
+			int start = _treeSize;
+			reps -= 3;
+			while (true) {
+				addTreeSymbol(REPEAT_ZERO_CODE_LENGTH, reps & 7);
+				reps >>= 3;
+				if (reps == 0)
+					break;
+				reps--;
+			}
+			reverseTree(start);
+		}
+	}
+
+	private void addTreeSymbol(int symbol, int extraBits) {
+		_tree[_treeSize] = (byte) symbol;
+		_treeExtraBits[_treeSize] = (byte) extraBits;
+		_treeSize++;
+	}
+
+	private void reverseTree(int start) {
+		for (int i = start, j = _treeSize - 1; i < j; i++, j--) {
+			byte t = _tree[i];
+			_tree[i] = _tree[j];
+			_tree[j] = t;
+			t = _treeExtraBits[i];
+			_treeExtraBits[i] = _treeExtraBits[j];
+			_treeExtraBits[j] = t;
+		}
+	}
+
+	/**
+	 * Computes the code lengths of a Huffman code of the histogram, at most the limit. Symbols of a single used symbol
+	 * get the length 1. If the limit is exceeded, the counts of rare symbols are raised until the code fits.
+	 */
+	static void createHuffmanDepths(int[] histogram, int size, int limit, byte[] depths) {
+		Arrays.fill(depths, 0, size, (byte) 0);
+
+		int n = 0;
+		for (int i = 0; i < size; i++) {
+			if (histogram[i] != 0)
+				n++;
+		}
+		if (n == 0)
+			return;
+
+		long[] leaves = new long[n];
+		long[] weights = new long[2 * n - 1];
+		int[] parents = new int[2 * n - 1];
+		int[] nodeDepths = new int[2 * n - 1];
+
+		for (long countLimit = 1;; countLimit *= 2) {
+			int k = 0;
+			for (int i = 0; i < size; i++) {
+				if (histogram[i] != 0)
+					leaves[k++] = (Math.max(histogram[i], countLimit) << 16) | i;
+			}
+			Arrays.sort(leaves);
+
+			if (n == 1) {
+				depths[(int) (leaves[0] & 0xFFFF)] = 1;
+				return;
+			}
+
+			for (int i = 0; i < n; i++)
+				weights[i] = leaves[i] >>> 16;
+
+			// two queue construction, the internal nodes are created in the order of their weights
+			int leaf = 0;
+			int internal = n;
+			for (int next = n; next < 2 * n - 1; next++) {
+				int a = (leaf < n && (internal >= next || weights[leaf] <= weights[internal])) ? leaf++ : internal++;
+				int b = (leaf < n && (internal >= next || weights[leaf] <= weights[internal])) ? leaf++ : internal++;
+				weights[next] = weights[a] + weights[b];
+				parents[a] = next;
+				parents[b] = next;
+			}
+
+			int maxDepth = 0;
+			nodeDepths[2 * n - 2] = 0;
+			for (int i = 2 * n - 3; i >= 0; i--) {
+				nodeDepths[i] = nodeDepths[parents[i]] + 1;
+				if (i < n)
+					maxDepth = Math.max(maxDepth, nodeDepths[i]);
+			}
+
+			if (maxDepth <= limit) {
+				for (int i = 0; i < n; i++)
+					depths[(int) (leaves[i] & 0xFFFF)] = (byte) nodeDepths[i];
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Assigns the canonical codes to the code lengths, bit reversed as they are written starting with the least
+	 * significant bit.
+	 */
+	static void convertDepthsToCodes(byte[] depths, int size, int[] codes) {
+		int[] counts = new int[MAX_HUFFMAN_BITS + 1];
+		for (int i = 0; i < size; i++)
+			counts[depths[i]]++;
+		counts[0] = 0;
+
+		int[] nextCodes = new int[MAX_HUFFMAN_BITS + 1];
+		int code = 0;
+		for (int i = 1; i <= MAX_HUFFMAN_BITS; i++) {
+			code = (code + counts[i - 1]) << 1;
+			nextCodes[i] = code;
+		}
+
+		for (int i = 0; i < size; i++) {
+			int depth = depths[i];
+			codes[i] = depth == 0 ? 0 : Integer.reverse(nextCodes[depth]++) >>> (32 - depth);
+		}
+	}
+
+	private void writeBits(int count, long value) {
+		_bitBuffer |= value << _bitCount;
+		_bitCount += count;
+
+		while (_bitCount >= 8) {
+			if (_bitsLength == _bits.length)
+				_bits = Arrays.copyOf(_bits, _bits.length * 2);
+			_bits[_bitsLength++] = (byte) _bitBuffer;
+			_bitBuffer >>>= 8;
+			_bitCount -= 8;
+		}
+	}
+
+	private void alignToByte() {
+		if (_bitCount > 0)
+			writeBits(8 - _bitCount, 0);
+	}
+
+	private void ensureCapacity(int length) {
+		if (_bitsLength + length > _bits.length)
+			_bits = Arrays.copyOf(_bits, Math.max(_bits.length * 2, _bitsLength + length));
+	}
+
+	private void writeOutput() throws IOException {
+		if (_bitsLength > 0) {
+			_out.write(_bits, 0, _bitsLength);
+			_bitsLength = 0;
+		}
+	}
+}
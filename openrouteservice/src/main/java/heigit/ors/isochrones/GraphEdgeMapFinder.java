@@ -13,15 +13,15 @@
  */
 package heigit.ors.isochrones;
 
-import com.carrotsearch.hppc.IntObjectMap;
 import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.routing.util.HintsMap;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.FastestWeighting;
 import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.CHGraph;
 import com.graphhopper.storage.GraphHopperStorage;
-import com.graphhopper.storage.SPTEntry;
 import com.graphhopper.storage.index.QueryResult;
 import com.vividsolutions.jts.geom.Coordinate;
 import heigit.ors.common.TravelRangeType;
@@ -29,11 +29,16 @@ import heigit.ors.exceptions.InternalServerException;
 import heigit.ors.routing.RouteSearchContext;
 import heigit.ors.routing.RouteSearchParameters;
 import heigit.ors.routing.algorithms.DijkstraCostCondition;
+import heigit.ors.routing.algorithms.DijkstraSearchState;
+import heigit.ors.routing.algorithms.PHASTAlgorithm;
 import heigit.ors.routing.graphhopper.extensions.AccessibilityMap;
+import heigit.ors.routing.graphhopper.extensions.edgefilters.EdgeFilterSequence;
 import heigit.ors.routing.graphhopper.extensions.weighting.DistanceWeighting;
 
 public class GraphEdgeMapFinder {
-	
+	// below this range a plain Dijkstra settles fewer nodes than the PHAST sweep visits
+	private static final double PHAST_MIN_TIME_RANGE = 1200;
+
    public static AccessibilityMap findEdgeMap(RouteSearchContext searchCntx, IsochroneSearchParameters parameters) throws Exception {
 		GraphHopper gh = searchCntx.getGraphHopper();
 	    FlagEncoder encoder = searchCntx.getEncoder();
@@ -45,7 +50,19 @@ public class GraphEdgeMapFinder {
 
 		if (fromId == -1)
 			throw new InternalServerException(IsochronesErrorCodes.UNKNOWN, "The closest node is null.");
+
+		// taken from the pool by the caller, who releases it once the map is no longer needed
+		DijkstraSearchState searchState = parameters.getSearchState();
+		if (searchState == null)
+			throw new InternalServerException(IsochronesErrorCodes.UNKNOWN, "The isochrone search has no search state.");
 	
+		Weighting chWeighting = getCHWeighting(searchCntx, parameters);
+		if (chWeighting != null)
+		{
+			PHASTAlgorithm phastAlg = new PHASTAlgorithm(graph, graph.getGraph(CHGraph.class, chWeighting), chWeighting, parameters.getReverseDirection());
+			return phastAlg.calcAccessibilityMap(fromId, parameters.getMaximumRange(), searchState);
+		}
+
 		Weighting weighting = null;
 		
 		if (parameters.getRangeType() == TravelRangeType.Time)
@@ -67,12 +84,37 @@ public class GraphEdgeMapFinder {
 		}
 		// IMPORTANT: It only works with TraversalMode.NODE_BASED.
 		DijkstraCostCondition dijkstraAlg = new DijkstraCostCondition(graph, weighting, parameters.getMaximumRange(), parameters.getReverseDirection(),
-				TraversalMode.NODE_BASED);
+				TraversalMode.NODE_BASED, searchState);
 		dijkstraAlg.setEdgeFilter(searchCntx.getEdgeFilter());
-		dijkstraAlg.calcPath(fromId, Integer.MIN_VALUE);
 
-		IntObjectMap<SPTEntry> edgeMap = dijkstraAlg.getMap();
+		return dijkstraAlg.calcAccessibilityMap(fromId);
+	}
+
+	/**
+	 * @return the weighting of the contraction hierarchy which can be used for the search, or null if the search
+	 * has to be done on the base graph
+	 */
+	private static Weighting getCHWeighting(RouteSearchContext searchCntx, IsochroneSearchParameters parameters)
+	{
+		GraphHopper gh = searchCntx.getGraphHopper();
+		if (!gh.isCHEnabled() || parameters.getRangeType() != TravelRangeType.Time || parameters.getMaximumRange() < PHAST_MIN_TIME_RANGE)
+			return null;
+
+		RouteSearchParameters routeParams = parameters.getRouteParameters();
+		if (routeParams != null && routeParams.getMaximumSpeed() > 0)
+			return null;
+
+		// the hierarchy does not know about avoid areas, vehicle restrictions and other dynamic filters
+		EdgeFilter edgeFilter = searchCntx.getEdgeFilter();
+		if (!(edgeFilter instanceof EdgeFilterSequence) || ((EdgeFilterSequence) edgeFilter).size() > 1)
+			return null;
+
+		for (Weighting weighting : gh.getCHFactoryDecorator().getWeightings())
+		{
+			if ("fastest".equals(weighting.getName()) && weighting.getFlagEncoder() == searchCntx.getEncoder())
+				return weighting;
+		}
 
-		return new AccessibilityMap(edgeMap, dijkstraAlg.getCurrentEdge());
+		return null;
 	}
 }
@@ -0,0 +1,24 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.isochrones;
+
+/**
+ * Receives the isochrone maps of a batch in the order they are completed. Both methods are called from the thread
+ * which started the batch, throwing an exception cancels the remaining locations.
+ */
+public interface IsochroneBatchListener {
+	void isochroneMapBuilt(IsochroneMap isochroneMap) throws Exception;
+
+	void isochroneMapFailed(int travellerId, Exception ex) throws Exception;
+}
@@ -15,6 +15,8 @@ package heigit.ors.isochrones;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.Envelope;
@@ -24,6 +26,8 @@ public class IsochroneMap {
 	private Envelope _envelope;
 	private List<Isochrone> _isochrones;
 	private Coordinate _center;
+	private IsochroneRaster _raster;
+	private Future<?> _attributesTask;
 	
 	public IsochroneMap(int travellerId, Coordinate center)
 	{
@@ -73,4 +77,40 @@ public class IsochroneMap {
 	{
 		return _envelope;
 	}
+
+	public IsochroneRaster getRaster()
+	{
+		return _raster;
+	}
+
+	public void setRaster(IsochroneRaster raster)
+	{
+		_raster = raster;
+		_envelope.expandToInclude(raster.getEnvelope());
+	}
+
+	/**
+	 * @param attributesTask the task which sets the statistics attributes of the isochrones
+	 */
+	public void setAttributesTask(Future<?> attributesTask)
+	{
+		_attributesTask = attributesTask;
+	}
+
+	/**
+	 * Waits until the statistics attributes of the isochrones have been set, the attributes must not be read before.
+	 */
+	public void waitForAttributes() throws Exception
+	{
+		if (_attributesTask == null)
+			return;
+
+		try {
+			_attributesTask.get();
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof Exception)
+				throw (Exception) ex.getCause();
+			throw ex;
+		}
+	}
 }
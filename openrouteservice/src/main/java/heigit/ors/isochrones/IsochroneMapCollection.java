@@ -14,6 +14,7 @@
 package heigit.ors.isochrones;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 
 import com.vividsolutions.jts.geom.Envelope;
@@ -52,6 +53,9 @@ public class IsochroneMapCollection {
 		return _isochroneMaps.size();
 	}
 	
+	/**
+	 * @return the intersection of the first isochrones of all maps, or null if they do not have a common area
+	 */
 	public Geometry computeIntersection()
 	{
 		if (_isochroneMaps.size() == 0)
@@ -60,14 +64,27 @@ public class IsochroneMapCollection {
 		if (_isochroneMaps.size() == 1)
 			return _isochroneMaps.get(0).getIsochrone(0).getGeometry();
 		
-		Isochrone iso = _isochroneMaps.get(0).getIsochrone(0);
-		Geometry geomIntersection = iso.getGeometry();
-		Envelope envIntersection = iso.getEnvelope();
+		// the envelopes reject disjoint isochrones before any geometry is intersected
+		List<Isochrone> isochrones = new ArrayList<Isochrone>(_isochroneMaps.size());
+		Envelope envIntersection = null;
+		for (IsochroneMap isoMap : _isochroneMaps)
+		{
+			Isochrone iso = isoMap.getIsochrone(0);
+			envIntersection = envIntersection == null ? new Envelope(iso.getEnvelope()) : envIntersection.intersection(iso.getEnvelope());
+			if (envIntersection.isNull())
+				return null;
+			isochrones.add(iso);
+		}
+		
+		// starting with the smallest isochrones keeps the intermediate results small
+		isochrones.sort(Comparator.comparingDouble(iso -> iso.getEnvelope().getArea()));
+		
+		Geometry geomIntersection = isochrones.get(0).getGeometry();
 		
-		for (int i = 1; i < _isochroneMaps.size(); ++i)
+		for (int i = 1; i < isochrones.size(); ++i)
 		{
-			iso = _isochroneMaps.get(i).getIsochrone(0);
-			if (envIntersection.intersects(iso.getEnvelope()))
+			Isochrone iso = isochrones.get(i);
+			if (geomIntersection.getEnvelopeInternal().intersects(iso.getEnvelope()))
 			{
 				geomIntersection = geomIntersection.intersection(iso.getGeometry());
 				if (geomIntersection == null || geomIntersection.isEmpty())
@@ -0,0 +1,101 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.isochrones;
+
+import java.util.Arrays;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * Regular WGS84 grid holding the travel cost (seconds or metres) needed to reach each cell. Rows are stored from
+ * north to south, cells which cannot be reached within the requested range are NaN.
+ */
+public class IsochroneRaster {
+	private final double _minX;
+	private final double _maxY;
+	private final double _cellWidth;
+	private final double _cellHeight;
+	private final int _width;
+	private final int _height;
+	private final float[] _values;
+
+	public IsochroneRaster(Envelope extent, double cellWidth, double cellHeight) {
+		_minX = extent.getMinX();
+		_maxY = extent.getMaxY();
+		_cellWidth = cellWidth;
+		_cellHeight = cellHeight;
+		_width = Math.max(1, (int) Math.ceil(extent.getWidth() / cellWidth));
+		_height = Math.max(1, (int) Math.ceil(extent.getHeight() / cellHeight));
+		_values = new float[_width * _height];
+		Arrays.fill(_values, Float.NaN);
+	}
+
+	public int getWidth() {
+		return _width;
+	}
+
+	public int getHeight() {
+		return _height;
+	}
+
+	public double getMinX() {
+		return _minX;
+	}
+
+	public double getMaxY() {
+		return _maxY;
+	}
+
+	public double getCellWidth() {
+		return _cellWidth;
+	}
+
+	public double getCellHeight() {
+		return _cellHeight;
+	}
+
+	public Envelope getEnvelope() {
+		return new Envelope(_minX, _minX + _width * _cellWidth, _maxY - _height * _cellHeight, _maxY);
+	}
+
+	public float getValue(int column, int row) {
+		return _values[row * _width + column];
+	}
+
+	/**
+	 * @return the cost of the cell containing the given location or NaN if it is not reachable or outside of the raster
+	 */
+	public float getValue(double lon, double lat) {
+		int column = (int) Math.floor((lon - _minX) / _cellWidth);
+		int row = (int) Math.floor((_maxY - lat) / _cellHeight);
+		if (column < 0 || column >= _width || row < 0 || row >= _height)
+			return Float.NaN;
+		return _values[row * _width + column];
+	}
+
+	/**
+	 * Lowers the cost of the cell containing the given location, locations outside of the raster are ignored.
+	 */
+	public void update(double lon, double lat, float cost) {
+		int column = (int) Math.floor((lon - _minX) / _cellWidth);
+		int row = (int) Math.floor((_maxY - lat) / _cellHeight);
+		if (column < 0 || column >= _width || row < 0 || row >= _height)
+			return;
+
+		int index = row * _width + column;
+		// NaN compares false, so unvisited cells always take the new value
+		if (!(_values[index] <= cost))
+			_values[index] = cost;
+	}
+}
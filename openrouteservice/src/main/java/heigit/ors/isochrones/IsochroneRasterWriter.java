@@ -0,0 +1,98 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.isochrones;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Writes an {@link IsochroneRaster} as a single band, uncompressed 32 bit float GeoTIFF in WGS84. Unreachable cells
+ * are NaN, which is also declared as the nodata value.
+ */
+public class IsochroneRasterWriter {
+	public static final String CONTENT_TYPE = "image/tiff";
+
+	private static final short TYPE_ASCII = 2;
+	private static final short TYPE_SHORT = 3;
+	private static final short TYPE_LONG = 4;
+	private static final short TYPE_DOUBLE = 12;
+
+	private static final int TAGS_COUNT = 15;
+	private static final int IFD_OFFSET = 8;
+	private static final int PIXEL_SCALE_OFFSET = IFD_OFFSET + 2 + TAGS_COUNT * 12 + 4;
+	private static final int TIEPOINT_OFFSET = PIXEL_SCALE_OFFSET + 3 * 8;
+	private static final int GEOKEYS_OFFSET = TIEPOINT_OFFSET + 6 * 8;
+	private static final short[] GEOKEYS = new short[] {
+			1, 1, 0, 3,          // key directory version 1.1.0 with 3 keys
+			1024, 0, 1, 2,       // GTModelTypeGeoKey = geographic
+			1025, 0, 1, 1,       // GTRasterTypeGeoKey = pixel is area
+			2048, 0, 1, 4326     // GeographicTypeGeoKey = WGS84
+	};
+	private static final int DATA_OFFSET = (GEOKEYS_OFFSET + GEOKEYS.length * 2 + 3) & ~3;
+
+	public static void write(IsochroneRaster raster, OutputStream out) throws IOException {
+		int width = raster.getWidth();
+		int height = raster.getHeight();
+
+		ByteBuffer header = ByteBuffer.allocate(DATA_OFFSET).order(ByteOrder.LITTLE_ENDIAN);
+		header.put((byte) 'I').put((byte) 'I').putShort((short) 42).putInt(IFD_OFFSET);
+
+		header.putShort((short) TAGS_COUNT);
+		putTag(header, 256, TYPE_LONG, 1, width);              // ImageWidth
+		putTag(header, 257, TYPE_LONG, 1, height);             // ImageLength
+		putTag(header, 258, TYPE_SHORT, 1, 32);                // BitsPerSample
+		putTag(header, 259, TYPE_SHORT, 1, 1);                 // Compression = none
+		putTag(header, 262, TYPE_SHORT, 1, 1);                 // PhotometricInterpretation = black is zero
+		putTag(header, 273, TYPE_LONG, 1, DATA_OFFSET);        // StripOffsets
+		putTag(header, 277, TYPE_SHORT, 1, 1);                 // SamplesPerPixel
+		putTag(header, 278, TYPE_LONG, 1, height);             // RowsPerStrip
+		putTag(header, 279, TYPE_LONG, 1, width * height * 4); // StripByteCounts
+		putTag(header, 284, TYPE_SHORT, 1, 1);                 // PlanarConfiguration = chunky
+		putTag(header, 339, TYPE_SHORT, 1, 3);                 // SampleFormat = IEEE float
+		putTag(header, 33550, TYPE_DOUBLE, 3, PIXEL_SCALE_OFFSET);  // ModelPixelScaleTag
+		putTag(header, 33922, TYPE_DOUBLE, 6, TIEPOINT_OFFSET);     // ModelTiepointTag
+		putTag(header, 34735, TYPE_SHORT, GEOKEYS.length, GEOKEYS_OFFSET); // GeoKeyDirectoryTag
+		// GDAL_NODATA, the four bytes of "nan\0" fit into the value field
+		header.putShort((short) 42113).putShort(TYPE_ASCII).putInt(4).put((byte) 'n').put((byte) 'a').put((byte) 'n').put((byte) 0);
+		header.putInt(0); // no further directories
+
+		header.putDouble(raster.getCellWidth()).putDouble(raster.getCellHeight()).putDouble(0.0);
+		header.putDouble(0.0).putDouble(0.0).putDouble(0.0);
+		header.putDouble(raster.getMinX()).putDouble(raster.getMaxY()).putDouble(0.0);
+		for (short value : GEOKEYS)
+			header.putShort(value);
+
+		out.write(header.array());
+
+		ByteBuffer row = ByteBuffer.allocate(width * 4).order(ByteOrder.LITTLE_ENDIAN);
+		for (int y = 0; y < height; y++) {
+			row.clear();
+			for (int x = 0; x < width; x++)
+				row.putFloat(raster.getValue(x, y));
+			out.write(row.array());
+		}
+
+		out.flush();
+	}
+
+	private static void putTag(ByteBuffer buffer, int tag, short type, int count, int value) {
+		buffer.putShort((short) tag).putShort(type).putInt(count);
+		if (type == TYPE_SHORT && count == 1)
+			buffer.putShort((short) value).putShort((short) 0);
+		else
+			buffer.putInt(value);
+	}
+}
@@ -30,6 +30,7 @@ public class IsochroneRequest extends ServiceRequest
 	private Boolean _includeIntersections = false;
 	private String[] _attributes;
 	private float _smoothingFactor = -1.0f;
+	private double _rasterResolution = -1.0;
 
 	public IsochroneRequest()
 	{
@@ -136,6 +137,18 @@ public class IsochroneRequest extends ServiceRequest
 		this._smoothingFactor = smoothingFactor;
 	}
 
+	public double getRasterResolution() {
+		return _rasterResolution;
+	}
+
+	public void setRasterResolution(double rasterResolution) {
+		_rasterResolution = rasterResolution;
+	}
+
+	public boolean isRasterOutput() {
+		return "raster".equalsIgnoreCase(_calcMethod);
+	}
+
 	public IsochroneSearchParameters getSearchParameters(int travellerIndex)
 	{
 		TravellerInfo traveller = _travellers.get(travellerIndex);
@@ -175,6 +188,7 @@ public class IsochroneRequest extends ServiceRequest
 		if ("destination".equalsIgnoreCase(traveller.getLocationType()))
 			parameters.setReverseDirection(true);
 		parameters.setSmoothingFactor(_smoothingFactor);
+		parameters.setRasterResolution(_rasterResolution);
 		return parameters;
 	}
 
@@ -16,6 +16,7 @@ package heigit.ors.isochrones;
 import com.vividsolutions.jts.geom.Coordinate;
 
 import heigit.ors.common.TravelRangeType;
+import heigit.ors.routing.algorithms.DijkstraSearchState;
 import heigit.ors.routing.RouteSearchParameters;
 
 public class IsochroneSearchParameters {
@@ -27,6 +28,8 @@ public class IsochroneSearchParameters {
 	private RouteSearchParameters _parameters;
 	private String _calcMethod;
 	private float _smoothingFactor = -1.0f;
+	private double _rasterResolution = -1.0;
+	private DijkstraSearchState _searchState;
 
 	public IsochroneSearchParameters(int travellerId, Coordinate location, double[] ranges) {
 		_travellerId = travellerId;
@@ -105,6 +108,25 @@ public class IsochroneSearchParameters {
 		this._smoothingFactor = smoothingFactor;
 	}
 
+	public double getRasterResolution() {
+		return _rasterResolution;
+	}
+
+	public void setRasterResolution(double rasterResolution) {
+		_rasterResolution = rasterResolution;
+	}
+
+	public DijkstraSearchState getSearchState() {
+		return _searchState;
+	}
+
+	/**
+	 * Sets the state the search of this isochrone is run in, see {@link DijkstraSearchState}.
+	 */
+	public void setSearchState(DijkstraSearchState searchState) {
+		_searchState = searchState;
+	}
+
 	public RouteSearchParameters getRouteParameters() {
 		return _parameters;
 	}
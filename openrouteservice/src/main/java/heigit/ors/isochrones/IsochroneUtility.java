@@ -14,23 +14,51 @@
 package heigit.ors.isochrones;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Objects;
+import java.util.stream.Collectors;
 
-import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+import com.vividsolutions.jts.index.strtree.STRtree;
 
 import heigit.ors.common.Pair;
 
 public class IsochroneUtility {
+	// below this number of isochrones the overhead of the parallel evaluation outweighs its benefit
+	private static final int MIN_PARALLEL_ISOCHRONES = 8;
+
+	private static class IsochroneRef implements Comparable<IsochroneRef> {
+		final int mapIndex;
+		final int isoIndex;
+		final Isochrone isochrone;
+
+		IsochroneRef(int mapIndex, int isoIndex, Isochrone isochrone) {
+			this.mapIndex = mapIndex;
+			this.isoIndex = isoIndex;
+			this.isochrone = isochrone;
+		}
+
+		@Override
+		public int compareTo(IsochroneRef other) {
+			return mapIndex != other.mapIndex ? Integer.compare(mapIndex, other.mapIndex) : Integer.compare(isoIndex, other.isoIndex);
+		}
+	}
+
+	/**
+	 * Computes the intersections between the isochrones of different locations. Candidate pairs are found with an
+	 * R-tree over the envelopes of all isochrones, each isochrone is then tested against its candidates as a prepared
+	 * geometry before the intersection is computed. The isochrones are processed in parallel, the result has the same
+	 * order as a sequential comparison of all pairs.
+	 */
 	public static List<IsochronesIntersection> computeIntersections(IsochroneMapCollection isochroneMaps)
 	{
 		if (isochroneMaps.size() == 1)
 			return null;
 
-		List<Integer> processedPairs = new ArrayList<Integer>();
-
-		List<IsochronesIntersection> result = null;
+		List<IsochroneRef> isochrones = new ArrayList<IsochroneRef>(isochroneMaps.getIsochronesCount());
+		STRtree tree = new STRtree();
 
 		int im = 0;
 		for (IsochroneMap isoMap : isochroneMaps.getIsochroneMaps())
@@ -38,103 +66,80 @@ public class IsochroneUtility {
 			int ii = 0;
 			for (Isochrone isoLine : isoMap.getIsochrones()) 
 			{
-				List<IsochronesIntersection> isoIntersection = computeIntersection(isoLine, ii, isoMap, im, isochroneMaps, processedPairs);
-				if (isoIntersection != null)
-				{
-					if (result == null)
-						result = new ArrayList<IsochronesIntersection>();
-
-					result.addAll(isoIntersection);
-				}
-
+				IsochroneRef ref = new IsochroneRef(im, ii, isoLine);
+				isochrones.add(ref);
+				tree.insert(isoLine.getEnvelope(), ref);
 				ii++;
 			}
 
 			im++;
 		}
 
-		// Find intersections  between IsochronesIntersection objects
-		if (result != null && result.size() > 1)
+		if (isochrones.isEmpty())
+			return null;
+
+		// querying a built tree is thread-safe
+		tree.build();
+
+		List<List<IsochronesIntersection>> intersections;
+		if (isochrones.size() < MIN_PARALLEL_ISOCHRONES)
+			intersections = isochrones.stream().map(ref -> computeIntersections(ref, tree)).collect(Collectors.toList());
+		else
+			intersections = isochrones.parallelStream().map(ref -> computeIntersections(ref, tree)).collect(Collectors.toList());
+
+		List<IsochronesIntersection> result = null;
+		for (List<IsochronesIntersection> isoIntersections : intersections)
 		{
-			List<IsochronesIntersection> isoIntersections = null;
-			
-			int i = 0;
-			for (IsochronesIntersection isoIntersection : result)
+			if (!isoIntersections.isEmpty())
 			{
-				List<IsochronesIntersection> overlaps = computeIntersection(isoIntersection, i, result);
-				if (overlaps != null)
-				{
-					isoIntersections = new ArrayList<IsochronesIntersection>();
-					isoIntersections.addAll(overlaps);
-				}
-                i++;
-			}
-			
-			if (isoIntersections != null)
+				if (result == null)
+					result = new ArrayList<IsochronesIntersection>();
+
 				result.addAll(isoIntersections);
+			}
 		}
 
 		return result;
 	}
 
-	private static List<IsochronesIntersection> computeIntersection(IsochronesIntersection isoIntersection, Integer intersectionIndex, List<IsochronesIntersection> intersections)
+	/**
+	 * @return the intersections of the isochrone with the isochrones of all locations following its own location
+	 */
+	@SuppressWarnings("unchecked")
+	private static List<IsochronesIntersection> computeIntersections(IsochroneRef isoRef, STRtree tree)
 	{
-		List<IsochronesIntersection> result = null;
-		for  (int i = intersectionIndex + 1 ; i < intersections.size(); i++)
+		List<IsochroneRef> candidates = new ArrayList<IsochroneRef>();
+		for (IsochroneRef candidate : (List<IsochroneRef>) tree.query(isoRef.isochrone.getEnvelope()))
 		{
-			IsochronesIntersection isoIntersection2 = intersections.get(i);
-
-			if (isoIntersection.intersects(isoIntersection2))
-			{
-				Geometry geomIntersection = isoIntersection.getGeometry().intersection(isoIntersection2.getGeometry());
-				if (geomIntersection != null)
-				{
-					if (result == null)
-						result = new ArrayList<IsochronesIntersection>();
-					
-					IsochronesIntersection isoIntersectionNew = new IsochronesIntersection(geomIntersection);
-					isoIntersectionNew.addContourRefs(isoIntersection.getContourRefs());
-					isoIntersectionNew.addContourRefs(isoIntersection2.getContourRefs());
-				}
-			}
+			if (candidate.mapIndex > isoRef.mapIndex)
+				candidates.add(candidate);
 		}
 
-		return result;
-	}
+		if (candidates.isEmpty())
+			return Collections.emptyList();
 
-	private static List<IsochronesIntersection> computeIntersection(Isochrone isoLine, Integer isoIndex, IsochroneMap isoMap, Integer isoMapIndex, IsochroneMapCollection isochroneMaps, List<Integer> processedPairs)
-	{
-		List<IsochronesIntersection> result = null;
-		Envelope isoEnvelope = isoLine.getEnvelope();
-		Geometry isoGeometry = isoLine.getGeometry();
+		Collections.sort(candidates);
+
+		// prepared geometries are not thread-safe, so each task prepares its own
+		Geometry isoGeometry = isoRef.isochrone.getGeometry();
+		PreparedGeometry preparedGeometry = PreparedGeometryFactory.prepare(isoGeometry);
+		List<IsochronesIntersection> result = new ArrayList<IsochronesIntersection>();
 
-		for (int im = isoMapIndex + 1; im < isochroneMaps.size(); im++)
+		for (IsochroneRef candidate : candidates)
 		{
-			IsochroneMap isoMap2 =  isochroneMaps.getIsochrone(im);
-			if (!Objects.equals(isoMap2, isoMap) && isoMap2.getEnvelope().intersects(isoEnvelope))
+			Geometry geometry2 = candidate.isochrone.getGeometry();
+			if (!preparedGeometry.intersects(geometry2))
+				continue;
+
+			Geometry geomIntersection = isoGeometry.intersection(geometry2);
+
+			if (geomIntersection != null && geomIntersection.isEmpty() == false)
 			{
-				int ii = 0;
-				for (Isochrone isoLine2 : isoMap2.getIsochrones()) 
-				{
-					if (isoEnvelope.intersects(isoLine2.getEnvelope()))
-					{
-						Geometry geomIntersection =  isoGeometry.intersection(isoLine2.getGeometry());
-
-						if (geomIntersection != null && geomIntersection.isEmpty() == false)
-						{
-							if (result == null)
-								result = new ArrayList<IsochronesIntersection>();
-
-							IsochronesIntersection isoIntersection = new IsochronesIntersection(geomIntersection);
-							isoIntersection.addContourRefs(new Pair<Integer, Integer>(isoMapIndex, isoIndex));
-							isoIntersection.addContourRefs(new Pair<Integer, Integer>(im, ii));
-
-							result.add(isoIntersection);
-						}
-					}
-
-					ii++;
-				}
+				IsochronesIntersection isoIntersection = new IsochronesIntersection(geomIntersection);
+				isoIntersection.addContourRefs(new Pair<Integer, Integer>(isoRef.mapIndex, isoRef.isoIndex));
+				isoIntersection.addContourRefs(new Pair<Integer, Integer>(candidate.mapIndex, candidate.isoIndex));
+
+				result.add(isoIntersection);
 			}
 		}
 
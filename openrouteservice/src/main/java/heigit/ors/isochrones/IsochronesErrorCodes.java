@@ -36,5 +36,6 @@ public class IsochronesErrorCodes {
     public static int EXPORT_HANDLER_ERROR = 3006;
     public static int UNSUPPORTED_EXPORT_FORMAT = 3007;
     public static int EMPTY_ELEMENT = 3008;
+    public static int REQUEST_TIMEOUT = 3009;
     public static int UNKNOWN = 3099;
 }
@@ -13,12 +13,9 @@
  */
 package heigit.ors.isochrones.builders.concaveballs;
 
-import com.carrotsearch.hppc.IntObjectMap;
-import com.carrotsearch.hppc.cursors.IntObjectCursor;
-import com.graphhopper.coll.GHIntObjectHashMap;
+import com.carrotsearch.hppc.IntHashSet;
 import com.graphhopper.storage.GraphHopperStorage;
 import com.graphhopper.storage.NodeAccess;
-import com.graphhopper.storage.SPTEntry;
 import com.graphhopper.util.*;
 import com.vividsolutions.jts.geom.*;
 import com.vividsolutions.jts.index.quadtree.Quadtree;
@@ -89,7 +86,7 @@ public class ConcaveBallsIsochroneMapBuilder extends AbstractIsochroneMapBuilder
 
 		_treeSet = new TreeSet<Coordinate>();
 
-		List<Coordinate> isoPoints = new ArrayList<Coordinate>((int)(1.2*edgeMap.getMap().size()));
+		List<Coordinate> isoPoints = new ArrayList<Coordinate>((int)(1.2*edgeMap.size()));
 
 		if (LOGGER.isDebugEnabled())
 		{
@@ -97,7 +94,7 @@ public class ConcaveBallsIsochroneMapBuilder extends AbstractIsochroneMapBuilder
 			sw.start();
 		}
 
-		markDeadEndEdges(edgeMap);
+		IntHashSet deadEndNodes = findDeadEndNodes(edgeMap);
 
 		if (LOGGER.isDebugEnabled())
 		{
@@ -120,7 +117,7 @@ public class ConcaveBallsIsochroneMapBuilder extends AbstractIsochroneMapBuilder
 				sw.start();
 			}
 
-			GeometryCollection points = buildIsochrone(edgeMap, isoPoints, loc.x, loc.y, isoValue, prevCost,maxSpeed, 0.85);
+			GeometryCollection points = buildIsochrone(edgeMap, deadEndNodes, isoPoints, loc.x, loc.y, isoValue, prevCost,maxSpeed, 0.85);
 
 			if (LOGGER.isDebugEnabled())
 			{
@@ -202,27 +199,33 @@ public class ConcaveBallsIsochroneMapBuilder extends AbstractIsochroneMapBuilder
 		isochroneMap.addIsochrone(new Isochrone(poly, isoValue, maxRadius));
 	}
 
-	private void markDeadEndEdges(AccessibilityMap edgeMap)
+	/**
+	 * @return the nodes of the tree which are not the parent of any other node
+	 */
+	private IntHashSet findDeadEndNodes(AccessibilityMap edgeMap)
 	{
-		IntObjectMap<SPTEntry> map = edgeMap.getMap();
-		IntObjectMap<Integer> result = new GHIntObjectHashMap<Integer>(map.size()/20);
+		IntHashSet parents = new IntHashSet(edgeMap.size()/20);
 
-		for (IntObjectCursor<SPTEntry> entry : map) {
-			SPTEntry  edge = entry.value;
-			if (edge.originalEdge == -1)
+		for (int i = 0; i < edgeMap.size(); i++) {
+			int node = edgeMap.getNode(i);
+			if (edgeMap.getEdge(node) == -1)
 				continue;
 
-			result.put(edge.parent.originalEdge, 1);
+			parents.add(edgeMap.getParent(node));
 		}
 
-		for (IntObjectCursor<SPTEntry> entry : map) {
-			SPTEntry  edge = entry.value;
-			if (edge.originalEdge == -1)
+		IntHashSet result = new IntHashSet(edgeMap.size()/20);
+
+		for (int i = 0; i < edgeMap.size(); i++) {
+			int node = edgeMap.getNode(i);
+			if (edgeMap.getEdge(node) == -1)
 				continue;
 
-			if (!result.containsKey(edge.originalEdge))
-				edge.edge =-2;
+			if (!parents.contains(node))
+				result.add(node);
 		}
+
+		return result;
 	}
 
 	public Boolean addPoint(List<Coordinate> points, Quadtree tree, double lon, double lat, boolean checkNeighbours) {
@@ -289,10 +292,8 @@ public class ConcaveBallsIsochroneMapBuilder extends AbstractIsochroneMapBuilder
 		} 
 	}
 
-	private GeometryCollection buildIsochrone(AccessibilityMap edgeMap, List<Coordinate> points, double lon, double lat,
+	private GeometryCollection buildIsochrone(AccessibilityMap edgeMap, IntHashSet deadEndNodes, List<Coordinate> points, double lon, double lat,
 			double isolineCost, double prevCost,  double maxSpeed, double detailedGeomFactor) {
-		IntObjectMap<SPTEntry> map = edgeMap.getMap();
-
 		points.clear();
 		_treeSet.clear();
 
@@ -303,9 +304,6 @@ public class ConcaveBallsIsochroneMapBuilder extends AbstractIsochroneMapBuilder
 		NodeAccess nodeAccess = graph.getNodeAccess();
 		int maxNodeId = graph.getNodes();
 
-		SPTEntry edgeEntry = edgeMap.getEdgeEntry();
-		SPTEntry goalEdge = edgeEntry;
-
 		DistanceCalc dcFast = new DistancePlaneProjection();
 		double bufferSize = 0.0018;
 		Quadtree qtree = new Quadtree();
@@ -317,7 +315,7 @@ public class ConcaveBallsIsochroneMapBuilder extends AbstractIsochroneMapBuilder
 		double defaultVisitorThreshold = 0.0035;
 		
 		// make results a bit more precise for regions with low data density
-		if (map.size() < 10000)
+		if (edgeMap.size() < 10000)
 		{
 			defaultSearchWidth = 0.0008;
 			defaulPointWidth = 0.005;
@@ -326,22 +324,20 @@ public class ConcaveBallsIsochroneMapBuilder extends AbstractIsochroneMapBuilder
 		
 		int nodeId, edgeId;
 
-		for (IntObjectCursor<SPTEntry> entry : map) {
-			goalEdge = entry.value;
-			edgeId = goalEdge.originalEdge;
+		for (int index = 0; index < edgeMap.size(); index++) {
+			nodeId = edgeMap.getNode(index);
+			edgeId = edgeMap.getEdge(nodeId);
 
 			if (edgeId == -1)
 				continue;
 
-			nodeId = goalEdge.adjNode;
-
-			if (nodeId == -1 || nodeId > maxNodeId)
+			if (nodeId > maxNodeId)
 				continue;
 			
 			EdgeIteratorState iter = graph.getEdgeIteratorState(edgeId, nodeId);
 
-			float maxCost = (float) (goalEdge.weight);
-			float minCost = (float) (goalEdge.parent.weight);
+			float maxCost = (float) (edgeMap.getWeight(nodeId));
+			float minCost = (float) (edgeMap.getWeight(edgeMap.getParent(nodeId)));
 
 			// ignore all edges that have been considered in the previous step
 			if (minCost < prevCost)
@@ -356,7 +352,7 @@ public class ConcaveBallsIsochroneMapBuilder extends AbstractIsochroneMapBuilder
 			// edges that are fully inside of the isochrone
 			if (isolineCost >= maxCost) {
 
-				if (goalEdge.edge == -2)
+				if (deadEndNodes.contains(nodeId))
 				{
 					//addPoint(points, qtree, nodeAccess.getLon(nodeId), nodeAccess.getLat(nodeId), true);
 				}
@@ -380,7 +376,7 @@ public class ConcaveBallsIsochroneMapBuilder extends AbstractIsochroneMapBuilder
 									lat1 = pl.getLat(i);
 									lon1 = pl.getLon(i);
 
-									addBufferPoints(points, qtree, lon0, lat0, lon1, lat1, goalEdge.edge < 0 && i == size - 1, true, bufferSize);
+									addBufferPoints(points, qtree, lon0, lat0, lon1, lat1, false, true, bufferSize);
 
 									lon0 = lon1;
 									lat0 = lat1;
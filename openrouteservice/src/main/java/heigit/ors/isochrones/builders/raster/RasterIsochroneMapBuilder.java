@@ -0,0 +1,157 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.isochrones.builders.raster;
+
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.DistanceCalc;
+import com.graphhopper.util.DistancePlaneProjection;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.StopWatch;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import heigit.ors.isochrones.GraphEdgeMapFinder;
+import heigit.ors.isochrones.IsochroneMap;
+import heigit.ors.isochrones.IsochroneRaster;
+import heigit.ors.isochrones.IsochroneSearchParameters;
+import heigit.ors.isochrones.builders.AbstractIsochroneMapBuilder;
+import heigit.ors.routing.RouteSearchContext;
+import heigit.ors.routing.graphhopper.extensions.AccessibilityMap;
+import heigit.ors.util.GeomUtility;
+import org.apache.log4j.Logger;
+
+/**
+ * Builds a travel cost surface instead of isochrone polygons. The edges of the shortest path tree are sampled along
+ * their geometry and the interpolated cost of each sample is written into the cell it falls into, keeping the lowest
+ * cost per cell. The raster is filled in a single pass over the tree, no hulls are computed.
+ */
+public class RasterIsochroneMapBuilder extends AbstractIsochroneMapBuilder {
+	private static final Logger LOGGER = Logger.getLogger(RasterIsochroneMapBuilder.class.getName());
+
+	public static final double DEFAULT_RESOLUTION = 100;
+	// limits the raster to 40 MB, the resolution is lowered if the reachable area would need more cells
+	private static final int MAX_CELLS = 10000000;
+
+	private RouteSearchContext _searchContext;
+
+	public void initialize(RouteSearchContext searchContext) {
+		_searchContext = searchContext;
+	}
+
+	public IsochroneMap compute(IsochroneSearchParameters parameters) throws Exception {
+		StopWatch sw = null;
+		if (LOGGER.isDebugEnabled()) {
+			sw = new StopWatch();
+			sw.start();
+		}
+
+		Coordinate loc = parameters.getLocation();
+		IsochroneMap isochroneMap = new IsochroneMap(parameters.getTravellerId(), loc);
+		AccessibilityMap edgeMap = GraphEdgeMapFinder.findEdgeMap(_searchContext, parameters);
+
+		if (edgeMap.isEmpty())
+			return isochroneMap;
+
+		GraphHopperStorage graph = _searchContext.getGraphHopper().getGraphHopperStorage();
+		NodeAccess nodeAccess = graph.getNodeAccess();
+		float maxCost = (float) parameters.getMaximumRange();
+
+		double resolution = parameters.getRasterResolution() > 0 ? parameters.getRasterResolution() : DEFAULT_RESOLUTION;
+		IsochroneRaster raster = createRaster(edgeMap, nodeAccess, loc, resolution);
+		// samples are taken at half the cell size so that no cell crossed by an edge is skipped
+		double sampleDist = GeomUtility.degreesToMetres(raster.getCellHeight()) / 2;
+		DistanceCalc dcFast = new DistancePlaneProjection();
+		int maxNodeId = graph.getNodes();
+
+		for (int index = 0; index < edgeMap.size(); index++) {
+			int nodeId = edgeMap.getNode(index);
+			int edgeId = edgeMap.getEdge(nodeId);
+			int parentId = edgeMap.getParent(nodeId);
+
+			if (edgeId == -1 || nodeId > maxNodeId || parentId == -1)
+				continue;
+
+			float minEdgeCost = (float) edgeMap.getWeight(parentId);
+			float maxEdgeCost = (float) edgeMap.getWeight(nodeId);
+			if (minEdgeCost > maxCost)
+				continue;
+
+			EdgeIteratorState iter = graph.getEdgeIteratorState(edgeId, nodeId);
+			// the geometry runs from the parent node to nodeId, just like the cost
+			PointList pl = iter.fetchWayGeometry(3);
+			int size = pl.getSize();
+			if (size == 0)
+				continue;
+
+			double edgeLength = 0;
+			for (int i = 1; i < size; i++)
+				edgeLength += dcFast.calcDist(pl.getLat(i - 1), pl.getLon(i - 1), pl.getLat(i), pl.getLon(i));
+
+			double costPerMetre = edgeLength > 0 ? (maxEdgeCost - minEdgeCost) / edgeLength : 0;
+			raster.update(pl.getLon(0), pl.getLat(0), minEdgeCost);
+
+			double pos = 0;
+			for (int i = 1; i < size; i++) {
+				double lat0 = pl.getLat(i - 1);
+				double lon0 = pl.getLon(i - 1);
+				double lat1 = pl.getLat(i);
+				double lon1 = pl.getLon(i);
+				double segLength = dcFast.calcDist(lat0, lon0, lat1, lon1);
+				int steps = Math.max(1, (int) Math.ceil(segLength / sampleDist));
+
+				for (int s = 1; s <= steps; s++) {
+					double f = (double) s / steps;
+					float cost = (float) (minEdgeCost + (pos + f * segLength) * costPerMetre);
+					if (cost > maxCost)
+						break;
+					raster.update(lon0 + f * (lon1 - lon0), lat0 + f * (lat1 - lat0), cost);
+				}
+
+				pos += segLength;
+			}
+		}
+
+		isochroneMap.setRaster(raster);
+
+		if (LOGGER.isDebugEnabled())
+			LOGGER.debug("Build raster " + raster.getWidth() + "x" + raster.getHeight() + ": " + sw.stop().getSeconds());
+
+		return isochroneMap;
+	}
+
+	private IsochroneRaster createRaster(AccessibilityMap edgeMap, NodeAccess nodeAccess, Coordinate loc, double resolution) {
+		Envelope env = new Envelope(loc);
+		for (int index = 0; index < edgeMap.size(); index++) {
+			int nodeId = edgeMap.getNode(index);
+			env.expandToInclude(nodeAccess.getLon(nodeId), nodeAccess.getLat(nodeId));
+		}
+
+		// cells are square in metres around the center of the search
+		double cellHeight = GeomUtility.metresToDegrees(resolution);
+		double cellWidth = cellHeight / Math.max(Math.cos(Math.toRadians(loc.y)), 0.01);
+
+		// way geometries may bend out of the extent of their tower nodes
+		env.expandBy(Math.max(2 * cellWidth, GeomUtility.metresToDegrees(200)), Math.max(2 * cellHeight, GeomUtility.metresToDegrees(200)));
+
+		double cells = Math.ceil(env.getWidth() / cellWidth) * Math.ceil(env.getHeight() / cellHeight);
+		if (cells > MAX_CELLS) {
+			double scale = Math.sqrt(cells / MAX_CELLS) * 1.01;
+			cellWidth *= scale;
+			cellHeight *= scale;
+		}
+
+		return new IsochroneRaster(env, cellWidth, cellHeight);
+	}
+}
@@ -20,6 +20,7 @@
  */
 package heigit.ors.isochrones.statistics;
 
+import java.util.List;
 import java.util.Map;
 
 import heigit.ors.isochrones.Isochrone;
@@ -29,4 +30,15 @@ public abstract class AbstractStatisticsProvider implements StatisticsProvider {
 	 public abstract void close() throws Exception;	
 	 
 	 public abstract double[] getStatistics(Isochrone isochrone, String[] properties) throws Exception;
+
+	 /**
+	  * Queries the isochrones one after another, providers which are able to answer several geometries with a single
+	  * request should override this.
+	  */
+	 public double[][] getStatistics(List<Isochrone> isochrones, String[] properties) throws Exception {
+		 double[][] res = new double[isochrones.size()][];
+		 for (int i = 0; i < isochrones.size(); i++)
+			 res[i] = getStatistics(isochrones.get(i), properties);
+		 return res;
+	 }
 }
@@ -0,0 +1,98 @@
+/*
+ *  Licensed to GIScience Research Group, Heidelberg University (GIScience)
+ *
+ *   	http://www.giscience.uni-hd.de
+ *   	http://www.heigit.org
+ *
+ *  under one or more contributor license agreements. See the NOTICE file 
+ *  distributed with this work for additional information regarding copyright 
+ *  ownership. The GIScience licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in compliance 
+ *  with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package heigit.ors.isochrones.statistics;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of statistics values. The entries are keyed by a hash of the well-known binary
+ * representation of a geometry together with the requested properties, so repeated requests for the same isochrones
+ * are answered without querying the data source again.
+ */
+public class StatisticsCache {
+	private final int _capacity;
+	private final Map<String, double[]> _entries;
+
+	/**
+	 * @param capacity the maximum number of entries, 0 disables the cache
+	 */
+	public StatisticsCache(int capacity) {
+		_capacity = capacity;
+		_entries = new LinkedHashMap<String, double[]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, double[]> eldest) {
+				return size() > _capacity;
+			}
+		};
+	}
+
+	public static String createKey(byte[] wkb, String[] properties) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException ex) {
+			// every Java platform is required to support SHA-256
+			throw new IllegalStateException(ex);
+		}
+
+		for (String property : properties) {
+			digest.update(property.getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+		}
+		digest.update(wkb);
+
+		StringBuilder sb = new StringBuilder(64);
+		for (byte b : digest.digest())
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		return sb.toString();
+	}
+
+	public int getCapacity() {
+		return _capacity;
+	}
+
+	/**
+	 * @return a copy of the cached values or null if the key is not contained
+	 */
+	public synchronized double[] get(String key) {
+		double[] values = _entries.get(key);
+		return values != null ? values.clone() : null;
+	}
+
+	public synchronized void put(String key, double[] values) {
+		if (_capacity > 0)
+			_entries.put(key, values.clone());
+	}
+
+	public synchronized int size() {
+		return _entries.size();
+	}
+
+	public synchronized void clear() {
+		_entries.clear();
+	}
+}
@@ -20,6 +20,7 @@
  */
 package heigit.ors.isochrones.statistics;
 
+import java.util.List;
 import java.util.Map;
 
 import heigit.ors.isochrones.Isochrone;
@@ -30,4 +31,11 @@ public interface StatisticsProvider {
 	public String getName();
 	
     public double[] getStatistics(Isochrone isochrone, String[] properties) throws Exception;
+
+    /**
+     * Computes the statistics of several isochrones at once, e.g. all isochrones of a request.
+     *
+     * @return the values of each isochrone in the order of the list, each in the order of the properties
+     */
+    public double[][] getStatistics(List<Isochrone> isochrones, String[] properties) throws Exception;
 }
@@ -21,18 +21,25 @@
 package heigit.ors.isochrones.statistics.postgresql;
 
 import com.graphhopper.util.Helper;
+import com.vividsolutions.jts.io.WKBWriter;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import heigit.ors.exceptions.InternalServerException;
 import heigit.ors.isochrones.Isochrone;
 import heigit.ors.isochrones.IsochronesErrorCodes;
 import heigit.ors.isochrones.statistics.AbstractStatisticsProvider;
+import heigit.ors.isochrones.statistics.StatisticsCache;
 import org.apache.log4j.Logger;
 import org.postgresql.ds.PGSimpleDataSource;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -47,7 +54,8 @@ public class PostgresSQLStatisticsProvider extends AbstractStatisticsProvider {
 
     private String _tableName = null;
     private String _geomColumn = null;
-    private HikariDataSource _dataSource;
+    private DataSource _dataSource;
+    private StatisticsCache _cache = new StatisticsCache(0);
 
     /**
      * This function initializes the connection to the server according to the settings in the app.config.
@@ -95,7 +103,18 @@ public class PostgresSQLStatisticsProvider extends AbstractStatisticsProvider {
         config.setMinimumIdle(1);
         config.setConnectionTestQuery("SELECT 1");
 
-        _dataSource = new HikariDataSource(config);
+        int cacheSize = 1000;
+        if (parameters.containsKey("cache_size"))
+            cacheSize = (Integer) parameters.get("cache_size");
+
+        init(new HikariDataSource(config), _tableName, _geomColumn, cacheSize);
+    }
+
+    void init(DataSource dataSource, String tableName, String geomColumn, int cacheSize) {
+        _dataSource = dataSource;
+        _tableName = tableName;
+        _geomColumn = geomColumn;
+        _cache = new StatisticsCache(cacheSize);
     }
 
     /**
@@ -105,10 +124,9 @@ public class PostgresSQLStatisticsProvider extends AbstractStatisticsProvider {
      */
     @Override
     public void close() {
-        if (_dataSource != null) {
-            _dataSource.close();
-            _dataSource = null;
-        }
+        if (_dataSource instanceof HikariDataSource)
+            ((HikariDataSource) _dataSource).close();
+        _dataSource = null;
     }
 
     /**
@@ -122,45 +140,114 @@ public class PostgresSQLStatisticsProvider extends AbstractStatisticsProvider {
      */
     @Override
     public double[] getStatistics(Isochrone isochrone, String[] properties) throws Exception {
+        return getStatistics(Collections.singletonList(isochrone), properties)[0];
+    }
+
+    /**
+     * Computes the statistics of all given isochrones with a single query. The geometries are passed as WKB bind
+     * variables of a VALUES list and the results are grouped by the index of the isochrone. Values of geometries which
+     * have been queried before are taken from the cache.
+     *
+     * @param isochrones {@link List} of the {@link Isochrone}s, e.g. all isochrones of a request.
+     * @param properties {@link String}[] as input holding the attributes parameters.
+     * @return Returns the values of each isochrone in the order of the list, each in the order of the properties.
+     * @throws Exception If the sql is corrupt or the data source can not be reached, an {@link Exception} will be thrown.
+     */
+    @Override
+    public double[][] getStatistics(List<Isochrone> isochrones, String[] properties) throws Exception {
+        double[][] res = new double[isochrones.size()][];
+        String[] keys = new String[isochrones.size()];
+        List<Integer> queryIndices = new ArrayList<Integer>();
+        List<byte[]> queryGeometries = new ArrayList<byte[]>();
+
+        WKBWriter wkbWriter = new WKBWriter();
+        for (int i = 0; i < isochrones.size(); i++) {
+            byte[] wkb = wkbWriter.write(isochrones.get(i).getGeometry());
+            keys[i] = StatisticsCache.createKey(wkb, properties);
+            res[i] = _cache.get(keys[i]);
+            if (res[i] == null) {
+                queryIndices.add(i);
+                queryGeometries.add(wkb);
+            }
+        }
+
+        if (!queryGeometries.isEmpty()) {
+            double[][] values = queryStatistics(queryGeometries, properties);
+            for (int i = 0; i < values.length; i++) {
+                int index = queryIndices.get(i);
+                res[index] = values[i];
+                _cache.put(keys[index], values[i]);
+            }
+        }
+
+        return res;
+    }
+
+    /**
+     * @return the query of the properties of the given number of geometries, which are bound as WKB in the order of
+     * their index, or null if none of the properties is provided by the table
+     */
+    static String createStatisticsQuery(String tableName, String geomColumn, String[] properties, int geometryCount) {
+        StringBuilder columns = new StringBuilder();
+        for (String property : properties) {
+            switch (property) {
+                case "total_pop":
+                    columns.append(", ROUND(SUM((ST_SummaryStats(ST_Clip(r.").append(geomColumn).append(", g.poly))).sum)) AS total_pop");
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        if (columns.length() == 0)
+            return null;
+
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < geometryCount; i++) {
+            if (i > 0)
+                values.append(", ");
+            values.append('(').append(i).append(", CAST(? AS bytea))");
+        }
+
+        return "SELECT g.idx" + columns + " FROM (SELECT v.idx, ST_Transform(ST_GeomFromWKB(v.wkb, 4326), 954009) AS poly FROM (VALUES " + values + ") AS v(idx, wkb)) AS g"
+                + " JOIN " + tableName + " AS r ON ST_Intersects(g.poly, r." + geomColumn + ") GROUP BY g.idx;";
+    }
+
+    private double[][] queryStatistics(List<byte[]> geometries, String[] properties) throws Exception {
         int nProperties = properties.length;
-        double[] res = new double[nProperties];
+        double[][] res = new double[geometries.size()][nProperties];
+
+        String sql = createStatisticsQuery(_tableName, _geomColumn, properties, geometries.size());
+        if (sql == null)
+            return res;
+
         Connection connection = null;
         PreparedStatement preparedStatement = null;
-        ResultSet resultSet;
         try {
-            String sql = null;
-            for (String property : properties) {
-                String polyGeom = isochrone.getGeometry().toText();
-                switch (property) {
-                    case "total_pop":
-                        sql = "SELECT ROUND(SUM((ST_SummaryStats(ST_Clip(" + _geomColumn + ", poly))).sum)) AS total_pop FROM " + _tableName + ", ST_Transform(ST_GeomFromText('" + polyGeom + "', 4326), 954009) AS poly WHERE ST_Intersects(poly, " + _geomColumn + ") GROUP BY poly;";
-                        break;
-                    default:
-                        break;
-                }
-
-            }
             connection = _dataSource.getConnection();
             connection.setAutoCommit(false);
             preparedStatement = connection.prepareStatement(sql);
+            for (int i = 0; i < geometries.size(); i++)
+                preparedStatement.setBytes(i + 1, geometries.get(i));
+
+            ResultSet resultSet = preparedStatement.executeQuery();
 
-            resultSet = preparedStatement.executeQuery();
-            // check if the resultSet contains values
-            if (resultSet.next()) {
-                // check for each property if the result contains a value
-                int propertyCounter = 0;
-                for (String property : properties) {
-                    int i = 0;
-                    // check each value
-                    while (i < nProperties) {
-                        // Get the column name
-                        String columnName = resultSet.getMetaData().getColumnName(i + 1);
-                        // If a value fits the current property it is set in the correct place in the result[]
-                        if (columnName.equals(property))
-                            res[propertyCounter] = resultSet.getDouble(i + 1);
-                        i++;
-                    }
-                    propertyCounter++;
+            // find the result column of each property, properties without a column keep the value 0
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            int[] propertyColumns = new int[nProperties];
+            for (int j = 0; j < nProperties; j++) {
+                for (int c = 2; c <= metaData.getColumnCount(); c++) {
+                    if (metaData.getColumnName(c).equals(properties[j]))
+                        propertyColumns[j] = c;
+                }
+            }
+
+            // isochrones which do not intersect any cell have no row
+            while (resultSet.next()) {
+                double[] isochroneValues = res[resultSet.getInt(1)];
+                for (int j = 0; j < nProperties; j++) {
+                    if (propertyColumns[j] > 0)
+                        isochroneValues[j] = resultSet.getDouble(propertyColumns[j]);
                 }
             }
         } catch (Exception ex) {
@@ -175,8 +262,8 @@ public class PostgresSQLStatisticsProvider extends AbstractStatisticsProvider {
                 connection.close();
             }
         }
-        return res;
 
+        return res;
     }
 
     /**
@@ -0,0 +1,394 @@
+/*
+ *  Licensed to GIScience Research Group, Heidelberg University (GIScience)
+ *
+ *   	 http://www.giscience.uni-hd.de
+ *   	 http://www.heigit.org
+ *
+ *  under one or more contributor license agreements. See the NOTICE file
+ *  distributed with this work for additional information regarding copyright
+ *  ownership. The GIScience licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package heigit.ors.isochrones.statistics.raster;
+
+import com.carrotsearch.hppc.DoubleArrayList;
+import com.carrotsearch.hppc.IntArrayList;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.util.LinearComponentExtracter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Population raster in WGS84 which is memory-mapped from a local file. All values are little-endian:
+ * <ul>
+ * <li>header of 64 bytes: the magic ORSPOPR1, width, height and tile size in cells (int32), longitude of the west
+ * edge, latitude of the north edge, cell width and cell height in degrees (float64) and the no data value (float32)</li>
+ * <li>the sum of the values of each tile (float64), tiles in row-major order starting in the north-west</li>
+ * <li>the tiles in the same order, each tileSize x tileSize float32 values in row-major order. The tiles at the east
+ * and south edges are padded with no data.</li>
+ * </ul>
+ * The sum within a polygon counts all cells whose centres lie inside the polygon. The rows are rasterized with a
+ * scan-line over the polygon edges, tiles which are covered completely are taken from a summed-area table of the tile
+ * sums instead of reading their cells.
+ */
+public class PopulationRaster {
+    private static final byte[] MAGIC = "ORSPOPR1".getBytes(StandardCharsets.US_ASCII);
+    private static final int HEADER_SIZE = 64;
+    private static final int MAX_TILE_SIZE = 4096;
+
+    private final int _width;
+    private final int _height;
+    private final int _tileSize;
+    private final int _tilesX;
+    private final int _tilesY;
+    private final double _minX;
+    private final double _maxY;
+    private final double _cellWidth;
+    private final double _cellHeight;
+    private final float _noData;
+    // sum of all tiles above and left of each tile corner, (_tilesY + 1) x (_tilesX + 1)
+    private final double[] _tileSumTable;
+    private final MappedByteBuffer[] _buffers;
+    private final int _tileBytes;
+    private final int _tilesPerBuffer;
+
+    private PopulationRaster(ByteBuffer header, double[] tileSums, MappedByteBuffer[] buffers) {
+        _width = header.getInt(8);
+        _height = header.getInt(12);
+        _tileSize = header.getInt(16);
+        _minX = header.getDouble(20);
+        _maxY = header.getDouble(28);
+        _cellWidth = header.getDouble(36);
+        _cellHeight = header.getDouble(44);
+        _noData = header.getFloat(52);
+        _tilesX = (_width + _tileSize - 1) / _tileSize;
+        _tilesY = (_height + _tileSize - 1) / _tileSize;
+        _tileBytes = _tileSize * _tileSize * 4;
+        _tilesPerBuffer = Integer.MAX_VALUE / _tileBytes;
+        _buffers = buffers;
+
+        _tileSumTable = new double[(_tilesY + 1) * (_tilesX + 1)];
+        for (int ty = 0; ty < _tilesY; ty++) {
+            double rowSum = 0;
+            for (int tx = 0; tx < _tilesX; tx++) {
+                rowSum += tileSums[ty * _tilesX + tx];
+                _tileSumTable[(ty + 1) * (_tilesX + 1) + tx + 1] = _tileSumTable[ty * (_tilesX + 1) + tx + 1] + rowSum;
+            }
+        }
+    }
+
+    public static PopulationRaster open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header, 0);
+
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, MAGIC))
+                throw new IOException("'" + file + "' is not a population raster file.");
+
+            int width = header.getInt(8);
+            int height = header.getInt(12);
+            int tileSize = header.getInt(16);
+            if (width <= 0 || height <= 0 || tileSize <= 0 || tileSize > MAX_TILE_SIZE)
+                throw new IOException("Invalid dimensions in population raster file '" + file + "'.");
+
+            int tilesX = (width + tileSize - 1) / tileSize;
+            int tilesY = (height + tileSize - 1) / tileSize;
+            long tileCount = (long) tilesX * tilesY;
+            long tileBytes = (long) tileSize * tileSize * 4;
+            long tilesOffset = HEADER_SIZE + tileCount * 8;
+            if (channel.size() < tilesOffset + tileCount * tileBytes)
+                throw new IOException("Population raster file '" + file + "' is truncated.");
+
+            ByteBuffer sumsBuffer = ByteBuffer.allocate((int) (tileCount * 8)).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, sumsBuffer, HEADER_SIZE);
+            double[] tileSums = new double[(int) tileCount];
+            sumsBuffer.asDoubleBuffer().get(tileSums);
+
+            // a mapped buffer is limited to 2 GB, so every buffer holds as many whole tiles as fit
+            long tilesPerBuffer = Integer.MAX_VALUE / tileBytes;
+            MappedByteBuffer[] buffers = new MappedByteBuffer[(int) ((tileCount + tilesPerBuffer - 1) / tilesPerBuffer)];
+            for (int i = 0; i < buffers.length; i++) {
+                long first = i * tilesPerBuffer;
+                long count = Math.min(tilesPerBuffer, tileCount - first);
+                buffers[i] = channel.map(FileChannel.MapMode.READ_ONLY, tilesOffset + first * tileBytes, count * tileBytes);
+                buffers[i].order(ByteOrder.LITTLE_ENDIAN);
+            }
+
+            return new PopulationRaster(header, tileSums, buffers);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new IOException("Unexpected end of population raster file.");
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Writes a raster held in memory, e.g. when converting population data.
+     *
+     * @param values the cell values in row-major order starting in the north-west
+     */
+    public static void write(File file, float[] values, int width, int height, int tileSize, double minX, double maxY, double cellWidth, double cellHeight, float noData) throws IOException {
+        if (values.length != width * height)
+            throw new IllegalArgumentException("The number of values does not match the raster dimensions.");
+        if (tileSize <= 0 || tileSize > MAX_TILE_SIZE)
+            throw new IllegalArgumentException("The tile size must be between 1 and " + MAX_TILE_SIZE + ".");
+
+        int tilesX = (width + tileSize - 1) / tileSize;
+        int tilesY = (height + tileSize - 1) / tileSize;
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+            channel.truncate(0);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.put(MAGIC).putInt(width).putInt(height).putInt(tileSize);
+            header.putDouble(minX).putDouble(maxY).putDouble(cellWidth).putDouble(cellHeight).putFloat(noData);
+            header.position(HEADER_SIZE);
+            header.flip();
+            writeFully(channel, header);
+
+            ByteBuffer sums = ByteBuffer.allocate(tilesX * tilesY * 8).order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer tiles = ByteBuffer.allocate(tileSize * tileSize * 4).order(ByteOrder.LITTLE_ENDIAN);
+            // the tiles follow the sums, which are only known once all tiles have been written
+            channel.position(HEADER_SIZE + (long) sums.capacity());
+
+            for (int ty = 0; ty < tilesY; ty++) {
+                for (int tx = 0; tx < tilesX; tx++) {
+                    double sum = 0;
+                    tiles.clear();
+                    for (int r = ty * tileSize; r < (ty + 1) * tileSize; r++) {
+                        for (int c = tx * tileSize; c < (tx + 1) * tileSize; c++) {
+                            float value = r < height && c < width ? values[r * width + c] : noData;
+                            if (value != noData && !Float.isNaN(value))
+                                sum += value;
+                            tiles.putFloat(value);
+                        }
+                    }
+                    tiles.flip();
+                    writeFully(channel, tiles);
+                    sums.putDouble(sum);
+                }
+            }
+
+            sums.flip();
+            channel.position(HEADER_SIZE);
+            writeFully(channel, sums);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+
+    public int getWidth() {
+        return _width;
+    }
+
+    public int getHeight() {
+        return _height;
+    }
+
+    public Envelope getEnvelope() {
+        return new Envelope(_minX, _minX + _width * _cellWidth, _maxY - _height * _cellHeight, _maxY);
+    }
+
+    /**
+     * @return the value of a cell or no data
+     */
+    public float getValue(int col, int row) {
+        int tile = (row / _tileSize) * _tilesX + col / _tileSize;
+        return _buffers[tile / _tilesPerBuffer].getFloat(getOffset(tile, col, row));
+    }
+
+    private int getOffset(int tile, int col, int row) {
+        return (tile % _tilesPerBuffer) * _tileBytes + ((row % _tileSize) * _tileSize + col % _tileSize) * 4;
+    }
+
+    /**
+     * @return the sum of all cells whose centres lie inside the envelope
+     */
+    public double getSum(Envelope envelope) {
+        return getSum(new GeometryFactory().toGeometry(envelope));
+    }
+
+    /**
+     * @return the sum of all cells whose centres lie inside the polygonal geometry
+     */
+    public double getSum(Geometry geometry) {
+        Envelope env = geometry.getEnvelopeInternal();
+        if (env.isNull())
+            return 0;
+
+        int rowMin = Math.max(0, (int) Math.ceil((_maxY - env.getMaxY()) / _cellHeight - 0.5));
+        int rowMax = Math.min(_height - 1, (int) Math.floor((_maxY - env.getMinY()) / _cellHeight - 0.5));
+        if (rowMin > rowMax)
+            return 0;
+
+        DoubleArrayList[] crossings = computeCrossings(geometry, rowMin, rowMax);
+
+        IntArrayList[] bandSpans = new IntArrayList[_tileSize];
+        int[] coverCount = new int[_tilesX];
+        double sum = 0;
+
+        for (int band = rowMin / _tileSize; band <= rowMax / _tileSize; band++) {
+            int bandStart = band * _tileSize;
+            int bandEnd = Math.min(_height, bandStart + _tileSize) - 1;
+            int firstRow = Math.max(rowMin, bandStart);
+            int lastRow = Math.min(rowMax, bandEnd);
+            int minTile = _tilesX;
+            int maxTile = -1;
+
+            for (int row = firstRow; row <= lastRow; row++) {
+                IntArrayList spans = bandSpans[row - bandStart];
+                if (spans == null)
+                    spans = bandSpans[row - bandStart] = new IntArrayList();
+                computeSpans(crossings[row - rowMin], spans);
+
+                for (int i = 0; i < spans.size(); i += 2) {
+                    int colStart = spans.get(i);
+                    int colEnd = spans.get(i + 1);
+                    minTile = Math.min(minTile, colStart / _tileSize);
+                    maxTile = Math.max(maxTile, colEnd / _tileSize);
+                    // count the tiles whose columns are covered entirely by the span
+                    for (int tile = (colStart + _tileSize - 1) / _tileSize; tile <= colEnd / _tileSize; tile++) {
+                        if (Math.min(_width, (tile + 1) * _tileSize) - 1 <= colEnd)
+                            coverCount[tile]++;
+                    }
+                }
+            }
+
+            // a tile is complete if all its rows cover it, the padding rows of the last band hold no data
+            int fullCount = firstRow == bandStart && lastRow == bandEnd ? bandEnd - bandStart + 1 : -1;
+            int runStart = -1;
+            for (int tile = minTile; tile <= maxTile + 1; tile++) {
+                boolean full = tile <= maxTile && coverCount[tile] == fullCount;
+                if (full && runStart < 0) {
+                    runStart = tile;
+                } else if (!full && runStart >= 0) {
+                    sum += getTilesSum(runStart, tile - 1, band);
+                    runStart = -1;
+                }
+            }
+
+            for (int row = firstRow; row <= lastRow; row++) {
+                IntArrayList spans = bandSpans[row - bandStart];
+                for (int i = 0; i < spans.size(); i += 2) {
+                    int colStart = spans.get(i);
+                    int colEnd = spans.get(i + 1);
+                    for (int tile = colStart / _tileSize; tile <= colEnd / _tileSize; tile++) {
+                        if (coverCount[tile] != fullCount)
+                            sum += getRowSum(row, Math.max(colStart, tile * _tileSize), Math.min(colEnd, (tile + 1) * _tileSize - 1));
+                    }
+                }
+            }
+
+            if (maxTile >= minTile)
+                Arrays.fill(coverCount, minTile, maxTile + 1, 0);
+        }
+
+        return sum;
+    }
+
+    /**
+     * Intersects the edges of all rings with the horizontal lines through the cell centres of the rows.
+     */
+    private DoubleArrayList[] computeCrossings(Geometry geometry, int rowMin, int rowMax) {
+        DoubleArrayList[] crossings = new DoubleArrayList[rowMax - rowMin + 1];
+        for (int i = 0; i < crossings.length; i++)
+            crossings[i] = new DoubleArrayList();
+
+        for (Object ring : LinearComponentExtracter.getLines(geometry)) {
+            Coordinate[] coords = ((LineString) ring).getCoordinates();
+            for (int i = 1; i < coords.length; i++) {
+                double x1 = coords[i - 1].x;
+                double y1 = coords[i - 1].y;
+                double x2 = coords[i].x;
+                double y2 = coords[i].y;
+                if (y1 == y2)
+                    continue;
+
+                // rows whose centre lies in [lower y, upper y) of the edge
+                double yLow = Math.min(y1, y2);
+                double yHigh = Math.max(y1, y2);
+                int first = Math.max(rowMin, (int) Math.floor((_maxY - yHigh) / _cellHeight - 0.5) + 1);
+                int last = Math.min(rowMax, (int) Math.floor((_maxY - yLow) / _cellHeight - 0.5));
+
+                for (int row = first; row <= last; row++) {
+                    double y = _maxY - (row + 0.5) * _cellHeight;
+                    crossings[row - rowMin].add(x1 + (y - y1) * (x2 - x1) / (y2 - y1));
+                }
+            }
+        }
+
+        return crossings;
+    }
+
+    /**
+     * Converts the sorted crossings of a row into inclusive column ranges of the cells whose centres lie between
+     * consecutive pairs of crossings.
+     */
+    private void computeSpans(DoubleArrayList crossings, IntArrayList spans) {
+        spans.clear();
+        double[] xs = crossings.buffer;
+        Arrays.sort(xs, 0, crossings.size());
+
+        for (int i = 0; i + 1 < crossings.size(); i += 2) {
+            int colStart = Math.max(0, (int) Math.ceil((xs[i] - _minX) / _cellWidth - 0.5));
+            int colEnd = Math.min(_width - 1, (int) Math.ceil((xs[i + 1] - _minX) / _cellWidth - 0.5) - 1);
+            if (colStart <= colEnd) {
+                spans.add(colStart);
+                spans.add(colEnd);
+            }
+        }
+    }
+
+    private double getTilesSum(int firstTile, int lastTile, int tileRow) {
+        int stride = _tilesX + 1;
+        return _tileSumTable[(tileRow + 1) * stride + lastTile + 1] - _tileSumTable[tileRow * stride + lastTile + 1]
+                - _tileSumTable[(tileRow + 1) * stride + firstTile] + _tileSumTable[tileRow * stride + firstTile];
+    }
+
+    /**
+     * @return the sum of the cells of a row between the columns, which must lie in the same tile
+     */
+    private double getRowSum(int row, int colStart, int colEnd) {
+        int tile = (row / _tileSize) * _tilesX + colStart / _tileSize;
+        MappedByteBuffer buffer = _buffers[tile / _tilesPerBuffer];
+        int offset = getOffset(tile, colStart, row);
+
+        double sum = 0;
+        for (int col = colStart; col <= colEnd; col++, offset += 4) {
+            float value = buffer.getFloat(offset);
+            if (value != _noData && !Float.isNaN(value))
+                sum += value;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ *  Licensed to GIScience Research Group, Heidelberg University (GIScience)
+ *
+ *   	 http://www.giscience.uni-hd.de
+ *   	 http://www.heigit.org
+ *
+ *  under one or more contributor license agreements. See the NOTICE file
+ *  distributed with this work for additional information regarding copyright
+ *  ownership. The GIScience licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package heigit.ors.isochrones.statistics.raster;
+
+import com.graphhopper.util.Helper;
+import heigit.ors.exceptions.InternalServerException;
+import heigit.ors.isochrones.Isochrone;
+import heigit.ors.isochrones.IsochronesErrorCodes;
+import heigit.ors.isochrones.statistics.AbstractStatisticsProvider;
+
+import java.io.File;
+import java.util.Map;
+
+/**
+ * Provides the population statistics from a {@link PopulationRaster} on the local disk, so no database server is
+ * needed. The raster has to be in WGS84 like the isochrones.
+ */
+public class RasterStatisticsProvider extends AbstractStatisticsProvider {
+    private PopulationRaster _raster;
+
+    /**
+     * Maps the raster file given by the parameter filepath.
+     *
+     * @param parameters {@link Map} holding the provider parameters from the app.config.
+     * @throws Exception If the parameter is missing or the file is not a valid raster.
+     */
+    @Override
+    public void init(Map<String, Object> parameters) throws Exception {
+        _raster = null;
+
+        String value = (String) parameters.get("filepath");
+        if (Helper.isEmpty(value))
+            throw new InternalServerException(IsochronesErrorCodes.UNKNOWN, "'filepath' parameter can not be null or empty.");
+
+        _raster = PopulationRaster.open(new File(value));
+    }
+
+    /**
+     * Releases the raster, the mapping itself is freed once the buffers are garbage collected.
+     */
+    @Override
+    public void close() {
+        _raster = null;
+    }
+
+    /**
+     * Sums the cells of the raster inside the isochrone. Only total_pop is provided, other properties are 0.
+     *
+     * @param isochrone  {@link Isochrone} as input.
+     * @param properties {@link String}[] as input holding the attributes parameters.
+     * @return Returns a double[] holding the desired values in the order that was asked for in the attributes.
+     */
+    @Override
+    public double[] getStatistics(Isochrone isochrone, String[] properties) throws Exception {
+        double[] res = new double[properties.length];
+        for (int i = 0; i < properties.length; i++) {
+            switch (properties[i]) {
+                case "total_pop":
+                    res[i] = Math.round(_raster.getSum(isochrone.getGeometry()));
+                    break;
+                default:
+                    break;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Returns the driver name to be queried against the {@link heigit.ors.isochrones.statistics.StatisticsProviderFactory}.
+     *
+     * @return Returns the provider name in a {@link String} format.
+     */
+    @Override
+    public String getName() {
+        return "raster";
+    }
+}
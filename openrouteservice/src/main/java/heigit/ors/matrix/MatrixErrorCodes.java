@@ -35,5 +35,6 @@ public class MatrixErrorCodes {
     public static int EXPORT_HANDLER_ERROR = 6006;
     public static int UNSUPPORTED_EXPORT_FORMAT = 6007;
     public static int EMPTY_ELEMENT = 6008;
+    public static int REQUEST_TIMEOUT = 6009;
     public static int UNKNOWN = 6099;
 }
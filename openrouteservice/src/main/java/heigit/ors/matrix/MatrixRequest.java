@@ -13,6 +13,8 @@
  */
 package heigit.ors.matrix;
 
+import java.time.LocalDateTime;
+
 import com.vividsolutions.jts.geom.Coordinate;
 
 import heigit.ors.common.DistanceUnit;
@@ -30,6 +32,7 @@ public class MatrixRequest extends ServiceRequest
 	private boolean _resolveLocations = false;
 	private boolean _flexibleMode = false;
 	private String _algorithm;
+	private LocalDateTime _departure;
 
 	public MatrixRequest()
 	{
@@ -120,6 +123,18 @@ public class MatrixRequest extends ServiceRequest
 		this._algorithm = _algorithm;
 	}
 
+	public LocalDateTime getDeparture() {
+		return _departure;
+	}
+
+	public void setDeparture(LocalDateTime departure) {
+		_departure = departure;
+	}
+
+	public boolean hasDeparture() {
+		return _departure != null;
+	}
+
 	public boolean isValid(){
 		return !(_sources == null && _destinations == null);
 	}
@@ -24,7 +24,8 @@ public class MatrixAlgorithmFactory {
 	public static MatrixAlgorithm createAlgorithm(MatrixRequest req, GraphHopper gh, FlagEncoder encoder) {
 		MatrixAlgorithm alg = null;
 
-		if (!req.getFlexibleMode() && gh.isCHEnabled())
+		// departure dependent travel times can not be computed on the contracted graph
+		if (!req.getFlexibleMode() && !req.hasDeparture() && gh.isCHEnabled())
 			alg = new RPHASTMatrixAlgorithm();
 		else
 			alg = new DijkstraMatrixAlgorithm();
@@ -13,6 +13,8 @@
  */
 package heigit.ors.matrix.algorithms.dijkstra;
 
+import java.time.LocalDateTime;
+
 import com.graphhopper.GraphHopper;
 import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.routing.util.TraversalMode;
@@ -27,16 +29,21 @@ import heigit.ors.matrix.MatrixLocations;
 import heigit.ors.matrix.PathMetricsExtractor;
 import heigit.ors.matrix.algorithms.AbstractMatrixAlgorithm;
 import heigit.ors.routing.algorithms.DijkstraOneToManyAlgorithm;
+import heigit.ors.routing.algorithms.DijkstraSearchState;
+import heigit.ors.routing.graphhopper.extensions.storages.SpeedProfilesGraphStorage;
+import heigit.ors.routing.graphhopper.extensions.weighting.TimeDependentWeighting;
 import heigit.ors.services.matrix.MatrixServiceSettings;
 
 public class DijkstraMatrixAlgorithm extends AbstractMatrixAlgorithm {
 	private PathMetricsExtractor _pathMetricsExtractor;
+	private LocalDateTime _departure;
 
 	public void init(MatrixRequest req, GraphHopper gh, Graph graph, FlagEncoder encoder, Weighting weighting)
 	{
 		super.init(req, gh, graph, encoder, weighting);
 
 		_pathMetricsExtractor = new PathMetricsExtractor(req.getMetrics(), _graph, _encoder, _weighting, req.getUnits());
+		_departure = req.getDeparture();
 	}
 
 	@Override
@@ -62,33 +69,49 @@ public class DijkstraMatrixAlgorithm extends AbstractMatrixAlgorithm {
 		}
 		else
 		{
-			DijkstraOneToManyAlgorithm algorithm = new DijkstraOneToManyAlgorithm(_graph, _weighting, TraversalMode.NODE_BASED);
-			algorithm.prepare(srcData.getNodeIds(),  dstData.getNodeIds());
-			algorithm.setMaxVisitedNodes(MatrixServiceSettings.getMaximumVisitedNodes());
+			DijkstraSearchState searchState = DijkstraSearchState.acquire(_graph.getNodes());
+			try
+			{
+				DijkstraOneToManyAlgorithm algorithm = new DijkstraOneToManyAlgorithm(_graph, _weighting, TraversalMode.NODE_BASED, searchState);
+				algorithm.prepare(srcData.getNodeIds(),  dstData.getNodeIds());
+				algorithm.setMaxVisitedNodes(MatrixServiceSettings.getMaximumVisitedNodes());
+
+				boolean timeDependent = _departure != null && _weighting instanceof TimeDependentWeighting;
+				if (timeDependent)
+					algorithm.setDepartureTime(SpeedProfilesGraphStorage.getWeekTime(_departure));
 			
-			int sourceId = -1;
+				int sourceId = -1;
 
-			for (int srcIndex = 0; srcIndex < srcData.size(); srcIndex++) {
-				sourceId = srcData.getNodeId(srcIndex);
+				for (int srcIndex = 0; srcIndex < srcData.size(); srcIndex++) {
+					sourceId = srcData.getNodeId(srcIndex);
 
-				if (sourceId == -1)
-				{
-					_pathMetricsExtractor.setEmptyValues(srcIndex, srcData, dstData, times, distances, weights);
-				}
-				else
-				{
-					algorithm.reset();
-					SPTEntry[] targets = algorithm.calcPaths(sourceId, dstData.getNodeIds());
+					if (sourceId == -1)
+					{
+						_pathMetricsExtractor.setEmptyValues(srcIndex, srcData, dstData, times, distances, weights);
+					}
+					else
+					{
+						algorithm.reset();
+						SPTEntry[] targets = algorithm.calcPaths(sourceId, dstData.getNodeIds());
 
-					if (algorithm.getFoundTargets() != algorithm.getTargetsCount())
-						throw new Exception("Search exceeds the limit of visited nodes.");
+						if (algorithm.getFoundTargets() != algorithm.getTargetsCount())
+							throw new Exception("Search exceeds the limit of visited nodes.");
 
-					if (targets != null)
-					{
-						_pathMetricsExtractor.calcValues(srcIndex, targets, srcData, dstData, times, distances, weights);
+						if (targets != null)
+						{
+							_pathMetricsExtractor.calcValues(srcIndex, targets, srcData, dstData, times, distances, weights);
+
+							// the durations of the edges depend on the time at which they are entered
+							if (timeDependent && times != null)
+								setTimeDependentDurations(algorithm, srcIndex, targets, dstData, times);
+						}
 					}
 				}
 			}
+			finally
+			{
+				searchState.release();
+			}
 		}
 
 		if (MatrixMetricsType.isSet(metrics, MatrixMetricsType.Duration))
@@ -100,4 +123,14 @@ public class DijkstraMatrixAlgorithm extends AbstractMatrixAlgorithm {
 
 		return mtxResult;
 	}
+
+	private void setTimeDependentDurations(DijkstraOneToManyAlgorithm algorithm, int srcIndex, SPTEntry[] targets, MatrixLocations dstData, float[] times)
+	{
+		int index = srcIndex * dstData.size();
+		for (int i = 0; i < targets.length; i++)
+		{
+			if (targets[i] != null)
+				times[index + i] = (float) (algorithm.getTime(targets[i].adjNode) / 1000.0);
+		}
+	}
 }
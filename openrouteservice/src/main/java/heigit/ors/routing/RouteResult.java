@@ -23,6 +23,7 @@ import com.vividsolutions.jts.geom.Coordinate;
 public class RouteResult 
 {
 	private RouteSummary _summary;
+	private PointList _points;
 	private Coordinate[] _geometry;
 	private List<RouteSegment> _segments;
 	private List<RouteExtraInfo> _extraInfo;
@@ -53,59 +54,65 @@ public class RouteResult
 		return _summary;
 	}
 
+	/**
+	 * @return the coordinates of the route geometry, they are created from the points on the first call
+	 */
 	public Coordinate[] getGeometry() {
-		return _geometry;
-	}
-
-	public void addPoints(PointList points, boolean skipFirstPoint, boolean includeElevation)
-	{
-		int index = skipFirstPoint ? 1 : 0;
-		
-		if (_geometry == null)
+		if (_geometry == null && _points != null)
 		{
-			int newSize = points.size() - index;
-			_geometry = new Coordinate[newSize];
+			int size = _points.getSize();
+			Coordinate[] coords = new Coordinate[size];
 
-			if (includeElevation && points.is3D())
+			if (_points.is3D())
 			{
-				for (int i = index; i < newSize; ++i)
-					_geometry[i] = new Coordinate(points.getLon(i), points.getLat(i), points.getEle(i));
+				for (int i = 0; i < size; ++i)
+					coords[i] = new Coordinate(_points.getLon(i), _points.getLat(i), _points.getEle(i));
 			}
 			else
 			{
-				for (int i= index; i < newSize; ++i)
-					_geometry[i] = new Coordinate(points.getLon(i), points.getLat(i));
+				for (int i = 0; i < size; ++i)
+					coords[i] = new Coordinate(_points.getLon(i), _points.getLat(i));
 			}
+
+			_geometry = coords;
 		}
-		else
-		{
-			int oldSize = _geometry.length;
-			int pointsSize = points.size() - index;
-			int newSize = oldSize + pointsSize;
-			Coordinate[] coords = new Coordinate[newSize];
 
-			for (int i = 0; i < oldSize; i++)
-				coords[i] = _geometry[i];
+		return _geometry;
+	}
 
-			if (includeElevation && points.is3D())
-			{
-				for (int i = 0; i < pointsSize; ++i)
-				{
-					int j = i + index; 
-					coords[oldSize + i] = new Coordinate(points.getLon(j), points.getLat(j), points.getEle(j));
-				}
-			}
-			else
-			{
-				for (int i = 0; i < pointsSize; ++i)
-				{
-					int j = i + index; 
-					coords[oldSize + i] = new Coordinate(points.getLon(j), points.getLat(j));
-				}
-			}
-			
-			_geometry = coords;
+	/**
+	 * @return the points of the route geometry, or null if the route has no geometry
+	 */
+	public PointList getPoints() {
+		return _points;
+	}
+
+	public int getPointCount() {
+		return _points == null ? 0 : _points.getSize();
+	}
+
+	public void addPoints(PointList points, boolean skipFirstPoint, boolean includeElevation)
+	{
+		int index = skipFirstPoint ? 1 : 0;
+		int size = points.getSize();
+
+		// the points are copied as the lists of GraphHopper paths get modified later on
+		if (_points == null)
+			_points = new PointList(size - index, includeElevation && points.is3D());
+
+		if (_points.is3D())
+		{
+			boolean is3D = points.is3D();
+			for (int i = index; i < size; ++i)
+				_points.add(points.getLat(i), points.getLon(i), is3D ? points.getEle(i) : Double.NaN);
 		}
+		else
+		{
+			for (int i = index; i < size; ++i)
+				_points.add(points.getLat(i), points.getLon(i));
+		}
+
+		_geometry = null;
 	}
 
 	
@@ -117,7 +117,7 @@ public class RouteResultBuilder
 			{
 				result.addPoints(routePoints, ri > 0, includeElev);
 
-				routeWayPoints[ri + 1] = result.getGeometry().length - 1;
+				routeWayPoints[ri + 1] = result.getPointCount() - 1;
 
 				if (request.getIncludeInstructions())
 				{
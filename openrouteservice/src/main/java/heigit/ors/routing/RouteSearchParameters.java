@@ -21,6 +21,7 @@
 package heigit.ors.routing;
 
 import java.text.ParseException;
+import java.time.LocalDateTime;
 import java.util.Iterator;
 
 import heigit.ors.routing.pathprocessors.BordersExtractor;
@@ -64,6 +65,7 @@ public class RouteSearchParameters {
     private BordersExtractor.Avoid _avoidBorders = BordersExtractor.Avoid.NONE;
 
     private String _options;
+    private LocalDateTime _departure;
 
     public int getProfileType() {
         return _profileType;
@@ -84,6 +86,21 @@ public class RouteSearchParameters {
         _maxSpeed = maxSpeed;
     }
 
+    public LocalDateTime getDeparture() {
+        return _departure;
+    }
+
+    /**
+     * @param departure local date and time of the departure, only the day of the week and the time are used
+     */
+    public void setDeparture(LocalDateTime departure) {
+        _departure = departure;
+    }
+
+    public boolean hasDeparture() {
+        return _departure != null;
+    }
+
     public int getWeightingMethod() {
         return _weightingMethod;
     }
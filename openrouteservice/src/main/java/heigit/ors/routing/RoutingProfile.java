@@ -33,7 +33,9 @@ import com.typesafe.config.Config;
 import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
+import heigit.ors.common.RequestDeadline;
 import heigit.ors.exceptions.InternalServerException;
+import heigit.ors.exceptions.RequestTimeoutException;
 import heigit.ors.isochrones.*;
 import heigit.ors.isochrones.statistics.StatisticsProvider;
 import heigit.ors.isochrones.statistics.StatisticsProviderConfiguration;
@@ -50,14 +52,20 @@ import heigit.ors.optimization.RouteOptimizationResult;
 import heigit.ors.optimization.solvers.OptimizationProblemSolver;
 import heigit.ors.optimization.solvers.OptimizationProblemSolverFactory;
 import heigit.ors.optimization.solvers.OptimizationSolution;
+import heigit.ors.routing.algorithms.DijkstraSearchState;
+import heigit.ors.routing.algorithms.TDDijkstra;
+import heigit.ors.routing.algorithms.TDRoutingAlgorithmFactory;
 import heigit.ors.routing.configuration.RouteProfileConfiguration;
 import heigit.ors.routing.graphhopper.extensions.*;
 import heigit.ors.routing.graphhopper.extensions.edgefilters.*;
 import heigit.ors.routing.graphhopper.extensions.flagencoders.WheelchairFlagEncoder;
 import heigit.ors.routing.graphhopper.extensions.storages.GraphStorageUtils;
+import heigit.ors.routing.graphhopper.extensions.storages.SpeedProfilesGraphStorage;
+import heigit.ors.routing.graphhopper.extensions.util.OsmWayEdgesIndex;
 import heigit.ors.routing.parameters.*;
 import heigit.ors.routing.traffic.RealTrafficDataProvider;
 import heigit.ors.routing.traffic.TrafficEdgeAnnotator;
+import heigit.ors.routing.traffic.TrafficSnapshot;
 import heigit.ors.services.isochrones.IsochronesServiceSettings;
 import heigit.ors.services.matrix.MatrixServiceSettings;
 import heigit.ors.services.optimization.OptimizationServiceSettings;
@@ -74,6 +82,11 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * This class generates {@link RoutingProfile} classes and is used by mostly all service classes e.g.
@@ -87,6 +100,7 @@ import java.util.*;
  */
 public class RoutingProfile {
     private static final Logger LOGGER = Logger.getLogger(RoutingProfileManager.class.getName());
+    // search collections of the threads computing isochrone batches
     private static int profileIdentifier = 0;
     private static final Object lockObj = new Object();
 
@@ -95,7 +109,8 @@ public class RoutingProfile {
     private Integer[] mRoutePrefs;
     private Integer mUseCounter;
     private boolean mUpdateRun;
-    private MapMatcher mMapMatcher;
+    // map matchers are not thread-safe, so every thread gets its own instance
+    private volatile ThreadLocal<MapMatcher> mMapMatchers = new ThreadLocal<MapMatcher>();
 
     private RouteProfileConfiguration _config;
     private String _astarApproximation;
@@ -159,7 +174,7 @@ public class RoutingProfile {
             loadCntx.setElevationProvider(gh.getElevationProvider());
         }
         gh.setGraphStorageFactory(new ORSGraphStorageFactory(gpc.getStorageBuilders()));
-        gh.setWeightingFactory(new ORSWeightingFactory(RealTrafficDataProvider.getInstance()));
+        gh.setWeightingFactory(new ORSWeightingFactory());
 
         gh.importOrLoad();
 
@@ -311,12 +326,8 @@ public class RoutingProfile {
         return args;
     }
 
-    public HashMap<Integer, Long> getTmcEdges() {
-        return mGraphHopper.getTmcGraphEdges();
-    }
-
-    public HashMap<Long, ArrayList<Integer>> getOsmId2edgeIds() {
-        return mGraphHopper.getOsmId2EdgeIds();
+    public OsmWayEdgesIndex getWayEdgesIndex() {
+        return mGraphHopper.getWayEdgesIndex();
     }
 
     public ORSGraphHopper getGraphhopper() {
@@ -407,6 +418,8 @@ public class RoutingProfile {
                     RoutingProfileLoadContext loadCntx = new RoutingProfileLoadContext();
 
                     mGraphHopper = initGraphHopper(ghOld.getDataReaderFile(), _config, RoutingProfileManager.getInstance().getProfiles(), loadCntx);
+                    // drop the map matchers bound to the old graph
+                    mMapMatchers = new ThreadLocal<MapMatcher>();
 
                     loadCntx.releaseElevationProviderCacheAfterAllVehicleProfilesHaveBeenProcessed();
 
@@ -442,12 +455,150 @@ public class RoutingProfile {
      * It is important, that whenever attributes contains pop_total it must also contain pop_area. If not the data won't be complete.
      * So the first step in the function is a checkup on that.
      *
+     * The statistics attributes are computed on the statistics executor while the caller goes on, e.g. with building
+     * the isochrones of the next location, see {@link IsochroneMap#waitForAttributes()}.
+     *
      * @param parameters The input are {@link IsochroneSearchParameters}
      * @param attributes The input are a {@link String}[] holding the attributes if set
+     * @param statisticsExecutor The executor computing the statistics attributes or null to compute them before returning
      * @return The return will be an {@link IsochroneMap}
      * @throws Exception
      */
-    public IsochroneMap buildIsochrone(IsochroneSearchParameters parameters, String[] attributes) throws Exception {
+    public IsochroneMap buildIsochrone(IsochroneSearchParameters parameters, String[] attributes, ExecutorService statisticsExecutor) throws Exception {
+        String[] tempAttributes = getStatisticsAttributes(attributes);
+
+        IsochroneMap result = null;
+        waitForUpdateCompletion();
+
+        beginUseGH();
+
+        try {
+            RouteSearchContext searchCntx = createSearchContext(parameters.getRouteParameters(), RouteSearchMode.Isochrones, null);
+
+            result = buildIsochroneMap(searchCntx, parameters);
+
+            endUseGH();
+        } catch (RequestTimeoutException ex) {
+            endUseGH();
+
+            throw ex;
+        } catch (Exception ex) {
+            endUseGH();
+
+            LOGGER.error(ex);
+
+            throw new InternalServerException(IsochronesErrorCodes.UNKNOWN, "Unable to build an isochrone map.");
+        }
+
+        if (statisticsExecutor != null && tempAttributes != null && result.getIsochronesCount() > 0) {
+            IsochroneMap isochroneMap = result;
+            result.setAttributesTask(statisticsExecutor.submit(() -> {
+                computeIsochroneAttributes(isochroneMap, tempAttributes);
+                return null;
+            }));
+        } else {
+            computeIsochroneAttributes(result, tempAttributes);
+        }
+
+        return result;
+    }
+
+    /**
+     * Builds the isochrone maps of several locations in parallel. Each location gets its own search context, since
+     * the edge filters of a context keep state while the graph is explored and the route parameters of the locations
+     * may differ. The searches take their state from the pool of {@link DijkstraSearchState}. The maps are passed to
+     * the listener as soon as they are completed.
+     *
+     * @param parametersList the locations, their traveller ids are passed back to the listener
+     * @param attributes the attributes to compute for each isochrone
+     * @param executor the worker threads
+     * @param listener receives the maps on the calling thread
+     */
+    public void buildIsochrones(List<IsochroneSearchParameters> parametersList, String[] attributes, ExecutorService executor, IsochroneBatchListener listener) throws Exception {
+        if (parametersList.isEmpty())
+            return;
+
+        String[] tempAttributes = getStatisticsAttributes(attributes);
+
+        waitForUpdateCompletion();
+
+        beginUseGH();
+
+        try {
+            buildIsochrones(parametersList, parameters -> {
+                RouteSearchContext searchCntx = createSearchContext(parameters.getRouteParameters(), RouteSearchMode.Isochrones, null);
+                IsochroneMap result = buildIsochroneMap(searchCntx, parameters);
+                computeIsochroneAttributes(result, tempAttributes);
+                return result;
+            }, executor, listener);
+        } finally {
+            endUseGH();
+        }
+    }
+
+    interface IsochroneMapTask {
+        IsochroneMap build(IsochroneSearchParameters parameters) throws Exception;
+    }
+
+    /**
+     * Runs the task for every location on the executor and passes the results to the listener in the order of their
+     * completion.
+     */
+    static void buildIsochrones(List<IsochroneSearchParameters> parametersList, IsochroneMapTask task, ExecutorService executor, IsochroneBatchListener listener) throws Exception {
+        Map<Future<IsochroneMap>, Integer> futures = new HashMap<Future<IsochroneMap>, Integer>(parametersList.size() * 2);
+
+        try {
+            CompletionService<IsochroneMap> completionService = new ExecutorCompletionService<IsochroneMap>(executor);
+            // the workers run the searches on behalf of the request and are bound by its deadline as well
+            RequestDeadline deadline = RequestDeadline.current();
+
+            for (IsochroneSearchParameters parameters : parametersList) {
+                Future<IsochroneMap> future = completionService.submit(() -> {
+                    RequestDeadline.setCurrent(deadline);
+                    try {
+                        return task.build(parameters);
+                    } finally {
+                        RequestDeadline.setCurrent(null);
+                    }
+                });
+                futures.put(future, parameters.getTravellerId());
+            }
+
+            for (int i = 0; i < parametersList.size(); i++) {
+                Future<IsochroneMap> future = completionService.take();
+                try {
+                    listener.isochroneMapBuilt(future.get());
+                } catch (ExecutionException ex) {
+                    LOGGER.error(ex.getCause());
+                    listener.isochroneMapFailed(futures.get(future), ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex);
+                }
+            }
+        } finally {
+            // nothing is left to cancel unless the listener failed, e.g. because the client has gone
+            for (Future<IsochroneMap> future : futures.keySet())
+                future.cancel(true);
+        }
+    }
+
+    /**
+     * Builds the map with a pooled search state, which is handed back once the shortest path tree has been turned
+     * into polygons.
+     */
+    private static IsochroneMap buildIsochroneMap(RouteSearchContext searchCntx, IsochroneSearchParameters parameters) throws Exception {
+        DijkstraSearchState searchState = DijkstraSearchState.acquire(searchCntx.getGraphHopper().getGraphHopperStorage().getNodes());
+        parameters.setSearchState(searchState);
+        try {
+            return new IsochroneMapBuilderFactory(searchCntx).buildMap(parameters);
+        } finally {
+            parameters.setSearchState(null);
+            searchState.release();
+        }
+    }
+
+    /**
+     * @return the attributes extended by total_area_km if total_pop is requested and vice versa
+     */
+    private static String[] getStatisticsAttributes(String[] attributes) {
         // Checkup for pop_total. If the value is set, pop_area must always be set here, if not already done so by the user.
         String[] tempAttributes;
         if (Arrays.toString(attributes).contains("total_pop".toLowerCase()) && !(Arrays.toString(attributes).contains("total_area_km".toLowerCase()))) {
@@ -472,27 +623,10 @@ public class RoutingProfile {
             tempAttributes = attributes;
         }
 
+        return tempAttributes;
+    }
 
-        IsochroneMap result = null;
-        waitForUpdateCompletion();
-
-        beginUseGH();
-
-        try {
-            RouteSearchContext searchCntx = createSearchContext(parameters.getRouteParameters(), RouteSearchMode.Isochrones, null);
-
-            IsochroneMapBuilderFactory isochroneMapBuilderFactory = new IsochroneMapBuilderFactory(searchCntx);
-            result = isochroneMapBuilderFactory.buildMap(parameters);
-
-            endUseGH();
-        } catch (Exception ex) {
-            endUseGH();
-
-            LOGGER.error(ex);
-
-            throw new InternalServerException(IsochronesErrorCodes.UNKNOWN, "Unable to build an isochrone map.");
-        }
-
+    private void computeIsochroneAttributes(IsochroneMap result, String[] tempAttributes) throws Exception {
         if (tempAttributes != null && result.getIsochronesCount() > 0) {
             try {
                 Map<StatisticsProviderConfiguration, List<String>> mapProviderToAttrs = new HashMap<StatisticsProviderConfiguration, List<String>>();
@@ -516,10 +650,14 @@ public class RoutingProfile {
                     StatisticsProvider provider = StatisticsProviderFactory.getProvider(provConfig.getName(), provConfig.getParameters());
                     String[] provAttrs = provConfig.getMappedProperties(entry.getValue());
 
-                    for (Isochrone isochrone : result.getIsochrones()) {
-                        double[] attrValues = provider.getStatistics(isochrone, provAttrs);
-                        isochrone.setAttributes(entry.getValue(), attrValues, provConfig.getAttribution());
-                    }
+                    // all isochrones of the map are passed at once, so the provider can answer them with a single query
+                    List<Isochrone> isochrones = new ArrayList<Isochrone>(result.getIsochronesCount());
+                    for (Isochrone isochrone : result.getIsochrones())
+                        isochrones.add(isochrone);
+
+                    double[][] attrValues = provider.getStatistics(isochrones, provAttrs);
+                    for (int i = 0; i < isochrones.size(); i++)
+                        isochrones.get(i).setAttributes(entry.getValue(), attrValues[i], provConfig.getAttribution());
                 }
 
             } catch (Exception ex) {
@@ -528,8 +666,6 @@ public class RoutingProfile {
                 throw new InternalServerException(IsochronesErrorCodes.UNKNOWN, "Unable to compute isochrone attributes.");
             }
         }
-
-        return result;
     }
 
     public MatrixResult computeMatrix(MatrixRequest req) throws Exception {
@@ -547,7 +683,7 @@ public class RoutingProfile {
         try {
             String weightingStr = Helper.isEmpty(req.getWeightingMethod()) ? "fastest" : req.getWeightingMethod();
             Graph graph = null;
-            if (!req.getFlexibleMode() && gh.getCHFactoryDecorator().isEnabled() && gh.getCHFactoryDecorator().getWeightingsAsStrings().contains(weightingStr))
+            if (!req.getFlexibleMode() && !req.hasDeparture() && gh.getCHFactoryDecorator().isEnabled() && gh.getCHFactoryDecorator().getWeightingsAsStrings().contains(weightingStr))
                 graph = gh.getGraphHopperStorage().getGraph(CHGraph.class);
             else
                 graph = gh.getGraphHopperStorage().getBaseGraph();
@@ -557,11 +693,15 @@ public class RoutingProfile {
 
             HintsMap hintsMap = new HintsMap();
             hintsMap.setWeighting(weightingStr);
-            Weighting weighting = new ORSWeightingFactory(RealTrafficDataProvider.getInstance()).createWeighting(hintsMap, gh.getTraversalMode(), flagEncoder, graph, null, gh.getGraphHopperStorage());
+            if (req.hasDeparture())
+                hintsMap.put(TDRoutingAlgorithmFactory.DEPARTURE, SpeedProfilesGraphStorage.getWeekTime(req.getDeparture()));
+            Weighting weighting = new ORSWeightingFactory().createWeighting(hintsMap, gh.getTraversalMode(), flagEncoder, graph, null, gh.getGraphHopperStorage());
 
             alg.init(req, gh, mtxSearchCntx.getGraph(), flagEncoder, weighting);
 
             mtxResult = alg.compute(mtxSearchCntx.getSources(), mtxSearchCntx.getDestinations(), req.getMetrics());
+        } catch (RequestTimeoutException ex) {
+            throw ex;
         } catch (Exception ex) {
             LOGGER.error(ex);
             throw new InternalServerException(MatrixErrorCodes.UNKNOWN, "Unable to compute a distance/duration matrix.");
@@ -580,6 +720,8 @@ public class RoutingProfile {
         try {
             MatrixRequest mtxReq = req.createMatrixRequest();
             mtxResult = computeMatrix(mtxReq);
+        } catch (RequestTimeoutException ex) {
+            throw ex;
         } catch (Exception ex) {
             LOGGER.error(ex);
             throw new InternalServerException(OptimizationErrorCodes.UNKNOWN, "Unable to compute an optimized route.");
@@ -749,16 +891,22 @@ public class RoutingProfile {
 
         /* Live traffic filter - currently disabled */
 
+        // the edge filter and the weighting have to see the same traffic data, so it is taken only once
+        TrafficSnapshot trafficSnapshot = null;
         if (searchParams.getConsiderTraffic()) {
             RealTrafficDataProvider trafficData = RealTrafficDataProvider.getInstance();
             if (RoutingProfileType.isDriving(profileType) && searchParams.getWeightingMethod() != WeightingMethod.SHORTEST && trafficData.isInitialized()) {
-                props.put("weighting_traffic_block", true);
-                edgeFilters.add(new BlockedEdgesEdgeFilter(flagEncoder, trafficData.getBlockedEdges(gs), trafficData.getHeavyVehicleBlockedEdges(gs)));
+                trafficSnapshot = trafficData.getTrafficSnapshot(gs);
+                if (trafficSnapshot != null) {
+                    props.put("weighting_traffic_block", true);
+                    edgeFilters.add(new BlockedEdgesEdgeFilter(flagEncoder, trafficSnapshot));
+                }
             }
         }
 
         RouteSearchContext searchCntx = new RouteSearchContext(mGraphHopper, edgeFilters, flagEncoder);
         searchCntx.setProperties(props);
+        searchCntx.setTrafficSnapshot(trafficSnapshot);
 
         return searchCntx;
     }
@@ -786,15 +934,18 @@ public class RoutingProfile {
 
     private RouteSegmentInfo[] getMatchedSegmentsInternal(Coordinate[] locations,
                                                           double searchRadius, EdgeFilter edgeFilter, boolean bothDirections) {
-        if (mMapMatcher == null) {
-            mMapMatcher = new HiddenMarkovMapMatcher();
-            mMapMatcher.setGraphHopper(mGraphHopper);
+        ThreadLocal<MapMatcher> mapMatchers = mMapMatchers;
+        MapMatcher mapMatcher = mapMatchers.get();
+        if (mapMatcher == null) {
+            mapMatcher = new HiddenMarkovMapMatcher();
+            mapMatcher.setGraphHopper(mGraphHopper);
+            mapMatchers.set(mapMatcher);
         }
 
-        mMapMatcher.setSearchRadius(searchRadius);
-        mMapMatcher.setEdgeFilter(edgeFilter);
+        mapMatcher.setSearchRadius(searchRadius);
+        mapMatcher.setEdgeFilter(edgeFilter);
 
-        return mMapMatcher.match(locations, bothDirections);
+        return mapMatcher.match(locations, bothDirections);
     }
 
     public boolean canProcessRequest(double totalDistance, double longestSegmentDistance, int wayPoints) {
@@ -892,10 +1043,17 @@ public class RoutingProfile {
                 flexibleMode = true;
             }
 
-            if (RoutingProfileType.isDriving(profileType) && RealTrafficDataProvider.getInstance().isInitialized())
-                req.setEdgeAnnotator(new TrafficEdgeAnnotator(mGraphHopper.getGraphHopperStorage()));
+            TrafficSnapshot trafficSnapshot = searchCntx.getTrafficSnapshot();
+            if (trafficSnapshot == null && RoutingProfileType.isDriving(profileType) && RealTrafficDataProvider.getInstance().isInitialized())
+                trafficSnapshot = RealTrafficDataProvider.getInstance().getTrafficSnapshot(mGraphHopper.getGraphHopperStorage());
+            if (trafficSnapshot != null)
+                req.setEdgeAnnotator(new TrafficEdgeAnnotator(trafficSnapshot));
 
-            req.setEdgeFilter(searchCntx.getEdgeFilter());
+            RequestDeadline deadline = RequestDeadline.current();
+            if (deadline != null)
+                req.setEdgeFilter(new DeadlineEdgeFilter(searchCntx.getEdgeFilter(), deadline));
+            else
+                req.setEdgeFilter(searchCntx.getEdgeFilter());
             req.setPathProcessor(routeProcCntx.getPathProcessor());
 
             if (useDynamicWeights(searchParams) || flexibleMode) {
@@ -917,6 +1075,18 @@ public class RoutingProfile {
                 req.getHints().put("lm.disable", true); // REMOVE
             }
 
+            // departure time aware routing based on historic speed profiles, requires a plain Dijkstra search. Traffic,
+            // soft and turn weightings would wrap the time dependent weighting, such requests are routed statically.
+            if (searchParams.hasDeparture() && "fastest".equals(req.getHints().get("weighting_method", ""))
+                    && !req.getHints().getBool("weighting_traffic_block", false) && !req.getHints().getBool("custom_weightings", false)
+                    && mGraphHopper.getTraversalMode() == TraversalMode.NODE_BASED
+                    && GraphStorageUtils.getGraphExtension(mGraphHopper.getGraphHopperStorage(), SpeedProfilesGraphStorage.class) != null) {
+                req.setAlgorithm(TDDijkstra.NAME);
+                req.getHints().put(TDRoutingAlgorithmFactory.DEPARTURE, SpeedProfilesGraphStorage.getWeekTime(searchParams.getDeparture()));
+                req.getHints().put("ch.disable", true);
+                req.getHints().put("lm.disable", true);
+            }
+
             if (_astarEpsilon != null)
                 req.getHints().put("astarbi.epsilon", _astarEpsilon);
             if (_astarApproximation != null)
@@ -925,13 +1095,22 @@ public class RoutingProfile {
 			/*if (directedSegment)
 				resp = mGraphHopper.directRoute(req); NOTE IMPLEMENTED!!!
 			else */
-            resp = mGraphHopper.route(req);
+            TrafficSnapshot.setCurrent(searchCntx.getTrafficSnapshot());
+            try {
+                resp = mGraphHopper.route(req);
+            } finally {
+                TrafficSnapshot.setCurrent(null);
+            }
 
             if (DebugUtility.isDebug()) {
                 System.out.println("visited_nodes.average - " + resp.getHints().get("visited_nodes.average", ""));
             }
 
             endUseGH();
+        } catch (RequestTimeoutException ex) {
+            endUseGH();
+
+            throw ex;
         } catch (Exception ex) {
             endUseGH();
 
@@ -31,6 +31,7 @@ import heigit.ors.exceptions.InternalServerException;
 import heigit.ors.exceptions.PointNotFoundException;
 import heigit.ors.exceptions.RouteNotFoundException;
 import heigit.ors.exceptions.ServerLimitExceededException;
+import heigit.ors.isochrones.IsochroneBatchListener;
 import heigit.ors.isochrones.IsochroneMap;
 import heigit.ors.isochrones.IsochroneSearchParameters;
 import heigit.ors.mapmatching.MapMatchingRequest;
@@ -40,12 +41,14 @@ import heigit.ors.matrix.MatrixResult;
 import heigit.ors.optimization.OptimizationErrorCodes;
 import heigit.ors.optimization.RouteOptimizationRequest;
 import heigit.ors.optimization.RouteOptimizationResult;
+import heigit.ors.routing.algorithms.DijkstraSearchState;
 import heigit.ors.routing.configuration.RouteProfileConfiguration;
 import heigit.ors.routing.configuration.RoutingManagerConfiguration;
 import heigit.ors.routing.parameters.VehicleParameters;
 import heigit.ors.routing.pathprocessors.ElevationSmoothPathProcessor;
 import heigit.ors.routing.pathprocessors.ExtraInfoProcessor;
 import heigit.ors.routing.traffic.RealTrafficDataProvider;
+import heigit.ors.services.isochrones.IsochronesServiceSettings;
 import heigit.ors.services.routing.RoutingServiceSettings;
 import heigit.ors.util.FormatUtility;
 import heigit.ors.util.RuntimeUtility;
@@ -64,6 +67,8 @@ public class RoutingProfileManager {
 
     private RoutingProfilesCollection _routeProfiles;
     private RoutingProfilesUpdater _profileUpdater;
+    private ExecutorService _isochronesBatchExecutor;
+    private ExecutorService _isochronesStatisticsExecutor;
     private static RoutingProfileManager mInstance;
 
     public static synchronized RoutingProfileManager getInstance() throws IOException {
@@ -178,6 +183,8 @@ public class RoutingProfileManager {
                 LOGGER.info(String.format("====> Initializing profiles from '%s' (%d threads) ...", RoutingServiceSettings.getSourceFile(), RoutingServiceSettings.getInitializationThreads()));
                 LOGGER.info("                              ");
 
+                DijkstraSearchState.setMaxPooledStates(RoutingServiceSettings.getMaximumSearchStates());
+
                 // MARQ24 MOD START
                 // RAMDataAccess.LZ4_COMPRESSION_ENABLED = "LZ4".equalsIgnoreCase(RoutingServiceSettings.getStorageFormat());
                 // the ExGHOverwrite-FlagEncoder package contains the previously overwritten flagencoders of graphhopper
@@ -269,6 +276,13 @@ public class RoutingProfileManager {
         if (RealTrafficDataProvider.getInstance().isInitialized())
             RealTrafficDataProvider.getInstance().destroy();
 
+        synchronized (this) {
+            if (_isochronesBatchExecutor != null)
+                _isochronesBatchExecutor.shutdownNow();
+            if (_isochronesStatisticsExecutor != null)
+                _isochronesStatisticsExecutor.shutdownNow();
+        }
+
         _routeProfiles.destroy();
     }
 
@@ -539,11 +553,60 @@ public class RoutingProfileManager {
      * @throws Exception
      */
     public IsochroneMap buildIsochrone(IsochroneSearchParameters parameters, String[] attributes) throws Exception {
+        return buildIsochrone(parameters, attributes, true);
+    }
+
+    /**
+     * @param backgroundStatistics whether the statistics are computed on the statistics executor while the caller goes
+     *                             on, which only pays off if it builds the isochrones of further locations meanwhile
+     */
+    public IsochroneMap buildIsochrone(IsochroneSearchParameters parameters, String[] attributes, boolean backgroundStatistics) throws Exception {
 
         int profileType = parameters.getRouteParameters().getProfileType();
         RoutingProfile rp = _routeProfiles.getRouteProfile(profileType, false);
 
-        return rp.buildIsochrone(parameters, attributes);
+        return rp.buildIsochrone(parameters, attributes, backgroundStatistics ? getIsochronesStatisticsExecutor() : null);
+    }
+
+    /**
+     * Builds the isochrone maps of several locations of the same profile on the shared isochrone batch workers.
+     */
+    public void buildIsochrones(List<IsochroneSearchParameters> parametersList, String[] attributes, IsochroneBatchListener listener) throws Exception {
+        if (parametersList.isEmpty())
+            return;
+
+        int profileType = parametersList.get(0).getRouteParameters().getProfileType();
+        RoutingProfile rp = _routeProfiles.getRouteProfile(profileType, false);
+
+        rp.buildIsochrones(parametersList, attributes, getIsochronesBatchExecutor(), listener);
+    }
+
+    private synchronized ExecutorService getIsochronesBatchExecutor() {
+        if (_isochronesBatchExecutor == null) {
+            _isochronesBatchExecutor = Executors.newFixedThreadPool(IsochronesServiceSettings.getBatchThreads(), runnable -> {
+                Thread thread = new Thread(runnable, "ORS-isochrones-batch");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        return _isochronesBatchExecutor;
+    }
+
+    /**
+     * The statistics queries mostly wait for the data sources, so there is one thread per connection of their pools.
+     * Further queries wait in the queue of the executor instead of for a connection.
+     */
+    private synchronized ExecutorService getIsochronesStatisticsExecutor() {
+        if (_isochronesStatisticsExecutor == null) {
+            _isochronesStatisticsExecutor = Executors.newFixedThreadPool(IsochronesServiceSettings.getStatisticsThreads(), runnable -> {
+                Thread thread = new Thread(runnable, "ORS-isochrones-statistics");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        return _isochronesStatisticsExecutor;
     }
 
     public MatrixResult computeMatrix(MatrixRequest req) throws Exception {
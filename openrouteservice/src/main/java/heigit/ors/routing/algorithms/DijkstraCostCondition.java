@@ -1,57 +1,139 @@
 /*  This file is part of Openrouteservice.
  *
- *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the 
- *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1 
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
  *  of the License, or (at your option) any later version.
 
- *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
- *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
  *  See the GNU Lesser General Public License for more details.
 
- *  You should have received a copy of the GNU Lesser General Public License along with this library; 
- *  if not, see <https://www.gnu.org/licenses/>.  
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
  */
 package heigit.ors.routing.algorithms;
 
-import com.carrotsearch.hppc.IntObjectMap;
-import com.graphhopper.routing.Dijkstra;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
-import com.graphhopper.storage.SPTEntry;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
 
-public class DijkstraCostCondition extends Dijkstra
+import heigit.ors.common.RequestDeadline;
+import heigit.ors.routing.graphhopper.extensions.AccessibilityMap;
+
+/**
+ * Node based Dijkstra search which stops as soon as the cost of the next node exceeds the given limit. The shortest
+ * path tree contains all settled nodes and the nodes found behind the limit.
+ */
+public class DijkstraCostCondition
 {
-	private double weightLimit = -1;
+	private final Graph _graph;
+	private final Weighting _weighting;
+	private final double _weightLimit;
+	private final boolean _reverseDirection;
+	private final DijkstraSearchState _searchState;
+	private final EdgeExplorer _inEdgeExplorer;
+	private final EdgeExplorer _outEdgeExplorer;
+	private final RequestDeadline _deadline;
+	private EdgeFilter _edgeFilter;
+	private int _visitedNodes;
+
     public DijkstraCostCondition(Graph g, Weighting weighting, double maxCost, boolean reverseDirection, TraversalMode tMode)
     {
-        super(g, weighting, tMode);
-        initCollections(1000);
-        this.weightLimit = maxCost;
-        setReverseDirection(reverseDirection);
+        this(g, weighting, maxCost, reverseDirection, tMode, null);
+    }
+
+    /**
+     * @param searchState state to run the search in, or null to take one from the pool which the caller has to
+     *                    release through {@link #getSearchState()} once the results are no longer used
+     */
+    public DijkstraCostCondition(Graph g, Weighting weighting, double maxCost, boolean reverseDirection, TraversalMode tMode, DijkstraSearchState searchState)
+    {
+        if (tMode.isEdgeBased())
+            throw new IllegalArgumentException("Only node based traversal is supported.");
+
+        _graph = g;
+        _weighting = weighting;
+        _weightLimit = maxCost;
+        _reverseDirection = reverseDirection;
+        _searchState = searchState != null ? searchState : DijkstraSearchState.acquire(g.getNodes());
+
+        FlagEncoder encoder = weighting.getFlagEncoder();
+        _inEdgeExplorer = g.createEdgeExplorer(new DefaultEdgeFilter(encoder, true, false));
+        _outEdgeExplorer = g.createEdgeExplorer(new DefaultEdgeFilter(encoder, false, true));
+        _deadline = RequestDeadline.current();
     }
 
-    @Override
-    protected boolean finished() {
-        return  super.finished() || currEdge.weight > weightLimit;
+    public DijkstraSearchState getSearchState()
+    {
+        return _searchState;
     }
-    
-    public IntObjectMap<SPTEntry> getMap()
+
+    public DijkstraCostCondition setEdgeFilter(EdgeFilter edgeFilter)
     {
-    	return fromMap;
+        _edgeFilter = edgeFilter;
+        return this;
     }
-    
-    public SPTEntry getCurrentEdge()
+
+    /**
+     * Runs the search. The returned map is backed by the search state and only valid until the state is reused.
+     */
+    public AccessibilityMap calcAccessibilityMap(int from)
     {
-    	if (currEdge == null || !finished())
-    		return  null;
-    	else
-    		return currEdge;
+        DijkstraSearchState state = _searchState;
+        state.reset(_graph.getNodes());
+        IntDaryHeap heap = state.getHeap();
+        EdgeExplorer explorer = _reverseDirection ? _inEdgeExplorer : _outEdgeExplorer;
+
+        int node = from;
+        double weight = 0;
+        state.setEntry(from, EdgeIterator.NO_EDGE, -1, 0);
+
+        while (true)
+        {
+            _visitedNodes++;
+            if (weight > _weightLimit)
+                break;
+
+            if (_deadline != null)
+                _deadline.check(_visitedNodes);
+
+            int prevEdge = state.getEdge(node);
+            EdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next())
+            {
+                // no u-turns in node based traversal
+                if (iter.getEdge() == prevEdge || (_edgeFilter != null && !_edgeFilter.accept(iter)))
+                    continue;
+
+                double tmpWeight = _weighting.calcWeight(iter, _reverseDirection, prevEdge) + weight;
+                if (Double.isInfinite(tmpWeight))
+                    continue;
+
+                int adjNode = iter.getAdjNode();
+                if (tmpWeight < state.getWeight(adjNode))
+                {
+                    state.setEntry(adjNode, iter.getEdge(), node, tmpWeight);
+                    heap.update(adjNode, tmpWeight);
+                }
+            }
+
+            if (heap.isEmpty())
+                break;
+
+            weight = heap.peekKey();
+            node = heap.poll();
+        }
+
+        return new AccessibilityMap(state);
     }
 
-    @Override
-    public String getName()
+    public int getVisitedNodes()
     {
-        return "dijkstracc";
+        return _visitedNodes;
     }
 }
@@ -13,6 +13,7 @@
  */
 package heigit.ors.routing.algorithms;
 
+import com.carrotsearch.hppc.IntHashSet;
 import com.carrotsearch.hppc.IntObjectMap;
 import com.graphhopper.coll.GHIntObjectHashMap;
 import com.graphhopper.routing.util.TraversalMode;
@@ -22,38 +23,78 @@ import com.graphhopper.storage.SPTEntry;
 import com.graphhopper.util.EdgeExplorer;
 import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.Parameters;
+import heigit.ors.common.RequestDeadline;
+import heigit.ors.routing.graphhopper.extensions.weighting.TimeDependentWeighting;
 
-import java.util.PriorityQueue;
-
+/**
+ * Node based Dijkstra search from one source to many targets. The shortest path tree is kept in a
+ * {@link DijkstraSearchState}, only the paths to the targets are returned as {@link SPTEntry} chains.
+ */
 public class DijkstraOneToManyAlgorithm extends AbstractOneToManyRoutingAlgorithm {
-    protected IntObjectMap<SPTEntry> _fromMap;
-    protected PriorityQueue<SPTEntry> _fromHeap;
-    protected SPTEntry _currEdge;
+    protected final DijkstraSearchState _searchState;
+    private final RequestDeadline _deadline;
     private int _visitedNodes;
     
     private int _targetsFound = 0;
-    private IntObjectMap<SPTEntry> _targets;
+    private IntHashSet _targets;
     private int _targetsCount = 0;
+    // set for time dependent searches, which keep the arrival times in the search state
+    private TimeDependentWeighting _tdWeighting;
+    private long _departureTime;
 
     public DijkstraOneToManyAlgorithm(Graph graph, Weighting weighting, TraversalMode tMode) {
-        super(graph, weighting, tMode);
-        int size = Math.min(Math.max(200, graph.getNodes() / 10), 2000);
-        initCollections(size);
+        this(graph, weighting, tMode, null);
     }
 
-    protected void initCollections(int size) {
-        _fromHeap = new PriorityQueue<SPTEntry>(size);
-        _fromMap = new GHIntObjectHashMap<SPTEntry>(size);
-        _targets = new GHIntObjectHashMap<SPTEntry>();
+    /**
+     * @param searchState state to run the searches in, or null to take one from the pool which the caller has to
+     *                    release through {@link #getSearchState()} once the results are no longer used
+     */
+    public DijkstraOneToManyAlgorithm(Graph graph, Weighting weighting, TraversalMode tMode, DijkstraSearchState searchState) {
+        super(graph, weighting, tMode);
+        if (tMode.isEdgeBased())
+            throw new IllegalArgumentException("Only node based traversal is supported.");
+
+        _searchState = searchState != null ? searchState : DijkstraSearchState.acquire(graph.getNodes());
+        _searchState.reset(graph.getNodes());
+        _targets = new IntHashSet();
+        _deadline = RequestDeadline.current();
     }
     
+    public DijkstraSearchState getSearchState()
+    {
+    	return _searchState;
+    }
+
     public void reset()
     {
-    	_fromHeap.clear();
-    	_fromMap.clear();
+    	_searchState.reset(graph.getNodes());
     	_targetsFound = 0;
     }
     
+    /**
+     * Makes the search time dependent. Each edge is weighted at the time at which it is entered, the travel times are
+     * available through {@link #getTime(int)}.
+     *
+     * @param departureTime	departure as milliseconds since the start of the week
+     */
+    public void setDepartureTime(long departureTime)
+    {
+    	if (!(weighting instanceof TimeDependentWeighting))
+    		throw new IllegalArgumentException("Weighting " + weighting.getName() + " is not time dependent.");
+
+    	_tdWeighting = (TimeDependentWeighting) weighting;
+    	_departureTime = departureTime;
+    }
+
+    /**
+     * @return the travel time in milliseconds from the departure to a reached node of a time dependent search
+     */
+    public long getTime(int node)
+    {
+    	return _searchState.getTime(node);
+    }
+
     public int getFoundTargets()
     {
     	return _targetsFound;
@@ -72,100 +113,115 @@ public class DijkstraOneToManyAlgorithm extends AbstractOneToManyRoutingAlgorith
     	{
     		int nodeId = to[i];
     		if (nodeId >= 0)
-    			this._targets.put(nodeId, new SPTEntry(EdgeIterator.NO_EDGE, nodeId, 1));
+    			this._targets.add(nodeId);
     	}
     }
     
     @Override
     public SPTEntry[] calcPaths(int from, int[] to) {
-    	_targetsCount = _targets.containsKey(from) ? _targets.size() - 1 : _targets.size();
+    	_targetsCount = _targets.contains(from) ? _targets.size() - 1 : _targets.size();
     	
     	if (_targetsCount > 0)
     	{
-    		_currEdge = createSPTEntry(from, 0);
-    		if (!traversalMode.isEdgeBased()) {
-    			_fromMap.put(from, _currEdge);
-    		}
-    		
-    		runAlgo();
+    		_searchState.setEntry(from, EdgeIterator.NO_EDGE, -1, 0);
+    		if (_tdWeighting != null)
+    			_searchState.setTime(from, 0);
+    		runAlgo(from);
     	}
     	
     	SPTEntry[] res = new SPTEntry[to.length];
+    	// targets share the entries of common path prefixes
+    	IntObjectMap<SPTEntry> entries = new GHIntObjectHashMap<SPTEntry>(to.length * 4);
     	
     	for (int i = 0; i < to.length; i++)
     	{
     		int nodeId = to[i];
-    		if (nodeId >= 0)
-    			res[i] = _fromMap.get(to[i]);
+    		if (nodeId >= 0 && _searchState.isReached(nodeId))
+    			res[i] = createPath(nodeId, entries);
     	}
     	
         return res;
     }
 
-    protected void runAlgo() {
+    /**
+     * @return the entry of the node linked to the entries of its predecessors up to the source
+     */
+    private SPTEntry createPath(int node, IntObjectMap<SPTEntry> entries) {
+    	SPTEntry result = null;
+    	SPTEntry child = null;
+
+    	while (node != -1) {
+    		SPTEntry entry = entries.get(node);
+    		boolean known = entry != null;
+    		if (!known) {
+    			entry = new SPTEntry(_searchState.getEdge(node), node, _searchState.getWeight(node));
+    			entries.put(node, entry);
+    		}
+
+    		if (child == null)
+    			result = entry;
+    		else
+    			child.parent = entry;
+
+    		if (known)
+    			break;
+
+    		child = entry;
+    		node = _searchState.getParent(node);
+    	}
+
+    	return result;
+    }
+
+    protected void runAlgo(int from) {
         EdgeExplorer explorer = outEdgeExplorer;
+        DijkstraSearchState state = _searchState;
+        IntDaryHeap heap = state.getHeap();
+        int currNode = from;
+
         while (true) {
             _visitedNodes++;
-            if (isMaxVisitedNodesExceeded() || finished())
+            if (isMaxVisitedNodesExceeded() || finished(currNode))
                 break;
 
-            int startNode = _currEdge.adjNode;
-            EdgeIterator iter = explorer.setBaseNode(startNode);
+            if (_deadline != null)
+                _deadline.check(_visitedNodes);
+
+            int currEdge = state.getEdge(currNode);
+            double currWeight = state.getWeight(currNode);
+            long currTime = _tdWeighting != null ? state.getTime(currNode) : 0;
+            EdgeIterator iter = explorer.setBaseNode(currNode);
             while (iter.next()) {
-                if (!accept(iter, _currEdge.edge))
+                if (!accept(iter, currEdge))
                     continue;
 
-                int traversalId = traversalMode.createTraversalId(iter, false);
-                double tmpWeight = weighting.calcWeight(iter, false, _currEdge.edge) + _currEdge.weight;
+                double tmpWeight;
+                if (_tdWeighting != null)
+                    tmpWeight = _tdWeighting.calcWeight(iter, false, currEdge, _departureTime + currTime) + currWeight;
+                else
+                    tmpWeight = weighting.calcWeight(iter, false, currEdge) + currWeight;
                 if (Double.isInfinite(tmpWeight))
                     continue;
 
-                SPTEntry nEdge = _fromMap.get(traversalId);
-                if (nEdge == null) {
-                    nEdge = new SPTEntry(iter.getEdge(), iter.getAdjNode(), tmpWeight);
-                    nEdge.parent = _currEdge;
-                    _fromMap.put(traversalId, nEdge);
-                    _fromHeap.add(nEdge);
-                } else if (nEdge.weight > tmpWeight) {
-                    _fromHeap.remove(nEdge);
-                    nEdge.edge = iter.getEdge();
-                    nEdge.weight = tmpWeight;
-                    nEdge.parent = _currEdge;
-                    _fromHeap.add(nEdge);
-                } else
-                    continue;
+                int adjNode = iter.getAdjNode();
+                if (tmpWeight < state.getWeight(adjNode)) {
+                    state.setEntry(adjNode, iter.getEdge(), currNode, tmpWeight);
+                    if (_tdWeighting != null)
+                        state.setTime(adjNode, currTime + _tdWeighting.calcMillis(iter, false, currEdge, _departureTime + currTime));
+                    heap.update(adjNode, tmpWeight);
+                }
             }
 
-            if (_fromHeap.isEmpty())
+            if (heap.isEmpty())
                 break;
 
-            _currEdge = _fromHeap.poll();
-            if (_currEdge == null)
-                throw new AssertionError("Empty edge cannot happen");
+            currNode = heap.poll();
         }
     }
 
-    private boolean finished() {
-    	if (_currEdge.edge != -1)
-    	{
-    		SPTEntry entry = _targets.get(_currEdge.adjNode);
-    		if (entry != null)
-    		{
-    			entry.adjNode = _currEdge.adjNode;
-    			entry.weight = _currEdge.weight;
-    			entry.edge = _currEdge.edge;
-    			entry.parent = _currEdge.parent;
-
-    			// MARQ24 - this looks quite strange to me!
-                // ORG CODE START
-    			// entry.visited = entry.visited;
-                // ORG CODE END
-    			// IMHO this should be: [and also take over the originalEdge value!
-                entry.originalEdge = _currEdge.originalEdge;
-
-    			_targetsFound++;
-    		}
-    	}
+    private boolean finished(int currNode) {
+    	if (_searchState.getEdge(currNode) != EdgeIterator.NO_EDGE && _targets.contains(currNode))
+    		_targetsFound++;
     	
     	return _targetsFound == _targetsCount;
     }
@@ -0,0 +1,262 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.routing.algorithms;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.util.EdgeIterator;
+import heigit.ors.common.RequestDeadline;
+import heigit.ors.exceptions.RequestTimeoutException;
+
+/**
+ * Shortest path tree and heap of a node based search, stored in arrays indexed by node id. A node belongs to the
+ * current search if its stamp equals the version of the search, so {@link #reset(int)} only increments the version
+ * instead of clearing the arrays. The reached nodes are additionally listed in the order they were reached.
+ * <p>
+ * States are meant to be taken from the pool with {@link #acquire(int)} and returned with {@link #release()} once the
+ * search results are no longer needed, so that concurrent searches neither share nor reallocate them. The pool creates
+ * at most {@link #setMaxPooledStates(int)} states, further searches wait until one of them is released.
+ */
+public class DijkstraSearchState {
+	private static final Deque<DijkstraSearchState> POOL = new ArrayDeque<DijkstraSearchState>();
+	private static int _maxPooledStates = Runtime.getRuntime().availableProcessors();
+	// states created by the pool which have not been discarded, idle or in use
+	private static int _pooledStates;
+
+	private boolean _pooled;
+	private int _version;
+	private int[] _versions;
+	private double[] _weights;
+	private int[] _parents;
+	private int[] _edges;
+	// arrival times of time dependent searches, allocated on first use
+	private long[] _times;
+	private final IntArrayList _reachedNodes;
+	private final IntDaryHeap _heap;
+
+	public DijkstraSearchState(int nodeCount) {
+		_versions = new int[nodeCount];
+		_weights = new double[nodeCount];
+		_parents = new int[nodeCount];
+		_edges = new int[nodeCount];
+		_reachedNodes = new IntArrayList(1000);
+		_heap = new IntDaryHeap(1000, nodeCount);
+		_version = 1;
+	}
+
+	/**
+	 * Takes an idle state from the pool or creates one if the pool has not reached its limit yet. Otherwise the calling
+	 * thread waits until a state is released, at most until the deadline of its request has passed. A thread must not
+	 * hold a state while it waits for another one.
+	 *
+	 * @return a state prepared for a search on a graph with nodeCount nodes
+	 * @throws RequestTimeoutException if the deadline passes while waiting
+	 */
+	public static DijkstraSearchState acquire(int nodeCount) {
+		DijkstraSearchState state;
+		synchronized (POOL) {
+			while ((state = POOL.pollFirst()) == null && _pooledStates >= _maxPooledStates) {
+				RequestDeadline deadline = RequestDeadline.current();
+				try {
+					if (deadline == null) {
+						POOL.wait();
+					} else {
+						deadline.check();
+						POOL.wait(Math.max(1, deadline.getRemainingTime()));
+					}
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while waiting for a search state.", ex);
+				}
+			}
+
+			if (state == null)
+				_pooledStates++;
+		}
+
+		if (state == null) {
+			try {
+				state = new DijkstraSearchState(nodeCount);
+			} catch (RuntimeException | Error ex) {
+				discard();
+				throw ex;
+			}
+			state._pooled = true;
+		} else {
+			state.reset(nodeCount);
+		}
+
+		return state;
+	}
+
+	/**
+	 * Hands the state back to the pool. Neither the state nor search results which refer to it must be used afterwards.
+	 * States which have not been taken from the pool are left to the garbage collector.
+	 */
+	public void release() {
+		if (!_pooled)
+			return;
+
+		synchronized (POOL) {
+			if (_pooledStates > _maxPooledStates) {
+				_pooled = false;
+				discard();
+			} else {
+				POOL.addFirst(this);
+				POOL.notify();
+			}
+		}
+	}
+
+	private static void discard() {
+		synchronized (POOL) {
+			_pooledStates--;
+			POOL.notify();
+		}
+	}
+
+	/**
+	 * Limits the number of states created by the pool, which hold several arrays of the size of the graph each.
+	 */
+	public static void setMaxPooledStates(int maxPooledStates) {
+		if (maxPooledStates < 1)
+			throw new IllegalArgumentException("The pool needs at least one search state.");
+
+		synchronized (POOL) {
+			_maxPooledStates = maxPooledStates;
+			while (_pooledStates > maxPooledStates && !POOL.isEmpty()) {
+				POOL.pollLast()._pooled = false;
+				_pooledStates--;
+			}
+			POOL.notifyAll();
+		}
+	}
+
+	public static int getMaxPooledStates() {
+		synchronized (POOL) {
+			return _maxPooledStates;
+		}
+	}
+
+	/**
+	 * Forgets all nodes of the previous search in constant time and grows the arrays if the graph has become larger.
+	 */
+	public void reset(int nodeCount) {
+		if (nodeCount > _versions.length) {
+			_versions = Arrays.copyOf(_versions, nodeCount);
+			_weights = Arrays.copyOf(_weights, nodeCount);
+			_parents = Arrays.copyOf(_parents, nodeCount);
+			_edges = Arrays.copyOf(_edges, nodeCount);
+			if (_times != null)
+				_times = Arrays.copyOf(_times, nodeCount);
+			_heap.ensureNodeCount(nodeCount);
+		}
+
+		if (++_version == Integer.MAX_VALUE) {
+			Arrays.fill(_versions, 0);
+			_version = 1;
+		}
+
+		_reachedNodes.elementsCount = 0;
+		_heap.clear();
+	}
+
+	public int getNodeCount() {
+		return _versions.length;
+	}
+
+	public IntDaryHeap getHeap() {
+		return _heap;
+	}
+
+	public boolean isReached(int node) {
+		return _versions[node] == _version;
+	}
+
+	/**
+	 * Sets the tree entry of a node, the node is added to the reached nodes when it is set for the first time.
+	 *
+	 * @param edge the edge from the parent to the node or {@link EdgeIterator#NO_EDGE}
+	 * @param parent the parent node or -1
+	 */
+	public void setEntry(int node, int edge, int parent, double weight) {
+		if (_versions[node] != _version) {
+			_versions[node] = _version;
+			_reachedNodes.add(node);
+		}
+
+		_edges[node] = edge;
+		_parents[node] = parent;
+		_weights[node] = weight;
+	}
+
+	public void setWeight(int node, double weight) {
+		setEntry(node, EdgeIterator.NO_EDGE, -1, weight);
+	}
+
+	/**
+	 * @return the weight of the node or positive infinity if it has not been reached
+	 */
+	public double getWeight(int node) {
+		return _versions[node] == _version ? _weights[node] : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Sets the arrival time of a node which has been reached by a time dependent search.
+	 */
+	public void setTime(int node, long time) {
+		if (_times == null)
+			_times = new long[_versions.length];
+		_times[node] = time;
+	}
+
+	public long getTime(int node) {
+		return _times[node];
+	}
+
+	public int getParent(int node) {
+		return _parents[node];
+	}
+
+	public int getEdge(int node) {
+		return _edges[node];
+	}
+
+	public int getReachedCount() {
+		return _reachedNodes.size();
+	}
+
+	public int getReachedNode(int index) {
+		return _reachedNodes.get(index);
+	}
+
+	/**
+	 * Removes all nodes whose weight is above maxWeight from the reached nodes.
+	 */
+	public void removeReached(double maxWeight) {
+		int[] nodes = _reachedNodes.buffer;
+		int count = 0;
+		for (int i = 0; i < _reachedNodes.size(); i++) {
+			int node = nodes[i];
+			if (_weights[node] > maxWeight)
+				_versions[node] = 0;
+			else
+				nodes[count++] = node;
+		}
+		_reachedNodes.elementsCount = count;
+	}
+}
@@ -0,0 +1,162 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.routing.algorithms;
+
+import java.util.Arrays;
+
+/**
+ * Indexed 4-ary min heap of node ids with double keys. The position of every node is kept in an array indexed by
+ * node id, so that the key of a contained node can be decreased in place instead of removing and adding an entry.
+ * No objects are allocated once the arrays have grown to their final size.
+ */
+public class IntDaryHeap {
+	private static final int ARITY = 4;
+
+	private int[] _nodes;
+	private double[] _keys;
+	// position of each node in the heap, -1 if the node is not contained
+	private int[] _positions;
+	private int _size;
+
+	public IntDaryHeap(int initialCapacity, int nodeCount) {
+		_nodes = new int[Math.max(initialCapacity, ARITY)];
+		_keys = new double[_nodes.length];
+		_positions = new int[nodeCount];
+		Arrays.fill(_positions, -1);
+	}
+
+	public int size() {
+		return _size;
+	}
+
+	public boolean isEmpty() {
+		return _size == 0;
+	}
+
+	public boolean contains(int node) {
+		return _positions[node] >= 0;
+	}
+
+	/**
+	 * Grows the node range of the heap, e.g. after nodes have been added to the graph.
+	 */
+	public void ensureNodeCount(int nodeCount) {
+		if (nodeCount > _positions.length) {
+			int oldLength = _positions.length;
+			_positions = Arrays.copyOf(_positions, nodeCount);
+			Arrays.fill(_positions, oldLength, nodeCount, -1);
+		}
+	}
+
+	/**
+	 * Removes all entries. Only the positions of the nodes which are still contained are reset, so clearing a heap
+	 * which has been polled empty costs nothing.
+	 */
+	public void clear() {
+		for (int i = 0; i < _size; i++)
+			_positions[_nodes[i]] = -1;
+		_size = 0;
+	}
+
+	public void insert(int node, double key) {
+		if (_size == _nodes.length) {
+			_nodes = Arrays.copyOf(_nodes, _size * 2);
+			_keys = Arrays.copyOf(_keys, _size * 2);
+		}
+
+		siftUp(_size++, node, key);
+	}
+
+	/**
+	 * Lowers the key of a contained node, a higher key is ignored.
+	 */
+	public void decreaseKey(int node, double key) {
+		int pos = _positions[node];
+		if (key < _keys[pos])
+			siftUp(pos, node, key);
+	}
+
+	/**
+	 * Inserts the node or lowers its key if it is already contained.
+	 */
+	public void update(int node, double key) {
+		if (_positions[node] >= 0)
+			decreaseKey(node, key);
+		else
+			insert(node, key);
+	}
+
+	public int peekNode() {
+		return _nodes[0];
+	}
+
+	public double peekKey() {
+		return _keys[0];
+	}
+
+	/**
+	 * @return the node with the lowest key
+	 */
+	public int poll() {
+		int result = _nodes[0];
+		_positions[result] = -1;
+
+		if (--_size > 0)
+			siftDown(0, _nodes[_size], _keys[_size]);
+
+		return result;
+	}
+
+	private void siftUp(int pos, int node, double key) {
+		while (pos > 0) {
+			int parent = (pos - 1) / ARITY;
+			if (_keys[parent] <= key)
+				break;
+
+			move(_nodes[parent], _keys[parent], pos);
+			pos = parent;
+		}
+
+		move(node, key, pos);
+	}
+
+	private void siftDown(int pos, int node, double key) {
+		while (true) {
+			int firstChild = pos * ARITY + 1;
+			if (firstChild >= _size)
+				break;
+
+			int lastChild = Math.min(firstChild + ARITY, _size);
+			int minChild = firstChild;
+			for (int child = firstChild + 1; child < lastChild; child++) {
+				if (_keys[child] < _keys[minChild])
+					minChild = child;
+			}
+
+			if (_keys[minChild] >= key)
+				break;
+
+			move(_nodes[minChild], _keys[minChild], pos);
+			pos = minChild;
+		}
+
+		move(node, key, pos);
+	}
+
+	private void move(int node, double key, int pos) {
+		_nodes[pos] = node;
+		_keys[pos] = key;
+		_positions[node] = pos;
+	}
+}
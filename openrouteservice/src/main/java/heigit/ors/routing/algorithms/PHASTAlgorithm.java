@@ -0,0 +1,218 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.routing.algorithms;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.graphhopper.routing.ch.PreparationWeighting;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+
+import heigit.ors.common.RequestDeadline;
+import heigit.ors.routing.graphhopper.extensions.AccessibilityMap;
+
+/**
+ * One-to-all shortest path search on a contraction hierarchy (PHAST). A small upward search from the source is
+ * followed by a single sweep over all nodes in descending level order which relaxes the downward edges of each node.
+ * The sweep needs no priority queue and reads the nodes in a fixed order, which makes it considerably faster than a
+ * Dijkstra search when a large part of the graph is reached.
+ * <p>
+ * Only nodes whose cost does not exceed the given limit are relaxed. The graph has to be fully contracted, so that all
+ * nodes have distinct levels.
+ */
+public class PHASTAlgorithm {
+	private static final Map<CHGraph, int[]> NODES_BY_LEVEL = new WeakHashMap<CHGraph, int[]>();
+
+	private final Graph _graph;
+	private final CHGraph _chGraph;
+	private final Weighting _weighting;
+	private final Weighting _chWeighting;
+	private final FlagEncoder _encoder;
+	private final boolean _reverseDirection;
+	private final RequestDeadline _deadline;
+
+	/**
+	 * @param graph the base graph
+	 * @param chGraph the contraction hierarchy prepared for weighting
+	 * @param weighting the weighting the contraction hierarchy has been prepared with
+	 * @param reverseDirection if true, the costs to reach the source instead of the costs from the source are computed
+	 */
+	public PHASTAlgorithm(Graph graph, CHGraph chGraph, Weighting weighting, boolean reverseDirection) {
+		_graph = graph;
+		_chGraph = chGraph;
+		_weighting = weighting;
+		_chWeighting = new PreparationWeighting(weighting);
+		_encoder = weighting.getFlagEncoder();
+		_reverseDirection = reverseDirection;
+		_deadline = RequestDeadline.current();
+	}
+
+	/**
+	 * Computes the cost of every node into the search state. Nodes which can not be reached within maxWeight are
+	 * either not reached or have a weight greater than maxWeight.
+	 */
+	public void calcWeights(int source, double maxWeight, DijkstraSearchState state) {
+		state.reset(_chGraph.getNodes());
+		state.setWeight(source, 0);
+
+		runUpwardSearch(source, state, maxWeight);
+		runDownwardSweep(state, maxWeight);
+	}
+
+	private void runUpwardSearch(int source, DijkstraSearchState state, double maxWeight) {
+		EdgeExplorer explorer = _chGraph.createEdgeExplorer();
+		IntDaryHeap heap = state.getHeap();
+		heap.insert(source, 0);
+		int visitedNodes = 0;
+
+		while (!heap.isEmpty()) {
+			double weight = heap.peekKey();
+			if (weight > maxWeight)
+				break;
+			int node = heap.poll();
+
+			if (_deadline != null)
+				_deadline.check(++visitedNodes);
+
+			int level = _chGraph.getLevel(node);
+			EdgeIterator iter = explorer.setBaseNode(node);
+			while (iter.next()) {
+				int adjNode = iter.getAdjNode();
+				if (_chGraph.getLevel(adjNode) < level || !accept(iter))
+					continue;
+
+				double tmpWeight = weight + _chWeighting.calcWeight(iter, _reverseDirection, EdgeIterator.NO_EDGE);
+				if (tmpWeight < state.getWeight(adjNode)) {
+					state.setWeight(adjNode, tmpWeight);
+					heap.update(adjNode, tmpWeight);
+				}
+			}
+		}
+	}
+
+	private void runDownwardSweep(DijkstraSearchState state, double maxWeight) {
+		EdgeExplorer explorer = _chGraph.createEdgeExplorer();
+		int[] nodes = getNodesByLevel(_chGraph);
+
+		for (int i = 0; i < nodes.length; i++) {
+			if (_deadline != null)
+				_deadline.check(i);
+
+			int node = nodes[i];
+			double weight = state.getWeight(node);
+			if (weight > maxWeight)
+				continue;
+
+			int level = _chGraph.getLevel(node);
+			EdgeIterator iter = explorer.setBaseNode(node);
+			while (iter.next()) {
+				int adjNode = iter.getAdjNode();
+				if (_chGraph.getLevel(adjNode) >= level || !accept(iter))
+					continue;
+
+				double tmpWeight = weight + _chWeighting.calcWeight(iter, _reverseDirection, EdgeIterator.NO_EDGE);
+				if (tmpWeight < state.getWeight(adjNode))
+					state.setWeight(adjNode, tmpWeight);
+			}
+		}
+	}
+
+	/**
+	 * Computes the node costs and derives a shortest path tree on the base graph from them, in the same form as it is
+	 * produced by {@link DijkstraCostCondition}: it contains all nodes within maxWeight and the first node behind the
+	 * limit of every edge leaving that area.
+	 */
+	public AccessibilityMap calcAccessibilityMap(int source, double maxWeight, DijkstraSearchState state) {
+		calcWeights(source, maxWeight, state);
+		// the nodes behind the limit are added again below with the costs of the tree edges leading to them
+		state.removeReached(maxWeight);
+
+		// for a search from the source tree edges are traversed from the adjacent node towards the node
+		boolean parentReverse = !_reverseDirection;
+		EdgeExplorer explorer = _graph.createEdgeExplorer();
+
+		int count = state.getReachedCount();
+		for (int i = 0; i < count; i++) {
+			int node = state.getReachedNode(i);
+			double nodeWeight = state.getWeight(node);
+			// all candidates for the parent of the node are seen while iterating its edges
+			double parentWeight = Double.POSITIVE_INFINITY;
+			int parent = -1;
+			int parentEdge = EdgeIterator.NO_EDGE;
+
+			EdgeIterator iter = explorer.setBaseNode(node);
+			while (iter.next()) {
+				int adjNode = iter.getAdjNode();
+				double adjWeight = state.getWeight(adjNode);
+
+				if (adjWeight <= maxWeight) {
+					if (node == source || !(parentReverse ? iter.isBackward(_encoder) : iter.isForward(_encoder)))
+						continue;
+
+					double weight = adjWeight + _weighting.calcWeight(iter, parentReverse, EdgeIterator.NO_EDGE);
+					if (weight < parentWeight) {
+						parentWeight = weight;
+						parent = adjNode;
+						parentEdge = iter.getEdge();
+					}
+				} else {
+					if (!(parentReverse ? iter.isForward(_encoder) : iter.isBackward(_encoder)))
+						continue;
+
+					double weight = nodeWeight + _weighting.calcWeight(iter, !parentReverse, EdgeIterator.NO_EDGE);
+					// a node behind the limit keeps the cheapest edge leading to it
+					if (weight < adjWeight)
+						state.setEntry(adjNode, iter.getEdge(), node, weight);
+				}
+			}
+
+			if (parent != -1)
+				state.setEntry(node, parentEdge, parent, nodeWeight);
+		}
+
+		return new AccessibilityMap(state);
+	}
+
+	private boolean accept(EdgeIterator iter) {
+		return _reverseDirection ? iter.isBackward(_encoder) : iter.isForward(_encoder);
+	}
+
+	/**
+	 * @return the nodes of the hierarchy ordered from the highest to the lowest level, computed once per graph
+	 */
+	static int[] getNodesByLevel(CHGraph chGraph) {
+		synchronized (NODES_BY_LEVEL) {
+			int[] nodes = NODES_BY_LEVEL.get(chGraph);
+			if (nodes == null) {
+				int count = chGraph.getNodes();
+				long[] keys = new long[count];
+				for (int node = 0; node < count; node++)
+					keys[node] = ((long) chGraph.getLevel(node) << 32) | node;
+				Arrays.sort(keys);
+
+				nodes = new int[count];
+				for (int i = 0; i < count; i++)
+					nodes[i] = (int) keys[count - 1 - i];
+				NODES_BY_LEVEL.put(chGraph, nodes);
+			}
+			return nodes;
+		}
+	}
+}
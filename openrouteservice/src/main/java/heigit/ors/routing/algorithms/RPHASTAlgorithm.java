@@ -26,6 +26,7 @@ import com.graphhopper.storage.Graph;
 import com.graphhopper.util.EdgeExplorer;
 import com.graphhopper.util.EdgeIterator;
 
+import heigit.ors.common.RequestDeadline;
 import heigit.ors.routing.graphhopper.extensions.edgefilters.DownwardSearchEdgeFilter;
 import heigit.ors.routing.graphhopper.extensions.edgefilters.UpwardSearchEdgeFilter;
 import heigit.ors.routing.graphhopper.extensions.storages.MultiTreeSPEntry;
@@ -46,6 +47,7 @@ public class RPHASTAlgorithm extends AbstractManyToManyRoutingAlgorithm {
 	private int _visitedCountFrom;
 	private int _visitedCountTo;
 	private int _treeEntrySize;
+	private final RequestDeadline _deadline;
 	
 	private MultiTreeSPEntryItem _msptItem;
 	private MultiTreeSPEntryItem _msptSubItem;
@@ -75,6 +77,7 @@ public class RPHASTAlgorithm extends AbstractManyToManyRoutingAlgorithm {
 
 		_inEdgeExplorer = graph.createEdgeExplorer();
 		_outEdgeExplorer = graph.createEdgeExplorer();
+		_deadline = RequestDeadline.current();
 	}
 
 	protected void initCollections(int size) {
@@ -133,12 +136,18 @@ public class RPHASTAlgorithm extends AbstractManyToManyRoutingAlgorithm {
 	protected void runUpwardSearch() {
 		while (!isMaxVisitedNodesExceeded() && !_finishedFrom) {
 			_finishedFrom = !upwardSearch();
+
+			if (_deadline != null)
+				_deadline.check(_visitedCountFrom);
 		}
 	}
 
 	protected void runDownwardSearch() {
 		while (!_finishedTo) {
 			_finishedTo = !downwardSearch();
+
+			if (_deadline != null)
+				_deadline.check(_visitedCountTo);
 		}
 	}
 
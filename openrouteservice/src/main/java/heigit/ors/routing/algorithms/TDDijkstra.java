@@ -0,0 +1,160 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the 
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1 
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library; 
+ *  if not, see <https://www.gnu.org/licenses/>.  
+ */
+package heigit.ors.routing.algorithms;
+
+import com.graphhopper.routing.Dijkstra;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.SPTEntry;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import heigit.ors.routing.graphhopper.extensions.weighting.TimeDependentWeighting;
+
+/**
+ * Time dependent Dijkstra. Each edge is weighted at the time at which it is entered, i.e. departure time plus the
+ * travel time of the path leading to it. The result is exact if the weight of an edge is its travel time and the
+ * travel times satisfy the FIFO property (leaving later never means arriving earlier). Both hold for
+ * {@link heigit.ors.routing.graphhopper.extensions.weighting.TimeDependentFastestWeighting}, which changes the speed
+ * within an edge when a bucket of the profile ends.
+ */
+public class TDDijkstra extends Dijkstra {
+	public static final String NAME = "td_dijkstra";
+
+	private final TimeDependentWeighting _tdWeighting;
+	private final long _departureTime;
+	private int _to = -1;
+	private int _visitedNodes;
+
+	/**
+	 * @param departureTime	departure as milliseconds since the start of the week
+	 */
+	public TDDijkstra(Graph graph, Weighting weighting, TraversalMode tMode, long departureTime) {
+		super(graph, weighting, tMode);
+
+		if (!(weighting instanceof TimeDependentWeighting))
+			throw new IllegalArgumentException("Weighting " + weighting.getName() + " is not time dependent.");
+
+		_tdWeighting = (TimeDependentWeighting) weighting;
+		_departureTime = departureTime;
+	}
+
+	@Override
+	public Path calcPath(int from, int to) {
+		checkAlreadyRun();
+		_to = to;
+		currEdge = new TDSPTEntry(EdgeIterator.NO_EDGE, from, 0, 0);
+		if (!traversalMode.isEdgeBased()) {
+			fromMap.put(from, currEdge);
+		}
+		runAlgo();
+		return extractPath();
+	}
+
+	@Override
+	protected void runAlgo() {
+		EdgeExplorer explorer = outEdgeExplorer;
+		while (true) {
+			_visitedNodes++;
+			if (isMaxVisitedNodesExceeded() || finished())
+				break;
+
+			int startNode = currEdge.adjNode;
+			long time = ((TDSPTEntry) currEdge).time;
+			EdgeIterator iter = explorer.setBaseNode(startNode);
+			while (iter.next()) {
+				if (!accept(iter, currEdge.edge))
+					continue;
+
+				int traversalId = traversalMode.createTraversalId(iter, false);
+				double tmpWeight = _tdWeighting.calcWeight(iter, false, currEdge.edge, _departureTime + time) + currEdge.weight;
+				if (Double.isInfinite(tmpWeight))
+					continue;
+
+				TDSPTEntry nEdge = (TDSPTEntry) fromMap.get(traversalId);
+				if (nEdge == null) {
+					nEdge = new TDSPTEntry(iter.getEdge(), iter.getAdjNode(), tmpWeight, time + _tdWeighting.calcMillis(iter, false, currEdge.edge, _departureTime + time));
+					nEdge.parent = currEdge;
+					fromMap.put(traversalId, nEdge);
+					fromHeap.add(nEdge);
+				} else if (nEdge.weight > tmpWeight) {
+					fromHeap.remove(nEdge);
+					nEdge.edge = iter.getEdge();
+					nEdge.weight = tmpWeight;
+					nEdge.time = time + _tdWeighting.calcMillis(iter, false, currEdge.edge, _departureTime + time);
+					nEdge.parent = currEdge;
+					fromHeap.add(nEdge);
+				}
+			}
+
+			if (fromHeap.isEmpty())
+				break;
+
+			currEdge = fromHeap.poll();
+			if (currEdge == null)
+				throw new AssertionError("Empty edge cannot happen");
+		}
+	}
+
+	@Override
+	protected boolean finished() {
+		return currEdge.adjNode == _to;
+	}
+
+	@Override
+	protected Path extractPath() {
+		if (currEdge == null || !finished())
+			return createEmptyPath();
+
+		return new TDPath(graph, weighting, ((TDSPTEntry) currEdge).time).setWeight(currEdge.weight).setSPTEntry(currEdge).extract();
+	}
+
+	@Override
+	public int getVisitedNodes() {
+		return _visitedNodes;
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	private static class TDSPTEntry extends SPTEntry {
+		// travel time in milliseconds from the departure to the adjacent node
+		long time;
+
+		TDSPTEntry(int edgeId, int adjNode, double weight, long time) {
+			super(edgeId, adjNode, weight);
+			this.time = time;
+		}
+	}
+
+	private static class TDPath extends Path {
+		private final long _arrivalTime;
+
+		TDPath(Graph graph, Weighting weighting, long arrivalTime) {
+			super(graph, weighting);
+			_arrivalTime = arrivalTime;
+		}
+
+		@Override
+		public Path extract() {
+			super.extract();
+			// the sum of the static edge times does not apply when departing at a certain time
+			time = _arrivalTime;
+			return this;
+		}
+	}
+}
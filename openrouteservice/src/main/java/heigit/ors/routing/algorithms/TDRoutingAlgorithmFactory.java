@@ -0,0 +1,52 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the 
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1 
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library; 
+ *  if not, see <https://www.gnu.org/licenses/>.  
+ */
+package heigit.ors.routing.algorithms;
+
+import com.graphhopper.routing.AlgorithmOptions;
+import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.RoutingAlgorithmFactory;
+import com.graphhopper.storage.Graph;
+import heigit.ors.routing.graphhopper.extensions.weighting.TimeDependentWeighting;
+
+/**
+ * Creates {@link TDDijkstra} instances for requests with the algorithm <code>td_dijkstra</code> and the hint
+ * <code>departure</code>, all other requests are passed to the wrapped factory. The weighting of such a request has
+ * to be time dependent itself, a weighting which wraps a time dependent one would ignore the departure.
+ */
+public class TDRoutingAlgorithmFactory implements RoutingAlgorithmFactory {
+	public static final String DEPARTURE = "departure";
+
+	private final RoutingAlgorithmFactory _defaultFactory;
+
+	public TDRoutingAlgorithmFactory(RoutingAlgorithmFactory defaultFactory) {
+		_defaultFactory = defaultFactory;
+	}
+
+	@Override
+	public RoutingAlgorithm createAlgo(Graph g, AlgorithmOptions opts) {
+		if (!TDDijkstra.NAME.equalsIgnoreCase(opts.getAlgorithm()))
+			return _defaultFactory.createAlgo(g, opts);
+
+		if (!(opts.getWeighting() instanceof TimeDependentWeighting))
+			throw new IllegalArgumentException("Algorithm " + TDDijkstra.NAME + " requires a time dependent weighting, got " + opts.getWeighting().getName() + ".");
+
+		long departure = opts.getHints().getLong(DEPARTURE, -1);
+		if (departure < 0)
+			throw new IllegalArgumentException("Algorithm " + TDDijkstra.NAME + " requires a departure time.");
+
+		TDDijkstra algo = new TDDijkstra(g, opts.getWeighting(), opts.getTraversalMode(), departure);
+		algo.setMaxVisitedNodes(opts.getMaxVisitedNodes());
+		return algo;
+	}
+}
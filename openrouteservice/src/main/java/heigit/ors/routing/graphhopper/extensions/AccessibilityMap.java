@@ -13,31 +13,53 @@
  */
 package heigit.ors.routing.graphhopper.extensions;
 
-import com.carrotsearch.hppc.IntObjectMap;
-import com.graphhopper.storage.SPTEntry;
+import heigit.ors.routing.algorithms.DijkstraSearchState;
 
+/**
+ * Shortest path tree of an isochrone search. Nodes are addressed by their index in the order they were reached, tree
+ * entries by node id. The map is a view of the search state and must not be used once the state has been reused.
+ */
 public class AccessibilityMap {
-	private IntObjectMap<SPTEntry> map;
-	private SPTEntry edgeEntry;
+	private DijkstraSearchState state;
 	
-	public AccessibilityMap(IntObjectMap<SPTEntry> map, SPTEntry edgeEntry)
+	public AccessibilityMap(DijkstraSearchState state)
 	{
-		this.map = map;
-		this.edgeEntry = edgeEntry;
+		this.state = state;
 	}
 	
 	public boolean isEmpty()
 	{
-		return map.size() == 0;
+		return state.getReachedCount() == 0;
+	}
+	
+	public int size()
+	{
+		return state.getReachedCount();
+	}
+	
+	public int getNode(int index)
+	{
+		return state.getReachedNode(index);
+	}
+	
+	/**
+	 * @return the edge leading from the parent to the node, or -1 for the start node
+	 */
+	public int getEdge(int node)
+	{
+		return state.getEdge(node);
 	}
 	
-	public IntObjectMap<SPTEntry> getMap()
+	/**
+	 * @return the parent node, or -1 for the start node
+	 */
+	public int getParent(int node)
 	{
-		return map;
+		return state.getParent(node);
 	}
 	
-	public SPTEntry getEdgeEntry()
+	public double getWeight(int node)
 	{
-		return edgeEntry;
+		return state.getWeight(node);
 	}
 }
@@ -20,22 +20,18 @@
  */
 package heigit.ors.routing.graphhopper.extensions;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 
+import com.graphhopper.routing.RoutingAlgorithmFactory;
 import com.graphhopper.routing.subnetwork.PrepareRoutingSubnetworks;
 import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.HintsMap;
 import com.graphhopper.util.CmdArgs;
 import heigit.ors.mapmatching.RouteSegmentInfo;
 import heigit.ors.routing.RoutingProfile;
+import heigit.ors.routing.algorithms.TDRoutingAlgorithmFactory;
+import heigit.ors.routing.graphhopper.extensions.util.OsmWayEdgesIndex;
 
 import com.graphhopper.GHRequest;
 import com.graphhopper.GHResponse;
@@ -57,8 +53,11 @@ public class ORSGraphHopper extends GraphHopper {
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
     private GraphProcessContext _procCntx;
-    private HashMap<Long, ArrayList<Integer>> osmId2EdgeIds; // one osm id can correspond to multiple edges
-    private HashMap<Integer, Long> tmcEdges;
+    private boolean _useTmc;
+    // one osm id can correspond to multiple edges
+    private OsmWayEdgesIndex _wayEdgesIndex;
+    // filled by the reader while a graph is imported
+    private OsmWayEdgesIndex _importedWayEdgesIndex;
 
     // A route profile for referencing which is used to extract names of adjacent streets and other objects.
     private RoutingProfile refRouteProfile;
@@ -68,15 +67,15 @@ public class ORSGraphHopper extends GraphHopper {
         this.refRouteProfile = refProfile;
         this.forDesktop();
 
-        if (useTmc) {
-            tmcEdges = new HashMap<Integer, Long>();
-            osmId2EdgeIds = new HashMap<Long, ArrayList<Integer>>();
-        }
+        _useTmc = useTmc;
         _procCntx.init(this);
     }
 
     protected DataReader createReader(GraphHopperStorage tmpGraph) {
-        return initDataReader(new ORSOSMReader(tmpGraph, _procCntx, tmcEdges, osmId2EdgeIds, refRouteProfile));
+        if (_useTmc)
+            _importedWayEdgesIndex = new OsmWayEdgesIndex(tmpGraph.getDirectory()).create(1000);
+
+        return initDataReader(new ORSOSMReader(tmpGraph, _procCntx, _importedWayEdgesIndex, refRouteProfile));
     }
 
     public boolean load(String graphHopperFolder) {
@@ -90,48 +89,21 @@ public class ORSGraphHopper extends GraphHopper {
         super.flush();
     }
 
-    @SuppressWarnings("unchecked")
     public GraphHopper importOrLoad() {
         GraphHopper gh = super.importOrLoad();
 
-
-        if ((tmcEdges != null) && (osmId2EdgeIds != null)) {
-            java.nio.file.Path path = Paths.get(gh.getGraphHopperLocation(), "edges_ors_traffic");
-
-            if ((tmcEdges.size() == 0) || (osmId2EdgeIds.size() == 0)) {
-                // try to load TMC edges from file.
-
-                try {
-                    File file = path.toFile();
-
-                    if (file.exists()) {
-                        FileInputStream fis = new FileInputStream(path.toString());
-                        ObjectInputStream ois = new ObjectInputStream(fis);
-                        tmcEdges = (HashMap<Integer, Long>) ois.readObject();
-                        osmId2EdgeIds = (HashMap<Long, ArrayList<Integer>>) ois.readObject();
-                        ois.close();
-                        fis.close();
-                        System.out.printf("Serialized HashMap data is saved in trafficEdges");
-                    }
-                } catch (IOException ioe) {
-                    ioe.printStackTrace();
-                } catch (ClassNotFoundException c) {
-                    System.out.println("Class not found");
-                    c.printStackTrace();
-                }
+        if (_useTmc) {
+            if (_importedWayEdgesIndex != null) {
+                _importedWayEdgesIndex.build();
+                _importedWayEdgesIndex.flush();
+                _wayEdgesIndex = _importedWayEdgesIndex;
+                _importedWayEdgesIndex = null;
             } else {
-                // save TMC edges if needed.
-                try {
-                    FileOutputStream fos = new FileOutputStream(path.toString());
-                    ObjectOutputStream oos = new ObjectOutputStream(fos);
-                    oos.writeObject(tmcEdges);
-                    oos.writeObject(osmId2EdgeIds);
-                    oos.close();
-                    fos.close();
-                    System.out.printf("Serialized HashMap data is saved in trafficEdges");
-                } catch (IOException ioe) {
-                    ioe.printStackTrace();
-                }
+                OsmWayEdgesIndex index = new OsmWayEdgesIndex(gh.getGraphHopperStorage().getDirectory());
+                if (index.loadExisting())
+                    _wayEdgesIndex = index;
+                else
+                    logger.warn("No TMC way edges found in '" + gh.getGraphHopperLocation() + "', the graph needs to be rebuilt.");
             }
         }
 
@@ -234,11 +206,16 @@ public class ORSGraphHopper extends GraphHopper {
     }
 
 
-    public HashMap<Integer, Long> getTmcGraphEdges() {
-        return tmcEdges;
+    @Override
+    public RoutingAlgorithmFactory getAlgorithmFactory(HintsMap map) {
+        return new TDRoutingAlgorithmFactory(super.getAlgorithmFactory(map));
     }
 
-    public HashMap<Long, ArrayList<Integer>> getOsmId2EdgeIds() {
-        return osmId2EdgeIds;
+    /**
+     * @return the mapping between edges and OSM ways of the road types used by TMC or <code>null</code> if the graph
+     * does not use traffic information
+     */
+    public OsmWayEdgesIndex getWayEdgesIndex() {
+        return _wayEdgesIndex;
     }
 }
\ No newline at end of file
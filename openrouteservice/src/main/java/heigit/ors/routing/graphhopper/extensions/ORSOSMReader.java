@@ -27,6 +27,7 @@ import heigit.ors.routing.graphhopper.extensions.reader.osmfeatureprocessors.Whe
 import heigit.ors.routing.graphhopper.extensions.storages.builders.BordersGraphStorageBuilder;
 import heigit.ors.routing.graphhopper.extensions.storages.builders.GraphStorageBuilder;
 import heigit.ors.routing.graphhopper.extensions.storages.builders.WheelchairGraphStorageBuilder;
+import heigit.ors.routing.graphhopper.extensions.util.OsmWayEdgesIndex;
 import org.apache.log4j.Logger;
 
 import java.io.InvalidObjectException;
@@ -39,8 +40,7 @@ public class ORSOSMReader extends OSMReader {
 	private static Logger LOGGER = Logger.getLogger(ORSOSMReader.class.getName());
 
 	private GraphProcessContext _procCntx;
-	private HashMap<Integer, Long> tmcEdges;
-	private HashMap<Long, ArrayList<Integer>> osmId2EdgeIds;
+	private OsmWayEdgesIndex wayEdgesIndex;
 	private RoutingProfile refProfile;
 	// MARQ24: REMOVED SINCE code that handles 'enrichInstructions = true' is already inactive!
 	//private boolean enrichInstructions;
@@ -60,14 +60,13 @@ public class ORSOSMReader extends OSMReader {
 
 	private HashSet<String> extraTagKeys;
 
-	public ORSOSMReader(GraphHopperStorage storage, GraphProcessContext procCntx, HashMap<Integer, Long> tmcEdges,  HashMap<Long, ArrayList<Integer>> osmId2EdgeIds, RoutingProfile refProfile) {
+	public ORSOSMReader(GraphHopperStorage storage, GraphProcessContext procCntx, OsmWayEdgesIndex wayEdgesIndex, RoutingProfile refProfile) {
 		super(storage);
 
 		setCalcDistance3D(false);
 		this._procCntx = procCntx;
 		this._readerCntx = new OSMDataReaderContext(this);
-		this.tmcEdges = tmcEdges;
-		this.osmId2EdgeIds = osmId2EdgeIds;
+		this.wayEdgesIndex = wayEdgesIndex;
 		this.refProfile = refProfile;
 
 		// MARQ24: REMOVED SINCE code that handles 'enrichInstructions = true' is already inactive!
@@ -368,23 +367,14 @@ public class ORSOSMReader extends OSMReader {
 		// by MARQ24 }
 
 		try {
-			if ((tmcEdges != null) && (osmId2EdgeIds!=null)) {
+			if (wayEdgesIndex != null) {
 				String highwayValue = way.getTag("highway");
 
 				if (!Helper.isEmpty(highwayValue)) {
 
 					for (int i = 0; i < TMC_ROAD_TYPES.length; i++) {
 						if (TMC_ROAD_TYPES[i].equalsIgnoreCase(highwayValue)) {
-							tmcEdges.put(edge.getEdge(), way.getId());
-
-							if (osmId2EdgeIds.containsKey(way.getId())){
-								osmId2EdgeIds.get(way.getId()).add(edge.getEdge());
-
-							} else{								
-								ArrayList<Integer> edgeIds = new ArrayList<Integer>();
-								edgeIds.add(edge.getEdge()); 
-								osmId2EdgeIds.put(way.getId(), edgeIds);		
-							} 							
+							wayEdgesIndex.addEdge(edge.getEdge(), way.getId());
 
 							break;
 						}
@@ -25,9 +25,12 @@ import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.PMap;
 import heigit.ors.routing.ProfileWeighting;
+import heigit.ors.routing.algorithms.TDRoutingAlgorithmFactory;
 import heigit.ors.routing.graphhopper.extensions.flagencoders.deprecated.exghoverwrite.ExGhORSFootFlagEncoder;
+import heigit.ors.routing.graphhopper.extensions.storages.GraphStorageUtils;
+import heigit.ors.routing.graphhopper.extensions.storages.SpeedProfilesGraphStorage;
 import heigit.ors.routing.graphhopper.extensions.weighting.*;
-import heigit.ors.routing.traffic.RealTrafficDataProvider;
+import heigit.ors.routing.traffic.TrafficSnapshot;
 
 import java.io.File;
 import java.nio.file.Path;
@@ -39,12 +42,10 @@ import java.util.Map;
 
 public class ORSWeightingFactory extends DefaultWeightingFactory {
 
-	private RealTrafficDataProvider m_trafficDataProvider;
 	private Map<Object, TurnCostExtension> m_turnCostExtensions;
 
-	public ORSWeightingFactory(RealTrafficDataProvider trafficProvider)
+	public ORSWeightingFactory()
 	{
-		m_trafficDataProvider = trafficProvider;
 		m_turnCostExtensions = new HashMap<Object, TurnCostExtension>();
 	}
 
@@ -61,7 +62,13 @@ public class ORSWeightingFactory extends DefaultWeightingFactory {
 		}
 		else if ("fastest".equalsIgnoreCase(strWeighting)) 
 		{
-			if (encoder.supports(PriorityWeighting.class))
+			SpeedProfilesGraphStorage speedProfiles = null;
+			if (graphStorage != null && hintsMap.has(TDRoutingAlgorithmFactory.DEPARTURE))
+				speedProfiles = GraphStorageUtils.getGraphExtension(graphStorage, SpeedProfilesGraphStorage.class);
+
+			if (speedProfiles != null)
+				result = new TimeDependentFastestWeighting(encoder, hintsMap, speedProfiles);
+			else if (encoder.supports(PriorityWeighting.class))
 				result = new PriorityWeighting(encoder, hintsMap);
 	         else
 	        	 result = new FastestWeighting(encoder, hintsMap);
@@ -89,8 +96,8 @@ public class ORSWeightingFactory extends DefaultWeightingFactory {
 
 		if (hintsMap.getBool("weighting_traffic_block", false))
 		{
-			//String strPref = weighting.substring(weighting.indexOf("-") + 1);
-			result = new TrafficAvoidWeighting(result, encoder, m_trafficDataProvider.getAvoidEdges(graphStorage));
+			// the snapshot of the blocked edges filter, see RoutingProfile.computeRoute
+			result = new TrafficAvoidWeighting(result, encoder, TrafficSnapshot.current());
 		}
 
 		if (encoder.supports(TurnWeighting.class) && !isFootBasedFlagEncoder(encoder) && graphStorage != null && !tMode.equals(TraversalMode.NODE_BASED)) {
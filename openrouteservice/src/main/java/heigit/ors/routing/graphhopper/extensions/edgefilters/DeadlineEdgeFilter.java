@@ -0,0 +1,49 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the 
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1 
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library; 
+ *  if not, see <https://www.gnu.org/licenses/>.  
+ */
+package heigit.ors.routing.graphhopper.extensions.edgefilters;
+
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.util.EdgeIteratorState;
+
+import heigit.ors.common.RequestDeadline;
+
+/**
+ * Passes edges on to another filter and aborts the search once the deadline has passed. It lets searches run inside
+ * GraphHopper respect the deadline of a request, the clock is read only on every 1024th edge.
+ */
+public class DeadlineEdgeFilter implements EdgeFilter {
+	private final EdgeFilter _edgeFilter;
+	private final RequestDeadline _deadline;
+	private int _edgeCount;
+
+	/**
+	 * @param edgeFilter the filter deciding on the edges or null to accept all edges
+	 */
+	public DeadlineEdgeFilter(EdgeFilter edgeFilter, RequestDeadline deadline) {
+		_edgeFilter = edgeFilter;
+		_deadline = deadline;
+	}
+
+	@Override
+	public boolean accept(EdgeIteratorState iter) {
+		_deadline.check(++_edgeCount);
+
+		return _edgeFilter == null || _edgeFilter.accept(iter);
+	}
+
+	@Override
+	public String toString() {
+		return "DeadlineEdgeFilter: " + _edgeFilter;
+	}
+}
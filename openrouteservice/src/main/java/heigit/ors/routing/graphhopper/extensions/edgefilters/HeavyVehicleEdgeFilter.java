@@ -32,6 +32,7 @@ import heigit.ors.routing.graphhopper.extensions.VehicleDimensionRestrictions;
 import heigit.ors.routing.graphhopper.extensions.VehicleLoadCharacteristicsFlags;
 import heigit.ors.routing.graphhopper.extensions.storages.GraphStorageUtils;
 import heigit.ors.routing.graphhopper.extensions.storages.HeavyVehicleAttributesGraphStorage;
+import heigit.ors.routing.graphhopper.extensions.storages.HeavyVehicleRestrictionMasks;
 import heigit.ors.routing.parameters.VehicleParameters;
 
 import java.util.ArrayList;
@@ -62,6 +63,8 @@ public class HeavyVehicleEdgeFilter implements DestinationDependentEdgeFilter {
 	private Integer[] indexValues;
 	private Integer[] indexLocs;
 	private int restCount;
+	private long[] restrictionMask;
+	private int restrictionMaskSize;
 	private int mode = MODE_CLOSEST_EDGE;
 	private	List<Integer> destinationEdges;
 	private byte[] buffer;
@@ -107,6 +110,13 @@ public class HeavyVehicleEdgeFilter implements DestinationDependentEdgeFilter {
 		this.buffer = new byte[10];
 
 		this.gsHeavyVehicles = GraphStorageUtils.getGraphExtension(graphStorage, HeavyVehicleAttributesGraphStorage.class);
+
+		if (restCount != 0 && gsHeavyVehicles != null)
+		{
+			this.restrictionMask = gsHeavyVehicles.getRestrictionMasks().getMask(vehicleAttrs);
+			if (restrictionMask != null)
+				this.restrictionMaskSize = restrictionMask.length << 6;
+		}
 	}
 
 	public void setDestinationEdge(EdgeIteratorState edge, Graph graph, FlagEncoder encoder, TraversalMode tMode)
@@ -248,7 +258,9 @@ public class HeavyVehicleEdgeFilter implements DestinationDependentEdgeFilter {
 		}
 
 		if (restCount != 0) {
-			if (restCount == 1) {
+			if (edgeId < restrictionMaskSize) {
+				return HeavyVehicleRestrictionMasks.isPassable(restrictionMask, edgeId);
+			} else if (restCount == 1) {
 				double value = gsHeavyVehicles.getEdgeRestrictionValue(edgeId, indexValues[0], buffer);
 				if (value > 0 && value < restrictionValues[indexLocs[0]])
 					return false;
@@ -21,14 +21,18 @@
 package heigit.ors.routing.graphhopper.extensions.reader.borders;
 
 import com.vividsolutions.jts.geom.*;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
 import org.apache.log4j.Logger;
 
 import java.io.InvalidObjectException;
 
 public class CountryBordersPolygon {
     private static final Logger LOGGER = Logger.getLogger(CountryBordersPolygon.class);
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
     private String name;
     private MultiPolygon boundary;
+    private PreparedGeometry preparedBoundary;
     private Geometry boundaryLine;
     private double area = 0;
     private long hierarchyId;
@@ -56,6 +60,11 @@ public class CountryBordersPolygon {
         }
         this.boundaryLine = boundary.getBoundary();
         this.area = this.boundary.getArea();
+        this.preparedBoundary = PreparedGeometryFactory.prepare(this.boundary);
+        // The point-in-polygon index of the prepared geometry is created lazily on the first test. Trigger this here
+        // so that later lookups from several threads only read the index.
+        if(!this.boundary.isEmpty())
+            this.preparedBoundary.contains(GEOMETRY_FACTORY.createPoint(this.boundary.getCoordinate()));
         // calculate lat and lon values
         Geometry bbox = boundary.getEnvelope();
         for(Coordinate c : bbox.getCoordinates()) {
@@ -98,9 +107,7 @@ public class CountryBordersPolygon {
 
     public boolean inArea(Coordinate c) {
         if(!Double.isNaN(c.x) && !Double.isNaN(c.y) && inBbox(c)) {
-            GeometryFactory gf = new GeometryFactory();
-
-            return boundary.contains(gf.createPoint(c));
+            return preparedBoundary.contains(GEOMETRY_FACTORY.createPoint(c));
         }
 
         return false;
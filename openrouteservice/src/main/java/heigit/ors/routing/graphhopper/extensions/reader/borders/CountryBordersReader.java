@@ -21,8 +21,10 @@
 package heigit.ors.routing.graphhopper.extensions.reader.borders;
 
 import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.index.strtree.STRtree;
 import heigit.ors.geojson.GeometryJSON;
 import heigit.ors.util.CSVUtility;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
@@ -53,6 +55,12 @@ public class CountryBordersReader {
 
     private HashMap<Long, CountryBordersHierarchy> hierarchies = new HashMap<>();
 
+    // Half size (in degrees) of the area around a looked up coordinate for which the candidates are cached
+    private static final double CACHE_CELL_SIZE = 0.5;
+
+    private volatile STRtree polygonIndex;
+    private final ThreadLocal<CandidateCell> lastCandidates = new ThreadLocal<>();
+
     /**
      * Empty constructor which does not read any data - the user must explicitly pass information
      */
@@ -100,6 +108,7 @@ public class CountryBordersReader {
     public void addHierarchy(Long id, CountryBordersHierarchy hierarchy) {
         if(!hierarchies.containsKey(id)) {
             hierarchies.put(id, hierarchy);
+            polygonIndex = null;
         }
     }
 
@@ -259,9 +268,44 @@ public class CountryBordersReader {
             }
         }
 
+        polygonIndex = null;
+
         LOGGER.info(objectCount + " countries read in " + hierarchyCount + " hiearchies");
     }
 
+    /**
+     * Get the spatial index of all country polygons, building it if the hierarchies have changed since the last
+     * lookup. The items of the index are IndexedPolygon objects which keep the order in which the polygons would be
+     * found when iterating over the hierarchies so that lookups always return the polygons in the same order.
+     *
+     * @return      The STRtree containing all country polygons
+     */
+    private STRtree getPolygonIndex() {
+        STRtree index = polygonIndex;
+        if(index == null) {
+            synchronized (this) {
+                index = polygonIndex;
+                if(index == null) {
+                    index = new STRtree();
+                    int order = 0;
+                    for(CountryBordersHierarchy h : hierarchies.values()) {
+                        for(CountryBordersPolygon cp : h.getPolygons()) {
+                            double[] bb = cp.getBBox();
+                            if(bb[0] > bb[1] || bb[2] > bb[3])
+                                continue;
+                            index.insert(new Envelope(bb[0], bb[1], bb[2], bb[3]), new IndexedPolygon(cp, h, order++));
+                        }
+                    }
+                    // Build explicitly so that concurrent queries only read the tree
+                    index.build();
+                    polygonIndex = index;
+                }
+            }
+        }
+
+        return index;
+    }
+
     /**
      * Method for getting a list of country objects that the given point can be found within. This could be more than
      * one if the point is found in overlapping regions.
@@ -270,19 +314,11 @@ public class CountryBordersReader {
      * @return      An array of CountryBorderPolygons that the point is within the geometry of.
      */
     public CountryBordersPolygon[] getCountry(Coordinate c) {
-        ArrayList<CountryBordersPolygon> countries = new ArrayList<>();
-        Iterator it = hierarchies.entrySet().iterator();
-        while(it.hasNext()) {
-            Map.Entry<Long, CountryBordersHierarchy> pair = (Map.Entry)it.next();
-            CountryBordersHierarchy h =  pair.getValue();
-            if(h.inBbox(c)) {
-                // Now need to check the countries
-                ArrayList<CountryBordersPolygon> ps = h.getPolygons();
-                for(CountryBordersPolygon cp : ps) {
-                    if(cp.inBbox(c) && cp.inArea(c)) {
-                        countries.add(cp);
-                    }
-                }
+        CountryBordersPolygon[] candidates = getCandidateCountry(c);
+        ArrayList<CountryBordersPolygon> countries = new ArrayList<>(candidates.length);
+        for(CountryBordersPolygon cp : candidates) {
+            if(cp.inArea(c)) {
+                countries.add(cp);
             }
         }
 
@@ -295,27 +331,90 @@ public class CountryBordersReader {
      * returned may not actually surround the point. The method should be used to get a quick approximation as to
      * whether the country is a candidate for containing the point.
      *
+     * As the method is called for consecutive coordinates of ways, the result is cached per thread together with the
+     * rectangle around the coordinate in which the set of candidates stays the same.
+     *
      * @param c     The point that you want to know which country is in
      * @return      An array of CountryBorderPolygons that the point is within the geometry of.
      */
     public CountryBordersPolygon[] getCandidateCountry(Coordinate c) {
-        ArrayList<CountryBordersPolygon> countries = new ArrayList<>();
-        Iterator it = hierarchies.entrySet().iterator();
-        while(it.hasNext()) {
-            Map.Entry<Long, CountryBordersHierarchy> pair = (Map.Entry)it.next();
-            CountryBordersHierarchy h =  pair.getValue();
-            if(h.inBbox(c)) {
-                // Now need to check the countries
-                ArrayList<CountryBordersPolygon> ps = h.getPolygons();
-                for(CountryBordersPolygon cp : ps) {
-                    if(cp.inBbox(c)) {
-                        countries.add(cp);
-                    }
-                }
+        if(Double.isNaN(c.x) || Double.isNaN(c.y))
+            return new CountryBordersPolygon[0];
+
+        STRtree index = getPolygonIndex();
+
+        CandidateCell cell = lastCandidates.get();
+        if(cell != null && cell.index == index && cell.contains(c))
+            return cell.candidates.clone();
+
+        ArrayList<IndexedPolygon> found = new ArrayList<>();
+        for(Object item : index.query(new Envelope(c))) {
+            IndexedPolygon ip = (IndexedPolygon) item;
+            if(ip.hierarchy.inBbox(c) && ip.polygon.inBbox(c)) {
+                found.add(ip);
             }
         }
+        Collections.sort(found);
 
-        return countries.toArray(new CountryBordersPolygon[countries.size()]);
+        CountryBordersPolygon[] countries = new CountryBordersPolygon[found.size()];
+        for(int i = 0; i < countries.length; i++)
+            countries[i] = found.get(i).polygon;
+
+        lastCandidates.set(createCandidateCell(index, c, found, countries));
+
+        return countries.clone();
+    }
+
+    /**
+     * Compute the largest (open) rectangle around the coordinate in which any point would get exactly the same
+     * candidates as the coordinate itself. Starting from a fixed size cell, the rectangle is clipped to the extents
+     * of the candidates and then cut so that it does not reach into the extents of any other polygon.
+     *
+     * @return      The cell, or null if no such rectangle can be built around the coordinate
+     */
+    private CandidateCell createCandidateCell(STRtree index, Coordinate c, List<IndexedPolygon> found, CountryBordersPolygon[] countries) {
+        double minX = c.x - CACHE_CELL_SIZE, maxX = c.x + CACHE_CELL_SIZE;
+        double minY = c.y - CACHE_CELL_SIZE, maxY = c.y + CACHE_CELL_SIZE;
+
+        for(IndexedPolygon ip : found) {
+            double[] pbb = ip.polygon.getBBox();
+            double[] hbb = ip.hierarchy.getBBox();
+            minX = Math.max(minX, Math.max(pbb[0], hbb[0]));
+            maxX = Math.min(maxX, Math.min(pbb[1], hbb[1]));
+            minY = Math.max(minY, Math.max(pbb[2], hbb[2]));
+            maxY = Math.min(maxY, Math.min(pbb[3], hbb[3]));
+        }
+
+        for(Object item : index.query(new Envelope(minX, maxX, minY, maxY))) {
+            IndexedPolygon ip = (IndexedPolygon) item;
+            if(found.contains(ip))
+                continue;
+
+            double[] bb = ip.polygon.getBBox();
+            // Choose the cut that keeps the largest part of the cell
+            double bestArea = -1;
+            int bestCut = -1;
+            if(c.x < bb[0] && (bb[0] - minX) * (maxY - minY) > bestArea) { bestArea = (bb[0] - minX) * (maxY - minY); bestCut = 0; }
+            if(c.x > bb[1] && (maxX - bb[1]) * (maxY - minY) > bestArea) { bestArea = (maxX - bb[1]) * (maxY - minY); bestCut = 1; }
+            if(c.y < bb[2] && (maxX - minX) * (bb[2] - minY) > bestArea) { bestArea = (maxX - minX) * (bb[2] - minY); bestCut = 2; }
+            if(c.y > bb[3] && (maxX - minX) * (maxY - bb[3]) > bestArea) { bestCut = 3; }
+
+            switch (bestCut) {
+                case 0: maxX = Math.min(maxX, bb[0]); break;
+                case 1: minX = Math.max(minX, bb[1]); break;
+                case 2: maxY = Math.min(maxY, bb[2]); break;
+                case 3: minY = Math.max(minY, bb[3]); break;
+                default:
+                    // The coordinate is inside the extent of the polygon but on the edge of its hierarchy, so there
+                    // is no rectangle around it with the same candidates
+                    return null;
+            }
+        }
+
+        if(!(minX < c.x && c.x < maxX && minY < c.y && c.y < maxY))
+            return null;
+
+        return new CandidateCell(index, minX, maxX, minY, maxY, countries);
     }
 
     /**
@@ -402,6 +501,48 @@ public class CountryBordersReader {
         }
     }
 
+    /**
+     * Item of the spatial index holding a polygon, the hierarchy it belongs to and its position in the hierarchies.
+     */
+    private static class IndexedPolygon implements Comparable<IndexedPolygon> {
+        final CountryBordersPolygon polygon;
+        final CountryBordersHierarchy hierarchy;
+        final int order;
+
+        IndexedPolygon(CountryBordersPolygon polygon, CountryBordersHierarchy hierarchy, int order) {
+            this.polygon = polygon;
+            this.hierarchy = hierarchy;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(IndexedPolygon other) {
+            return Integer.compare(order, other.order);
+        }
+    }
+
+    /**
+     * Open rectangle in which all coordinates have the same candidate countries.
+     */
+    private static class CandidateCell {
+        final STRtree index;
+        final double minX, maxX, minY, maxY;
+        final CountryBordersPolygon[] candidates;
+
+        CandidateCell(STRtree index, double minX, double maxX, double minY, double maxY, CountryBordersPolygon[] candidates) {
+            this.index = index;
+            this.minX = minX;
+            this.maxX = maxX;
+            this.minY = minY;
+            this.maxY = maxY;
+            this.candidates = candidates;
+        }
+
+        boolean contains(Coordinate c) {
+            return minX < c.x && c.x < maxX && minY < c.y && c.y < maxY;
+        }
+    }
+
     /**
      * Holder class for storing information about a country read from the ids csv.
      */
@@ -0,0 +1,219 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.routing.graphhopper.extensions.storages;
+
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphExtension;
+import com.graphhopper.storage.RAMDirectory;
+
+/**
+ * Stores the bearings of the first and the last segment of each edge so that turn angles between two edges can be
+ * computed without fetching their geometries. Both bearings refer to the direction from the start node stored with them
+ * and are quantized to one byte each (about 1.4 degrees). Loops have no entry as their direction cannot be told from
+ * the node they are entered at.
+ */
+public class EdgeBearingsGraphStorage implements GraphExtension {
+	/* pointer for no entry */
+	protected final int NO_ENTRY = -1;
+	private final int EF_START_NODE, EF_START_BEARING, EF_END_BEARING;
+
+	protected DataAccess orsEdges;
+	protected int edgeEntryIndex = 0;
+	protected int edgeEntryBytes;
+	protected int edgesCount; // number of edges with custom values
+
+	private byte[] byteValues;
+
+	public EdgeBearingsGraphStorage() {
+		EF_START_NODE = 0;
+		EF_START_BEARING = 4;
+		EF_END_BEARING = 5;
+
+		edgeEntryBytes = edgeEntryIndex + 6;
+		edgesCount = 0;
+		byteValues = new byte[2];
+	}
+
+	public void init(Graph graph, Directory dir) {
+		if (edgesCount > 0)
+			throw new AssertionError("The ORS storage must be initialized only once.");
+
+		this.orsEdges = dir.find("ext_bearings");
+	}
+
+	/**
+	 * initializes the extended storage to be empty - required for testing purposes as the ext_storage aren't created
+	 * at the time tests are run
+	 */
+	public void init() {
+		if (edgesCount > 0)
+			throw new AssertionError("The ORS storage must be initialized only once.");
+		Directory d = new RAMDirectory();
+		this.orsEdges = d.find("");
+	}
+
+	public void setSegmentSize(int bytes) {
+		orsEdges.setSegmentSize(bytes);
+	}
+
+	public GraphExtension create(long initBytes) {
+		orsEdges.create(initBytes * edgeEntryBytes);
+		return this;
+	}
+
+	public void flush() {
+		orsEdges.setHeader(0, edgeEntryBytes);
+		orsEdges.setHeader(1 * 4, edgesCount);
+		orsEdges.flush();
+	}
+
+	public void close() {
+		orsEdges.close();
+	}
+
+	public long getCapacity() {
+		return orsEdges.getCapacity();
+	}
+
+	public int entries() {
+		return edgesCount;
+	}
+
+	public boolean loadExisting() {
+		if (!orsEdges.loadExisting())
+			throw new IllegalStateException("Unable to load storage 'ext_bearings'. corrupt file or directory? ");
+
+		edgeEntryBytes = orsEdges.getHeader(0);
+		edgesCount = orsEdges.getHeader(4);
+		return true;
+	}
+
+	void ensureEdgesIndex(int edgeIndex) {
+		orsEdges.ensureCapacity(((long) edgeIndex + 1) * edgeEntryBytes);
+	}
+
+	/**
+	 * Set the bearings of an edge which is not a loop.
+	 *
+	 * @param edgeId		The internal id of the edge in the graph
+	 * @param startNode		The node the edge is travelled from in the direction of the bearings
+	 * @param startBearing	Bearing (degrees) of the first segment, leaving the start node
+	 * @param endBearing	Bearing (degrees) of the last segment, arriving at the other node
+	 */
+	public void setEdgeValue(int edgeId, int startNode, double startBearing, double endBearing) {
+		edgesCount++;
+		ensureEdgesIndex(edgeId);
+
+		long edgePointer = (long) edgeId * edgeEntryBytes;
+		// 0 is left for edges without an entry
+		orsEdges.setInt(edgePointer + EF_START_NODE, startNode + 1);
+		byteValues[0] = encodeBearing(startBearing);
+		byteValues[1] = encodeBearing(endBearing);
+		orsEdges.setBytes(edgePointer + EF_START_BEARING, byteValues, 2);
+	}
+
+	/**
+	 * Get the bearing in which an edge is left when travelling from <code>fromNode</code> to its other node.
+	 *
+	 * @return the bearing in degrees or NaN if the edge has no entry
+	 */
+	public double getLeavingBearing(int edgeId, int fromNode, byte[] buffer) {
+		long edgePointer = (long) edgeId * edgeEntryBytes;
+		int startNode = getStartNode(edgePointer);
+		if (startNode == NO_ENTRY)
+			return Double.NaN;
+
+		if (fromNode == startNode) {
+			orsEdges.getBytes(edgePointer + EF_START_BEARING, buffer, 1);
+			return decodeBearing(buffer[0]);
+		} else {
+			orsEdges.getBytes(edgePointer + EF_END_BEARING, buffer, 1);
+			return reverseBearing(decodeBearing(buffer[0]));
+		}
+	}
+
+	/**
+	 * Get the bearing in which <code>toNode</code> is reached when travelling to it from the other node of an edge.
+	 *
+	 * @return the bearing in degrees or NaN if the edge has no entry
+	 */
+	public double getArrivingBearing(int edgeId, int toNode, byte[] buffer) {
+		long edgePointer = (long) edgeId * edgeEntryBytes;
+		int startNode = getStartNode(edgePointer);
+		if (startNode == NO_ENTRY)
+			return Double.NaN;
+
+		if (toNode != startNode) {
+			orsEdges.getBytes(edgePointer + EF_END_BEARING, buffer, 1);
+			return decodeBearing(buffer[0]);
+		} else {
+			orsEdges.getBytes(edgePointer + EF_START_BEARING, buffer, 1);
+			return reverseBearing(decodeBearing(buffer[0]));
+		}
+	}
+
+	private int getStartNode(long edgePointer) {
+		if (edgePointer + edgeEntryBytes > orsEdges.getCapacity())
+			return NO_ENTRY;
+		return orsEdges.getInt(edgePointer + EF_START_NODE) - 1;
+	}
+
+	private static byte encodeBearing(double bearing) {
+		return (byte) Math.round(bearing * 256.0 / 360.0);
+	}
+
+	private static double decodeBearing(byte value) {
+		return (value & 0xFF) * 360.0 / 256.0;
+	}
+
+	private static double reverseBearing(double bearing) {
+		return bearing >= 180 ? bearing - 180 : bearing + 180;
+	}
+
+	public boolean isRequireNodeField() {
+		return false;
+	}
+
+	public boolean isRequireEdgeField() {
+		return true;
+	}
+
+	public int getDefaultNodeFieldValue() {
+		return -1;
+	}
+
+	public int getDefaultEdgeFieldValue() {
+		return -1;
+	}
+
+	public GraphExtension copyTo(GraphExtension clonedStorage) {
+		if (!(clonedStorage instanceof EdgeBearingsGraphStorage)) {
+			throw new IllegalStateException("the extended storage to clone must be the same");
+		}
+
+		EdgeBearingsGraphStorage clonedTC = (EdgeBearingsGraphStorage) clonedStorage;
+
+		orsEdges.copyTo(clonedTC.orsEdges);
+		clonedTC.edgesCount = edgesCount;
+
+		return clonedStorage;
+	}
+
+	@Override
+	public boolean isClosed() {
+		return false;
+	}
+}
@@ -30,6 +30,7 @@ public class HeavyVehicleAttributesGraphStorage implements GraphExtension {
 	private byte[] byteValues;
 
 	private int attrTypes;
+	private volatile HeavyVehicleRestrictionMasks restrictionMasks;
 
 	public HeavyVehicleAttributesGraphStorage(boolean includeRestrictions) 
 	{
@@ -80,6 +81,8 @@ public class HeavyVehicleAttributesGraphStorage implements GraphExtension {
 	}
 
 	public void close() {
+		if (restrictionMasks != null)
+			restrictionMasks.clear();
 		orsEdges.close();
 	}
 
@@ -105,6 +108,9 @@ public class HeavyVehicleAttributesGraphStorage implements GraphExtension {
 	}
 
 	public void setEdgeValue(int edgeId, int vehicleType, int heavyVehicleDestination, double[] restrictionValues) {
+		if (restrictionMasks != null)
+			restrictionMasks.clear();
+
 		edgesCount++;
 		ensureEdgesIndex(edgeId);
 
@@ -176,6 +182,30 @@ public class HeavyVehicleAttributesGraphStorage implements GraphExtension {
 		return true;
 	}
 
+	/**
+	 * @return the number of edge entries the storage has room for, edges with higher ids have no attributes
+	 */
+	public int getEdgesCapacity() {
+		return (int) (orsEdges.getCapacity() / edgeEntryBytes);
+	}
+
+	/**
+	 * @return the cache of precomputed dimension restriction masks of this storage
+	 */
+	public HeavyVehicleRestrictionMasks getRestrictionMasks() {
+		HeavyVehicleRestrictionMasks masks = restrictionMasks;
+		if (masks == null) {
+			synchronized (this) {
+				masks = restrictionMasks;
+				if (masks == null) {
+					masks = new HeavyVehicleRestrictionMasks(this);
+					restrictionMasks = masks;
+				}
+			}
+		}
+		return masks;
+	}
+
 	public int getEdgeVehicleType(int edgeId, byte[] buffer) {
 		long edgeBase = (long) edgeId * edgeEntryBytes;
 		orsEdges.getBytes(edgeBase + EF_VEHICLETYPE, buffer, 2);
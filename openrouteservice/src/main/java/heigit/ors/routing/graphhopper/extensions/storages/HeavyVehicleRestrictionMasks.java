@@ -0,0 +1,129 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.routing.graphhopper.extensions.storages;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import heigit.ors.routing.graphhopper.extensions.VehicleDimensionRestrictions;
+
+/**
+ * Cache of precomputed passability masks for the dimension restrictions (height, weight, width, length and axle load)
+ * stored in a {@link HeavyVehicleAttributesGraphStorage}. A mask contains one bit per edge id which is set if a
+ * vehicle with the given dimensions is allowed to pass the edge.
+ * <p>
+ * Masks are only built for vehicle dimensions that are requested repeatedly, and the number of cached masks is
+ * limited. The cache belongs to the storage instance, so it is dropped together with the storage when a graph is
+ * reloaded.
+ */
+public class HeavyVehicleRestrictionMasks {
+	private static final int MAX_MASKS = 32;
+	private static final int BUILD_THRESHOLD = 2;
+
+	private final HeavyVehicleAttributesGraphStorage _storage;
+	private final ConcurrentHashMap<DimensionsKey, long[]> _masks = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<DimensionsKey, AtomicInteger> _requests = new ConcurrentHashMap<>();
+
+	HeavyVehicleRestrictionMasks(HeavyVehicleAttributesGraphStorage storage) {
+		_storage = storage;
+	}
+
+	/**
+	 * Get the passability mask for the given vehicle dimensions.
+	 *
+	 * @param dimensions	vehicle dimensions indexed by {@link VehicleDimensionRestrictions}, values &lt;= 0 are ignored
+	 * @return	the mask or <code>null</code> if no mask is available (yet) for these dimensions
+	 */
+	public long[] getMask(float[] dimensions) {
+		DimensionsKey key = new DimensionsKey(dimensions);
+
+		long[] mask = _masks.get(key);
+		if (mask != null)
+			return mask;
+
+		AtomicInteger requests = _requests.get(key);
+		if (requests == null) {
+			// only remember a limited number of distinct dimensions
+			if (_requests.size() >= MAX_MASKS * 4)
+				_requests.clear();
+			requests = new AtomicInteger();
+			AtomicInteger existing = _requests.putIfAbsent(key, requests);
+			if (existing != null)
+				requests = existing;
+		}
+
+		if (requests.incrementAndGet() < BUILD_THRESHOLD || _masks.size() >= MAX_MASKS)
+			return null;
+
+		return _masks.computeIfAbsent(key, k -> buildMask(k.dimensions));
+	}
+
+	public void clear() {
+		_masks.clear();
+		_requests.clear();
+	}
+
+	private long[] buildMask(float[] dimensions) {
+		int edges = _storage.getEdgesCapacity();
+		long[] mask = new long[(edges + 63) >>> 6];
+		byte[] buffer = new byte[10];
+		double[] values = new double[VehicleDimensionRestrictions.Count];
+
+		for (int edgeId = 0; edgeId < mask.length << 6; edgeId++) {
+			// edges without an entry in the storage have no restrictions
+			if (edgeId >= edges || isPassable(edgeId, dimensions, buffer, values))
+				mask[edgeId >>> 6] |= 1L << edgeId;
+		}
+
+		return mask;
+	}
+
+	private boolean isPassable(int edgeId, float[] dimensions, byte[] buffer, double[] values) {
+		if (!_storage.getEdgeRestrictionValues(edgeId, buffer, values))
+			return true;
+
+		for (int i = 0; i < VehicleDimensionRestrictions.Count; i++) {
+			double value = values[i];
+			if (dimensions[i] > 0 && value > 0.0 && value < dimensions[i])
+				return false;
+		}
+
+		return true;
+	}
+
+	public static boolean isPassable(long[] mask, int edgeId) {
+		return (mask[edgeId >>> 6] & (1L << edgeId)) != 0;
+	}
+
+	private static class DimensionsKey {
+		private final float[] dimensions;
+		private final int hashCode;
+
+		DimensionsKey(float[] dimensions) {
+			this.dimensions = dimensions.clone();
+			this.hashCode = Arrays.hashCode(this.dimensions);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof DimensionsKey && Arrays.equals(dimensions, ((DimensionsKey) obj).dimensions);
+		}
+	}
+}
@@ -0,0 +1,243 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.routing.graphhopper.extensions.storages;
+
+import java.time.LocalDateTime;
+
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphExtension;
+import com.graphhopper.storage.RAMDirectory;
+
+/**
+ * Stores historic weekly speed profiles and assigns them to edges.
+ * <p>
+ * A profile consists of one speed value (km/h, 0 = no data) for each 15-minute bucket of a week starting on Monday
+ * 00:00. Profiles are stored once and shared by all edges referring to them, each edge only keeps the 2-byte id of its
+ * profile (0 = no profile). Times are passed as milliseconds since the start of the week in the local time of the data.
+ */
+public class SpeedProfilesGraphStorage implements GraphExtension {
+	public static final int BUCKET_MILLIS = 15 * 60 * 1000;
+	public static final int BUCKETS_PER_DAY = 24 * 4;
+	public static final int BUCKETS_PER_WEEK = 7 * BUCKETS_PER_DAY;
+	public static final long WEEK_MILLIS = (long) BUCKETS_PER_WEEK * BUCKET_MILLIS;
+	public static final int MAX_PROFILES = 0xFFFF;
+
+	private final int EF_PROFILE;
+
+	private DataAccess orsEdges;
+	private DataAccess orsProfiles;
+	private int edgeEntryBytes;
+	private int edgesCount; // number of edges with custom values
+	private int profilesCount;
+
+	private byte[] byteValues;
+
+	public SpeedProfilesGraphStorage() {
+		EF_PROFILE = 0;
+
+		edgeEntryBytes = EF_PROFILE + 2;
+		edgesCount = 0;
+		profilesCount = 0;
+		byteValues = new byte[2];
+	}
+
+	public void init(Graph graph, Directory dir) {
+		if (edgesCount > 0)
+			throw new AssertionError("The ORS storage must be initialized only once.");
+
+		this.orsEdges = dir.find("ext_speedprofiles");
+		this.orsProfiles = dir.find("ext_speedprofiles_data");
+	}
+
+	/**
+	 * initializes the extended storage to be empty - required for testing purposes as the ext_storage aren't created
+	 * at the time tests are run
+	 */
+	public void init() {
+		if (edgesCount > 0)
+			throw new AssertionError("The ORS storage must be initialized only once.");
+		Directory d = new RAMDirectory();
+		this.orsEdges = d.find("edges");
+		this.orsProfiles = d.find("profiles");
+	}
+
+	/**
+	 * Adds a profile to the storage.
+	 *
+	 * @param speeds	speeds in km/h for {@link #BUCKETS_PER_WEEK} buckets, values &lt;= 0 mean that there is no data
+	 * @return	the id which is used to refer to the profile
+	 */
+	public int addProfile(double[] speeds) {
+		if (speeds.length != BUCKETS_PER_WEEK)
+			throw new IllegalArgumentException("A speed profile must contain " + BUCKETS_PER_WEEK + " values.");
+		if (profilesCount >= MAX_PROFILES)
+			throw new IllegalStateException("The number of speed profiles exceeds " + MAX_PROFILES + ".");
+
+		byte[] values = new byte[BUCKETS_PER_WEEK];
+		for (int i = 0; i < BUCKETS_PER_WEEK; i++)
+			values[i] = (byte) Math.min(Math.max(Math.round(speeds[i]), 0), 255);
+
+		// profile ids start at 1 so that 0 can be used for edges without a profile
+		int profileId = ++profilesCount;
+		long pointer = (long) (profileId - 1) * BUCKETS_PER_WEEK;
+		orsProfiles.ensureCapacity(pointer + BUCKETS_PER_WEEK);
+		orsProfiles.setBytes(pointer, values, BUCKETS_PER_WEEK);
+
+		return profileId;
+	}
+
+	public void setEdgeValue(int edgeId, int profileId) {
+		if (profileId < 0 || profileId > profilesCount)
+			throw new IllegalArgumentException("Unknown speed profile " + profileId + ".");
+
+		edgesCount++;
+		ensureEdgesIndex(edgeId);
+
+		long edgePointer = (long) edgeId * edgeEntryBytes;
+		byteValues[0] = (byte) (profileId >>> 8);
+		byteValues[1] = (byte) profileId;
+		orsEdges.setBytes(edgePointer + EF_PROFILE, byteValues, 2);
+	}
+
+	private void ensureEdgesIndex(int edgeId) {
+		orsEdges.ensureCapacity(((long) edgeId + 1) * edgeEntryBytes);
+	}
+
+	/**
+	 * @return the profile id of the edge or 0 if the edge has no profile
+	 */
+	public int getEdgeProfile(int edgeId, byte[] buffer) {
+		long edgePointer = (long) edgeId * edgeEntryBytes;
+		if (edgePointer + edgeEntryBytes > orsEdges.getCapacity())
+			return 0;
+
+		orsEdges.getBytes(edgePointer + EF_PROFILE, buffer, 2);
+		return ((buffer[0] & 0xFF) << 8) | (buffer[1] & 0xFF);
+	}
+
+	/**
+	 * @param time	milliseconds since the start of the week, see {@link #getWeekTime(LocalDateTime)}
+	 * @return the speed in km/h or 0 if the profile has no data for the given time
+	 */
+	public double getSpeed(int profileId, long time, byte[] buffer) {
+		if (profileId <= 0)
+			return 0;
+
+		long pointer = (long) (profileId - 1) * BUCKETS_PER_WEEK + getBucket(time);
+		orsProfiles.getBytes(pointer, buffer, 1);
+		return buffer[0] & 0xFF;
+	}
+
+	/**
+	 * @return the speed in km/h for the edge at the given time or 0 if there is no historic data
+	 */
+	public double getEdgeSpeed(int edgeId, long time, byte[] buffer) {
+		return getSpeed(getEdgeProfile(edgeId, buffer), time, buffer);
+	}
+
+	public static int getBucket(long time) {
+		long t = time % WEEK_MILLIS;
+		if (t < 0)
+			t += WEEK_MILLIS;
+		return (int) (t / BUCKET_MILLIS);
+	}
+
+	/**
+	 * Converts a local date and time to the time representation used by this storage.
+	 */
+	public static long getWeekTime(LocalDateTime dateTime) {
+		long day = dateTime.getDayOfWeek().getValue() - 1;
+		return day * 24 * 3600 * 1000 + dateTime.toLocalTime().toNanoOfDay() / 1000000;
+	}
+
+	public int getProfilesCount() {
+		return profilesCount;
+	}
+
+	public boolean isRequireNodeField() {
+		return false;
+	}
+
+	public boolean isRequireEdgeField() {
+		return true;
+	}
+
+	public int getDefaultNodeFieldValue() {
+		return -1;
+	}
+
+	public int getDefaultEdgeFieldValue() {
+		return -1;
+	}
+
+	public void setSegmentSize(int bytes) {
+		orsEdges.setSegmentSize(bytes);
+		orsProfiles.setSegmentSize(bytes);
+	}
+
+	public GraphExtension copyTo(GraphExtension clonedStorage) {
+		if (!(clonedStorage instanceof SpeedProfilesGraphStorage)) {
+			throw new IllegalStateException("the extended storage to clone must be the same");
+		}
+
+		SpeedProfilesGraphStorage clonedTC = (SpeedProfilesGraphStorage) clonedStorage;
+
+		orsEdges.copyTo(clonedTC.orsEdges);
+		orsProfiles.copyTo(clonedTC.orsProfiles);
+		clonedTC.edgesCount = edgesCount;
+		clonedTC.profilesCount = profilesCount;
+
+		return clonedStorage;
+	}
+
+	public boolean loadExisting() {
+		if (!orsEdges.loadExisting() || !orsProfiles.loadExisting())
+			throw new IllegalStateException("Unable to load storage 'ext_speedprofiles'. corrupt file or directory?");
+
+		edgeEntryBytes = orsEdges.getHeader(0);
+		edgesCount = orsEdges.getHeader(4);
+		profilesCount = orsProfiles.getHeader(0);
+		return true;
+	}
+
+	public GraphExtension create(long initBytes) {
+		orsEdges.create(initBytes * edgeEntryBytes);
+		orsProfiles.create(BUCKETS_PER_WEEK);
+		return this;
+	}
+
+	public void flush() {
+		orsEdges.setHeader(0, edgeEntryBytes);
+		orsEdges.setHeader(1 * 4, edgesCount);
+		orsEdges.flush();
+		orsProfiles.setHeader(0, profilesCount);
+		orsProfiles.flush();
+	}
+
+	public void close() {
+		orsEdges.close();
+		orsProfiles.close();
+	}
+
+	@Override
+	public boolean isClosed() {
+		return false;
+	}
+
+	public long getCapacity() {
+		return orsEdges.getCapacity() + orsProfiles.getCapacity();
+	}
+}
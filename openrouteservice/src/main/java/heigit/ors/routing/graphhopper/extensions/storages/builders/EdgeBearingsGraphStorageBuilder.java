@@ -0,0 +1,70 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the 
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1 
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library; 
+ *  if not, see <https://www.gnu.org/licenses/>.  
+ */
+package heigit.ors.routing.graphhopper.extensions.storages.builders;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.reader.ReaderWay;
+import com.graphhopper.storage.GraphExtension;
+import com.graphhopper.util.AngleCalc;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.PointList;
+import heigit.ors.routing.graphhopper.extensions.storages.EdgeBearingsGraphStorage;
+
+public class EdgeBearingsGraphStorageBuilder extends AbstractGraphStorageBuilder
+{
+	private EdgeBearingsGraphStorage _storage;
+	private final AngleCalc _angleCalc = new AngleCalc();
+
+	public EdgeBearingsGraphStorageBuilder()
+	{
+
+	}
+
+	public GraphExtension init(GraphHopper graphhopper) throws Exception {
+		if (_storage != null)
+			throw new Exception("GraphStorageBuilder has been already initialized.");
+
+		_storage = new EdgeBearingsGraphStorage();
+		return _storage;
+	}
+
+	public void processWay(ReaderWay way) {
+
+	}
+
+	public void processEdge(ReaderWay way, EdgeIteratorState edge) {
+		if (edge.getBaseNode() == edge.getAdjNode())
+			return;
+
+		PointList points = edge.fetchWayGeometry(3);
+		int size = points.getSize();
+		if (size < 2)
+			return;
+
+		double startBearing = getBearing(points, 0, 1);
+		double endBearing = getBearing(points, size - 2, size - 1);
+
+		_storage.setEdgeValue(edge.getEdge(), edge.getBaseNode(), startBearing, endBearing);
+	}
+
+	private double getBearing(PointList points, int from, int to) {
+		// AngleCalc returns the azimuth in degrees clockwise from north
+		return _angleCalc.calcAzimuth(points.getLat(from), points.getLon(from), points.getLat(to), points.getLon(to));
+	}
+
+	@Override
+	public String getName() {
+		return "EdgeBearings";
+	}
+}
@@ -17,23 +17,19 @@ import com.graphhopper.GraphHopper;
 import com.graphhopper.reader.ReaderWay;
 import com.graphhopper.storage.GraphExtension;
 import com.graphhopper.util.EdgeIteratorState;
-import com.graphhopper.util.Helper;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.IOException;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 import heigit.ors.routing.graphhopper.extensions.storages.GreenIndexGraphStorage;
+import heigit.ors.routing.graphhopper.extensions.util.OsmIdLevelIndex;
 
 /**
  * Created by lliu on 13/03/2017.
  */
 public class GreenIndexGraphStorageBuilder extends AbstractGraphStorageBuilder {
     private GreenIndexGraphStorage _storage;
-    private Map<Long, Double> _greenIndices = new HashMap<>();
+    private OsmIdLevelIndex _greenIndices;
     private static int TOTAL_LEVEL = 64;
     private static int DEFAULT_LEVEL = TOTAL_LEVEL - 1;
     private Map<Byte, SlotRange> _slots = new HashMap<>(TOTAL_LEVEL);
@@ -49,69 +45,40 @@ public class GreenIndexGraphStorageBuilder extends AbstractGraphStorageBuilder {
 
         // TODO Check if the _greenIndexFile exists
         String csvFile = _parameters.get("filepath");
-        readGreenIndicesFromCSV(csvFile);
-        prepareGreenIndexSlots();
+        _greenIndices = OsmIdLevelIndex.loadOrCreate(csvFile, _parameters.get("index_filepath"), new GreenIndexQuantizer());
         _storage = new GreenIndexGraphStorage();
 
         return _storage;
     }
 
-    private void prepareGreenIndexSlots() {
-        double max = Collections.max(_greenIndices.values());
-        double min = Collections.min(_greenIndices.values());
-        double step = (max - min) / TOTAL_LEVEL;
-        // Divide the range of raw green index values into TOTAL_LEVEL,
-        // then map the raw value to [0..TOTAL_LEVEL - 1]
-        for (byte i = 0; i < TOTAL_LEVEL; i++) {
-            _slots.put(i, new SlotRange(min + i * step, min + (i + 1) * step));
-        }
-    }
-
-    private void readGreenIndicesFromCSV(String csvFile) throws IOException {
-        BufferedReader csvBuffer = null;
-        
-        try {
-            String row;
-            csvBuffer = new BufferedReader(new FileReader(csvFile));
-            // Jump the header line
-            row = csvBuffer.readLine();
-            char separator = row.contains(";") ? ';': ',';
-            String[] rowValues = new String[2];
-            
-            while ((row = csvBuffer.readLine()) != null) 
-            {
-                if (!parseCSVrow(row, separator, rowValues)) 
-                	continue;
-                
-                _greenIndices.put(Long.parseLong(rowValues[0]), Double.parseDouble(rowValues[1]));
+    private class GreenIndexQuantizer implements OsmIdLevelIndex.LevelQuantizer {
+        @Override
+        public void prepare(double[] values, int count) {
+            if (count == 0)
+                return;
+
+            double max = values[0];
+            double min = values[0];
+            for (int i = 1; i < count; i++) {
+                max = Math.max(max, values[i]);
+                min = Math.min(min, values[i]);
+            }
+            double step = (max - min) / TOTAL_LEVEL;
+            // Divide the range of raw green index values into TOTAL_LEVEL,
+            // then map the raw value to [0..TOTAL_LEVEL - 1]
+            for (byte i = 0; i < TOTAL_LEVEL; i++) {
+                _slots.put(i, new SlotRange(min + i * step, min + (i + 1) * step));
             }
-
-        } catch (IOException openFileEx) {
-            openFileEx.printStackTrace();
-            throw openFileEx;
-        } finally {
-            if (csvBuffer != null) 
-            	csvBuffer.close();
         }
-    }
 
-    private boolean parseCSVrow(String row, char separator,  String[] rowValues) {
-        if (Helper.isEmpty(row))
-        	return false;
-        
-        int pos = row.indexOf(separator);
-        if (pos > 0)
-        {
-        	rowValues[0] = row.substring(0, pos).trim();
-        	rowValues[1] = row.substring(pos+1, row.length()).trim();
-        	// read, check and push "osm_id" and "ungreen_factor" values
-        	if (Helper.isEmpty(rowValues[0]) || Helper.isEmpty(rowValues[1])) 
-        		return false;
-        	
-        	return true;
+        @Override
+        public byte getLevel(double gi) {
+            for (Map.Entry<Byte, SlotRange> s : _slots.entrySet()) {
+                if (s.getValue().within(gi))
+                    return s.getKey();
+            }
+            return (byte) (DEFAULT_LEVEL);
         }
-        else
-        	return false;
     }
 
     @Override
@@ -141,20 +108,19 @@ public class GreenIndexGraphStorageBuilder extends AbstractGraphStorageBuilder {
     }
 
     private byte calcGreenIndex(long id) {
-        Double gi = _greenIndices.get(id);
-
-        // No such @id key in the _greenIndices, or the value of it is null
+        // No such @id key in the _greenIndices
         // We set its green level to TOTAL_LEVEL/2 indicating the middle value for such cases
         // TODO this DEFAULT_LEVEL should be put in the app.config file and
         // injected back in the code
-        if (gi == null)
-            return (byte) (DEFAULT_LEVEL);
+        return _greenIndices.getLevel(id, (byte) (DEFAULT_LEVEL));
+    }
 
-        for (Map.Entry<Byte, SlotRange> s : _slots.entrySet()) {
-            if (s.getValue().within(gi))
-                return s.getKey();
+    @Override
+    public void finish() {
+        if (_greenIndices != null) {
+            _greenIndices.close();
+            _greenIndices = null;
         }
-        return (byte) (DEFAULT_LEVEL);
     }
 
     @Override
@@ -17,22 +17,16 @@ import com.graphhopper.GraphHopper;
 import com.graphhopper.reader.ReaderWay;
 import com.graphhopper.storage.GraphExtension;
 import com.graphhopper.util.EdgeIteratorState;
-import com.graphhopper.util.Helper;
-
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
 
 import heigit.ors.routing.graphhopper.extensions.storages.NoiseIndexGraphStorage;
+import heigit.ors.routing.graphhopper.extensions.util.OsmIdLevelIndex;
 
 /**
  * Created by ZWang on 13/06/2017.
  */
 public class NoiseIndexGraphStorageBuilder extends AbstractGraphStorageBuilder {
     private NoiseIndexGraphStorage _storage;
-    private Map<Long, Integer> osmId2noiseLevel = new HashMap<>();
+    private OsmIdLevelIndex osmId2noiseLevel;
     // currently noise level is only from 0 to 3
     private int max_level = 8;
 
@@ -47,54 +41,24 @@ public class NoiseIndexGraphStorageBuilder extends AbstractGraphStorageBuilder {
 
         // TODO Check if the _noiseIndexFile exists
         String csvFile = _parameters.get("filepath");
-        readNoiseIndicesFromCSV(csvFile);
+        osmId2noiseLevel = OsmIdLevelIndex.loadOrCreate(csvFile, _parameters.get("index_filepath"), new NoiseLevelQuantizer());
         _storage = new NoiseIndexGraphStorage();
 
         return _storage;
     }
 
-    private void readNoiseIndicesFromCSV(String csvFile) throws IOException {
-        BufferedReader csvBuffer = null;
-        try {
-            String row;
-            csvBuffer = new BufferedReader(new FileReader(csvFile));
-            // Jump the header line
-            csvBuffer.readLine();
-            String[] rowValues = new String[2]; 
-            while ((row = csvBuffer.readLine()) != null) 
-            {
-                if (!parseCSVrow(row, rowValues)) 
-                	continue;
-                
-                osmId2noiseLevel.put(Long.parseLong(rowValues[0]), Integer.parseInt(rowValues[1]));
-            }
-
-        } catch (IOException openFileEx) {
-            openFileEx.printStackTrace();
-            throw openFileEx;
-        } finally {
-            if (csvBuffer != null) 
-            	csvBuffer.close();
+    private class NoiseLevelQuantizer implements OsmIdLevelIndex.LevelQuantizer {
+        @Override
+        public void prepare(double[] values, int count) {
         }
-    }
 
-    private boolean parseCSVrow(String row,  String[] rowValues) {
-        if (Helper.isEmpty(row))
-        	return false;
-        
-        int pos = row.indexOf(',');
-        if (pos > 0)
-        {
-        	rowValues[0] = row.substring(0, pos).trim();
-        	rowValues[1] = row.substring(pos+1, row.length()).trim();
-        	// read, check and push "osm_id" and "noise level" values
-        	if (Helper.isEmpty(rowValues[0]) || Helper.isEmpty(rowValues[1])) 
-        		return false;
-        	
-        	return true;
+        @Override
+        public byte getLevel(double value) {
+            int level = (int) value;
+            if (level > max_level)
+                throw new AssertionError("The noise level " + level + " is larger than the max level!");
+            return (byte) level;
         }
-        else
-        	return false;
     }
 
     @Override
@@ -110,16 +74,17 @@ public class NoiseIndexGraphStorageBuilder extends AbstractGraphStorageBuilder {
     }
 
     private byte getNoiseLevel(long id) {
-        Integer gi = osmId2noiseLevel.get(id);
-
-        // No such @id key in the _noiseIndices, or the value of it is null
+        // No such @id key in the _noiseIndices
         // We set its noise level to zero (no noise)
-        if (gi == null)
-            return (byte) (0);
-        if (gi.intValue() > max_level)
-        	new AssertionError("The noise level of osm way, id = "+ id + " is " + gi +", which is larger than than max level!");
-        
-        return (byte) (gi.intValue());
+        return osmId2noiseLevel.getLevel(id, (byte) (0));
+    }
+
+    @Override
+    public void finish() {
+        if (osmId2noiseLevel != null) {
+            osmId2noiseLevel.close();
+            osmId2noiseLevel = null;
+        }
     }
 
     @Override
@@ -0,0 +1,188 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the 
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1 
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library; 
+ *  if not, see <https://www.gnu.org/licenses/>.  
+ */
+package heigit.ors.routing.graphhopper.extensions.storages.builders;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.carrotsearch.hppc.LongIntHashMap;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.reader.ReaderWay;
+import com.graphhopper.storage.GraphExtension;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Helper;
+
+import heigit.ors.routing.graphhopper.extensions.storages.SpeedProfilesGraphStorage;
+
+/**
+ * Imports historic speed profiles from two CSV files:
+ * <ul>
+ * <li><code>filepath</code>: one profile per row, <code>profile_id</code> followed by either 96 speeds (km/h) for the
+ * 15-minute buckets of a day which then apply to every day of the week, or 672 speeds for a whole week starting on
+ * Monday 00:00.</li>
+ * <li><code>ways_filepath</code>: <code>osm_id,profile_id</code> rows assigning a profile to the edges of an OSM way.</li>
+ * </ul>
+ * Both files have a header line. Identical profiles are stored only once.
+ */
+public class SpeedProfilesGraphStorageBuilder extends AbstractGraphStorageBuilder
+{
+	private SpeedProfilesGraphStorage _storage;
+	// maps osm way ids to internal profile ids
+	private LongIntHashMap _wayProfiles;
+	// distinct profiles in the order of their internal ids, written once the storage has been created
+	private List<double[]> _pendingProfiles;
+	private int _currentProfile;
+
+	public SpeedProfilesGraphStorageBuilder()
+	{
+
+	}
+
+	public GraphExtension init(GraphHopper graphhopper) throws Exception {
+		if (_storage != null)
+			throw new Exception("GraphStorageBuilder has been already initialized.");
+
+		String profilesFile = _parameters.get("filepath");
+		String waysFile = _parameters.get("ways_filepath");
+		if (Helper.isEmpty(profilesFile) || Helper.isEmpty(waysFile))
+			throw new Exception("SpeedProfiles storage requires the parameters 'filepath' and 'ways_filepath'.");
+
+		_storage = new SpeedProfilesGraphStorage();
+		_wayProfiles = readWayProfiles(waysFile, readProfiles(profilesFile));
+
+		return _storage;
+	}
+
+	private Map<Integer, Integer> readProfiles(String csvFile) throws IOException {
+		Map<Integer, Integer> result = new HashMap<>();
+		Map<ProfileKey, Integer> distinct = new HashMap<>();
+		_pendingProfiles = new ArrayList<>();
+
+		BufferedReader csvBuffer = new BufferedReader(new FileReader(csvFile));
+		try {
+			// Jump the header line
+			String row = csvBuffer.readLine();
+			String separator = row != null && row.contains(";") ? ";" : ",";
+			int lineNumber = 1;
+
+			while ((row = csvBuffer.readLine()) != null) {
+				lineNumber++;
+				if (Helper.isEmpty(row))
+					continue;
+
+				String[] values = row.split(separator);
+				int count = values.length - 1;
+				if (count != SpeedProfilesGraphStorage.BUCKETS_PER_DAY && count != SpeedProfilesGraphStorage.BUCKETS_PER_WEEK)
+					throw new IOException("Invalid number of speed values in line " + lineNumber + " of " + csvFile + ".");
+
+				double[] speeds = new double[SpeedProfilesGraphStorage.BUCKETS_PER_WEEK];
+				for (int i = 0; i < speeds.length; i++)
+					speeds[i] = Double.parseDouble(values[1 + (i % count)].trim());
+
+				ProfileKey key = new ProfileKey(speeds);
+				Integer internalId = distinct.get(key);
+				if (internalId == null) {
+					if (_pendingProfiles.size() >= SpeedProfilesGraphStorage.MAX_PROFILES)
+						throw new IOException("Too many distinct speed profiles in " + csvFile + ".");
+					_pendingProfiles.add(speeds);
+					internalId = _pendingProfiles.size();
+					distinct.put(key, internalId);
+				}
+
+				result.put(Integer.parseInt(values[0].trim()), internalId);
+			}
+		} finally {
+			csvBuffer.close();
+		}
+
+		return result;
+	}
+
+	private LongIntHashMap readWayProfiles(String csvFile, Map<Integer, Integer> profileIds) throws IOException {
+		LongIntHashMap result = new LongIntHashMap();
+
+		BufferedReader csvBuffer = new BufferedReader(new FileReader(csvFile));
+		try {
+			// Jump the header line
+			String row = csvBuffer.readLine();
+			char separator = row != null && row.contains(";") ? ';' : ',';
+
+			while ((row = csvBuffer.readLine()) != null) {
+				int pos = row.indexOf(separator);
+				if (pos <= 0)
+					continue;
+
+				Integer profileId = profileIds.get(Integer.parseInt(row.substring(pos + 1).trim()));
+				if (profileId != null)
+					result.put(Long.parseLong(row.substring(0, pos).trim()), profileId);
+			}
+		} finally {
+			csvBuffer.close();
+		}
+
+		return result;
+	}
+
+	public void processWay(ReaderWay way) {
+		if (_pendingProfiles != null) {
+			// the storage can only be written after it has been created, which happens after init
+			for (double[] speeds : _pendingProfiles)
+				_storage.addProfile(speeds);
+			_pendingProfiles = null;
+		}
+
+		_currentProfile = _wayProfiles.getOrDefault(way.getId(), 0);
+	}
+
+	public void processEdge(ReaderWay way, EdgeIteratorState edge) {
+		if (_currentProfile > 0)
+			_storage.setEdgeValue(edge.getEdge(), _currentProfile);
+	}
+
+	@Override
+	public void finish() {
+		_wayProfiles = null;
+	}
+
+	@Override
+	public String getName() {
+		return "SpeedProfiles";
+	}
+
+	private static class ProfileKey {
+		private final double[] speeds;
+		private final int hashCode;
+
+		ProfileKey(double[] speeds) {
+			this.speeds = speeds;
+			this.hashCode = Arrays.hashCode(speeds);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof ProfileKey && Arrays.equals(speeds, ((ProfileKey) obj).speeds);
+		}
+	}
+}
@@ -0,0 +1,224 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.routing.graphhopper.extensions.util;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import com.graphhopper.util.Helper;
+
+/**
+ * Read-only lookup table from OSM way ids to byte levels (green index, noise level etc.).
+ * <p>
+ * The table is built once from a two-column CSV file (osm_id, value) and stored next to it in a
+ * binary file consisting of a small header, the sorted way ids as <code>long</code>s and the
+ * corresponding levels as <code>byte</code>s. The binary file is memory-mapped, so lookups do not
+ * need any heap apart from the mapping itself and later imports skip the CSV parsing altogether.
+ */
+public class OsmIdLevelIndex implements Closeable {
+	private static final int MAGIC = 0x4F4C5649; // "OLVI"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 12;
+	// the level is packed into the lowest 8 bits of the sort key
+	private static final long MAX_OSM_ID = (1L << 55) - 1;
+
+	public interface LevelQuantizer {
+		/**
+		 * Called once with all raw values read from the CSV file before any call to {@link #getLevel(double)}.
+		 */
+		void prepare(double[] values, int count);
+
+		byte getLevel(double value);
+	}
+
+	private MappedByteBuffer _buffer;
+	private final int _size;
+	private final int _levelsOffset;
+
+	private OsmIdLevelIndex(MappedByteBuffer buffer, int size) {
+		_buffer = buffer;
+		_size = size;
+		_levelsOffset = HEADER_SIZE + size * 8;
+	}
+
+	/**
+	 * Opens the binary index belonging to <code>csvFile</code>. The index is (re)built if it does not
+	 * exist yet or if it is older than the CSV file.
+	 *
+	 * @param csvFile	the CSV file with osm_id and value columns
+	 * @param indexFile	the binary index file, if <code>null</code> then <code>csvFile + ".idx"</code> is used
+	 */
+	public static OsmIdLevelIndex loadOrCreate(String csvFile, String indexFile, LevelQuantizer quantizer) throws IOException {
+		if (Helper.isEmpty(indexFile))
+			indexFile = csvFile + ".idx";
+
+		File csv = new File(csvFile);
+		File idx = new File(indexFile);
+		if (!idx.exists() || (csv.exists() && csv.lastModified() > idx.lastModified()))
+			createFromCSV(csvFile, indexFile, quantizer);
+
+		return open(indexFile);
+	}
+
+	public static OsmIdLevelIndex open(String indexFile) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(indexFile, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			long fileSize = channel.size();
+			if (fileSize > Integer.MAX_VALUE)
+				throw new IOException("Index file " + indexFile + " is too large to be memory-mapped.");
+
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+			if (fileSize < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+				throw new IOException("File " + indexFile + " is not a valid osm id index.");
+			if (buffer.getInt(4) != VERSION)
+				throw new IOException("Unsupported version " + buffer.getInt(4) + " of osm id index " + indexFile + ".");
+
+			int size = buffer.getInt(8);
+			if (HEADER_SIZE + 9L * size != fileSize)
+				throw new IOException("Osm id index " + indexFile + " is truncated.");
+
+			return new OsmIdLevelIndex(buffer, size);
+		} finally {
+			// the mapping stays valid after the channel has been closed
+			raf.close();
+		}
+	}
+
+	public static void createFromCSV(String csvFile, String indexFile, LevelQuantizer quantizer) throws IOException {
+		long[] ids = new long[1 << 16];
+		double[] values = new double[1 << 16];
+		int count = 0;
+
+		BufferedReader csvBuffer = null;
+		try {
+			csvBuffer = new BufferedReader(new FileReader(csvFile));
+			// Jump the header line
+			String row = csvBuffer.readLine();
+			char separator = row != null && row.contains(";") ? ';' : ',';
+
+			while ((row = csvBuffer.readLine()) != null) {
+				if (Helper.isEmpty(row))
+					continue;
+
+				int pos = row.indexOf(separator);
+				if (pos <= 0)
+					continue;
+
+				String id = row.substring(0, pos).trim();
+				String value = row.substring(pos + 1).trim();
+				if (Helper.isEmpty(id) || Helper.isEmpty(value))
+					continue;
+
+				if (count == ids.length) {
+					int newLength = count + (count >> 1);
+					ids = Arrays.copyOf(ids, newLength);
+					values = Arrays.copyOf(values, newLength);
+				}
+
+				ids[count] = Long.parseLong(id);
+				values[count] = Double.parseDouble(value);
+				count++;
+			}
+		} finally {
+			if (csvBuffer != null)
+				csvBuffer.close();
+		}
+
+		quantizer.prepare(values, count);
+
+		// Sort ids together with their levels by packing both into a single key.
+		long[] keys = ids;
+		for (int i = 0; i < count; i++) {
+			long osmId = ids[i];
+			if (osmId < 0 || osmId > MAX_OSM_ID)
+				throw new IOException("Osm id " + osmId + " in " + csvFile + " is out of range.");
+			keys[i] = (osmId << 8) | (quantizer.getLevel(values[i]) & 0xFF);
+		}
+		values = null;
+		Arrays.sort(keys, 0, count);
+
+		// drop duplicated ids
+		int size = 0;
+		for (int i = 0; i < count; i++) {
+			if (size == 0 || (keys[size - 1] >>> 8) != (keys[i] >>> 8))
+				keys[size++] = keys[i];
+		}
+
+		if (HEADER_SIZE + 9L * size > Integer.MAX_VALUE)
+			throw new IOException("Too many entries in " + csvFile + " to build an osm id index.");
+
+		File tmpFile = new File(indexFile + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(size);
+			for (int i = 0; i < size; i++)
+				out.writeLong(keys[i] >>> 8);
+			for (int i = 0; i < size; i++)
+				out.writeByte((int) (keys[i] & 0xFF));
+		} finally {
+			out.close();
+		}
+
+		File target = new File(indexFile);
+		if (target.exists() && !target.delete())
+			throw new IOException("Unable to replace osm id index " + indexFile + ".");
+		if (!tmpFile.renameTo(target))
+			throw new IOException("Unable to write osm id index " + indexFile + ".");
+	}
+
+	/**
+	 * @return the level stored for the given way or <code>defaultLevel</code> if the way is not present
+	 */
+	public byte getLevel(long osmId, byte defaultLevel) {
+		int low = 0;
+		int high = _size - 1;
+
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			long midId = _buffer.getLong(HEADER_SIZE + (mid << 3));
+
+			if (midId < osmId)
+				low = mid + 1;
+			else if (midId > osmId)
+				high = mid - 1;
+			else
+				return _buffer.get(_levelsOffset + mid);
+		}
+
+		return defaultLevel;
+	}
+
+	public int size() {
+		return _size;
+	}
+
+	@Override
+	public void close() {
+		// MappedByteBuffer has no explicit unmap, the mapping is released once the buffer is collected
+		_buffer = null;
+	}
+}
@@ -0,0 +1,209 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.routing.graphhopper.extensions.util;
+
+import java.util.Arrays;
+
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+
+/**
+ * Mapping between edges and the OSM ways they were created from, in both directions.
+ * <p>
+ * The way id of each edge is stored in an array indexed by the edge id. The reverse mapping uses a compressed sparse
+ * row layout: the distinct way ids are stored in ascending order together with the offset of their first edge into a
+ * second array which holds the edge ids grouped by way. Both mappings live in {@link DataAccess} files next to the
+ * graph, so they are loaded without deserialization and lookups do not allocate.
+ * <p>
+ * Edges are added with {@link #addEdge(int, long)} during the import, {@link #build()} creates the reverse mapping
+ * afterwards.
+ */
+public class OsmWayEdgesIndex {
+	private static final int EDGE_ENTRY_BYTES = 8; // way id
+	private static final int WAY_ENTRY_BYTES = 12; // way id, offset of the first edge
+	private static final int WAY_EDGE_ENTRY_BYTES = 4; // edge id
+
+	private final DataAccess _edgeWays;
+	private final DataAccess _ways;
+	private final DataAccess _wayEdges;
+	private int _edgesCount;
+	private int _waysCount;
+	private int _wayEdgesCount;
+
+	public OsmWayEdgesIndex(Directory dir) {
+		_edgeWays = dir.find("ext_traffic_edge_ways");
+		_ways = dir.find("ext_traffic_ways");
+		_wayEdges = dir.find("ext_traffic_way_edges");
+	}
+
+	public OsmWayEdgesIndex create(long initEdges) {
+		_edgeWays.create(initEdges * EDGE_ENTRY_BYTES);
+		_ways.create(initEdges * WAY_ENTRY_BYTES);
+		_wayEdges.create(initEdges * WAY_EDGE_ENTRY_BYTES);
+		return this;
+	}
+
+	public boolean loadExisting() {
+		if (!_edgeWays.loadExisting() || !_ways.loadExisting() || !_wayEdges.loadExisting())
+			return false;
+
+		_edgesCount = _edgeWays.getHeader(0);
+		_waysCount = _ways.getHeader(0);
+		_wayEdgesCount = _wayEdges.getHeader(0);
+		return true;
+	}
+
+	/**
+	 * Assigns an edge to a way. Every edge must only be added once.
+	 */
+	public void addEdge(int edgeId, long osmId) {
+		if (osmId <= 0)
+			throw new IllegalArgumentException("Invalid osm way id " + osmId + ".");
+
+		long pointer = (long) edgeId * EDGE_ENTRY_BYTES;
+		_edgeWays.ensureCapacity(pointer + EDGE_ENTRY_BYTES);
+		setLong(_edgeWays, pointer, osmId);
+
+		if (edgeId >= _edgesCount)
+			_edgesCount = edgeId + 1;
+	}
+
+	/**
+	 * Builds the mapping from ways to edges from the edges added so far.
+	 */
+	public void build() {
+		long[] osmIds = new long[_edgesCount];
+		int count = 0;
+		for (int edgeId = 0; edgeId < _edgesCount; edgeId++) {
+			long osmId = getOsmId(edgeId);
+			if (osmId > 0)
+				osmIds[count++] = osmId;
+		}
+
+		Arrays.sort(osmIds, 0, count);
+		int waysCount = 0;
+		for (int i = 0; i < count; i++) {
+			if (waysCount == 0 || osmIds[waysCount - 1] != osmIds[i])
+				osmIds[waysCount++] = osmIds[i];
+		}
+
+		// offsets[i] is the position of the first edge of way i, edges of a way are kept in ascending order
+		int[] offsets = new int[waysCount + 1];
+		for (int edgeId = 0; edgeId < _edgesCount; edgeId++) {
+			long osmId = getOsmId(edgeId);
+			if (osmId > 0)
+				offsets[Arrays.binarySearch(osmIds, 0, waysCount, osmId) + 1]++;
+		}
+		for (int i = 0; i < waysCount; i++)
+			offsets[i + 1] += offsets[i];
+
+		_ways.ensureCapacity((long) waysCount * WAY_ENTRY_BYTES);
+		for (int i = 0; i < waysCount; i++) {
+			long pointer = (long) i * WAY_ENTRY_BYTES;
+			setLong(_ways, pointer, osmIds[i]);
+			_ways.setInt(pointer + 8, offsets[i]);
+		}
+
+		_wayEdges.ensureCapacity((long) count * WAY_EDGE_ENTRY_BYTES);
+		for (int edgeId = 0; edgeId < _edgesCount; edgeId++) {
+			long osmId = getOsmId(edgeId);
+			if (osmId > 0) {
+				int way = Arrays.binarySearch(osmIds, 0, waysCount, osmId);
+				_wayEdges.setInt((long) (offsets[way]++) * WAY_EDGE_ENTRY_BYTES, edgeId);
+			}
+		}
+
+		_waysCount = waysCount;
+		_wayEdgesCount = count;
+	}
+
+	/**
+	 * @return the id of the way the edge was created from or 0 if the edge is unknown
+	 */
+	public long getOsmId(int edgeId) {
+		if (edgeId < 0 || edgeId >= _edgesCount)
+			return 0;
+
+		return getLong(_edgeWays, (long) edgeId * EDGE_ENTRY_BYTES);
+	}
+
+	/**
+	 * @return the index of the way which is to be passed to {@link #getEdgesBegin(int)} and {@link #getEdgesEnd(int)},
+	 * or -1 if the way has no edges
+	 */
+	public int getWayIndex(long osmId) {
+		int low = 0;
+		int high = _waysCount - 1;
+
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			long midId = getLong(_ways, (long) mid * WAY_ENTRY_BYTES);
+
+			if (midId < osmId)
+				low = mid + 1;
+			else if (midId > osmId)
+				high = mid - 1;
+			else
+				return mid;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * @return the position of the first edge of the way, see {@link #getEdge(int)}
+	 */
+	public int getEdgesBegin(int wayIndex) {
+		return _ways.getInt((long) wayIndex * WAY_ENTRY_BYTES + 8);
+	}
+
+	/**
+	 * @return the position after the last edge of the way
+	 */
+	public int getEdgesEnd(int wayIndex) {
+		return wayIndex + 1 < _waysCount ? getEdgesBegin(wayIndex + 1) : _wayEdgesCount;
+	}
+
+	public int getEdge(int position) {
+		return _wayEdges.getInt((long) position * WAY_EDGE_ENTRY_BYTES);
+	}
+
+	public int getWaysCount() {
+		return _waysCount;
+	}
+
+	public void flush() {
+		_edgeWays.setHeader(0, _edgesCount);
+		_ways.setHeader(0, _waysCount);
+		_wayEdges.setHeader(0, _wayEdgesCount);
+		_edgeWays.flush();
+		_ways.flush();
+		_wayEdges.flush();
+	}
+
+	public void close() {
+		_edgeWays.close();
+		_ways.close();
+		_wayEdges.close();
+	}
+
+	private static void setLong(DataAccess da, long pointer, long value) {
+		da.setInt(pointer, (int) (value >>> 32));
+		da.setInt(pointer + 4, (int) value);
+	}
+
+	private static long getLong(DataAccess da, long pointer) {
+		return ((long) da.getInt(pointer) << 32) | (da.getInt(pointer + 4) & 0xFFFFFFFFL);
+	}
+}
@@ -22,16 +22,68 @@ import com.graphhopper.util.AngleCalc;
 import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.PMap;
 import com.graphhopper.util.PointList;
+import heigit.ors.routing.graphhopper.extensions.storages.EdgeBearingsGraphStorage;
+import heigit.ors.routing.graphhopper.extensions.storages.GraphStorageUtils;
 
 public class AccelerationWeighting extends FastestWeighting {
 	private GraphHopperStorage _ghStorage;
 	private AngleCalc _angleCalc = new AngleCalc();
 	private long _maxEdges;
+	// precomputed bearings, if not available the edge geometries are used
+	private EdgeBearingsGraphStorage _gsBearings;
+	private byte[] _buffer = new byte[1];
+
+	// the stored bearings differ from the rounded bearings of the edge geometries by at most 1.3 degrees each
+	private static final double STORED_ANGLE_TOLERANCE = 3;
 
 	public AccelerationWeighting(FlagEncoder encoder, PMap map, GraphStorage graphStorage) {
 		super(encoder, map);
 		_ghStorage = (GraphHopperStorage)graphStorage;
 		_maxEdges= _ghStorage.getEdges();
+		_gsBearings = GraphStorageUtils.getGraphExtension(graphStorage, EdgeBearingsGraphStorage.class);
+	}
+
+	private double getTurnAngle(EdgeIteratorState edgeState, boolean reverse, int prevOrNextEdgeId)
+	{
+		if (_gsBearings != null)
+		{
+			int baseNode = edgeState.getBaseNode();
+			double bearingBefore, bearingAfter;
+			if (reverse)
+			{
+				bearingBefore = _gsBearings.getArrivingBearing(edgeState.getEdge(), baseNode, _buffer);
+				bearingAfter = _gsBearings.getLeavingBearing(prevOrNextEdgeId, baseNode, _buffer);
+			}
+			else
+			{
+				bearingBefore = _gsBearings.getArrivingBearing(prevOrNextEdgeId, baseNode, _buffer);
+				bearingAfter = _gsBearings.getLeavingBearing(edgeState.getEdge(), baseNode, _buffer);
+			}
+
+			// loops have no stored bearings, angles close to a limit of isFullTurn are taken from the geometries
+			// so that the quantized bearings do not change the result
+			double turnAngle = getTurnAngle(bearingBefore, bearingAfter);
+			if (!Double.isNaN(turnAngle) && !isCloseToFullTurnLimit(turnAngle))
+				return turnAngle;
+		}
+
+		return getTurnAngle(getCurrentEdgeGeometry(edgeState, reverse, prevOrNextEdgeId), getPreviousEdgeGeometry(edgeState, reverse, prevOrNextEdgeId));
+	}
+
+	private PointList getCurrentEdgeGeometry(EdgeIteratorState edgeState, boolean reverse, int prevOrNextEdgeId)
+	{
+		if (reverse)
+			return _ghStorage.getEdgeIteratorState(prevOrNextEdgeId, edgeState.getBaseNode()).detach(true).fetchWayGeometry(3);
+		else
+			return _ghStorage.getEdgeIteratorState(edgeState.getEdge(), edgeState.getAdjNode()).fetchWayGeometry(3);
+	}
+
+	private PointList getPreviousEdgeGeometry(EdgeIteratorState edgeState, boolean reverse, int prevOrNextEdgeId)
+	{
+		if (reverse)
+			return _ghStorage.getEdgeIteratorState(edgeState.getEdge(), edgeState.getBaseNode()).fetchWayGeometry(3);
+		else
+			return _ghStorage.getEdgeIteratorState(prevOrNextEdgeId, edgeState.getBaseNode()).fetchWayGeometry(3);
 	}
 
 	private double getTurnAngle(PointList currEdgeGeom, PointList prevEdgeGeom)
@@ -51,19 +103,21 @@ public class AccelerationWeighting extends FastestWeighting {
 
 			double bearingAfter = (int)Math.round(_angleCalc.calcAzimuth(lat1, lon1, lat2, lon2));
 			//bearingAfter =  _angleCalc.alignOrientation(bearingBefore, bearingAfter);
-			double res = Math.abs(bearingBefore - bearingAfter);
-			if (res > 180)
-			{
-				res = 360 - res;
-				return res;
-			}
-			
-			return res;
+			return getTurnAngle(bearingBefore, bearingAfter);
 		}
 
 		return 0.0;	
 	}
 
+	private static double getTurnAngle(double bearingBefore, double bearingAfter)
+	{
+		double res = Math.abs(bearingBefore - bearingAfter);
+		if (res > 180)
+			res = 360 - res;
+
+		return res;
+	}
+
 	@Override
 	public double calcWeight(EdgeIteratorState edgeState, boolean reverse, int prevOrNextEdgeId) {
 		if (prevOrNextEdgeId == -1 )
@@ -75,19 +129,7 @@ public class AccelerationWeighting extends FastestWeighting {
 			return 1.0;
 		}
 
-		PointList currEdgeGeom, prevEdgeGeom;
-		if (reverse)
-		{
-			prevEdgeGeom =  _ghStorage.getEdgeIteratorState(edgeState.getEdge(), edgeState.getBaseNode()).fetchWayGeometry(3);
-			currEdgeGeom =  _ghStorage.getEdgeIteratorState(prevOrNextEdgeId, edgeState.getBaseNode()).detach(true).fetchWayGeometry(3);
-		}
-		else
-		{
-			currEdgeGeom =  _ghStorage.getEdgeIteratorState(edgeState.getEdge(), edgeState.getAdjNode()).fetchWayGeometry(3);
-			prevEdgeGeom =  _ghStorage.getEdgeIteratorState(prevOrNextEdgeId, edgeState.getBaseNode()).fetchWayGeometry(3);
-		}
- 
-		double turnAngle = getTurnAngle(currEdgeGeom, prevEdgeGeom);
+		double turnAngle = getTurnAngle(edgeState, reverse, prevOrNextEdgeId);
 		
 		if (isFullTurn(turnAngle))
 		{
@@ -103,6 +145,11 @@ public class AccelerationWeighting extends FastestWeighting {
 		return angle > 50 && angle <= 140;
 	}
 
+	private boolean isCloseToFullTurnLimit(double angle)
+	{
+		return Math.abs(angle - 50) <= STORED_ANGLE_TOLERANCE || Math.abs(angle - 140) <= STORED_ANGLE_TOLERANCE;
+	}
+
 	@Override
 	public long calcMillis(EdgeIteratorState edgeState, boolean reverse, int prevOrNextEdgeId) {
 		if (prevOrNextEdgeId == -1 )
@@ -114,19 +161,7 @@ public class AccelerationWeighting extends FastestWeighting {
 			return 10000;
 		}
 
-		PointList currEdgeGeom, prevEdgeGeom;
-		if (reverse)
-		{
-			prevEdgeGeom =  _ghStorage.getEdgeIteratorState(edgeState.getEdge(), edgeState.getBaseNode()).fetchWayGeometry(3);
-			currEdgeGeom =  _ghStorage.getEdgeIteratorState(prevOrNextEdgeId, edgeState.getBaseNode()).detach(true).fetchWayGeometry(3);
-		}
-		else
-		{
-			currEdgeGeom =  _ghStorage.getEdgeIteratorState(edgeState.getEdge(), edgeState.getAdjNode()).fetchWayGeometry(3);
-			prevEdgeGeom =  _ghStorage.getEdgeIteratorState(prevOrNextEdgeId, edgeState.getBaseNode()).fetchWayGeometry(3);
-		}
-
-		double turnAngle = getTurnAngle(currEdgeGeom, prevEdgeGeom);
+		double turnAngle = getTurnAngle(edgeState, reverse, prevOrNextEdgeId);
 		
 		if (isFullTurn(turnAngle))
 		{
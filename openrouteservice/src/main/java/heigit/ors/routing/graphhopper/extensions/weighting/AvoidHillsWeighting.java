@@ -16,6 +16,7 @@ package heigit.ors.routing.graphhopper.extensions.weighting;
 import heigit.ors.routing.graphhopper.extensions.storages.GraphStorageUtils;
 import heigit.ors.routing.graphhopper.extensions.storages.HillIndexGraphStorage;
 
+import com.graphhopper.routing.EdgeIteratorStateHelper;
 import com.graphhopper.routing.weighting.FastestWeighting;
 import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.storage.GraphStorage;
@@ -46,13 +47,27 @@ public class AvoidHillsWeighting extends FastestWeighting
         gsHillIndex = GraphStorageUtils.getGraphExtension(graphStorage, HillIndexGraphStorage.class);
     }
     
+    HillIndexGraphStorage getHillIndexStorage() {
+        return gsHillIndex;
+    }
+
+    /**
+     * @return the factors of all hill index values, including the penalty for exceeding the maximum steepness
+     */
+    double[] getFactors() {
+        double[] factors = new double[PENALTY_FACTOR.length];
+        for (int i = 0; i < factors.length; i++)
+            factors[i] = (maxSteepness > 0 && i > maxSteepness) ? 100 : PENALTY_FACTOR[i];
+        return factors;
+    }
+
     @Override
     public double calcWeight(EdgeIteratorState edgeState, boolean reverse, int prevOrNextEdgeId )
     {
     	if (gsHillIndex != null)
     	{
     		boolean revert = edgeState.getBaseNode() < edgeState.getAdjNode();
-    		int hillIndex = gsHillIndex.getEdgeValue(edgeState.getEdge(), revert, buffer);
+    		int hillIndex = gsHillIndex.getEdgeValue(EdgeIteratorStateHelper.getOriginalEdge(edgeState), revert, buffer);
     		
     		if (maxSteepness > 0 && hillIndex > maxSteepness)
     			return 100;
@@ -55,6 +55,14 @@ public class GreenWeighting extends FastestWeighting {
         return 1.0 - (1.0 - wf) * factor;
     }
 
+    GreenIndexGraphStorage getGreenIndexStorage() {
+        return _gsGreenIndex;
+    }
+
+    double[] getFactors() {
+        return _factors;
+    }
+
     @Override
     public double calcWeight(EdgeIteratorState edgeState, boolean reverse, int prevOrNextEdgeId) {
         if (_gsGreenIndex != null) {
@@ -26,6 +26,7 @@ public class QuietWeighting extends FastestWeighting {
     private NoiseIndexGraphStorage _gsNoiseIndex;
     private byte[] _buffer;
     private double _weightingFactor = 1;
+    private static final int MAX_NOISE_LEVEL = 3;
 
     public QuietWeighting(FlagEncoder encoder, PMap map, GraphStorage graphStorage) {
         super(encoder, map);
@@ -41,12 +42,26 @@ public class QuietWeighting extends FastestWeighting {
         	return 1 + _weightingFactor * 10;
         else if ( level <=2 )
         	return 1 + _weightingFactor * _weightingFactor * 200;  // drop factor for noise level 2 and 3 dramatically, but still larger then the factor for noise level 1 
-        else if (level <=3 )
+        else if (level <= MAX_NOISE_LEVEL)
         	return 1 + _weightingFactor * _weightingFactor * 400;
         else
         	throw new AssertionError("The noise level "+  level + " is not supported!");
     }
 
+    NoiseIndexGraphStorage getNoiseIndexStorage() {
+        return _gsNoiseIndex;
+    }
+
+    /**
+     * @return the factors of all supported noise levels, indexed by level
+     */
+    double[] getFactors() {
+        double[] factors = new double[MAX_NOISE_LEVEL + 1];
+        for (int i = 0; i <= MAX_NOISE_LEVEL; i++)
+            factors[i] = calcNoiseWeightFactor(i);
+        return factors;
+    }
+
     @Override
     public double calcWeight(EdgeIteratorState edgeState, boolean reverse, int prevOrNextEdgeId) {
         if (_gsNoiseIndex != null) {
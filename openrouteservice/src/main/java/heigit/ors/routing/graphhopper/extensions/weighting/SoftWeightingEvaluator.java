@@ -0,0 +1,162 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.routing.graphhopper.extensions.weighting;
+
+import com.graphhopper.routing.EdgeIteratorStateHelper;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.util.EdgeIteratorState;
+import heigit.ors.routing.graphhopper.extensions.storages.GreenIndexGraphStorage;
+import heigit.ors.routing.graphhopper.extensions.storages.HillIndexGraphStorage;
+import heigit.ors.routing.graphhopper.extensions.storages.NoiseIndexGraphStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Computes the sum of a set of soft weightings in a single pass per edge.
+ * <p>
+ * Soft weightings whose value only depends on a level stored per edge (green, quiet, steepness difficulty and avoid
+ * hills) are not called one by one. Instead, their storages are resolved once and their factor tables are copied
+ * into one flat array, so that evaluating an edge reads each storage once (the hill index is shared) and adds up the
+ * table entries. Weightings without such a table are called as usual.
+ */
+public class SoftWeightingEvaluator {
+	private static final int GREEN = 0;
+	private static final int QUIET = 1;
+	private static final int HILL_INDEX = 2;
+
+	private GreenIndexGraphStorage _gsGreenIndex;
+	private NoiseIndexGraphStorage _gsNoiseIndex;
+	private HillIndexGraphStorage _gsHillIndex;
+
+	private final int[] _kinds;
+	private final int[] _offsets;
+	private final int[] _lengths;
+	private final double[] _factors;
+	// used for levels which are not covered by the factor table
+	private final Weighting[] _tableWeightings;
+	private final Weighting[] _otherWeightings;
+	// sum of the weightings which have a constant value, e.g. because their storage is not available
+	private double _constant = 0.0;
+	private final byte[] _buffer = new byte[1];
+
+	public SoftWeightingEvaluator(Weighting[] weightings) {
+		List<Integer> kinds = new ArrayList<>();
+		List<double[]> tables = new ArrayList<>();
+		List<Weighting> tableWeightings = new ArrayList<>();
+		List<Weighting> otherWeightings = new ArrayList<>();
+
+		for (Weighting w : weightings) {
+			if (w instanceof GreenWeighting) {
+				GreenWeighting gw = (GreenWeighting) w;
+				if (gw.getGreenIndexStorage() == null) {
+					_constant += 1.0;
+					continue;
+				}
+				_gsGreenIndex = gw.getGreenIndexStorage();
+				kinds.add(GREEN);
+				tables.add(gw.getFactors());
+			} else if (w instanceof QuietWeighting) {
+				QuietWeighting qw = (QuietWeighting) w;
+				if (qw.getNoiseIndexStorage() == null) {
+					_constant += 1.0;
+					continue;
+				}
+				_gsNoiseIndex = qw.getNoiseIndexStorage();
+				kinds.add(QUIET);
+				tables.add(qw.getFactors());
+			} else if (w instanceof SteepnessDifficultyWeighting) {
+				SteepnessDifficultyWeighting sw = (SteepnessDifficultyWeighting) w;
+				if (sw.getHillIndexStorage() == null || sw.getDifficultyWeights() == null) {
+					_constant += 1.0;
+					continue;
+				}
+				_gsHillIndex = sw.getHillIndexStorage();
+				kinds.add(HILL_INDEX);
+				tables.add(sw.getDifficultyWeights());
+			} else if (w instanceof AvoidHillsWeighting) {
+				AvoidHillsWeighting aw = (AvoidHillsWeighting) w;
+				if (aw.getHillIndexStorage() == null) {
+					_constant += 1.0;
+					continue;
+				}
+				_gsHillIndex = aw.getHillIndexStorage();
+				kinds.add(HILL_INDEX);
+				tables.add(aw.getFactors());
+			} else {
+				otherWeightings.add(w);
+				continue;
+			}
+
+			tableWeightings.add(w);
+		}
+
+		int count = kinds.size();
+		_kinds = new int[count];
+		_offsets = new int[count];
+		_lengths = new int[count];
+
+		int size = 0;
+		for (int i = 0; i < count; i++) {
+			_kinds[i] = kinds.get(i);
+			_offsets[i] = size;
+			_lengths[i] = tables.get(i).length;
+			size += _lengths[i];
+		}
+
+		_factors = new double[size];
+		for (int i = 0; i < count; i++)
+			System.arraycopy(tables.get(i), 0, _factors, _offsets[i], _lengths[i]);
+
+		_tableWeightings = tableWeightings.toArray(new Weighting[count]);
+		_otherWeightings = otherWeightings.toArray(new Weighting[otherWeightings.size()]);
+	}
+
+	public double calcWeight(EdgeIteratorState edgeState, boolean reverse, int prevOrNextEdgeId) {
+		double result = _constant;
+
+		int count = _kinds.length;
+		if (count > 0) {
+			int edgeId = EdgeIteratorStateHelper.getOriginalEdge(edgeState);
+			int hillIndex = -1;
+
+			for (int i = 0; i < count; i++) {
+				int level;
+				switch (_kinds[i]) {
+					case GREEN:
+						level = _gsGreenIndex.getEdgeValue(edgeId, _buffer);
+						break;
+					case QUIET:
+						level = _gsNoiseIndex.getEdgeValue(edgeId, _buffer);
+						break;
+					default:
+						if (hillIndex < 0)
+							hillIndex = _gsHillIndex.getEdgeValue(edgeId, edgeState.getBaseNode() < edgeState.getAdjNode(), _buffer);
+						level = hillIndex;
+						break;
+				}
+
+				if (level >= 0 && level < _lengths[i])
+					result += _factors[_offsets[i] + level];
+				else
+					result += _tableWeightings[i].calcWeight(edgeState, reverse, prevOrNextEdgeId);
+			}
+		}
+
+		for (int i = 0; i < _otherWeightings.length; i++)
+			result += _otherWeightings[i].calcWeight(edgeState, reverse, prevOrNextEdgeId);
+
+		return result;
+	}
+}
@@ -211,6 +211,14 @@ public class SteepnessDifficultyWeighting extends FastestWeighting
         }
     }
     
+    HillIndexGraphStorage getHillIndexStorage() {
+        return gsHillIndex;
+    }
+
+    double[] getDifficultyWeights() {
+        return difficultyWeights;
+    }
+
     @Override
     public double calcWeight(EdgeIteratorState edgeState, boolean reverse, int prevOrNextEdgeId )
     {
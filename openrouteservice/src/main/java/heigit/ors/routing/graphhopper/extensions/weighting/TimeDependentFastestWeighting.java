@@ -0,0 +1,99 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.routing.graphhopper.extensions.weighting;
+
+import com.graphhopper.routing.EdgeIteratorStateHelper;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.weighting.FastestWeighting;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.PMap;
+import heigit.ors.routing.graphhopper.extensions.storages.SpeedProfilesGraphStorage;
+
+/**
+ * Fastest weighting which uses the historic speeds of an edge instead of the speed of the flag encoder. The edge is
+ * traversed bucket by bucket: when a bucket of the profile ends while the vehicle is on the edge, the rest of the edge
+ * is driven at the speed of the next bucket. This keeps the travel times FIFO, i.e. entering an edge later never
+ * means leaving it earlier. Edges without a speed profile, and buckets without data, keep the encoder speed. Without
+ * a time, the weighting behaves like {@link FastestWeighting}.
+ */
+public class TimeDependentFastestWeighting extends FastestWeighting implements TimeDependentWeighting {
+	private final SpeedProfilesGraphStorage _gsSpeedProfiles;
+	private final byte[] _buffer = new byte[2];
+
+	public TimeDependentFastestWeighting(FlagEncoder encoder, PMap map, SpeedProfilesGraphStorage speedProfiles) {
+		super(encoder, map);
+		_gsSpeedProfiles = speedProfiles;
+	}
+
+	@Override
+	public double calcWeight(EdgeIteratorState edgeState, boolean reverse, int prevOrNextEdgeId, long time) {
+		double weight = super.calcWeight(edgeState, reverse, prevOrNextEdgeId);
+		if (Double.isInfinite(weight))
+			return weight;
+
+		double speed = getEncoderSpeed(edgeState, reverse);
+		double seconds = calcProfileSeconds(edgeState, speed, time);
+		if (seconds < 0)
+			return weight;
+
+		return weight + seconds - edgeState.getDistance() * SPEED_CONV / speed;
+	}
+
+	@Override
+	public long calcMillis(EdgeIteratorState edgeState, boolean reverse, int prevOrNextEdgeId, long time) {
+		long millis = super.calcMillis(edgeState, reverse, prevOrNextEdgeId);
+
+		double speed = getEncoderSpeed(edgeState, reverse);
+		double seconds = calcProfileSeconds(edgeState, speed, time);
+		if (seconds < 0)
+			return millis;
+
+		return millis + Math.round((seconds - edgeState.getDistance() * SPEED_CONV / speed) * 1000);
+	}
+
+	/**
+	 * @return the travel time in seconds when entering the edge at the given time or -1 if the edge has no profile
+	 */
+	private double calcProfileSeconds(EdgeIteratorState edgeState, double encoderSpeed, long time) {
+		int profileId = _gsSpeedProfiles.getEdgeProfile(EdgeIteratorStateHelper.getOriginalEdge(edgeState), _buffer);
+		if (profileId == 0)
+			return -1;
+
+		double distance = edgeState.getDistance();
+		double seconds = 0;
+		while (true) {
+			double speed = _gsSpeedProfiles.getSpeed(profileId, time, _buffer);
+			if (speed <= 0)
+				speed = encoderSpeed;
+
+			double remainingSeconds = distance * SPEED_CONV / speed;
+			long bucketMillis = SpeedProfilesGraphStorage.BUCKET_MILLIS - Math.floorMod(time, SpeedProfilesGraphStorage.BUCKET_MILLIS);
+			if (remainingSeconds * 1000 <= bucketMillis)
+				return seconds + remainingSeconds;
+
+			seconds += bucketMillis / 1000.0;
+			distance -= bucketMillis / 1000.0 * speed / SPEED_CONV;
+			time += bucketMillis;
+		}
+	}
+
+	private double getEncoderSpeed(EdgeIteratorState edgeState, boolean reverse) {
+		return reverse ? flagEncoder.getReverseSpeed(edgeState.getFlags()) : flagEncoder.getSpeed(edgeState.getFlags());
+	}
+
+	@Override
+	public String getName() {
+		return "td_fastest";
+	}
+}
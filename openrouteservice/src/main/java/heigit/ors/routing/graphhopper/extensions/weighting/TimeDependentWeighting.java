@@ -0,0 +1,28 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.routing.graphhopper.extensions.weighting;
+
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.util.EdgeIteratorState;
+
+/**
+ * A weighting whose values depend on the time at which an edge is entered. Time dependent algorithms pass the
+ * current time as milliseconds since the start of the week, see
+ * {@link heigit.ors.routing.graphhopper.extensions.storages.SpeedProfilesGraphStorage#getWeekTime}.
+ */
+public interface TimeDependentWeighting extends Weighting {
+	double calcWeight(EdgeIteratorState edgeState, boolean reverse, int prevOrNextEdgeId, long time);
+
+	long calcMillis(EdgeIteratorState edgeState, boolean reverse, int prevOrNextEdgeId, long time);
+}
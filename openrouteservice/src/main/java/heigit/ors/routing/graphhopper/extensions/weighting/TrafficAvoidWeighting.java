@@ -22,12 +22,12 @@ import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.PMap;
 import heigit.ors.routing.graphhopper.extensions.flagencoders.CarFlagEncoder;
 import heigit.ors.routing.graphhopper.extensions.flagencoders.tomove.exghoverwrite.ExGhORSCarFlagEncoder;
-import heigit.ors.routing.traffic.AvoidEdgeInfo;
 import heigit.ors.routing.traffic.TmcEventCodesTable;
 import heigit.ors.routing.traffic.TmcMode;
 import heigit.ors.routing.traffic.TrafficEventInfo;
+import heigit.ors.routing.traffic.TrafficSnapshot;
 
-import java.util.HashMap;
+import java.util.Arrays;
 
 public class TrafficAvoidWeighting extends AbstractWeighting {
 
@@ -37,7 +37,7 @@ public class TrafficAvoidWeighting extends AbstractWeighting {
      */
     protected final static double SPEED_CONV = 1;
     private double maxSpeed;
-	private HashMap<Integer, AvoidEdgeInfo> forbiddenEdges;
+	private TrafficSnapshot trafficSnapshot;
 
     public TrafficAvoidWeighting( FlagEncoder encoder, PMap map)
     {
@@ -55,10 +55,10 @@ public class TrafficAvoidWeighting extends AbstractWeighting {
     }
 
 
-    public TrafficAvoidWeighting(Weighting defultWeighting, FlagEncoder encoder, HashMap<Integer, AvoidEdgeInfo> forbiddenEdges)
+    public TrafficAvoidWeighting(Weighting defultWeighting, FlagEncoder encoder, TrafficSnapshot trafficSnapshot)
     {
         this(encoder, new PMap(0));
-		this.forbiddenEdges = forbiddenEdges;     
+		this.trafficSnapshot = trafficSnapshot == null ? TrafficSnapshot.EMPTY : trafficSnapshot;
     }
 
     
@@ -76,10 +76,9 @@ public class TrafficAvoidWeighting extends AbstractWeighting {
             return Double.POSITIVE_INFINITY;
 
     
-	    AvoidEdgeInfo ei = forbiddenEdges.get(edge.getEdge());
-		if (ei!= null){
+	    short[] codes = trafficSnapshot.getAvoidCodes(edge.getEdge());
+		if (codes != null){
 
-			short[] codes = ei.getCodes();
 			TrafficEventInfo tec = null;
 			double givenSpeed = Double.MAX_VALUE;
 			double speedFactor = 1;
@@ -88,10 +87,10 @@ public class TrafficAvoidWeighting extends AbstractWeighting {
 				int code = codes[i];
 				tec = TmcEventCodesTable.getEventInfo(code);
 				
-				if ((tec.getTmcMode() == TmcMode.HEAVY_VEHICLE) && isCarFlagEncoder(flagEncoder))
-					continue; 				
-				
 				if (tec!=null) {
+					if ((tec.getTmcMode() == TmcMode.HEAVY_VEHICLE) && isCarFlagEncoder(flagEncoder))
+						continue;
+
 					if (tec.isDelay()) {
                         // use the max delay in the routing 
 						givenDelay = Math.max(givenDelay, tec.getDelay());
@@ -128,7 +127,7 @@ public class TrafficAvoidWeighting extends AbstractWeighting {
 				
 				 System.err.println("traffic weighting method didn't give the weight");
 				 throw new IllegalStateException("edge " + EdgeIteratorStateHelper.getOriginalEdge(edge) +
-						   "has no considered event codes " + ei.getCodesAsString());
+						   "has no considered event codes " + Arrays.toString(codes));
 			}
 		}
 		
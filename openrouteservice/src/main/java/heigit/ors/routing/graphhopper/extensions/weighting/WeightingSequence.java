@@ -19,14 +19,15 @@ import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.util.EdgeIteratorState;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 public class WeightingSequence implements Weighting {
-	private ArrayList<Weighting> weightings;
+	private Weighting[] weightings;
 	private int weightingsCount;
 	private Weighting weighting1, weighting2, weighting3;
 
 	public WeightingSequence(ArrayList<Weighting> weightings) {
-		this.weightings = weightings;
+		this.weightings = weightings.toArray(new Weighting[weightings.size()]);
 		this.weightingsCount = weightings.size();
 		
 		if (weightingsCount == 2)
@@ -42,8 +43,11 @@ public class WeightingSequence implements Weighting {
 	}
 
 	public void addWeighting(Weighting w) {
-		weightings.add(w);
+		weightings = Arrays.copyOf(weightings, weightingsCount + 1);
+		weightings[weightingsCount] = w;
 		weightingsCount++;
+		// the unrolled cases in calcWeight are only valid for the initial weightings
+		weighting1 = weighting2 = weighting3 = null;
 	}
 	
 	@Override
@@ -52,7 +56,7 @@ public class WeightingSequence implements Weighting {
 		double minValue = Double.MAX_VALUE;
 		
 		for (int i = 0; i < weightingsCount; i++) {
-			double w = weightings.get(i).getMinWeight(distance);
+			double w = weightings[i].getMinWeight(distance);
 			if (w < minValue)
 				minValue = w;
 		}
@@ -67,11 +71,11 @@ public class WeightingSequence implements Weighting {
 
 	@Override
 	public double calcWeight(EdgeIteratorState edge, boolean reverse, int prevOrNextEdgeId ) {
-		if (weightingsCount == 2)
+		if (weightingsCount == 2 && weighting2 != null)
 		{
 			return weighting1.calcWeight(edge, reverse, prevOrNextEdgeId) + weighting2.calcWeight(edge, reverse, prevOrNextEdgeId);
 		}
-		else if (weightingsCount == 3)
+		else if (weightingsCount == 3 && weighting3 != null)
 		{
 			return weighting1.calcWeight(edge, reverse, prevOrNextEdgeId) + weighting2.calcWeight(edge, reverse, prevOrNextEdgeId) + weighting3.calcWeight(edge, reverse, prevOrNextEdgeId);
 		}
@@ -79,7 +83,7 @@ public class WeightingSequence implements Weighting {
         double result = 0;
 		
 		for (int i = 0; i < weightingsCount; i++) {
-			result += weightings.get(i).calcWeight(edge, reverse, prevOrNextEdgeId);
+			result += weightings[i].calcWeight(edge, reverse, prevOrNextEdgeId);
 		}
  
 		return result;
@@ -87,7 +91,7 @@ public class WeightingSequence implements Weighting {
 
 	@Override
 	public FlagEncoder getFlagEncoder() {
-		return weightings.get(0).getFlagEncoder();
+		return weightings[0].getFlagEncoder();
 	}
 
 	@Override
@@ -13,6 +13,8 @@
  */
 package heigit.ors.routing.traffic;
 
+import com.carrotsearch.hppc.IntObjectMap;
+import com.graphhopper.coll.GHIntObjectHashMap;
 import com.graphhopper.storage.GraphStorage;
 import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.Helper;
@@ -24,6 +26,7 @@ import heigit.ors.routing.RoutingProfilesCollection;
 import heigit.ors.routing.configuration.RouteProfileConfiguration;
 import heigit.ors.routing.configuration.RoutingManagerConfiguration;
 import heigit.ors.routing.configuration.TrafficInformationConfiguration;
+import heigit.ors.routing.graphhopper.extensions.util.OsmWayEdgesIndex;
 import heigit.ors.routing.traffic.providers.TrafficInfoDataSource;
 import heigit.ors.routing.traffic.providers.TrafficInfoDataSourceFactory;
 import heigit.ors.services.routing.RoutingServiceSettings;
@@ -58,21 +61,14 @@ public class RealTrafficDataProvider {
 	}
 
 	private class RouteProfileTmcData {
-		private HashMap<Integer, EdgeInfo> m_edges;
-		private HashMap<Integer, AvoidEdgeInfo> m_avoidEdges;
-		private List<Integer> m_blockedEdges;
-		private HashMap<Integer, Integer> m_edgeIdsMap;
+		// replaced as a whole on every update, requests only ever see a complete snapshot
+		private volatile TrafficSnapshot m_snapshot;
 		private RoutingProfile m_routeProfile;
-		private List<Integer> m_blockedEdges_hv; // for heavy vehicles
 		private HashMap<Integer, TrafficFeatureInfo> m_edgeId2trafficFeature;  // one edge corresponds to one TrafficFeatureInfo
 
 		public RouteProfileTmcData(RoutingProfile rp) {
 			m_routeProfile = rp;
-			m_edges = new HashMap<Integer, EdgeInfo>();
-			m_avoidEdges = new HashMap<Integer, AvoidEdgeInfo>();
-			m_blockedEdges = new ArrayList<Integer>();
-			m_edgeIdsMap = new HashMap<Integer, Integer>();
-			m_blockedEdges_hv =  new ArrayList<Integer>();			
+			m_snapshot = TrafficSnapshot.EMPTY;
 			m_edgeId2trafficFeature = new HashMap<Integer, TrafficFeatureInfo>();
 		}
 
@@ -85,28 +81,12 @@ public class RealTrafficDataProvider {
 			return m_edgeId2trafficFeature;
 		}
 		
-		public List<Integer> getBlockedEdges() {
-			return m_blockedEdges;
-		}
-		
-		public List<Integer> getHeavyVehicleBlockedEdges() {
-			return m_blockedEdges_hv;
-		}
-
-		public HashMap<Integer, AvoidEdgeInfo> getAvoidEdges() {
-			return m_avoidEdges;
-		}
-
-		public HashMap<Integer, EdgeInfo> getEdges() {
-			return m_edges;
+		public TrafficSnapshot getSnapshot() {
+			return m_snapshot;
 		}
 
-		public void update(HashMap<Integer, EdgeInfo> edges, HashMap<Integer, AvoidEdgeInfo> avoidEdges,
-				List<Integer> blockedEdges, List<Integer> blockedEdges_hv) {
-			m_avoidEdges = avoidEdges;
-			m_blockedEdges = blockedEdges;
-			m_edges = edges;
-			m_blockedEdges_hv = blockedEdges_hv;
+		public void update(TrafficSnapshot snapshot) {
+			m_snapshot = snapshot;
 		}
 		
 		public void setMapEddgeId2trafficFeature(HashMap<Integer, TrafficFeatureInfo> m_edgeId2trafficFeature){
@@ -134,10 +114,7 @@ public class RealTrafficDataProvider {
 			if (env == null)
 				return features;
 			
-			if (quadTree == null)
-				buildQuadTree();
-			
-			List<TrafficFeatureInfo> list = quadTree.query(env);
+			List<TrafficFeatureInfo> list = getQuadTree().query(env);
 			List<TrafficFeatureInfo> result = new ArrayList<TrafficFeatureInfo>(list.size());
 			
 			for(TrafficFeatureInfo tfi : list)
@@ -150,28 +127,39 @@ public class RealTrafficDataProvider {
 			return result;
 		}
 		
-		private void buildQuadTree()
+		private synchronized Quadtree getQuadTree()
 		{
-			quadTree = new Quadtree();
-			for (TrafficFeatureInfo tfi : features) {
-				if (tfi.getGeometry() instanceof LineString || tfi.getGeometry() instanceof MultiLineString) // TODO remove
-					quadTree.insert(tfi.getGeometry().getEnvelopeInternal(), tfi);
+			if (quadTree == null)
+			{
+				quadTree = new Quadtree();
+				for (TrafficFeatureInfo tfi : features) {
+					if (tfi.getGeometry() instanceof LineString || tfi.getGeometry() instanceof MultiLineString) // TODO remove
+						quadTree.insert(tfi.getGeometry().getEnvelopeInternal(), tfi);
+				}
 			}
+
+			return quadTree;
 		}
 	}
 
+	private static final int SEGMENTS_FILE_MAGIC = 0x544D4353; // "TMCS"
+	private static final int SEGMENTS_FILE_VERSION = 1;
+
 	private static RealTrafficDataProvider mInstance;
 
 	private Logger logger = Logger.getLogger(RealTrafficDataProvider.class.getName());
 
 	private RoutingProfile m_tmcRouteProfile;
 	private TmcSegmentsCollection m_tmcSegments;
+	// locations of the last messages matched against m_tmcSegments
+	private Map<String, TrafficUtility.MatchedLocations> m_matchCache = new HashMap<String, TrafficUtility.MatchedLocations>();
 	private HashMap<Integer, RouteProfileTmcData> m_routeProfilesMap;
 	private Timer m_timer;
 	private boolean m_updateIsRunning = false;
 	private boolean m_initialized;
 	private TrafficInformationConfiguration m_config;
-	private TmcUpdateInfo m_lastUpdateInfo;
+	private volatile TmcUpdateInfo m_lastUpdateInfo;
+	private volatile TrafficTilesCache m_tilesCache;
 	private TrafficLocationGraph m_locationGraph;
 	private TrafficInfoDataSource m_tmcDatasource;
 	private SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
@@ -269,7 +257,6 @@ public class RealTrafficDataProvider {
 		m_initialized = true;
 	}
 
-	@SuppressWarnings("unchecked")
 	private List<TmcSegment> loadTmcSegments(String path, RoutingProfile routeProfile, String outputDir, boolean loadExisting) {
 		File segments = Paths.get(path, "SEGMENTS.DAT").toFile();
 		File roads = Paths.get(path, "ROADS.DAT").toFile();
@@ -285,16 +272,9 @@ public class RealTrafficDataProvider {
 		if (loadExisting) {
 			if (filePath.toFile().exists()) {
 				try {
-					FileInputStream fis = new FileInputStream(filePath.toString());
-					ObjectInputStream ois = new ObjectInputStream(fis);
-					tmcGraphData = (List<TmcSegment>) ois.readObject();
-					ois.close();	
-					fis.close();
+					tmcGraphData = readTmcSegments(filePath.toFile());
 				} catch (IOException ioe) {
-					ioe.printStackTrace();
-				} catch (ClassNotFoundException c) {
-					System.out.println("Class not found");
-					c.printStackTrace();
+					logger.warning("Unable to read TMC segments from " + filePath + ": " + ioe.getMessage());
 				}
 			}
 		}
@@ -302,15 +282,11 @@ public class RealTrafficDataProvider {
 		if (tmcGraphData == null || tmcGraphData.size() == 0) {
 			tmcGraphData = TrafficUtility.detectSegments(segments, roads, points, poffsets, routeProfile);
 
-			// serialize TMC segments if needed.
+			// save TMC segments if needed.
 			try {
-				FileOutputStream fos = new FileOutputStream(filePath.toString());
-				ObjectOutputStream oos = new ObjectOutputStream(fos);
-				oos.writeObject(tmcGraphData);
-				oos.close();
-				fos.close();
+				writeTmcSegments(tmcGraphData, filePath.toFile());
 			} catch (IOException ioe) {
-				ioe.printStackTrace();
+				logger.warning("Unable to write TMC segments to " + filePath + ": " + ioe.getMessage());
 			}
 
 			if (DebugUtility.isDebug()) {
@@ -321,10 +297,93 @@ public class RealTrafficDataProvider {
 		return tmcGraphData;
 	}
 
+	/**
+	 * @return the segments or <code>null</code> if the file has not been written by {@link #writeTmcSegments}
+	 */
+	private static List<TmcSegment> readTmcSegments(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+		try {
+			if (file.length() < 12 || in.readInt() != SEGMENTS_FILE_MAGIC || in.readInt() != SEGMENTS_FILE_VERSION)
+				return null;
+
+			GeometryFactory geomFactory = new GeometryFactory();
+			int count = in.readInt();
+			List<TmcSegment> result = new ArrayList<TmcSegment>(count);
+
+			for (int i = 0; i < count; i++) {
+				long id = in.readLong();
+				String roadnumber = in.readBoolean() ? in.readUTF() : null;
+				int from = in.readInt();
+				int to = in.readInt();
+				int direction = in.readInt();
+				double distance = in.readDouble();
+
+				int nCoords = in.readInt();
+				LineString geom = null;
+				if (nCoords > 0) {
+					Coordinate[] coords = new Coordinate[nCoords];
+					for (int j = 0; j < nCoords; j++)
+						coords[j] = new Coordinate(in.readDouble(), in.readDouble());
+					geom = geomFactory.createLineString(coords);
+				}
+
+				int nEdges = in.readInt();
+				List<Integer> edgeIds = new ArrayList<Integer>(nEdges);
+				for (int j = 0; j < nEdges; j++)
+					edgeIds.add(in.readInt());
+
+				result.add(new TmcSegment(id, roadnumber, from, to, direction, distance, geom, edgeIds));
+			}
+
+			return result;
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void writeTmcSegments(List<TmcSegment> segments, File file) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		try {
+			out.writeInt(SEGMENTS_FILE_MAGIC);
+			out.writeInt(SEGMENTS_FILE_VERSION);
+			out.writeInt(segments.size());
+
+			for (TmcSegment seg : segments) {
+				out.writeLong(seg.getId());
+				out.writeBoolean(seg.getRoadnumber() != null);
+				if (seg.getRoadnumber() != null)
+					out.writeUTF(seg.getRoadnumber());
+				out.writeInt(seg.getFrom());
+				out.writeInt(seg.getTo());
+				out.writeInt(seg.getDirection());
+				out.writeDouble(seg.getDistance());
+
+				Geometry geom = seg.getGeometry();
+				int nCoords = geom == null ? 0 : geom.getNumPoints();
+				out.writeInt(nCoords);
+				for (int j = 0; j < nCoords; j++) {
+					Coordinate c = ((LineString) geom).getCoordinateN(j);
+					out.writeDouble(c.x);
+					out.writeDouble(c.y);
+				}
+
+				List<Integer> edgeIds = seg.getEdgeIDs();
+				out.writeInt(edgeIds.size());
+				for (int j = 0; j < edgeIds.size(); j++)
+					out.writeInt(edgeIds.get(j));
+			}
+		} finally {
+			out.close();
+		}
+	}
+
 	public void updateGraphMatching(RoutingProfile rp, String outputDir) {
 		if (rp == m_tmcRouteProfile)
 		{
-			m_tmcSegments = new TmcSegmentsCollection(loadTmcSegments(m_config.LocationCodesPath, m_tmcRouteProfile, outputDir, false));
+			synchronized (this) {
+				m_tmcSegments = new TmcSegmentsCollection(loadTmcSegments(m_config.LocationCodesPath, m_tmcRouteProfile, outputDir, false));
+				m_matchCache.clear();
+			}
 
 			updateGraphMatchingInternal(false);
 		}
@@ -333,36 +392,31 @@ public class RealTrafficDataProvider {
 	private void updateRouteProfile(RouteProfileTmcData rptd, TmcUpdateInfo updateInfo, boolean loadExisting) {
 		
         HashMap<Integer, TrafficFeatureInfo> m_edgeId2trafficFeature = new HashMap<Integer, TrafficFeatureInfo>();
-        List<Integer> edgeIds = new ArrayList<Integer>();
-        
-		for (TrafficFeatureInfo tmcFeature:updateInfo.features) {
-			for (int i=0; i < tmcFeature.getEdgeIds().size(); i++){
-			    
-				int edgeId  = tmcFeature.getEdgeIds().get(i);
-				long osmId  = m_tmcRouteProfile.getTmcEdges().get(edgeId); // todo: use graphhopperstorage to obtain osmid
-				
-				if (rptd.getRouteProfile().getOsmId2edgeIds().containsKey(osmId)) { 
-				    	
-				    	ArrayList<Integer> newEdgeIds = rptd.getRouteProfile().getOsmId2edgeIds().get(osmId);
-					    boolean foundMatched = false;
-						for (Integer newEdgeId : newEdgeIds) {
+		OsmWayEdgesIndex tmcWayEdges = m_tmcRouteProfile.getWayEdgesIndex();
+		OsmWayEdgesIndex wayEdges = rptd.getRouteProfile().getWayEdgesIndex();
+
+		if (tmcWayEdges != null && wayEdges != null) {
+			for (TrafficFeatureInfo tmcFeature:updateInfo.features) {
+				for (int i=0; i < tmcFeature.getEdgeIds().size(); i++){
+
+					int edgeId  = tmcFeature.getEdgeIds().get(i);
+					long osmId  = tmcWayEdges.getOsmId(edgeId);
+					int way = osmId > 0 ? wayEdges.getWayIndex(osmId) : -1;
+
+					if (way >= 0) {
+						int end = wayEdges.getEdgesEnd(way);
+						for (int pos = wayEdges.getEdgesBegin(way); pos < end; pos++) {
+							int newEdgeId = wayEdges.getEdge(pos);
 							// one edge of an osm way has trafficInfo doesnt mean that all edges of the same osm way have the same trafficInfo
 							// so check if there is a newEdgeId corresponding to (match) edgeid in tmc graph
-							boolean isMatched = isEdgesMatched(edgeId, m_tmcRouteProfile, newEdgeId, rptd.getRouteProfile());
-							
-							if (isMatched) {
-							    edgeIds.add(newEdgeId);
-							    m_edgeId2trafficFeature.put(newEdgeId, tmcFeature);
-							    foundMatched = true;
-							}
-						} // end for all new edge ids						
-						 // if (!foundMatched){System.err.println("tmc edge " + edgeId+ " doesnt have matched newEdgeId " 
-						 //		+ rptd.getRouteProfile().getGraphLocation());}
-						
-				} // end if contains osm id 
+							if (isEdgesMatched(edgeId, m_tmcRouteProfile, newEdgeId, rptd.getRouteProfile()))
+								m_edgeId2trafficFeature.put(newEdgeId, tmcFeature);
+						} // end for all new edge ids
+					} // end if contains osm id
 
-		     } // end for tmc edgeIds
-		} // end for tmc features 	
+				} // end for tmc edgeIds
+			} // end for tmc features
+		}
 	
 	
 		rptd.setMapEddgeId2trafficFeature(m_edgeId2trafficFeature);
@@ -463,10 +517,10 @@ public class RealTrafficDataProvider {
 		if (m_edgeId2trafficFeature.size() == 0)
 			return;
 
-		HashMap<Integer, AvoidEdgeInfo> avoidEdges = new HashMap<Integer, AvoidEdgeInfo>();
-		List<Integer> blockedEdges = new ArrayList<Integer>();
-		List<Integer> blockedEdges_hv = new ArrayList<Integer>();
-		HashMap<Integer, EdgeInfo> edges = new HashMap<Integer, EdgeInfo>();
+		IntObjectMap<short[]> avoidEdges = new GHIntObjectHashMap<short[]>();
+		BitSet blockedEdges = new BitSet();
+		BitSet blockedEdges_hv = new BitSet();
+		IntObjectMap<EdgeInfo> edges = new GHIntObjectHashMap<EdgeInfo>(m_edgeId2trafficFeature.size());
 
 		try {
 			long diff = new Date().getTime() - updateInfo.time.getTime();
@@ -508,22 +562,16 @@ public class RealTrafficDataProvider {
 							int codeType = tec.type;
 							int mode = tec.mode;
 							if (codeType == TrafficEventType.AVOID) {
-								if (!avoidEdges.containsKey(newEdgeId)){				
-								
-										AvoidEdgeInfo edgeInfo = new AvoidEdgeInfo(newEdgeId, codes);
-										avoidEdges.put(newEdgeId, edgeInfo);
-								
-								} 
+								if (!avoidEdges.containsKey(newEdgeId))
+									avoidEdges.put(newEdgeId, codes);
 								
 							 } else if (codeType == TrafficEventType.BLOCKED && mode == TmcMode.CAR) {
 								 
-									    if (!blockedEdges.contains(newEdgeId))
-									        blockedEdges.add(newEdgeId);
+									    blockedEdges.set(newEdgeId);
 							
 							 } else if (codeType == TrafficEventType.BLOCKED && mode == TmcMode.HEAVY_VEHICLE) {
 								 
-								        if (!blockedEdges_hv.contains(newEdgeId))
-								        	blockedEdges_hv.add(newEdgeId);
+								        blockedEdges_hv.set(newEdgeId);
 						
 						     }  else if (codeType != TrafficEventType.ANY) {
 								
@@ -542,15 +590,14 @@ public class RealTrafficDataProvider {
 			logger.info(ex.toString());
 		}
 
-		// TODO make it thread safe.
-	    // System.out.println("edges size " +  edges.size() + " ; avoid edges size = "+ avoidEdges.size() + " ; blocked edges size = " + blockedEdges.size());
-		rptd.update(edges, avoidEdges, blockedEdges, blockedEdges_hv);
+	    // System.out.println("edges size " +  edges.size() + " ; avoid edges size = "+ avoidEdges.size() + " ; blocked edges size = " + blockedEdges.cardinality());
+		rptd.update(new TrafficSnapshot(updateInfo.getTime(), edges, avoidEdges, blockedEdges, blockedEdges_hv));
 		
 		// System.out.println("traffic edges size " + edges.keySet().toString());
 	    // System.out.println("TmcUpdateInfo size " + updateInfo.getTmcEdgeIds().size() +" info are "+ Arrays.deepToString(updateInfo.getTmcEdgeIds().toArray()));
 	}
 
-	private TmcUpdateInfo getUpdateInfo() throws ParserConfigurationException, SAXException, IOException,
+	private synchronized TmcUpdateInfo getUpdateInfo() throws ParserConfigurationException, SAXException, IOException,
 			ParseException {
 		String message = m_tmcDatasource.getMessage();
 
@@ -558,7 +605,7 @@ public class RealTrafficDataProvider {
 			logger.warning("TMC message is null or empty. Check data source configuration. Datasource type: " + m_tmcDatasource.toString());
 		
 		Date msgTime = TrafficUtility.getMessageDateTime(message);
-		List<TrafficFeatureInfo> tmcFeatures = TrafficUtility.extractTmcFeatures(message, m_tmcSegments, 6*60*60*1000, m_locationGraph, logger);
+		List<TrafficFeatureInfo> tmcFeatures = TrafficUtility.extractTmcFeatures(message, m_tmcSegments, 6*60*60*1000, m_locationGraph, m_matchCache, logger);
 
 		m_lastUpdateInfo = new TmcUpdateInfo(msgTime, tmcFeatures);
 		
@@ -591,11 +638,53 @@ public class RealTrafficDataProvider {
 	
 	public String getTmcInfoAsJson(Envelope env)
 	{
-        List<TrafficFeatureInfo> tmcFeatures = m_lastUpdateInfo.getFeatures(env);
+		TmcUpdateInfo updateInfo = m_lastUpdateInfo;
+        List<TrafficFeatureInfo> tmcFeatures = updateInfo.getFeatures(env);
         
         if (tmcFeatures.size() == 0)
         	return null;
 
+        return getFeaturesAsJson(tmcFeatures, updateInfo.getTime());
+	}
+
+	/**
+	 * Get the traffic information of a map tile. Tiles are rendered once per TMC message and kept until a newer
+	 * message arrives.
+	 *
+	 * @return gzip-compressed GeoJSON feature collection or <code>null</code> if no TMC message has been received yet
+	 */
+	public byte[] getTmcInfoTile(int zoom, int x, int y) throws IOException
+	{
+		TmcUpdateInfo updateInfo = m_lastUpdateInfo;
+		if (updateInfo == null)
+			return null;
+
+		TrafficTilesCache tilesCache = m_tilesCache;
+		if (tilesCache == null || !tilesCache.getTime().equals(updateInfo.getTime()))
+		{
+			tilesCache = new TrafficTilesCache(updateInfo.getTime());
+			m_tilesCache = tilesCache;
+		}
+
+		byte[] tile = tilesCache.getTile(zoom, x, y);
+		if (tile == null)
+		{
+			List<TrafficFeatureInfo> tmcFeatures = updateInfo.getFeatures(TrafficTilesCache.getTileEnvelope(zoom, x, y));
+			String json = getFeaturesAsJson(tmcFeatures, updateInfo.getTime());
+			if (json == null)
+				throw new IOException("Unable to write traffic information of tile " + zoom + "/" + x + "/" + y + ".");
+
+			tile = TrafficTilesCache.compress(json);
+			tilesCache.putTile(zoom, x, y, tile);
+		}
+
+		return tile;
+	}
+
+	private String getFeaturesAsJson(List<TrafficFeatureInfo> tmcFeatures, Date updateTime)
+	{
+		// SimpleDateFormat is not thread-safe
+		SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
         String result = null;
 		
 	    try {
@@ -610,7 +699,7 @@ public class RealTrafficDataProvider {
 	        jw.key("properties"); 
 	        jw.object();
 	        jw.key("update_time");
-	        jw.value(getTimeStamp());
+	        jw.value(dateFormat.format(updateTime));
 	        jw.endObject();
 
 	        // Start features
@@ -737,57 +826,27 @@ public class RealTrafficDataProvider {
 
 		if (rptd == null)
 			return "";
-		else {
-			EdgeInfo ei = rptd.getEdges().get(edgeId);
-
-			if (ei != null)
-				return ei.getCodesAsString() + " | " + ei.getMessage();
-			else
-				return null;
-		}
-	}
-
-	public List<Integer> getBlockedEdges(GraphStorage graphStorage) {
-		RouteProfileTmcData rptd = getRouteProfileTmcData(graphStorage);
-
-		if (rptd == null)
-			return null;
 		else
-			return rptd.getBlockedEdges();
-		 //Test AAS 
-		 /*{
-			List<Integer> list = new ArrayList();
-			for(Entry<Integer, AvoidEdgeInfo> entry: rptd.getAvoidEdges().entrySet())
-			{
-				list.add(entry.getValue().getEdgeId());
-			}
-			
-			return list;
-		}*/
+			return rptd.getSnapshot().getEdgeMessage(edgeId);
 	}
 
-	public HashMap<Integer, AvoidEdgeInfo> getAvoidEdges(GraphStorage graphStorage) {
+	/**
+	 * Get the current traffic data of a routing profile. The returned snapshot does not change, a request should
+	 * obtain it once and use it for all of its lookups.
+	 *
+	 * @return the snapshot or <code>null</code> if no traffic data is maintained for the graph
+	 */
+	public TrafficSnapshot getTrafficSnapshot(GraphStorage graphStorage) {
 		RouteProfileTmcData rptd = getRouteProfileTmcData(graphStorage);
 
 		if (rptd == null)
 			return null;
 		else
-			return rptd.getAvoidEdges();
+			return rptd.getSnapshot();
 	}
 	
 	private RouteProfileTmcData getRouteProfileTmcData(GraphStorage graphStorage)
 	{
 		return m_routeProfilesMap.get(graphStorage.getDirectory().getLocation().hashCode());
 	}
-	
-	
-	public List<Integer> getHeavyVehicleBlockedEdges(GraphStorage graphStorage) {
-		RouteProfileTmcData rptd = getRouteProfileTmcData(graphStorage);
-
-		if (rptd == null)
-			return null;
-	
-		else
-			return rptd.getHeavyVehicleBlockedEdges();
-	}
 }
@@ -13,7 +13,11 @@
  */
 package heigit.ors.routing.traffic;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.graphhopper.util.DistanceCalc;
 import com.graphhopper.util.DistanceCalcEarth;
@@ -29,6 +33,8 @@ import com.vividsolutions.jts.operation.distance.DistanceOp;
 public class TmcSegmentsCollection
 {
 	private List<TmcSegment> segments;
+	// segments keyed by their unordered pair of location codes
+	private Map<Long, List<TmcSegment>> segmentsByLocations;
 	private Quadtree quadTree;
 	private GeometryFactory geomFactory;
 	private DistanceCalc distanceCalc;
@@ -38,6 +44,25 @@ public class TmcSegmentsCollection
 		this.segments = segments;
 		this.geomFactory = new GeometryFactory();
 		this.distanceCalc = new DistanceCalcEarth();
+		this.segmentsByLocations = new HashMap<Long, List<TmcSegment>>(segments.size());
+
+		for (TmcSegment seg : segments) {
+			Long key = getLocationsKey(seg.getFrom(), seg.getTo());
+			List<TmcSegment> list = segmentsByLocations.get(key);
+			if (list == null) {
+				// in most cases a pair is shared by the two directions of a segment
+				list = new ArrayList<TmcSegment>(2);
+				segmentsByLocations.put(key, list);
+			}
+			list.add(seg);
+		}
+	}
+
+	private static Long getLocationsKey(int lcd1, int lcd2)
+	{
+		int min = Math.min(lcd1, lcd2);
+		int max = Math.max(lcd1, lcd2);
+		return ((long)min << 32) | (max & 0xFFFFFFFFL);
 	}
 	
 	private void buildQuadTree()
@@ -63,6 +88,16 @@ public class TmcSegmentsCollection
 		return segments;
 	}
 	
+	/**
+	 * @return all segments which connect the two location codes, in either order. The returned list must not be
+	 * modified.
+	 */
+	public List<TmcSegment> getSegments(int lcd1, int lcd2)
+	{
+		List<TmcSegment> list = segmentsByLocations.get(getLocationsKey(lcd1, lcd2));
+		return list == null ? Collections.<TmcSegment>emptyList() : list;
+	}
+	
 	public TmcSegment getClosestSegment(Coordinate c, double thresholdDistance)
 	{
 		if (quadTree == null)
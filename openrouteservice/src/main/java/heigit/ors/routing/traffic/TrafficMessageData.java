@@ -330,6 +330,21 @@ public class TrafficMessageData {
 		return messages;
 	}
 
+	/**
+	 * @return a key describing the affected locations of the message. Messages with the same key are matched to the
+	 * same segments, regardless of their event codes, texts or times.
+	 */
+	public String getLocationsKey() {
+		StringBuilder sb = new StringBuilder(locationCodes.size() * 6 + 4);
+		sb.append(direction);
+		sb.append(bothDirections ? '+' : '-');
+		for (Integer lcd : locationCodes) {
+			sb.append(lcd);
+			sb.append(',');
+		}
+		return sb.toString();
+	}
+
 	private static List<Integer> getCodeList(TrafficLocationGraph graph, int startIndex, int endIndex)
 	{
 		if (startIndex == endIndex)
@@ -0,0 +1,110 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the 
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1 
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library; 
+ *  if not, see <https://www.gnu.org/licenses/>.  
+ */
+package heigit.ors.routing.traffic;
+
+import com.carrotsearch.hppc.IntObjectMap;
+import com.graphhopper.coll.GHIntObjectHashMap;
+
+import java.util.BitSet;
+import java.util.Date;
+
+/**
+ * Immutable view of the live traffic data matched to the edges of one routing profile.
+ * <p>
+ * A new snapshot is created for every traffic update and published as a whole, so a request which holds on to a
+ * snapshot sees consistent blocked and avoid edges for its entire duration without any locking.
+ * <p>
+ * GraphHopper creates the weighting of a route from string hints only, so the snapshot a route search has taken is
+ * handed to the weighting factory through {@link #current()} while the search runs on the calling thread.
+ */
+public class TrafficSnapshot {
+	public static final TrafficSnapshot EMPTY = new TrafficSnapshot(null, new GHIntObjectHashMap<EdgeInfo>(0),
+			new GHIntObjectHashMap<short[]>(0), new BitSet(0), new BitSet(0));
+
+	private static final ThreadLocal<TrafficSnapshot> CURRENT = new ThreadLocal<TrafficSnapshot>();
+
+	private final Date _time;
+	private final IntObjectMap<EdgeInfo> _edges;
+	private final IntObjectMap<short[]> _avoidCodes;
+	private final BitSet _blockedEdges;
+	private final BitSet _blockedEdgesHeavyVehicle;
+
+	public TrafficSnapshot(Date time, IntObjectMap<EdgeInfo> edges, IntObjectMap<short[]> avoidCodes, BitSet blockedEdges,
+			BitSet blockedEdgesHeavyVehicle) {
+		_time = time;
+		_edges = edges;
+		_avoidCodes = avoidCodes;
+		_blockedEdges = blockedEdges;
+		_blockedEdgesHeavyVehicle = blockedEdgesHeavyVehicle;
+	}
+
+	/**
+	 * @return the snapshot of the route search running on the calling thread or null if it uses no traffic data
+	 */
+	public static TrafficSnapshot current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Sets the snapshot of the route search running on the calling thread, null removes it.
+	 */
+	public static void setCurrent(TrafficSnapshot snapshot) {
+		if (snapshot == null)
+			CURRENT.remove();
+		else
+			CURRENT.set(snapshot);
+	}
+
+	public Date getTime() {
+		return _time;
+	}
+
+	/**
+	 * @return traffic information of the edge or <code>null</code> if there is none
+	 */
+	public EdgeInfo getEdgeInfo(int edgeId) {
+		return _edges.get(edgeId);
+	}
+
+	/**
+	 * @return the event codes and the message of the edge or <code>null</code> if there is no traffic information
+	 */
+	public String getEdgeMessage(int edgeId) {
+		EdgeInfo ei = _edges.get(edgeId);
+		return ei == null ? null : ei.getCodesAsString() + " | " + ei.getMessage();
+	}
+
+	/**
+	 * @return event codes of an edge which should be avoided or <code>null</code> if the edge is not affected
+	 */
+	public short[] getAvoidCodes(int edgeId) {
+		return _avoidCodes.get(edgeId);
+	}
+
+	public boolean hasAvoidEdges() {
+		return !_avoidCodes.isEmpty();
+	}
+
+	public boolean isBlocked(int edgeId) {
+		return edgeId >= 0 && _blockedEdges.get(edgeId);
+	}
+
+	public boolean isBlockedForHeavyVehicles(int edgeId) {
+		return edgeId >= 0 && _blockedEdgesHeavyVehicle.get(edgeId);
+	}
+
+	public boolean hasBlockedEdges(boolean heavyVehicle) {
+		return !_blockedEdges.isEmpty() || (heavyVehicle && !_blockedEdgesHeavyVehicle.isEmpty());
+	}
+}
@@ -0,0 +1,92 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.routing.traffic;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * Rendered traffic information tiles of one TMC message. Tiles are addressed by zoom, x and y in the usual web
+ * mercator tiling scheme and stored as gzip-compressed GeoJSON, so that they can be sent to clients as they are.
+ * <p>
+ * A cache belongs to the time of the message it has been rendered from and is replaced as a whole once a newer
+ * message arrives.
+ */
+public class TrafficTilesCache {
+	public static final int MAX_ZOOM = 22;
+	private static final int MAX_TILES = 8192;
+
+	private final Date _time;
+	private final ConcurrentHashMap<Long, byte[]> _tiles = new ConcurrentHashMap<Long, byte[]>();
+
+	public TrafficTilesCache(Date time) {
+		_time = time;
+	}
+
+	public Date getTime() {
+		return _time;
+	}
+
+	public byte[] getTile(int zoom, int x, int y) {
+		return _tiles.get(getTileKey(zoom, x, y));
+	}
+
+	public void putTile(int zoom, int x, int y, byte[] data) {
+		// the number of tiles a client can request is unbounded, so the cache is simply restarted when it is full
+		if (_tiles.size() >= MAX_TILES)
+			_tiles.clear();
+		_tiles.put(getTileKey(zoom, x, y), data);
+	}
+
+	public static boolean isValidTile(int zoom, int x, int y) {
+		if (zoom < 0 || zoom > MAX_ZOOM)
+			return false;
+		int n = 1 << zoom;
+		return x >= 0 && x < n && y >= 0 && y < n;
+	}
+
+	private static Long getTileKey(int zoom, int x, int y) {
+		return ((long) zoom << 58) | ((long) x << 29) | y;
+	}
+
+	/**
+	 * @return the extent of the tile in WGS84 coordinates
+	 */
+	public static Envelope getTileEnvelope(int zoom, int x, int y) {
+		double n = 1 << zoom;
+		double minLon = x / n * 360.0 - 180.0;
+		double maxLon = (x + 1) / n * 360.0 - 180.0;
+		double maxLat = Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * y / n))));
+		double minLat = Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * (y + 1) / n))));
+		return new Envelope(minLon, maxLon, minLat, maxLat);
+	}
+
+	public static byte[] compress(String json) throws IOException {
+		byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream(bytes.length / 4 + 64);
+		GZIPOutputStream gzip = new GZIPOutputStream(buffer);
+		try {
+			gzip.write(bytes);
+		} finally {
+			gzip.close();
+		}
+		return buffer.toByteArray();
+	}
+}
@@ -32,7 +32,13 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 import javax.xml.parsers.DocumentBuilder;
@@ -153,6 +159,7 @@ public class TrafficUtility {
 			System.out.println("  ReadLines: " + readLines + " Saved Segments: " + getSegmentPoints.size());
 
 			System.out.println(" Parse TMC Segments & Roads and than start processing ...");
+			List<SegmentMatchTask> tasks = new ArrayList<SegmentMatchTask>();
 
 			File[] files = { segments, roads };
 			int d1 = files.length;// (y = files).length;
@@ -200,46 +207,59 @@ public class TrafficUtility {
 										done = true;
 									}
 
-									TmcSegment[] segs = detectSegments(routeProfile, seg_lcd, roadnumber,
-											tmcpPrior.getLcd(), tmcpNext.getLcd(), +1, tmcpPrior.getCoordinate(),
-											tmcpNext.getCoordinate());
-
-									if (segs != null) {
-										if (segs[0] != null) {
-											result.add(segs[0]);
-											internalID++;
-										} else {
-											System.out.println("  > Problem @ Segment: " + seg_lcd + " Locations: "
-													+ tmcpPrior.getLcd() + "+" + tmcpNext.getLcd());
-											notSavedSegments++;
-										}
-
-										if (segs[1] != null) {
-											result.add(segs[1]);
-											internalID++;
-										} else {
-											System.out.println("  > Problem @ Segment: " + seg_lcd + " Locations: "
-													+ tmcpNext.getLcd() + "-" + tmcpPrior.getLcd());
-											notSavedSegments++;
-										}
-									}
+									tasks.add(new SegmentMatchTask(routeProfile, seg_lcd, roadnumber, tmcpPrior, tmcpNext));
 
 									tmcpPrior = tmcpNext;
 								}
 							}
 						}
 
-						if (readLines % 100 == 0) {
-							System.out.println("  ... " + readLines + " Segments done, calculated Routes: "
-									+ internalID);
-						}
 					}
 					readLines++;
 				}
 				reader.close();
 			}
 
-			System.out.println("  ReadLines: " + readLines);
+			System.out.println("  ReadLines: " + readLines + " Segments to match: " + tasks.size());
+
+			// Map matching of the segments is independent of each other, so it is done in parallel.
+			ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors()));
+			try {
+				List<Future<TmcSegment[]>> futures = executor.invokeAll(tasks);
+
+				for (int ti = 0; ti < futures.size(); ti++) {
+					SegmentMatchTask task = tasks.get(ti);
+					TmcSegment[] segs = futures.get(ti).get();
+
+					if (segs != null) {
+						if (segs[0] != null) {
+							result.add(segs[0]);
+							internalID++;
+						} else {
+							System.out.println("  > Problem @ Segment: " + task.segmentId + " Locations: "
+									+ task.start.getLcd() + "+" + task.end.getLcd());
+							notSavedSegments++;
+						}
+
+						if (segs[1] != null) {
+							result.add(segs[1]);
+							internalID++;
+						} else {
+							System.out.println("  > Problem @ Segment: " + task.segmentId + " Locations: "
+									+ task.end.getLcd() + "-" + task.start.getLcd());
+							notSavedSegments++;
+						}
+					}
+
+					if (ti % 1000 == 0) {
+						System.out.println("  ... " + ti + " Segments done, calculated Routes: " + internalID);
+					}
+				}
+			} finally {
+				executor.shutdown();
+			}
+
+			System.out.println("  Calculated Routes: " + internalID);
 			System.out.println("  Number of Segments which are *not* saved (LCL Problems): " + getSegmentPoints.size());
 			System.out.println("  Number of Segments which are *not* saved (No Routing): " + notSavedSegments);
 
@@ -252,6 +272,28 @@ public class TrafficUtility {
 		return result;
 	}
 
+	private static class SegmentMatchTask implements Callable<TmcSegment[]> {
+		private final RoutingProfile routeProfile;
+		private final int segmentId;
+		private final String roadnumber;
+		private final TmcPoint start;
+		private final TmcPoint end;
+
+		SegmentMatchTask(RoutingProfile routeProfile, int segmentId, String roadnumber, TmcPoint start, TmcPoint end) {
+			this.routeProfile = routeProfile;
+			this.segmentId = segmentId;
+			this.roadnumber = roadnumber;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public TmcSegment[] call() {
+			return detectSegments(routeProfile, segmentId, roadnumber, start.getLcd(), end.getLcd(), +1,
+					start.getCoordinate(), end.getCoordinate());
+		}
+	}
+
 	public static TmcSegment[] detectSegments(RoutingProfile rp, long id, String roadnumber, Integer startID, Integer endID,
 			Integer direction, Coordinate startCoordinate, Coordinate endCoordinate) {
 		TmcSegment[] result = new TmcSegment[2];
@@ -440,13 +482,45 @@ public class TrafficUtility {
 		return buffer.toString();
 	}
 
+	/**
+	 * Segments and merged geometries matched to the locations of a message, see
+	 * {@link TrafficMessageData#getLocationsKey()}.
+	 */
+	static class MatchedLocations {
+		static final MatchedLocations EMPTY = new MatchedLocations(null, null, null, null);
+
+		private final List<Integer> edgeIds;
+		private final List<Geometry> geoms;
+		private final List<Integer> edgeIdsReverse;
+		private final List<Geometry> geomsReverse;
+
+		MatchedLocations(List<Integer> edgeIds, List<Geometry> geoms, List<Integer> edgeIdsReverse, List<Geometry> geomsReverse) {
+			this.edgeIds = edgeIds;
+			this.geoms = geoms;
+			this.edgeIdsReverse = edgeIdsReverse;
+			this.geomsReverse = geomsReverse;
+		}
+	}
+
 	public static List<TrafficFeatureInfo> extractTmcFeatures(String tmcMessage, TmcSegmentsCollection segments,
 			long timeThreshold, TrafficLocationGraph graph, Logger logger) {
+		return extractTmcFeatures(tmcMessage, segments, timeThreshold, graph, null, logger);
+	}
+
+	/**
+	 * @param matchCache	locations matched by the previous calls with the same segments collection, or <code>null</code>.
+	 * 						Only locations which are not in the cache are matched, afterwards the cache contains the
+	 * 						locations of the current messages only.
+	 */
+	static List<TrafficFeatureInfo> extractTmcFeatures(String tmcMessage, TmcSegmentsCollection segments,
+			long timeThreshold, TrafficLocationGraph graph, Map<String, MatchedLocations> matchCache, Logger logger) {
 		List<TrafficFeatureInfo> result = new ArrayList<TrafficFeatureInfo>();
 
 		List<TrafficMessageData> messages = TrafficMessageData.parse(tmcMessage, "ISO-8859-1", segments, graph);
 
 		GeometryFactory geomFactory = new GeometryFactory();
+		Set<String> usedKeys = matchCache == null ? null : new HashSet<String>();
+		int cacheHits = 0;
 
 		for (int i = 0; i < messages.size(); i++) {
 			try {
@@ -456,70 +530,30 @@ public class TrafficUtility {
 				// http://wiki.openstreetmap.org/wiki/TMC/Event_Code_List
 
 				if (m.locationCodes.size() > 1) {
-					boolean bAdd = false;
-					List<Geometry> geoms = new ArrayList<Geometry>();
-					List<Geometry> geoms_reverse = new ArrayList<Geometry>();
-					List<Integer> edgeIds = new ArrayList<Integer>();
-					List<Integer> edgeIds_reverse = new ArrayList<Integer>();
-
-					for (int j = 0; j < m.locationCodes.size() - 1; j++) {
-						Integer lcl_fr = m.locationCodes.get(j);
-						Integer lcl_to = m.locationCodes.get(j + 1);
-						
-						for (int si = 0; si < segments.size(); si++) {
-							TmcSegment seg = segments.get(si);
-
-							int osm_fr = seg.getFrom();
-							int osm_to = seg.getTo();
-
-							if ((lcl_fr == osm_fr && lcl_to == osm_to) || (lcl_fr == osm_to && lcl_to == osm_fr)) {
-								if (m.bothDirections || m.direction != seg.getDirection()) {
-									/*
-									 * in unserem XML kodiert das Element LDR
-									 * die Richtungsangabe. Dabei ist 0 =
-									 * positive Richtung und 1 = negative
-									 * Richtung. Dies bezieht sich auf die
-									 * Verknüpfungsrichtung in der TMC Tabelle.
-									 * Beispiel: In der TMC Tabelle ist A
-									 * positiv verknüpft ist mit B. Auf der
-									 * Strecke von A nach B ist bei B ein Unfall
-									 * passiert und es Staut sich zurück bis
-									 * nach A.
-									 * 
-									 * Dann ist die Meldung wie folgt kodiert:
-									 * PrimaryLocation = B (hier ist der Unfall)
-									 * SecondaryLocation = A (bis hier reicht
-									 * der Stau) LocationDirection = 1 (negativ)
-									 * 
-									 * Die LocationDirection (LDR) ist negative,
-									 * weil man vom PrimaryLocation zum
-									 * SecondaryLocation nur kommt, indem man
-									 * sich rückwärts (negativ) durch die TMC
-									 * Verknüpfung hangelt.
-									 */
-									if ((lcl_fr == osm_to && lcl_to == osm_fr))
-									{
-										geoms_reverse.add(seg.getGeometry());
-										edgeIds_reverse.addAll(seg.getEdgeIDs());
-									}
-									else
-									{
-										geoms.add(seg.getGeometry());
-										edgeIds.addAll(seg.getEdgeIDs());
-									}
-									bAdd = true;
-								}
-							}
-						}
+					MatchedLocations ml = null;
+					String key = null;
+
+					if (matchCache != null) {
+						key = m.getLocationsKey();
+						usedKeys.add(key);
+						ml = matchCache.get(key);
+						if (ml != null)
+							cacheHits++;
 					}
-					
-					if (bAdd)
+
+					if (ml == null) {
+						ml = matchLocations(m, segments, geomFactory);
+						if (matchCache != null)
+							matchCache.put(key, ml);
+					}
+
+					if (ml != MatchedLocations.EMPTY)
 					{
-						List<TrafficFeatureInfo> tei = createTrafficFeatureInfo(m, edgeIds, geoms, geomFactory, timeThreshold);
+						List<TrafficFeatureInfo> tei = createTrafficFeatureInfo(m, ml.edgeIds, ml.geoms, timeThreshold);
 						if (tei != null)
 							result.addAll(tei);
 						
-						List<TrafficFeatureInfo> tei_reverse = createTrafficFeatureInfo(m, edgeIds_reverse, geoms_reverse, geomFactory, timeThreshold);
+						List<TrafficFeatureInfo> tei_reverse = createTrafficFeatureInfo(m, ml.edgeIdsReverse, ml.geomsReverse, timeThreshold);
 						if (tei_reverse != null)
 							result.addAll(tei_reverse);
 					}
@@ -536,10 +570,74 @@ public class TrafficUtility {
 			}
 		}
 
+		if (matchCache != null) {
+			// forget the locations of messages which are no longer present
+			matchCache.keySet().retainAll(usedKeys);
+			logger.info("TMC: " + messages.size() + " messages, " + cacheHits + " with already matched locations.");
+		}
+
 		return result;
 	}
+
+	private static MatchedLocations matchLocations(TrafficMessageData m, TmcSegmentsCollection segments, GeometryFactory geomFactory) {
+		boolean bAdd = false;
+		List<Geometry> geoms = new ArrayList<Geometry>();
+		List<Geometry> geoms_reverse = new ArrayList<Geometry>();
+		List<Integer> edgeIds = new ArrayList<Integer>();
+		List<Integer> edgeIds_reverse = new ArrayList<Integer>();
+
+		for (int j = 0; j < m.locationCodes.size() - 1; j++) {
+			int lcl_fr = m.locationCodes.get(j);
+			int lcl_to = m.locationCodes.get(j + 1);
+
+			for (TmcSegment seg : segments.getSegments(lcl_fr, lcl_to)) {
+				if (m.bothDirections || m.direction != seg.getDirection()) {
+					/*
+					 * in unserem XML kodiert das Element LDR
+					 * die Richtungsangabe. Dabei ist 0 =
+					 * positive Richtung und 1 = negative
+					 * Richtung. Dies bezieht sich auf die
+					 * Verknüpfungsrichtung in der TMC Tabelle.
+					 * Beispiel: In der TMC Tabelle ist A
+					 * positiv verknüpft ist mit B. Auf der
+					 * Strecke von A nach B ist bei B ein Unfall
+					 * passiert und es Staut sich zurück bis
+					 * nach A.
+					 * 
+					 * Dann ist die Meldung wie folgt kodiert:
+					 * PrimaryLocation = B (hier ist der Unfall)
+					 * SecondaryLocation = A (bis hier reicht
+					 * der Stau) LocationDirection = 1 (negativ)
+					 * 
+					 * Die LocationDirection (LDR) ist negative,
+					 * weil man vom PrimaryLocation zum
+					 * SecondaryLocation nur kommt, indem man
+					 * sich rückwärts (negativ) durch die TMC
+					 * Verknüpfung hangelt.
+					 */
+					if (lcl_fr == seg.getTo() && lcl_to == seg.getFrom())
+					{
+						geoms_reverse.add(seg.getGeometry());
+						edgeIds_reverse.addAll(seg.getEdgeIDs());
+					}
+					else
+					{
+						geoms.add(seg.getGeometry());
+						edgeIds.addAll(seg.getEdgeIDs());
+					}
+					bAdd = true;
+				}
+			}
+		}
+
+		if (!bAdd)
+			return MatchedLocations.EMPTY;
+
+		return new MatchedLocations(edgeIds, geoms.size() == 0 ? geoms : processGeometries(geoms, geomFactory),
+				edgeIds_reverse, geoms_reverse.size() == 0 ? geoms_reverse : processGeometries(geoms_reverse, geomFactory));
+	}
 	
-	private static List<TrafficFeatureInfo> createTrafficFeatureInfo(TrafficMessageData m, List<Integer> edgeIds, List<Geometry> geoms, GeometryFactory geomFactory, long timeThreshold) throws ParseException
+	private static List<TrafficFeatureInfo> createTrafficFeatureInfo(TrafficMessageData m, List<Integer> edgeIds, List<Geometry> geoms, long timeThreshold) throws ParseException
 	{
 		if (geoms.size() == 0)
 			return null;
@@ -547,7 +645,7 @@ public class TrafficUtility {
 		List<TrafficFeatureInfo> result = new ArrayList<TrafficFeatureInfo>();
 		Date now = new Date();
 		
-		for(Geometry geom : processGeometries(geoms, geomFactory))
+		for(Geometry geom : geoms)
 		{
 			TrafficFeatureInfo tei = new TrafficFeatureInfo(m.eventDataCodes,
 					m.messageDataText, edgeIds);
@@ -26,6 +26,7 @@ import heigit.ors.services.isochrones.IsochronesServiceSettings;
 import heigit.ors.services.mapmatching.MapMatchingServiceSettings;
 import heigit.ors.services.matrix.MatrixServiceSettings;
 import heigit.ors.services.routing.RoutingServiceSettings;
+import heigit.ors.servlet.http.ServiceRequestExecutor;
 import heigit.ors.util.AppInfo;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -125,6 +126,15 @@ public class ORSServicesUtils {
 			// TODO
 		}
 
+		List<ServiceRequestExecutor> executors = ServiceRequestExecutor.getInstances();
+		if (!executors.isEmpty())
+		{
+			JSONObject jRequests = new JSONObject(true);
+			for (ServiceRequestExecutor executor : executors)
+				jRequests.put(executor.getServiceName(), executor.getMetrics());
+			jInfo.put("requests", jRequests);
+		}
+
 		writeJson(req, res, jInfo);
 	}
 
@@ -16,9 +16,11 @@ package heigit.ors.services.isochrones;
 import javax.servlet.ServletException;
 import javax.servlet.http.*;
 
+import heigit.ors.isochrones.IsochronesErrorCodes;
 import heigit.ors.services.isochrones.requestprocessors.IsochronesServiceRequestProcessorFactory;
 import heigit.ors.servlet.http.AbstractHttpRequestProcessor;
 import heigit.ors.servlet.http.BaseHttpServlet;
+import heigit.ors.servlet.http.ServiceRequestExecutor;
 
 public class IsochronesServiceServlet extends BaseHttpServlet {
 
@@ -32,29 +34,19 @@ public class IsochronesServiceServlet extends BaseHttpServlet {
 	
 	public void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException 
 	{
-		try
-		{
+		processAsync(request, response, ServiceRequestExecutor.getInstance("isochrones", IsochronesErrorCodes.REQUEST_TIMEOUT), () -> {
 			AbstractHttpRequestProcessor reqProcessor = IsochronesServiceRequestProcessorFactory.createProcessor(request);
 			reqProcessor.process(response);
 			reqProcessor.destroy();
-		}
-		catch(Exception ex)
-		{
-			writeError(response, ex);
-		}
+		});
 	}
 	
 	public void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException{
-		try
-		{
+		processAsync(request, response, ServiceRequestExecutor.getInstance("isochrones", IsochronesErrorCodes.REQUEST_TIMEOUT), () -> {
 			AbstractHttpRequestProcessor reqProcessor = IsochronesServiceRequestProcessorFactory.createProcessor(request);
 			reqProcessor.process(response);
 			reqProcessor.destroy();
-		}
-		catch(Exception ex)
-		{
-			writeError(response, ex);
-		}
+		});
 	}
 
     public void destroy() {
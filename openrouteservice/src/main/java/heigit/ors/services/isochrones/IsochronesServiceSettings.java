@@ -14,6 +14,7 @@
 package heigit.ors.services.isochrones;
 
 import heigit.ors.config.AppConfig;
+import heigit.ors.geojson.GeometryJSONWriter;
 import heigit.ors.isochrones.statistics.StatisticsProviderConfiguration;
 import heigit.ors.routing.RoutingProfileType;
 
@@ -27,6 +28,9 @@ import com.typesafe.config.ConfigObject;
 import heigit.ors.common.TravelRangeType;
 
 public class IsochronesServiceSettings {
+	// the default maximum pool size of HikariCP
+	private static final int DEFAULT_STATISTICS_POOL_SIZE = 10;
+
 	private static boolean enabled = true;
 	private static int maximumLocations = 1;
 	private static int maximumRangeDistance = 100000; //  in meters
@@ -34,8 +38,12 @@ public class IsochronesServiceSettings {
 	private static int maximumRangeTime = 3600; // in seconds
 	private static Map<Integer, Integer> profileMaxRangeTimes;
 	private static int maximumIntervals = 1;
+	private static int maximumBatchLocations = 10000;
+	private static int batchThreads = Runtime.getRuntime().availableProcessors();
 	private static boolean allowComputeArea = true;
+	private static int geometryPrecision = GeometryJSONWriter.DEFAULT_DECIMALS;
 	private static Map<String, StatisticsProviderConfiguration> statsProviders;
+	private static int statisticsThreads = 1;
 	private static String attribution = "";
 
 	static 
@@ -77,9 +85,18 @@ public class IsochronesServiceSettings {
 		value = AppConfig.Global().getServiceParameter("isochrones", "maximum_intervals");
 		if (value != null)
 			maximumIntervals = Integer.parseInt(value);
+		value = AppConfig.Global().getServiceParameter("isochrones", "maximum_batch_locations");
+		if (value != null)
+			maximumBatchLocations = Integer.parseInt(value);
+		value = AppConfig.Global().getServiceParameter("isochrones", "batch_threads");
+		if (value != null)
+			batchThreads = Math.max(1, Integer.parseInt(value));
 		value = AppConfig.Global().getServiceParameter("isochrones", "allow_compute_area");
 		if (value != null)
 			allowComputeArea = Boolean.parseBoolean(value);
+		value = AppConfig.Global().getServiceParameter("isochrones", "geometry_precision");
+		if (value != null)
+			geometryPrecision = Math.max(0, Math.min(GeometryJSONWriter.DEFAULT_DECIMALS, Integer.parseInt(value)));
 
 		statsProviders = new HashMap<String, StatisticsProviderConfiguration>();
 
@@ -87,6 +104,7 @@ public class IsochronesServiceSettings {
 		if (providers != null)
 		{
 			int id = 0;
+			int poolSizes = 0;
 			for (Map.Entry<String, Object> entry : providers.entrySet())
 			{
 				Map<String, Object> provider = AppConfig.Global().getServiceParametersMap("isochrones", "statistics_providers." + entry.getKey(), false);
@@ -112,9 +130,13 @@ public class IsochronesServiceSettings {
 						StatisticsProviderConfiguration provConfig = new StatisticsProviderConfiguration(id, provName, providerParams, propMapping, attribution);
 						for (Entry<String, String> property : propMapping.entrySet())
 							statsProviders.put(property.getKey().toLowerCase(), provConfig);
+
+						Object poolSize = providerParams.get("max_pool_size");
+						poolSizes += poolSize instanceof Number ? ((Number) poolSize).intValue() : DEFAULT_STATISTICS_POOL_SIZE;
 					}
 				}
 			}
+			statisticsThreads = Math.max(1, poolSizes);
 		}
 
 		value = AppConfig.Global().getServiceParameter("isochrones", "attribution");
@@ -186,6 +208,29 @@ public class IsochronesServiceSettings {
 		return maximumIntervals;
 	}
 
+	public static int getMaximumBatchLocations() {
+		return maximumBatchLocations;
+	}
+
+	public static int getBatchThreads() {
+		return batchThreads;
+	}
+
+	/**
+	 * @return the number of threads querying the statistics providers, the sum of the connection pool sizes
+	 * (max_pool_size) of the providers
+	 */
+	public static int getStatisticsThreads() {
+		return statisticsThreads;
+	}
+
+	/**
+	 * @return the number of decimals of the coordinates of isochrone responses
+	 */
+	public static int getGeometryPrecision() {
+		return geometryPrecision;
+	}
+
 	public static Map<String, StatisticsProviderConfiguration> getStatsProviders() {
 		return statsProviders;
 	}
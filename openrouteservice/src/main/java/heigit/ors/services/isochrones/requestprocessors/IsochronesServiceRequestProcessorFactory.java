@@ -22,6 +22,7 @@ import heigit.ors.exceptions.UnknownParameterValueException;
 import heigit.ors.isochrones.IsochronesErrorCodes;
 import heigit.ors.routing.RoutingProfileManagerStatus;
 import heigit.ors.services.isochrones.IsochronesServiceSettings;
+import heigit.ors.services.isochrones.requestprocessors.json.JsonIsochronesBatchRequestProcessor;
 import heigit.ors.services.isochrones.requestprocessors.json.JsonIsochronesRequestProcessor;
 
 import com.graphhopper.util.Helper;
@@ -42,7 +43,11 @@ public class IsochronesServiceRequestProcessorFactory {
 			formatParam = "json";
 
 		if (formatParam.equalsIgnoreCase("json"))
+		{
+			if (request.getServletPath() != null && request.getServletPath().endsWith("/batch"))
+				return new JsonIsochronesBatchRequestProcessor(request);
 			return new JsonIsochronesRequestProcessor(request);
+		}
 		/*else if (formatParam.equalsIgnoreCase("xml"))
 			return new XmlAccessibilityRequestProcessor(request);*/
 		else 
@@ -19,6 +19,7 @@ import heigit.ors.common.StatusCode;
 import heigit.ors.common.TravelRangeType;
 import heigit.ors.common.TravellerInfo;
 import heigit.ors.exceptions.MissingParameterException;
+import heigit.ors.exceptions.ParameterOutOfRangeException;
 import heigit.ors.exceptions.ParameterValueException;
 import heigit.ors.exceptions.StatusCodeException;
 import heigit.ors.exceptions.UnknownParameterValueException;
@@ -27,8 +28,9 @@ import heigit.ors.isochrones.IsochronesErrorCodes;
 import heigit.ors.routing.RoutingProfileType;
 import heigit.ors.services.isochrones.IsochronesServiceSettings;
 import heigit.ors.util.CoordTools;
-import heigit.ors.util.StreamUtility;
+import heigit.ors.util.JsonStreamReader;
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 
 import javax.servlet.http.HttpServletRequest;
@@ -37,134 +39,58 @@ import java.util.Arrays;
 
 public class JsonIsochroneRequestParser {
 
-	public static IsochroneRequest parseFromStream(InputStream stream) throws Exception 
+	/**
+	 * Reads the request while it is received. The travellers are parsed one by one, so that a request with more than
+	 * maxTravellers of them is rejected without reading the rest of it.
+	 *
+	 * @param maxTravellers the maximum number of travellers, 0 for no limit
+	 */
+	public static IsochroneRequest parseFromStream(InputStream stream, int maxTravellers) throws Exception 
 	{
-		JSONObject json = null;
-		try {
-			String body = StreamUtility.readStream(stream);
-			json = new JSONObject(body);
-		} catch (Exception ex) {
-			throw new StatusCodeException(StatusCode.BAD_REQUEST, IsochronesErrorCodes.INVALID_JSON_FORMAT, "Unable to parse JSON document.");
-		}
-
 		IsochroneRequest req = new IsochroneRequest();
-		
-		String value = null;
-		
-		if (json.has("travellers"))
-		{
-			JSONArray jTravellers = json.getJSONArray("travellers");
-			
-			if (jTravellers.length() == 0)
-				throw new MissingParameterException(IsochronesErrorCodes.INVALID_JSON_FORMAT, "'travellers' array is empty.");
-			
-			for (int j = 0; j < jTravellers.length(); ++j)
+		JSONObject json = new JSONObject();
+		boolean hasTravellers = false;
+
+		try {
+			JsonStreamReader reader = new JsonStreamReader(stream);
+			reader.beginObject();
+			while (reader.hasNext())
 			{
-				JSONObject jTraveller = jTravellers.getJSONObject(j);
-				
-				TravellerInfo travellerInfo = new TravellerInfo();
-				
-				value = jTraveller.optString("profile");
-				if (!Helper.isEmpty(value))
-				{
-					int profileType = RoutingProfileType.getFromString(value);
-					if (profileType == RoutingProfileType.UNKNOWN)
-						throw new UnknownParameterValueException(IsochronesErrorCodes.INVALID_PARAMETER_VALUE, "profile", value);
-					travellerInfo.getRouteSearchParameters().setProfileType(profileType);
-				}
-				else
-				{
-					throw new MissingParameterException(IsochronesErrorCodes.MISSING_PARAMETER, "profile");
-				}
-				
-				if (jTraveller.has("location"))
+				String name = reader.nextName();
+				if ("travellers".equals(name))
 				{
-					try
-					{
-						JSONArray jLocation = jTraveller.getJSONArray("location");
-						travellerInfo.setLocation(new Coordinate(jLocation.getDouble(0), jLocation.getDouble(1)));						
-					}
-					catch(Exception nfex)
+					reader.beginArray();
+					while (reader.hasNext())
 					{
-						throw new ParameterValueException(IsochronesErrorCodes.INVALID_PARAMETER_FORMAT, "location");
-					}
-				}
-				else
-				{
-					throw new MissingParameterException(IsochronesErrorCodes.MISSING_PARAMETER, "location");
-				}
-
-				value = jTraveller.optString("location_type");
-				if (!Helper.isEmpty(value))
-				{
-					if (!"start".equalsIgnoreCase(value) && !"destination".equalsIgnoreCase(value))
-						throw new UnknownParameterValueException(IsochronesErrorCodes.INVALID_PARAMETER_VALUE, "location_type", value);
-
-					travellerInfo.setLocationType(value);
-				}
-				
-				if (jTraveller.has("range"))
-				{
-					JSONArray jRanges = jTraveller.getJSONArray("range");
-					
-					if (jRanges.length() == 0)
-						throw new ParameterValueException(IsochronesErrorCodes.INVALID_PARAMETER_FORMAT, "range");
+						if (maxTravellers > 0 && req.getTravellers().size() == maxTravellers)
+							throw new ParameterOutOfRangeException(IsochronesErrorCodes.PARAMETER_VALUE_EXCEEDS_MAXIMUM, "locations", "at least " + (maxTravellers + 1), Integer.toString(maxTravellers));
 
-					double[] ranges = new double[jRanges.length()];
+						Object jTraveller = reader.readValue();
+						if (!(jTraveller instanceof JSONObject))
+							throw new StatusCodeException(StatusCode.BAD_REQUEST, IsochronesErrorCodes.INVALID_JSON_FORMAT, "Unable to parse JSON document.");
 
-					try
-					{
-						for (int i = 0; i < ranges.length; i++)
-							ranges[i] = jRanges.getDouble(i);
-					}
-					catch(Exception ex)
-					{
-						throw new ParameterValueException(IsochronesErrorCodes.INVALID_PARAMETER_FORMAT, "range");
+						req.addTraveller(parseTraveller((JSONObject) jTraveller));
 					}
-
-					Arrays.sort(ranges);
-
-					travellerInfo.setRanges(ranges);
+					reader.endArray();
+					hasTravellers = true;
 				}
 				else
-					throw new MissingParameterException(IsochronesErrorCodes.MISSING_PARAMETER, "range");
-				
-				value = jTraveller.optString("range_type");
-				if (!Helper.isEmpty(value))
 				{
-					switch (value.toLowerCase())
-					{
-					case "distance":
-						travellerInfo.setRangeType(TravelRangeType.Distance);
-						break;
-					case "time":
-						travellerInfo.setRangeType(TravelRangeType.Time);
-						break;
-					default:
-						throw new UnknownParameterValueException(IsochronesErrorCodes.INVALID_PARAMETER_VALUE, "range_type", value);
-					}
-				}
-				
-				value = jTraveller.optString("options");
-				if (!Helper.isEmpty(value))
-				{
-					try
-					{
-						travellerInfo.getRouteSearchParameters().setOptions(value);
-					}
-					catch(Exception ex)
-					{
-						throw new ParameterValueException(IsochronesErrorCodes.INVALID_JSON_FORMAT, "options", value);
-					}
+					json.put(name, reader.readValue());
 				}
-				
-				req.addTraveller(travellerInfo);
 			}
+			reader.endObject();
+		} catch (JSONException ex) {
+			throw new StatusCodeException(StatusCode.BAD_REQUEST, IsochronesErrorCodes.INVALID_JSON_FORMAT, "Unable to parse JSON document.");
 		}
-		else
+
+		if (!hasTravellers)
 			throw new MissingParameterException(IsochronesErrorCodes.MISSING_PARAMETER, "travellers");
-		
-		value = json.optString("units");
+
+		if (req.getTravellers().isEmpty())
+			throw new MissingParameterException(IsochronesErrorCodes.INVALID_JSON_FORMAT, "'travellers' array is empty.");
+
+		String value = json.optString("units");
 		if (!Helper.isEmpty(value))
 		{
 			if (!("m".equals(value) || "km".equals(value) || "mi".equals(value)))
@@ -214,6 +140,7 @@ public class JsonIsochroneRequestParser {
 		}
 
 		setIsochroneSmoothing(req, json.optString("smoothing"));
+		setRasterResolution(req, json.optString("raster_resolution"));
 		
 		value = json.optString("id");
 		if (!Helper.isEmpty(value))
@@ -347,7 +274,7 @@ public class JsonIsochroneRequestParser {
 		{
 			try
 			{
-				coords = CoordTools.parse(value, "\\|", false, inverseXY);						
+				coords = CoordTools.parse(value, '|', false, inverseXY);						
 			}
 			catch(NumberFormatException nfex)
 			{
@@ -413,6 +340,7 @@ public class JsonIsochroneRequestParser {
 		}
 
 		setIsochroneSmoothing(req, request.getParameter("smoothing"));
+		setRasterResolution(req, request.getParameter("raster_resolution"));
 		
 		if (coords.length == 1)
 		{
@@ -439,6 +367,107 @@ public class JsonIsochroneRequestParser {
 		return req;
 	}
 
+	private static TravellerInfo parseTraveller(JSONObject jTraveller) throws Exception
+	{
+		TravellerInfo travellerInfo = new TravellerInfo();
+
+		String value = jTraveller.optString("profile");
+		if (!Helper.isEmpty(value))
+		{
+			int profileType = RoutingProfileType.getFromString(value);
+			if (profileType == RoutingProfileType.UNKNOWN)
+				throw new UnknownParameterValueException(IsochronesErrorCodes.INVALID_PARAMETER_VALUE, "profile", value);
+			travellerInfo.getRouteSearchParameters().setProfileType(profileType);
+		}
+		else
+		{
+			throw new MissingParameterException(IsochronesErrorCodes.MISSING_PARAMETER, "profile");
+		}
+		
+		if (jTraveller.has("location"))
+		{
+			try
+			{
+				JSONArray jLocation = jTraveller.getJSONArray("location");
+				travellerInfo.setLocation(new Coordinate(jLocation.getDouble(0), jLocation.getDouble(1)));						
+			}
+			catch(Exception nfex)
+			{
+				throw new ParameterValueException(IsochronesErrorCodes.INVALID_PARAMETER_FORMAT, "location");
+			}
+		}
+		else
+		{
+			throw new MissingParameterException(IsochronesErrorCodes.MISSING_PARAMETER, "location");
+		}
+
+		value = jTraveller.optString("location_type");
+		if (!Helper.isEmpty(value))
+		{
+			if (!"start".equalsIgnoreCase(value) && !"destination".equalsIgnoreCase(value))
+				throw new UnknownParameterValueException(IsochronesErrorCodes.INVALID_PARAMETER_VALUE, "location_type", value);
+
+			travellerInfo.setLocationType(value);
+		}
+		
+		if (jTraveller.has("range"))
+		{
+			JSONArray jRanges = jTraveller.getJSONArray("range");
+			
+			if (jRanges.length() == 0)
+				throw new ParameterValueException(IsochronesErrorCodes.INVALID_PARAMETER_FORMAT, "range");
+
+			double[] ranges = new double[jRanges.length()];
+
+			try
+			{
+				for (int i = 0; i < ranges.length; i++)
+					ranges[i] = jRanges.getDouble(i);
+			}
+			catch(Exception ex)
+			{
+				throw new ParameterValueException(IsochronesErrorCodes.INVALID_PARAMETER_FORMAT, "range");
+			}
+
+			Arrays.sort(ranges);
+
+			travellerInfo.setRanges(ranges);
+		}
+		else
+			throw new MissingParameterException(IsochronesErrorCodes.MISSING_PARAMETER, "range");
+		
+		value = jTraveller.optString("range_type");
+		if (!Helper.isEmpty(value))
+		{
+			switch (value.toLowerCase())
+			{
+			case "distance":
+				travellerInfo.setRangeType(TravelRangeType.Distance);
+				break;
+			case "time":
+				travellerInfo.setRangeType(TravelRangeType.Time);
+				break;
+			default:
+				throw new UnknownParameterValueException(IsochronesErrorCodes.INVALID_PARAMETER_VALUE, "range_type", value);
+			}
+		}
+		
+		value = jTraveller.optString("options");
+		if (!Helper.isEmpty(value))
+		{
+			try
+			{
+				travellerInfo.getRouteSearchParameters().setOptions(value);
+			}
+			catch(Exception ex)
+			{
+				throw new ParameterValueException(IsochronesErrorCodes.INVALID_JSON_FORMAT, "options", value);
+			}
+		}
+
+		return travellerInfo;
+	}
+
 	private static void setIsochroneSmoothing(IsochroneRequest isochroneRequest, String requestSmoothingValue) throws ParameterValueException {
 		if (!Helper.isEmpty(requestSmoothingValue)) {
 			float smoothingValue;
@@ -454,4 +483,21 @@ public class JsonIsochroneRequestParser {
 			isochroneRequest.setSmoothingFactor(smoothingValue);
 		}
 	}
+
+	private static void setRasterResolution(IsochroneRequest isochroneRequest, String value) throws ParameterValueException {
+		if (!Helper.isEmpty(value)) {
+			double resolution;
+			try {
+				resolution = Double.parseDouble(value);
+			} catch (Exception e) {
+				throw new ParameterValueException(IsochronesErrorCodes.INVALID_PARAMETER_FORMAT, "raster_resolution", value);
+			}
+
+			// in metres
+			if (resolution < 10 || resolution > 10000)
+				throw new ParameterValueException(IsochronesErrorCodes.INVALID_PARAMETER_VALUE, "raster_resolution", value);
+
+			isochroneRequest.setRasterResolution(resolution);
+		}
+	}
 }
@@ -0,0 +1,155 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.services.isochrones.requestprocessors.json;
+
+import com.vividsolutions.jts.geom.Envelope;
+import heigit.ors.common.StatusCode;
+import heigit.ors.common.TravellerInfo;
+import heigit.ors.exceptions.ParameterOutOfRangeException;
+import heigit.ors.exceptions.RequestTimeoutException;
+import heigit.ors.exceptions.StatusCodeException;
+import heigit.ors.geojson.GeometryJSONWriter;
+import heigit.ors.isochrones.*;
+import heigit.ors.routing.RoutingProfileManager;
+import heigit.ors.services.isochrones.IsochronesServiceSettings;
+import heigit.ors.servlet.http.AbstractHttpRequestProcessor;
+import heigit.ors.util.JsonStreamWriter;
+import org.json.JSONObject;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Computes the isochrones of many locations in one request. The locations are processed in parallel and every
+ * result is written as soon as it is available, one GeoJSON FeatureCollection per line (newline delimited JSON).
+ * The lines are written in the order in which the locations are completed, the member group_index refers to the
+ * index of the location in the request.
+ */
+public class JsonIsochronesBatchRequestProcessor extends AbstractHttpRequestProcessor {
+    public static final String CONTENT_TYPE = "application/x-ndjson";
+
+    public JsonIsochronesBatchRequestProcessor(HttpServletRequest request) throws Exception {
+        super(request);
+    }
+
+    @Override
+    public void process(HttpServletResponse response) throws Exception {
+        if (!"POST".equals(_request.getMethod()))
+            throw new StatusCodeException(StatusCode.METHOD_NOT_ALLOWED, IsochronesErrorCodes.UNKNOWN);
+
+        IsochroneRequest req = JsonIsochroneRequestParser.parseFromStream(_request.getInputStream(), IsochronesServiceSettings.getMaximumBatchLocations());
+
+        if (req == null)
+            throw new StatusCodeException(StatusCode.BAD_REQUEST, IsochronesErrorCodes.UNKNOWN, "IsochronesRequest object is null.");
+
+        if (!req.isValid())
+            throw new StatusCodeException(StatusCode.BAD_REQUEST, IsochronesErrorCodes.UNKNOWN, "IsochronesRequest is not valid.");
+
+        List<TravellerInfo> travellers = req.getTravellers();
+
+        if (IsochronesServiceSettings.getAllowComputeArea() == false && req.hasAttribute("area"))
+            throw new StatusCodeException(StatusCode.BAD_REQUEST, IsochronesErrorCodes.FEATURE_NOT_SUPPORTED, "Area computation is not enabled.");
+
+        if (req.isRasterOutput())
+            throw new StatusCodeException(StatusCode.BAD_REQUEST, IsochronesErrorCodes.FEATURE_NOT_SUPPORTED, "Raster output is not supported for batch requests.");
+
+        if (req.getIncludeIntersections())
+            throw new StatusCodeException(StatusCode.BAD_REQUEST, IsochronesErrorCodes.FEATURE_NOT_SUPPORTED, "Intersections are not supported for batch requests.");
+
+        if (travellers.size() > IsochronesServiceSettings.getMaximumBatchLocations())
+            throw new ParameterOutOfRangeException(IsochronesErrorCodes.PARAMETER_VALUE_EXCEEDS_MAXIMUM, "locations", Integer.toString(travellers.size()), Integer.toString(IsochronesServiceSettings.getMaximumBatchLocations()));
+
+        for (int i = 0; i < travellers.size(); ++i)
+            JsonIsochronesRequestProcessor.checkRangeLimits(travellers.get(i));
+
+        List<IsochroneSearchParameters> parametersList = new ArrayList<IsochroneSearchParameters>(travellers.size());
+        for (int i = 0; i < travellers.size(); ++i)
+            parametersList.add(req.getSearchParameters(i));
+
+        response.setStatus(StatusCode.OK);
+        response.setContentType(CONTENT_TYPE);
+        response.setCharacterEncoding("UTF-8");
+
+        JsonStreamWriter writer = new JsonStreamWriter(response.getOutputStream());
+        GeometryJSONWriter geomWriter = JsonIsochronesRequestProcessor.createGeometryWriter(writer);
+        RoutingProfileManager.getInstance().buildIsochrones(parametersList, req.getNonDefaultAttributes(), new IsochroneBatchListener() {
+            @Override
+            public void isochroneMapBuilt(IsochroneMap isochroneMap) throws Exception {
+                try {
+                    isochroneMap.waitForAttributes();
+                } catch (Exception ex) {
+                    isochroneMapFailed(isochroneMap.getTravellerId(), ex);
+                    return;
+                }
+                writeFeatureCollection(geomWriter, req, isochroneMap);
+                endLine(writer);
+            }
+
+            @Override
+            public void isochroneMapFailed(int travellerId, Exception ex) throws Exception {
+                writer.rawValue(createError(travellerId, ex).toString());
+                endLine(writer);
+            }
+        });
+        writer.flush();
+    }
+
+    private static void endLine(JsonStreamWriter writer) throws Exception {
+        writer.lineBreak();
+        // pass every result on to the client instead of holding it back until the buffer is full
+        writer.flush();
+    }
+
+    private static void writeFeatureCollection(GeometryJSONWriter geomWriter, IsochroneRequest request, IsochroneMap isochroneMap) throws Exception {
+        TravellerInfo traveller = request.getTravellers().get(isochroneMap.getTravellerId());
+        JsonStreamWriter writer = geomWriter.getWriter();
+
+        writer.beginObject();
+        writer.name("type").value("FeatureCollection");
+        writer.name("group_index").value(isochroneMap.getTravellerId());
+
+        writer.name("features").beginArray();
+        List<String> attributeSources = new ArrayList<String>();
+        for (Isochrone isoLine : isochroneMap.getIsochrones())
+            JsonIsochronesRequestProcessor.writeIsochroneFeature(geomWriter, request, traveller, isochroneMap, isoLine, isochroneMap.getTravellerId(), attributeSources);
+        writer.endArray();
+
+        Envelope env = isochroneMap.getEnvelope();
+        if (!env.isNull()) {
+            writer.name("bbox");
+            geomWriter.writeBBox(env.getMinX(), env.getMinY(), env.getMaxX(), env.getMaxY());
+        }
+
+        writer.endObject();
+    }
+
+    private static JSONObject createError(int travellerId, Exception ex) {
+        JSONObject jError = new JSONObject(true);
+        if (ex instanceof StatusCodeException && ((StatusCodeException) ex).getInternalCode() > 0)
+            jError.put("code", ((StatusCodeException) ex).getInternalCode());
+        else if (ex instanceof RequestTimeoutException)
+            jError.put("code", ((RequestTimeoutException) ex).getInternalCode());
+        else
+            jError.put("code", IsochronesErrorCodes.UNKNOWN);
+        jError.put("message", ex.getMessage());
+
+        JSONObject jResp = new JSONObject(true);
+        jResp.put("group_index", travellerId);
+        jResp.put("error", jError);
+
+        return jResp;
+    }
+}
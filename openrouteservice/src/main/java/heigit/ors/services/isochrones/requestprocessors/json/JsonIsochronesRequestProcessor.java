@@ -15,14 +15,13 @@ package heigit.ors.services.isochrones.requestprocessors.json;
 
 import com.graphhopper.util.Helper;
 import com.vividsolutions.jts.geom.Envelope;
-import com.vividsolutions.jts.geom.Geometry;
-import com.vividsolutions.jts.geom.LineString;
 import com.vividsolutions.jts.geom.Polygon;
 import heigit.ors.common.*;
 import heigit.ors.config.AppConfig;
 import heigit.ors.exceptions.ParameterOutOfRangeException;
 import heigit.ors.exceptions.StatusCodeException;
 import heigit.ors.geojson.GeometryJSON;
+import heigit.ors.geojson.GeometryJSONWriter;
 import heigit.ors.isochrones.*;
 import heigit.ors.routing.RoutingProfileManager;
 import heigit.ors.routing.RoutingProfileType;
@@ -30,13 +29,13 @@ import heigit.ors.services.isochrones.IsochronesServiceSettings;
 import heigit.ors.servlet.http.AbstractHttpRequestProcessor;
 import heigit.ors.servlet.util.ServletUtility;
 import heigit.ors.util.AppInfo;
-import heigit.ors.util.FormatUtility;
+import heigit.ors.util.JsonStreamWriter;
 import heigit.ors.util.StringUtility;
-import org.json.JSONArray;
 import org.json.JSONObject;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -55,7 +54,7 @@ public class JsonIsochronesRequestProcessor extends AbstractHttpRequestProcessor
                 req = JsonIsochroneRequestParser.parseFromRequestParams(_request);
                 break;
             case "POST":
-                req = JsonIsochroneRequestParser.parseFromStream(_request.getInputStream());
+                req = JsonIsochroneRequestParser.parseFromStream(_request.getInputStream(), IsochronesServiceSettings.getMaximumLocations());
                 break;
             default:
                 throw new StatusCodeException(StatusCode.METHOD_NOT_ALLOWED, IsochronesErrorCodes.UNKNOWN);
@@ -75,18 +74,12 @@ public class JsonIsochronesRequestProcessor extends AbstractHttpRequestProcessor
         if (travellers.size() > IsochronesServiceSettings.getMaximumLocations())
             throw new ParameterOutOfRangeException(IsochronesErrorCodes.PARAMETER_VALUE_EXCEEDS_MAXIMUM, "locations", Integer.toString(travellers.size()), Integer.toString(IsochronesServiceSettings.getMaximumLocations()));
 
-        for (int i = 0; i < travellers.size(); ++i) {
-            TravellerInfo traveller = travellers.get(i);
-            int maxAllowedRange = IsochronesServiceSettings.getMaximumRange(traveller.getRouteSearchParameters().getProfileType(), traveller.getRangeType());
-            double maxRange = traveller.getMaximumRange();
-            if (maxRange > maxAllowedRange)
-                throw new ParameterOutOfRangeException(IsochronesErrorCodes.PARAMETER_VALUE_EXCEEDS_MAXIMUM, "range", Double.toString(maxRange), Integer.toString(maxAllowedRange));
+        // a raster covers the surroundings of a single location only
+        if (req.isRasterOutput() && travellers.size() > 1)
+            throw new ParameterOutOfRangeException(IsochronesErrorCodes.PARAMETER_VALUE_EXCEEDS_MAXIMUM, "locations", Integer.toString(travellers.size()), "1");
 
-            if (IsochronesServiceSettings.getMaximumIntervals() > 0) {
-                if (IsochronesServiceSettings.getMaximumIntervals() < traveller.getRanges().length)
-                    throw new ParameterOutOfRangeException(IsochronesErrorCodes.PARAMETER_VALUE_EXCEEDS_MAXIMUM, "range", Integer.toString(traveller.getRanges().length), Integer.toString(IsochronesServiceSettings.getMaximumIntervals()));
-            }
-        }
+        for (int i = 0; i < travellers.size(); ++i)
+            checkRangeLimits(travellers.get(i));
 
         if (travellers.size() > 0) {
             String[] nonDefaultAttrs = req.getNonDefaultAttributes();
@@ -95,21 +88,73 @@ public class JsonIsochronesRequestProcessor extends AbstractHttpRequestProcessor
 
             for (int i = 0; i < travellers.size(); ++i) {
                 IsochroneSearchParameters searchParams = req.getSearchParameters(i);
-                IsochroneMap isochroneMap = RoutingProfileManager.getInstance().buildIsochrone(searchParams, nonDefaultAttrs);
+                // the statistics of a map are fetched while the isochrones of the next location are built, those of the
+                // last map have nothing to overlap with and are computed right away
+                IsochroneMap isochroneMap = RoutingProfileManager.getInstance().buildIsochrone(searchParams, nonDefaultAttrs, i < travellers.size() - 1);
                 isoMaps.add(isochroneMap);
             }
 
-            writeResponse(response, req, isoMaps);
+            if (req.isRasterOutput())
+                writeRasterResponse(response, isoMaps.getIsochrone(0));
+            else
+                writeResponse(response, req, isoMaps);
+        }
+    }
+
+    static void checkRangeLimits(TravellerInfo traveller) throws Exception {
+        int maxAllowedRange = IsochronesServiceSettings.getMaximumRange(traveller.getRouteSearchParameters().getProfileType(), traveller.getRangeType());
+        double maxRange = traveller.getMaximumRange();
+        if (maxRange > maxAllowedRange)
+            throw new ParameterOutOfRangeException(IsochronesErrorCodes.PARAMETER_VALUE_EXCEEDS_MAXIMUM, "range", Double.toString(maxRange), Integer.toString(maxAllowedRange));
+
+        if (IsochronesServiceSettings.getMaximumIntervals() > 0) {
+            if (IsochronesServiceSettings.getMaximumIntervals() < traveller.getRanges().length)
+                throw new ParameterOutOfRangeException(IsochronesErrorCodes.PARAMETER_VALUE_EXCEEDS_MAXIMUM, "range", Integer.toString(traveller.getRanges().length), Integer.toString(IsochronesServiceSettings.getMaximumIntervals()));
         }
     }
 
+    private void writeRasterResponse(HttpServletResponse response, IsochroneMap isochroneMap) throws Exception {
+        IsochroneRaster raster = isochroneMap.getRaster();
+        if (raster == null)
+            throw new StatusCodeException(StatusCode.NOT_FOUND, IsochronesErrorCodes.UNKNOWN, "No reachable area found around the given location.");
+
+        response.setStatus(StatusCode.OK);
+        response.setContentType(IsochroneRasterWriter.CONTENT_TYPE);
+        response.addHeader("Vary", "Accept-Encoding");
+        IsochroneRasterWriter.write(raster, response.getOutputStream());
+    }
+
     private void writeResponse(HttpServletResponse response, IsochroneRequest request, IsochroneMapCollection isochroneMaps) throws Exception {
-        JSONObject jResp = new JSONObject(true);
+        // a failed statistics query, intersection or area must still be answered with an error instead of a truncated document
+        if (request.getAttributes() != null) {
+            for (IsochroneMap isoMap : isochroneMaps.getIsochroneMaps())
+                isoMap.waitForAttributes();
+        }
 
-        jResp.put("type", "FeatureCollection");
+        List<IsochronesIntersection> isoIntersections = null;
+        if (request.getIncludeIntersections())
+            isoIntersections = IsochroneUtility.computeIntersections(isochroneMaps);
 
-        JSONArray jFeatures = new JSONArray(isochroneMaps.getIsochronesCount());
-        jResp.put("features", jFeatures);
+        // the areas are kept by the isochrones and intersections once they are computed
+        if (request.hasAttribute("area")) {
+            for (IsochroneMap isoMap : isochroneMaps.getIsochroneMaps()) {
+                for (Isochrone isoLine : isoMap.getIsochrones())
+                    isoLine.getArea(true);
+            }
+            if (isoIntersections != null) {
+                for (IsochronesIntersection isoIntersection : isoIntersections)
+                    isoIntersection.getArea(true);
+            }
+        }
+
+        // the polygons are written to the client while they are encoded instead of building the whole document first
+        OutputStream out = ServletUtility.getOutputStream(response, "application/json", "UTF-8");
+        JsonStreamWriter writer = new JsonStreamWriter(out);
+        GeometryJSONWriter geomWriter = createGeometryWriter(writer);
+
+        writer.beginObject();
+        writer.name("type").value("FeatureCollection");
+        writer.name("features").beginArray();
 
         double minX = Double.MAX_VALUE;
         double minY = Double.MAX_VALUE;
@@ -118,81 +163,22 @@ public class JsonIsochronesRequestProcessor extends AbstractHttpRequestProcessor
 
         TravellerInfo traveller = null;
         int groupIndex = 0;
-        boolean hasAttributes = request.getAttributes() != null;
         boolean includeArea = request.hasAttribute("area");
-        boolean includeReachFactor = request.hasAttribute("reachfactor");
         String units = request.getUnits() != null ? request.getUnits().toLowerCase() : null;
         String area_units = request.getAreaUnits() != null ? request.getAreaUnits().toLowerCase() : null;
-        String sourceAttribution = IsochronesServiceSettings.getAttribution();
-        List<String> attributeSources = null;
+        List<String> attributeSources = new ArrayList<String>();
+        // using units for distance mode determines the reach in m/km/mi
+        // using units for time mode determines the area calculation unit m/km/mi
+        // this is misleading which is why we are introducing area_units
+        // to calculate the area of an isochrone in m/km/mi
+        if (area_units != null) units = area_units;
 
         for (IsochroneMap isoMap : isochroneMaps.getIsochroneMaps()) {
             traveller = request.getTravellers().get(isoMap.getTravellerId());
 
             for (Isochrone isoLine : isoMap.getIsochrones()) {
-                Polygon isoPoly = (Polygon) isoLine.getGeometry();
-                LineString shell = isoPoly.getExteriorRing();
-                JSONObject jFeature = new JSONObject(true);
-                jFeature.put("type", "Feature");
-
-                JSONObject jPolygon = new JSONObject(true);
-                jPolygon.put("type", "Polygon");
-
-                jPolygon.put("coordinates", GeometryJSON.toJSON(isoPoly));
-
-                jFeature.put("geometry", jPolygon);
-
-                JSONObject jProperties = new JSONObject(true);
-
-                jProperties.put("group_index", groupIndex);
-                jProperties.put("value", isoLine.getValue());
-
-                jProperties.put("center", GeometryJSON.toJSON(isoMap.getCenter()));
-
-                // using units for distance mode determines the reach in m/km/mi
-                // using units for time mode determines the area calculation unit m/km/mi
-                // this is misleading which is why we are introducing area_units
-                // to calculate the area of an isochrone in m/km/mi
-                if (area_units != null) units = area_units;
-
-                if (includeArea || includeReachFactor) {
-
-                    double area = isoLine.getArea(units);
-
-                    jProperties.put("area", FormatUtility.roundToDecimals(area, 4));
-
-                    if (includeReachFactor && traveller.getRangeType() == TravelRangeType.Time) {
-
-                        double r = isoLine.getMaxRadius(units);
-                        double maxArea = Math.PI * r * r;
-
-                        jProperties.put("reachfactor", FormatUtility.roundToDecimals(area / maxArea, 4));
-
-                    }
-
-                }
-
-                if (hasAttributes && isoLine.getAttributes() != null) {
-                    List<AttributeValue> attrStats = isoLine.getAttributes();
-                    for (AttributeValue attrValue : attrStats) {
-                        jProperties.put(attrValue.getName(), FormatUtility.roundToDecimals(attrValue.getValue(), 4));
-
-                        if (attrValue.getSource() != null) {
-                            if (attributeSources == null)
-                                attributeSources = new ArrayList<String>();
-                            if (!attributeSources.contains(attrValue.getSource())) {
-                                attributeSources.add(attrValue.getSource());
-                                sourceAttribution += " | " + attrValue.getSource();
-                            }
-                        }
-                    }
-                }
-
-                jFeature.put("properties", jProperties);
-
-                jFeatures.put(jFeature);
-
-                Envelope env = shell.getEnvelopeInternal();
+                writeIsochroneFeature(geomWriter, request, traveller, isoMap, isoLine, groupIndex, attributeSources);
+                Envelope env = isoLine.getGeometry().getEnvelopeInternal();
                 if (minX > env.getMinX())
                     minX = env.getMinX();
                 if (minY > env.getMinY())
@@ -206,45 +192,50 @@ public class JsonIsochronesRequestProcessor extends AbstractHttpRequestProcessor
             groupIndex++;
         }
 
-        if (request.getIncludeIntersections()) {
-            List<IsochronesIntersection> isoIntersections = IsochroneUtility.computeIntersections(isochroneMaps);
-            if (isoIntersections != null && !isoIntersections.isEmpty()) {
-                for (IsochronesIntersection isoIntersection : isoIntersections) {
-                    Geometry geom = isoIntersection.getGeometry();
-                    JSONObject jFeature = new JSONObject(true);
-                    jFeature.put("type", "Feature");
-
-                    JSONObject jGeometry = new JSONObject(true);
-                    jGeometry.put("type", geom.getGeometryType());
-                    jGeometry.put("coordinates", GeometryJSON.toJSON(geom, null));
-
-                    jFeature.put("geometry", jGeometry);
+        if (isoIntersections != null && !isoIntersections.isEmpty()) {
+            for (IsochronesIntersection isoIntersection : isoIntersections) {
+                writer.beginObject();
+                writer.name("type").value("Feature");
+                writer.name("geometry");
+                geomWriter.writeGeometry(isoIntersection.getGeometry());
+
+                writer.name("properties").beginObject();
+                writer.name("contours").beginArray();
+                for (Pair<Integer, Integer> ref : isoIntersection.getContourRefs()) {
+                    writer.beginArray();
+                    writer.value(ref.first);
+                    writer.value(ref.second);
+                    writer.endArray();
+                }
+                writer.endArray();
 
-                    JSONObject jProperties = new JSONObject(true);
+                if (includeArea)
+                    writer.name("area").value(isoIntersection.getArea(units), 4);
+                writer.endObject();
 
-                    JSONArray jContours = new JSONArray(isoIntersection.getContourRefs().size());
-                    jProperties.put("contours", jContours);
+                writer.endObject();
+            }
+        }
 
-                    for (Pair<Integer, Integer> ref : isoIntersection.getContourRefs()) {
-                        JSONArray jRef = new JSONArray(2);
-                        jRef.put(ref.first);
-                        jRef.put(ref.second);
-                        jContours.put(jRef);
-                    }
+        writer.endArray();
 
-                    if (includeArea)
-                        jProperties.put("area", FormatUtility.roundToDecimals(isoIntersection.getArea(units), 4));
+        writer.name("bbox");
+        geomWriter.writeBBox(minX, minY, maxX, maxY);
 
-                    jFeature.put("properties", jProperties);
+        // the info block is small, it is serialized as a tree so that its members keep their order
+        writer.name("info").rawValue(createInfo(request, attributeSources).toString());
+        writer.endObject();
 
-                    jFeatures.put(jFeature);
-                }
-            }
-        }
+        writer.flush();
+        out.close();
+    }
 
-        jResp.put("bbox", GeometryJSON.toJSON(minX, minY, maxX, maxY));
+    private static JSONObject createInfo(IsochroneRequest request, List<String> attributeSources) {
+        String sourceAttribution = IsochronesServiceSettings.getAttribution();
+        for (String source : attributeSources)
+            sourceAttribution += " | " + source;
 
-        traveller = request.getTravellers().get(0);
+        TravellerInfo traveller = request.getTravellers().get(0);
 
         JSONObject jInfo = new JSONObject();
         jInfo.put("service", "isochrones");
@@ -290,8 +281,73 @@ public class JsonIsochronesRequestProcessor extends AbstractHttpRequestProcessor
 
         jInfo.put("query", jQuery);
 
-        jResp.put("info", jInfo);
+        return jInfo;
+    }
+
+    /**
+     * @return a writer with the configured precision, which quantizes the isochrone polygons if the precision is coarser
+     * than the default one
+     */
+    static GeometryJSONWriter createGeometryWriter(JsonStreamWriter writer) {
+        int precision = IsochronesServiceSettings.getGeometryPrecision();
+        return new GeometryJSONWriter(writer, precision, GeometryJSONWriter.DEFAULT_ELEVATION_DECIMALS).setQuantize(precision < GeometryJSONWriter.DEFAULT_DECIMALS);
+    }
+
+    /**
+     * The statistics attributes of the isochrone map must have been set, see {@link IsochroneMap#waitForAttributes()}.
+     *
+     * @param attributeSources the sources of the statistics attributes are added to this list if not yet contained
+     */
+    static void writeIsochroneFeature(GeometryJSONWriter geomWriter, IsochroneRequest request, TravellerInfo traveller, IsochroneMap isoMap, Isochrone isoLine, int groupIndex, List<String> attributeSources) throws Exception {
+        boolean hasAttributes = request.getAttributes() != null;
+        boolean includeArea = request.hasAttribute("area");
+        boolean includeReachFactor = request.hasAttribute("reachfactor");
+        String units = request.getAreaUnits() != null ? request.getAreaUnits().toLowerCase() : (request.getUnits() != null ? request.getUnits().toLowerCase() : null);
+
+        JsonStreamWriter writer = geomWriter.getWriter();
+        writer.beginObject();
+        writer.name("type").value("Feature");
+
+        writer.name("geometry");
+        geomWriter.writeGeometry((Polygon) isoLine.getGeometry());
+
+        writer.name("properties").beginObject();
+
+        writer.name("group_index").value(groupIndex);
+        writer.name("value").value(isoLine.getValue());
+
+        writer.name("center");
+        geomWriter.writeCoordinate(isoMap.getCenter());
+
+        if (includeArea || includeReachFactor) {
+
+            double area = isoLine.getArea(units);
+
+            writer.name("area").value(area, 4);
+
+            if (includeReachFactor && traveller.getRangeType() == TravelRangeType.Time) {
+
+                double r = isoLine.getMaxRadius(units);
+                double maxArea = Math.PI * r * r;
+
+                writer.name("reachfactor").value(area / maxArea, 4);
+
+            }
+
+        }
+
+        if (hasAttributes && isoLine.getAttributes() != null) {
+            List<AttributeValue> attrStats = isoLine.getAttributes();
+            for (AttributeValue attrValue : attrStats) {
+                writer.name(attrValue.getName()).value(attrValue.getValue(), 4);
+
+                if (attrValue.getSource() != null && !attributeSources.contains(attrValue.getSource()))
+                    attributeSources.add(attrValue.getSource());
+            }
+        }
+
+        writer.endObject();
 
-        ServletUtility.write(response, jResp);
+        writer.endObject();
     }
 }
@@ -20,7 +20,6 @@ import org.json.JSONObject;
 
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.shapes.BBox;
-import com.vividsolutions.jts.geom.Coordinate;
 
 import heigit.ors.common.DistanceUnit;
 import heigit.ors.config.AppConfig;
@@ -116,7 +115,7 @@ public class JsonMapMatchingResponseWriter {
 
 	public static JSONArray toJsonArray(RoutingRequest request, RouteResult[] routeResult, BBox bbox) throws Exception
 	{
-		StringBuffer buffer = new StringBuffer();
+		PolylineEncoder polylineEncoder = new PolylineEncoder();
 		// *************** routes ***************
 
 		boolean attrDetourFactor = request.hasAttribute("detourfactor");
@@ -157,7 +156,7 @@ public class JsonMapMatchingResponseWriter {
 				if (request.getGeometryFormat() != null)
 					jRoute.put("geometry_format", request.getGeometryFormat());
 
-				jRoute.put("geometry", getGeometry(route.getGeometry(), request.getIncludeElevation(), request.getGeometryFormat(), buffer));
+				jRoute.put("geometry", getGeometry(route, request.getIncludeElevation(), request.getGeometryFormat(), polylineEncoder));
 
 				if (request.getIncludeInstructions() && route.getSegments().size() > 0)
 				{
@@ -319,14 +318,14 @@ public class JsonMapMatchingResponseWriter {
 		return jRoutes;
 	}  
 
-	private static Object getGeometry(Coordinate[] points, boolean includeElevation, String format, StringBuffer buffer)
+	private static Object getGeometry(RouteResult route, boolean includeElevation, String format, PolylineEncoder polylineEncoder)
 	{
-		if (points == null)
+		if (route.getPoints() == null)
 			return "";
 
 		if (Helper.isEmpty(format) || "encodedpolyline".equalsIgnoreCase(format))
 		{
-			return PolylineEncoder.encode(points, includeElevation, buffer);
+			return polylineEncoder.encode(route.getPoints(), includeElevation).toString();
 		}
 		else if ("geojson".equalsIgnoreCase(format))
 		{
@@ -339,13 +338,13 @@ public class JsonMapMatchingResponseWriter {
              }
 			 */
 			json.put("type", "LineString");
-			json.put("coordinates", GeometryJSON.toJSON(points, includeElevation));
+			json.put("coordinates", GeometryJSON.toJSON(route.getGeometry(), includeElevation));
 
 			return json;
 		}
 		else if ("polyline".equalsIgnoreCase(format))
 		{
-			return GeometryJSON.toJSON(points, includeElevation);
+			return GeometryJSON.toJSON(route.getGeometry(), includeElevation);
 		}
 
 		return "";
@@ -16,9 +16,11 @@ package heigit.ors.services.matrix;
 import javax.servlet.*;
 import javax.servlet.http.*;
 
+import heigit.ors.matrix.MatrixErrorCodes;
 import heigit.ors.services.matrix.requestprocessors.MatrixServiceRequestProcessorFactory;
 import heigit.ors.servlet.http.AbstractHttpRequestProcessor;
 import heigit.ors.servlet.http.BaseHttpServlet;
+import heigit.ors.servlet.http.ServiceRequestExecutor;
 
 public class MatrixServiceServlet extends BaseHttpServlet {
 	/** Serial Version UID */
@@ -32,26 +34,18 @@ public class MatrixServiceServlet extends BaseHttpServlet {
 	}
 
 	public void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException   {
-		try
-		{
+		processAsync(request, response, ServiceRequestExecutor.getInstance("matrix", MatrixErrorCodes.REQUEST_TIMEOUT), () -> {
 			AbstractHttpRequestProcessor reqProcessor = MatrixServiceRequestProcessorFactory.createProcessor(request);
 			reqProcessor.process(response);
 			reqProcessor.destroy();
-		}
-		catch (Exception ex) {
-			writeError(response, ex);
-		}
+		});
 	}
 
 	public void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException {
-		try
-		{
+		processAsync(request, response, ServiceRequestExecutor.getInstance("matrix", MatrixErrorCodes.REQUEST_TIMEOUT), () -> {
 			AbstractHttpRequestProcessor reqProcessor = MatrixServiceRequestProcessorFactory.createProcessor(request);
 			reqProcessor.process(response);
 			reqProcessor.destroy();
-		}
-		catch (Exception ex) {
-			writeError(response, ex);
-		}
+		});
 	}
 }
@@ -19,6 +19,7 @@ public class MatrixServiceSettings
 {
 	private static int maximumLocations = 100;
 	private static int maximumLocationsFlexible = 25;
+	private static int maximumRequestLocations = 0;
 	private static int maximumVisitedNodes = 100000;
 	private static double maximumSearchRadius = 2000;
 	private static boolean allowResolveLocations = true;
@@ -36,6 +37,9 @@ public class MatrixServiceSettings
 		value = AppConfig.Global().getServiceParameter("matrix", "maximum_locations_flexible");
 		if (value != null)
 			maximumLocationsFlexible = Math.max(1, Integer.parseInt(value));
+		value = AppConfig.Global().getServiceParameter("matrix", "maximum_request_locations");
+		if (value != null)
+			maximumRequestLocations = Math.max(0, Integer.parseInt(value));
 		value = AppConfig.Global().getServiceParameter("matrix", "maximum_search_radius");
 		if (value != null)
 			maximumSearchRadius = Math.max(1, Double.parseDouble(value));
@@ -66,6 +70,13 @@ public class MatrixServiceSettings
 		return (flexible? maximumLocationsFlexible : maximumLocations);
 	}
 	
+	/**
+	 * @return the maximum length of the locations array of a request, 0 for no limit. The array is not read beyond it.
+	 */
+	public static int getMaximumRequestLocations() {
+		return maximumRequestLocations;
+	}
+
 	public static double getMaximumSearchRadius() {
 		return maximumSearchRadius;
 	}
@@ -21,6 +21,8 @@
 package heigit.ors.services.matrix.requestprocessors.json;
 
 import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -44,25 +46,42 @@ import heigit.ors.matrix.MatrixMetricsType;
 import heigit.ors.matrix.MatrixRequest;
 import heigit.ors.routing.RoutingProfileType;
 import heigit.ors.routing.WeightingMethod;
+import heigit.ors.services.matrix.MatrixServiceSettings;
 import heigit.ors.util.ArraysUtility;
 import heigit.ors.util.CoordTools;
 import heigit.ors.util.DistanceUnitUtil;
+import heigit.ors.util.JsonStreamReader;
 import heigit.ors.util.JsonUtility;
-import heigit.ors.util.StreamUtility;
 
 public class JsonMatrixRequestParser {
 
     public static MatrixRequest parseFromStream(InputStream stream) throws Exception {
-        String body = StreamUtility.readStream(stream);
-
-        if (Helper.isEmpty(body))
-            throw new StatusCodeException(StatusCode.BAD_REQUEST, MatrixErrorCodes.INVALID_JSON_FORMAT, "Unable to parse JSON document.");
-
-        JSONObject json = null;
+        // the locations are read into a primitive array while the body is received, all other members are small
+        JSONObject json = new JSONObject();
+        double[] coords = null;
+        // maximum_locations limits sources times destinations, which may refer to a part of the locations only
+        int maxLocations = MatrixServiceSettings.getMaximumRequestLocations();
 
         try {
-            json = new JSONObject(body);
-        } catch (Exception ex) {
+            JsonStreamReader reader = new JsonStreamReader(stream);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("locations".equals(name) && reader.peek() == JsonStreamReader.Token.BEGIN_ARRAY) {
+                    try {
+                        coords = reader.readCoordinates(maxLocations);
+                    } catch (JSONException jex) {
+                        throw new ParameterValueException(MatrixErrorCodes.INVALID_PARAMETER_FORMAT, "locations");
+                    }
+
+                    if (maxLocations > 0 && coords.length > 2 * maxLocations)
+                        throw new ParameterOutOfRangeException(MatrixErrorCodes.PARAMETER_VALUE_EXCEEDS_MAXIMUM, "locations", "at least " + (maxLocations + 1), Integer.toString(maxLocations));
+                } else {
+                    json.put(name, reader.readValue());
+                }
+            }
+            reader.endObject();
+        } catch (JSONException ex) {
             throw new StatusCodeException(StatusCode.BAD_REQUEST, MatrixErrorCodes.INVALID_JSON_FORMAT, "Unable to parse JSON document." + ex.getMessage());
         }
 
@@ -90,30 +109,16 @@ public class JsonMatrixRequestParser {
         }
 
 
-        JSONArray jLocations = json.optJSONArray("locations");
         Coordinate[] locations = null;
 
-        if (jLocations != null) {
-            try {
-                int nLocations = jLocations.length();
-                if (nLocations < 2)
-                    throw new ParameterValueException(MatrixErrorCodes.INVALID_PARAMETER_VALUE, "locations");
+        if (coords != null) {
+            int nLocations = coords.length / 2;
+            if (nLocations < 2)
+                throw new ParameterValueException(MatrixErrorCodes.INVALID_PARAMETER_VALUE, "locations");
 
-                locations = new Coordinate[nLocations];
-
-                for (int i = 0; i < nLocations; i++) {
-                    JSONArray jCoordinate = jLocations.getJSONArray(i);
-
-                    if (jCoordinate.length() < 2)
-                        throw new ParameterValueException(MatrixErrorCodes.INVALID_PARAMETER_VALUE, "locations");
-
-                    locations[i] = new Coordinate(jCoordinate.getDouble(0), jCoordinate.getDouble(1));
-                }
-            } catch (NumberFormatException nfex) {
-                throw new ParameterValueException(MatrixErrorCodes.INVALID_PARAMETER_FORMAT, "locations");
-            } catch (JSONException jex) {
-                throw new ParameterValueException(MatrixErrorCodes.INVALID_PARAMETER_FORMAT, "locations");
-            }
+            locations = new Coordinate[nLocations];
+            for (int i = 0; i < nLocations; i++)
+                locations[i] = new Coordinate(coords[2 * i], coords[2 * i + 1]);
         } else {
             throw new MissingParameterException(MatrixErrorCodes.MISSING_PARAMETER, "locations");
         }
@@ -187,6 +192,10 @@ public class JsonMatrixRequestParser {
             }
         }
 
+        value = json.optString("departure");
+        if (!Helper.isEmpty(value))
+            req.setDeparture(parseDeparture(value));
+
         value = json.optString("id");
         if (!Helper.isEmpty(value))
             req.setId(value);
@@ -222,7 +231,7 @@ public class JsonMatrixRequestParser {
         value = request.getParameter("locations");
         if (!Helper.isEmpty(value)) {
             try {
-                locations = CoordTools.parse(value, "\\|", false, false);
+                locations = CoordTools.parse(value, '|', false, false);
                 if (locations.length < 2)
                     throw new ParameterValueException(MatrixErrorCodes.INVALID_PARAMETER_VALUE, "locations");
             } catch (NumberFormatException nfex) {
@@ -281,6 +290,10 @@ public class JsonMatrixRequestParser {
             }
         }
 
+        value = request.getParameter("departure");
+        if (!Helper.isEmpty(value))
+            req.setDeparture(parseDeparture(value));
+
         value = request.getParameter("id");
         if (!Helper.isEmpty(value))
             req.setId(value);
@@ -291,6 +304,14 @@ public class JsonMatrixRequestParser {
         return req;
     }
 
+    private static LocalDateTime parseDeparture(String value) throws ParameterValueException {
+        try {
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException ex) {
+            throw new ParameterValueException(MatrixErrorCodes.INVALID_PARAMETER_FORMAT, "departure");
+        }
+    }
+
     private static Coordinate[] getLocations(Coordinate[] locations, String strIndex, String elemName) throws Exception {
         if (Helper.isEmpty(strIndex) || "all".equalsIgnoreCase(strIndex))
             return locations;
@@ -16,9 +16,11 @@ package heigit.ors.services.optimization;
 import javax.servlet.*;
 import javax.servlet.http.*;
 
+import heigit.ors.optimization.OptimizationErrorCodes;
 import heigit.ors.services.optimization.requestprocessors.OptimizationServiceRequestProcessorFactory;
 import heigit.ors.servlet.http.AbstractHttpRequestProcessor;
 import heigit.ors.servlet.http.BaseHttpServlet;
+import heigit.ors.servlet.http.ServiceRequestExecutor;
 
 public class OptimizationServiceServlet extends BaseHttpServlet {
 	/** Serial Version UID */
@@ -32,26 +34,18 @@ public class OptimizationServiceServlet extends BaseHttpServlet {
 	}
 
 	public void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException   {
-		try
-		{
+		processAsync(request, response, ServiceRequestExecutor.getInstance("optimization", OptimizationErrorCodes.REQUEST_TIMEOUT), () -> {
 			AbstractHttpRequestProcessor reqProcessor = OptimizationServiceRequestProcessorFactory.createProcessor(request);
 			reqProcessor.process(response);
 			reqProcessor.destroy();
-		}
-		catch (Exception ex) {
-			writeError(response, ex);
-		}
+		});
 	}
 
 	public void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException {
-		try
-		{
+		processAsync(request, response, ServiceRequestExecutor.getInstance("optimization", OptimizationErrorCodes.REQUEST_TIMEOUT), () -> {
 			AbstractHttpRequestProcessor reqProcessor = OptimizationServiceRequestProcessorFactory.createProcessor(request);
 			reqProcessor.process(response);
 			reqProcessor.destroy();
-		}
-		catch (Exception ex) {
-			writeError(response, ex);
-		}
+		});
 	}
 }
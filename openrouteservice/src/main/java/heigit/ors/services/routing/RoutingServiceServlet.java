@@ -17,9 +17,11 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import heigit.ors.routing.RoutingErrorCodes;
 import heigit.ors.services.routing.requestprocessors.RoutingServiceRequestProcessorFactory;
 import heigit.ors.servlet.http.AbstractHttpRequestProcessor;
 import heigit.ors.servlet.http.BaseHttpServlet;
+import heigit.ors.servlet.http.ServiceRequestExecutor;
 
 public class RoutingServiceServlet extends BaseHttpServlet {
 	/** Serial Version UID */
@@ -33,26 +35,18 @@ public class RoutingServiceServlet extends BaseHttpServlet {
 	}
 
 	public void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException   {
-		try
-		{
+		processAsync(request, response, ServiceRequestExecutor.getInstance("routing", RoutingErrorCodes.REQUEST_TIMEOUT), () -> {
 			AbstractHttpRequestProcessor reqProcessor = RoutingServiceRequestProcessorFactory.createProcessor(request);
 			reqProcessor.process(response);
 			reqProcessor.destroy();
-		}
-		catch (Exception ex) {
-			writeError(response, ex);
-		}
+		});
 	}
 
 	public void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException {
-		try
-		{
+		processAsync(request, response, ServiceRequestExecutor.getInstance("routing", RoutingErrorCodes.REQUEST_TIMEOUT), () -> {
 			AbstractHttpRequestProcessor reqProcessor = RoutingServiceRequestProcessorFactory.createProcessor(request);
 			reqProcessor.process(response);
 			reqProcessor.destroy();
-		}
-		catch (Exception ex) {
-			writeError(response, ex);
-		}
+		});
 	}
 }
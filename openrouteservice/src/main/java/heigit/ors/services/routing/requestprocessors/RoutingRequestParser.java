@@ -36,6 +36,8 @@ import heigit.ors.util.DistanceUnitUtil;
 
 import javax.servlet.http.HttpServletRequest;
 import java.text.ParseException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 
 public class RoutingRequestParser
 {
@@ -73,7 +75,7 @@ public class RoutingRequestParser
 
 			try
 			{
-				coords = CoordTools.parse(value, "\\|", true, false);
+				coords = CoordTools.parse(value, '|', true, false);
 			}
 			catch(NumberFormatException ex)
 			{
@@ -259,6 +261,19 @@ public class RoutingRequestParser
 		   }
 		}
 
+		value = request.getParameter("departure");
+		if (!Helper.isEmpty(value))
+		{
+			try
+			{
+				searchParams.setDeparture(LocalDateTime.parse(value));
+			}
+			catch(DateTimeParseException ex)
+			{
+				throw new ParameterValueException(RoutingErrorCodes.INVALID_PARAMETER_FORMAT, "departure");
+			}
+		}
+
 		value = request.getParameter("id");
 		if (!Helper.isEmpty(value))
 			req.setId(value);
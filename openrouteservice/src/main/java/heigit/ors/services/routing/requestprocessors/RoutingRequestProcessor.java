@@ -30,16 +30,16 @@ import heigit.ors.routing.RouteResult;
 import heigit.ors.routing.RoutingErrorCodes;
 import heigit.ors.routing.RoutingProfileManager;
 import heigit.ors.routing.RoutingRequest;
-import heigit.ors.globalResponseProcessor.GlobalResponseProcessor;
+import heigit.ors.globalResponseProcessor.geoJson.GeoJsonResponseWriter;
+import heigit.ors.globalResponseProcessor.gpx.GpxResponseWriter;
 import heigit.ors.services.routing.requestprocessors.json.JsonRoutingResponseWriter;
 import heigit.ors.servlet.http.AbstractHttpRequestProcessor;
 import heigit.ors.servlet.util.ServletUtility;
 
-import org.json.JSONObject;
-
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.OutputStream;
 
 /**
  * This class Processes a {@link HttpServletResponse} to the desired route output.
@@ -71,21 +71,19 @@ public class RoutingRequestProcessor extends AbstractHttpRequestProcessor {
     public void process(HttpServletResponse response) throws Exception {
         // Get the routing Request to send it to the calculation function
         RoutingRequest rreq = RoutingRequestParser.parseFromRequestParams(_request);
-        JSONObject json = null;
-        JSONObject geojson = null;
-        String gpx;
         String respFormat = _request.getParameter("format");
         String geometryFormat = rreq.getGeometryFormat();
 
         if (Helper.isEmpty(respFormat) || "json".equalsIgnoreCase(respFormat)) {
             RouteResult result = RoutingProfileManager.getInstance().computeRoute(rreq);
-            json = JsonRoutingResponseWriter.toJson(rreq, new RouteResult[]{result});
-            if (json != null) {
-                ServletUtility.write(response, json, "UTF-8");
-
-            } else {
+            if (result == null)
                 throw new EmptyElementException(RoutingErrorCodes.EMPTY_ELEMENT, "JSON was empty and therefore could not be exported.");
-            }
+
+            // long routes with instructions and extras are written while they are serialized instead of as a whole,
+            // what can fail is checked before the first byte is written
+            OutputStream out = ServletUtility.getOutputStream(response, "application/json", "UTF-8");
+            JsonRoutingResponseWriter.writeJson(rreq, new RouteResult[]{result}, out);
+            out.close();
 
         } else if ("geojson".equalsIgnoreCase(respFormat)) {
             // Manually set the geometryFormat to geojson. Else an encoded polyline could be parsed by accident and cause problems.
@@ -94,12 +92,9 @@ public class RoutingRequestProcessor extends AbstractHttpRequestProcessor {
                 rreq.setGeometryFormat("geojson");
             }
             RouteResult result = RoutingProfileManager.getInstance().computeRoute(rreq);
-            geojson = new GlobalResponseProcessor(rreq, new RouteResult[]{result}).toGeoJson();
-            if (geojson != null) {
-                ServletUtility.write(response, geojson, "UTF-8");
-            } else {
-                throw new EmptyElementException(RoutingErrorCodes.EMPTY_ELEMENT, "GeoJSON was empty and therefore could not be exported.");
-            }
+            OutputStream out = ServletUtility.getOutputStream(response, "application/json", "UTF-8");
+            GeoJsonResponseWriter.writeGeoJson(rreq, new RouteResult[]{result}, out);
+            out.close();
 
 
         } else if ("gpx".equalsIgnoreCase(respFormat)) {
@@ -109,13 +104,10 @@ public class RoutingRequestProcessor extends AbstractHttpRequestProcessor {
                 rreq.setGeometryFormat("geojson");
             }
             RouteResult result = RoutingProfileManager.getInstance().computeRoute(rreq);
-            gpx = new GlobalResponseProcessor(rreq, new RouteResult[]{result}).toGPX();
-            //gpx = GpxResponseWriter.toGPX(rreq, new RouteResult[]{result});
-            if (gpx != null) {
-                ServletUtility.write(response, gpx);
-            } else {
-                throw new EmptyElementException(RoutingErrorCodes.EMPTY_ELEMENT, "GPX was empty and therefore could not be created.");
-            }
+            // the route points are written as they are serialized instead of building the whole document first
+            OutputStream out = ServletUtility.getOutputStream(response, "application/xml", "UTF-8");
+            GpxResponseWriter.writeGPX(rreq, new RouteResult[]{result}, out);
+            out.close();
         } else {
             throw new ParameterValueException(2003, "format", _request.getParameter("format").toLowerCase());
         }
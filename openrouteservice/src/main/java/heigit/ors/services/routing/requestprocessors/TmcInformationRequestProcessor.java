@@ -13,7 +13,10 @@
  */
 package heigit.ors.services.routing.requestprocessors;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -21,8 +24,13 @@ import javax.servlet.http.HttpServletResponse;
 import com.graphhopper.util.Helper;
 import com.vividsolutions.jts.geom.Envelope;
 
+import heigit.ors.exceptions.ParameterValueException;
+import heigit.ors.routing.RoutingErrorCodes;
 import heigit.ors.routing.traffic.RealTrafficDataProvider;
+import heigit.ors.routing.traffic.TrafficTilesCache;
+import heigit.ors.servlet.filters.ContentEncodingType;
 import heigit.ors.servlet.http.AbstractHttpRequestProcessor;
+import heigit.ors.util.StreamUtility;
 
 public class TmcInformationRequestProcessor extends AbstractHttpRequestProcessor 
 {
@@ -32,10 +40,17 @@ public class TmcInformationRequestProcessor extends AbstractHttpRequestProcessor
 	}
 
 	@Override
-	public void process(HttpServletResponse response) throws IOException  
+	public void process(HttpServletResponse response) throws Exception  
 	{
 		if (RealTrafficDataProvider.getInstance().isInitialized())
 		{
+			String zoom = _request.getParameter("z");
+			if (!Helper.isEmpty(zoom))
+			{
+				writeTile(response, parseTileIndex("z", zoom), parseTileIndex("x", _request.getParameter("x")), parseTileIndex("y", _request.getParameter("y")));
+				return;
+			}
+
 			String bbox =	_request.getParameter("bbox");
 			Envelope env = null;
 			if (!Helper.isEmpty(bbox))
@@ -53,11 +68,62 @@ public class TmcInformationRequestProcessor extends AbstractHttpRequestProcessor
 		}
 		else
 		{
-			response.setCharacterEncoding("UTF-8");
-			response.setContentType("application/text");
-			response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
-			response.getWriter().append("Tmc service is unavailable.");
+			writeUnavailable(response);
+		}
+	}
+
+	private void writeTile(HttpServletResponse response, int zoom, int x, int y) throws Exception
+	{
+		if (!TrafficTilesCache.isValidTile(zoom, x, y))
+			throw new ParameterValueException(RoutingErrorCodes.INVALID_PARAMETER_VALUE, "z/x/y", zoom + "/" + x + "/" + y);
+
+		byte[] tile = RealTrafficDataProvider.getInstance().getTmcInfoTile(zoom, x, y);
+		if (tile == null)
+		{
+			writeUnavailable(response);
+			return;
+		}
+
+		response.setCharacterEncoding("UTF-8");
+		response.setContentType("application/json");
+		response.setStatus(HttpServletResponse.SC_OK);
+
+		String acceptEncoding = _request.getHeader("accept-encoding");
+		if (acceptEncoding != null && acceptEncoding.indexOf(ContentEncodingType.GZIP) != -1)
+		{
+			// tiles are cached compressed, so they are sent without compressing them again
+			response.setHeader("Content-Encoding", ContentEncodingType.GZIP);
+			response.setContentLength(tile.length);
+			response.getOutputStream().write(tile);
+		}
+		else
+		{
+			InputStream in = new GZIPInputStream(new ByteArrayInputStream(tile));
+			try {
+				response.getOutputStream().write(StreamUtility.toByteArray(in, 16384));
+			} finally {
+				in.close();
+			}
+		}
+	}
+
+	private void writeUnavailable(HttpServletResponse response) throws IOException
+	{
+		response.setCharacterEncoding("UTF-8");
+		response.setContentType("application/text");
+		response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+		response.getWriter().append("Tmc service is unavailable.");
+	}
+
+	private static int parseTileIndex(String paramName, String value) throws ParameterValueException
+	{
+		if (Helper.isEmpty(value))
+			throw new ParameterValueException(RoutingErrorCodes.MISSING_PARAMETER, paramName);
 
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException ex) {
+			throw new ParameterValueException(RoutingErrorCodes.INVALID_PARAMETER_FORMAT, paramName, value);
 		}
 	}
 }
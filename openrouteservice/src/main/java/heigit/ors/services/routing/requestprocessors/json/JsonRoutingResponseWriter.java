@@ -13,8 +13,11 @@
  */
 package heigit.ors.services.routing.requestprocessors.json;
 
-
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import heigit.ors.exceptions.StatusCodeException;
 import org.json.JSONArray;
@@ -22,10 +25,10 @@ import org.json.JSONObject;
 
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.shapes.BBox;
-import com.vividsolutions.jts.geom.Coordinate;
 import heigit.ors.common.DistanceUnit;
 import heigit.ors.config.AppConfig;
 import heigit.ors.geojson.GeometryJSON;
+import heigit.ors.geojson.GeometryJSONWriter;
 import heigit.ors.routing.ExtraSummaryItem;
 import heigit.ors.routing.RouteExtraInfo;
 import heigit.ors.routing.RouteResult;
@@ -41,6 +44,7 @@ import heigit.ors.services.routing.RoutingServiceSettings;
 import heigit.ors.util.AppInfo;
 import heigit.ors.util.DistanceUnitUtil;
 import heigit.ors.util.FormatUtility;
+import heigit.ors.util.JsonStreamWriter;
 import heigit.ors.util.PolylineEncoder;
 
 
@@ -60,6 +64,40 @@ public class JsonRoutingResponseWriter {
 
 		// *************** info ***************
 
+		jResp.put("info", createInfo(request));
+
+		return jResp;
+	}
+
+	/**
+	 * Writes the same document as {@link #toJson(RoutingRequest, RouteResult[])} to the stream while it is generated,
+	 * without building it in memory first. The parts that can fail with a {@link heigit.ors.exceptions.StatusCodeException},
+	 * the summaries of the extras and the info block, are created before the first byte is written, so that such an
+	 * error is still reported instead of a truncated document.
+	 */
+	public static void writeJson(RoutingRequest request, RouteResult[] routeResult, OutputStream out) throws Exception {
+		Map<RouteExtraInfo, List<ExtraSummaryItem>> extraSummaries = getExtraSummaries(request, routeResult);
+		// the info block is small, it is serialized as a tree so that its members keep their order
+		String info = createInfo(request).toString();
+
+		JsonStreamWriter writer = new JsonStreamWriter(out);
+		BBox bbox = new BBox(0, 0, 0, 0);
+
+		writer.beginObject();
+		writer.name("routes");
+		writeRoutes(writer, request, routeResult, bbox, extraSummaries);
+		writer.name("bbox");
+		new GeometryJSONWriter(writer).writeBBox(bbox.minLon, bbox.minLat, bbox.maxLon, bbox.maxLat);
+		writer.name("info").rawValue(info);
+		writer.endObject();
+
+		writer.flush();
+	}
+
+	/**
+	 * @return the info block of route responses, also used by the GeoJSON export
+	 */
+	public static JSONObject createInfo(RoutingRequest request) {
 		JSONObject jInfo = new JSONObject(3);
 		jInfo.put("service", "routing");
 		jInfo.put("engine", AppInfo.getEngineInfo());
@@ -104,13 +142,11 @@ public class JsonRoutingResponseWriter {
 
 		jInfo.put("query", jQuery);
 
-		jResp.put("info", jInfo);
-
-		return jResp;
+		return jInfo;
 	}
 
 	public static JSONArray toJsonArray(RoutingRequest request, RouteResult[] routeResult, BBox bbox) throws StatusCodeException {
-		StringBuffer buffer = new StringBuffer();
+		PolylineEncoder polylineEncoder = new PolylineEncoder();
 		// *************** routes ***************
 
 		boolean attrDetourFactor = request.hasAttribute("detourfactor");
@@ -151,7 +187,7 @@ public class JsonRoutingResponseWriter {
 				if (request.getGeometryFormat() != null)
 					jRoute.put("geometry_format", request.getGeometryFormat());
 
-				jRoute.put("geometry", getGeometry(route.getGeometry(), request.getIncludeElevation(), request.getGeometryFormat(), buffer));
+				jRoute.put("geometry", getGeometry(route, request.getIncludeElevation(), request.getGeometryFormat(), polylineEncoder));
 
 				if (request.getIncludeInstructions() && route.getSegments().size() > 0)
 				{
@@ -317,34 +353,288 @@ public class JsonRoutingResponseWriter {
 			if (bboxRoute != null)
 			{
 				jRoute.put("bbox", GeometryJSON.toJSON(bboxRoute.minLon, bboxRoute.minLat, bboxRoute.maxLon, bboxRoute.maxLat));
-				if (!bbox.isValid())
+				updateBBox(bbox, bboxRoute);
+			}
+
+			jRoutes.put(jRoute);
+		}
+
+		return jRoutes;
+	}
+
+	/**
+	 * Streaming counterpart of {@link #toJsonArray(RoutingRequest, RouteResult[], BBox)}, the routes are written in the
+	 * same form and order.
+	 */
+	public static void writeRoutes(JsonStreamWriter writer, RoutingRequest request, RouteResult[] routeResult, BBox bbox) throws Exception {
+		writeRoutes(writer, request, routeResult, bbox, null);
+	}
+
+	private static void writeRoutes(JsonStreamWriter writer, RoutingRequest request, RouteResult[] routeResult, BBox bbox, Map<RouteExtraInfo, List<ExtraSummaryItem>> extraSummaries) throws Exception {
+		GeometryJSONWriter geomWriter = new GeometryJSONWriter(writer);
+		PolylineEncoder polylineEncoder = new PolylineEncoder();
+
+		writer.beginArray();
+
+		for (int i = 0; i < routeResult.length; ++i)
+		{
+			writer.beginObject();
+			writeRouteMembers(geomWriter, request, routeResult[i], bbox, polylineEncoder, extraSummaries, false);
+			writer.endObject();
+		}
+
+		writer.endArray();
+	}
+
+	/**
+	 * Writes the members of a route except for its geometry as properties object of a GeoJSON feature. The summary
+	 * is wrapped in an array and the elevation flag is left out, like the GeoJSON export has always done.
+	 */
+	public static void writeFeatureProperties(GeometryJSONWriter geomWriter, RoutingRequest request, RouteResult route, BBox bbox) throws Exception {
+		geomWriter.getWriter().beginObject();
+		writeRouteMembers(geomWriter, request, route, bbox, null, null, true);
+		geomWriter.getWriter().endObject();
+	}
+
+	private static void writeRouteMembers(GeometryJSONWriter geomWriter, RoutingRequest request, RouteResult route, BBox bbox, PolylineEncoder polylineEncoder, Map<RouteExtraInfo, List<ExtraSummaryItem>> extraSummaries, boolean featureProperties) throws Exception {
+		JsonStreamWriter writer = geomWriter.getWriter();
+		boolean attrDetourFactor = request.hasAttribute("detourfactor");
+		boolean attrPercentage = request.hasAttribute("percentage");
+		boolean attrAvgSpeed = request.hasAttribute("avgspeed");
+
+		if (request.getIncludeElevation() && !featureProperties)
+			writer.name("elevation").value(true);
+
+		RouteSummary rSummary = route.getSummary();
+		writer.name("summary");
+		if (featureProperties)
+			writer.beginArray();
+		writer.beginObject();
+		writer.name("distance").value(rSummary.getDistance());
+		writer.name("duration").value(rSummary.getDuration());
+
+		if (rSummary.getAscent() != 0.0 || rSummary.getDescent() != 0.0)
+		{
+			writer.name("ascent").value(rSummary.getAscent());
+			writer.name("descent").value(rSummary.getDescent());
+		}
+
+		if (attrAvgSpeed)
+			writer.name("avgspeed").value(rSummary.getAverageSpeed());
+		writer.endObject();
+		if (featureProperties)
+			writer.endArray();
+
+		if (request.getIncludeGeometry())
+		{
+			if (!featureProperties)
+			{
+				if (request.getGeometryFormat() != null)
+					writer.name("geometry_format").value(request.getGeometryFormat());
+
+				writer.name("geometry");
+				writeGeometry(geomWriter, route, request.getIncludeElevation(), request.getGeometryFormat(), polylineEncoder);
+			}
+
+			if (request.getIncludeInstructions() && route.getSegments().size() > 0)
+			{
+				writer.name("segments").beginArray();
+
+				for (RouteSegment seg : route.getSegments())
 				{
-					bbox.minLat = bboxRoute.minLat;
-					bbox.maxLat = bboxRoute.maxLat;
-					bbox.minLon = bboxRoute.minLon;
-					bbox.maxLon = bboxRoute.maxLon;
+					writer.beginObject();
+					writer.name("distance").value(seg.getDistance());
+					writer.name("duration").value(seg.getDuration());
+
+					if (request.getIncludeElevation() && (seg.getAscent() !=0.0 || seg.getDescent() != 0.0))
+					{
+						writer.name("ascent").value(seg.getAscent());
+						writer.name("descent").value(seg.getDescent());
+					}
+
+					if (attrDetourFactor)
+						writer.name("detourfactor").value(seg.getDetourFactor());
+					if (attrPercentage)
+						writer.name("percentage").value(FormatUtility.roundToDecimals(seg.getDistance() * 100 / route.getSummary().getDistance(), 2));
+					if (attrAvgSpeed)
+					{
+						double distFactor = request.getUnits() == DistanceUnit.Meters ? 1000 : 1;
+						writer.name("avgspeed").value(FormatUtility.roundToDecimals(seg.getDistance() / distFactor / (seg.getDuration() / 3600) , 2));
+					}
+
+					writer.name("steps").beginArray();
+					for (RouteStep step : seg.getSteps())
+						writeStep(geomWriter, request, step);
+					writer.endArray();
+
+					writer.endObject();
 				}
-				else
+
+				writer.endArray();
+			}
+
+			if (route.getWayPointsIndices() != null)
+				writer.name("way_points").value(route.getWayPointsIndices());
+
+			List<RouteExtraInfo> extras = route.getExtraInfo();
+
+			if (extras != null && extras.size() > 0)
+			{
+				writer.name("extras").beginObject();
+
+				for (RouteExtraInfo extraInfo : extras)
 				{
-					bbox.update(bboxRoute.minLat, bboxRoute.minLon);
-					bbox.update(bboxRoute.maxLat, bboxRoute.maxLon);
+					if (!extraInfo.isEmpty())
+					{
+						writer.name(extraInfo.getName()).beginObject();
+
+						// ---------- values ----------
+						writer.name("values").beginArray();
+						for (RouteSegmentItem segExtra : extraInfo.getSegments())
+						{
+							writer.beginArray();
+							writer.value(segExtra.getFrom());
+							writer.value(segExtra.getTo());
+
+							if (extraInfo.getFactor() == 1.0)
+								writer.value(segExtra.getValue());
+							else
+								writer.value(FormatUtility.roundToDecimals(segExtra.getValue()/extraInfo.getFactor(), 1));
+							writer.endArray();
+						}
+						writer.endArray();
+
+						// ---------- summary ----------
+						List<ExtraSummaryItem> summaryItems = extraSummaries != null ? extraSummaries.get(extraInfo) : extraInfo.getSummary(request.getUnits(), rSummary.getDistance(), true);
+
+						if (summaryItems.size() > 0)
+						{
+							writer.name("summary").beginArray();
+
+							for (ExtraSummaryItem esi : summaryItems)
+							{
+								writer.beginObject();
+								writer.name("value").value(esi.getValue());
+								writer.name("distance").value(esi.getDistance());
+								writer.name("amount").value(esi.getAmount());
+								writer.endObject();
+							}
+
+							writer.endArray();
+						}
+
+						writer.endObject();
+					}
 				}
+
+				writer.endObject();
 			}
+		}
 
-			jRoutes.put(jRoute);
+		// *************** bbox ***************
+		BBox bboxRoute = rSummary.getBBox();
+		if (bboxRoute != null)
+		{
+			writer.name("bbox");
+			geomWriter.writeBBox(bboxRoute.minLon, bboxRoute.minLat, bboxRoute.maxLon, bboxRoute.maxLat);
+			updateBBox(bbox, bboxRoute);
 		}
+	}
 
-		return jRoutes;
+	/**
+	 * @return the summaries of the non-empty extras of all routes, the same lists as the routes are written with
+	 */
+	private static Map<RouteExtraInfo, List<ExtraSummaryItem>> getExtraSummaries(RoutingRequest request, RouteResult[] routeResult) throws Exception
+	{
+		Map<RouteExtraInfo, List<ExtraSummaryItem>> summaries = new IdentityHashMap<>();
+
+		if (request.getIncludeGeometry())
+		{
+			for (RouteResult route : routeResult)
+			{
+				if (route.getExtraInfo() == null)
+					continue;
+
+				for (RouteExtraInfo extraInfo : route.getExtraInfo())
+				{
+					if (!extraInfo.isEmpty())
+						summaries.put(extraInfo, extraInfo.getSummary(request.getUnits(), route.getSummary().getDistance(), true));
+				}
+			}
+		}
+
+		return summaries;
+	}
+
+	private static void writeStep(GeometryJSONWriter geomWriter, RoutingRequest request, RouteStep step) throws IOException
+	{
+		JsonStreamWriter writer = geomWriter.getWriter();
+		writer.beginObject();
+		writer.name("distance").value(step.getDistance());
+		writer.name("duration").value(step.getDuration());
+		writer.name("type").value(step.getType());
+		// members with null values are left out like JSONObject.put does
+		if (step.getInstruction() != null)
+			writer.name("instruction").value(step.getInstruction());
+		if (step.getName() != null)
+			writer.name("name").value(step.getName());
+		if (step.getMessage() != null)
+		{
+			writer.name("message").value(step.getMessage());
+			writer.name("message_type").value(step.getMessageType());
+		}
+
+		if (step.getExitNumber() != -1)
+			writer.name("exit_number").value(step.getExitNumber());
+
+		if (request.getIncludeManeuvers())
+		{
+			RouteStepManeuver maneuver = step.getManeuver();
+			if (maneuver != null)
+			{
+				writer.name("maneuver").beginObject();
+				writer.name("bearing_before").value(maneuver.getBearingBefore());
+				writer.name("bearing_after").value(maneuver.getBearingAfter());
+				if (maneuver.getLocation() != null)
+				{
+					writer.name("location");
+					geomWriter.writeCoordinate(maneuver.getLocation());
+				}
+				writer.endObject();
+			}
+		}
+
+		if (request.getIncludeRoundaboutExits() && step.getRoundaboutExitBearings() != null)
+			writer.name("exit_bearings").value(step.getRoundaboutExitBearings());
+
+		writer.name("way_points").value(step.getWayPoints());
+		writer.endObject();
 	}
 
-	private static Object getGeometry(Coordinate[] points, boolean includeElevation, String format, StringBuffer buffer)
+	private static void updateBBox(BBox bbox, BBox bboxRoute)
 	{
-		if (points == null)
+		if (!bbox.isValid())
+		{
+			bbox.minLat = bboxRoute.minLat;
+			bbox.maxLat = bboxRoute.maxLat;
+			bbox.minLon = bboxRoute.minLon;
+			bbox.maxLon = bboxRoute.maxLon;
+		}
+		else
+		{
+			bbox.update(bboxRoute.minLat, bboxRoute.minLon);
+			bbox.update(bboxRoute.maxLat, bboxRoute.maxLon);
+		}
+	}
+
+	private static Object getGeometry(RouteResult route, boolean includeElevation, String format, PolylineEncoder polylineEncoder)
+	{
+		if (route.getPoints() == null)
 			return "";
 
 		if (Helper.isEmpty(format) || "encodedpolyline".equalsIgnoreCase(format))
 		{
-			return PolylineEncoder.encode(points, includeElevation, buffer);
+			return polylineEncoder.encode(route.getPoints(), includeElevation).toString();
 		}
 		else if ("geojson".equalsIgnoreCase(format))
 		{
@@ -357,17 +647,31 @@ public class JsonRoutingResponseWriter {
              }
 			 */
 			json.put("type", "LineString");
-			json.put("coordinates", GeometryJSON.toJSON(points, includeElevation));
+			json.put("coordinates", GeometryJSON.toJSON(route.getGeometry(), includeElevation));
 
 			return json;
 		}
 		else if ("polyline".equalsIgnoreCase(format))
 		{
-			return GeometryJSON.toJSON(points, includeElevation);
+			return GeometryJSON.toJSON(route.getGeometry(), includeElevation);
 		}
 
 		return "";
 	}
 
+	private static void writeGeometry(GeometryJSONWriter geomWriter, RouteResult route, boolean includeElevation, String format, PolylineEncoder polylineEncoder) throws IOException
+	{
+		JsonStreamWriter writer = geomWriter.getWriter();
+		if (route.getPoints() == null)
+			writer.value("");
+		else if (Helper.isEmpty(format) || "encodedpolyline".equalsIgnoreCase(format))
+			writer.value(polylineEncoder.encode(route.getPoints(), includeElevation));
+		else if ("geojson".equalsIgnoreCase(format))
+			geomWriter.writeLineString(route.getPoints(), includeElevation);
+		else if ("polyline".equalsIgnoreCase(format))
+			geomWriter.writeCoordinates(route.getPoints(), includeElevation);
+		else
+			writer.value("");
+	}
 
 }
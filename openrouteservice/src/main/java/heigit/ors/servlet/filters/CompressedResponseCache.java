@@ -0,0 +1,154 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.servlet.filters;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Least recently used cache of compressed responses to GET requests, limited by the number of bytes of the cached
+ * responses. Only successful responses are cached whose Cache-Control header allows shared caches to store them with a
+ * max-age, they expire with it. Of the response headers only the content type and the cache control are kept.
+ */
+class CompressedResponseCache {
+	static class Entry {
+		private final String _contentType;
+		private final String _cacheControl;
+		private final byte[] _content;
+		private final int _length;
+		private final long _created;
+		private final long _expires;
+
+		/**
+		 * @param content the compressed content, the array is kept and counted by its length
+		 */
+		Entry(String contentType, String cacheControl, byte[] content, long maxAge) {
+			_contentType = contentType;
+			_cacheControl = cacheControl;
+			_content = content;
+			_length = content.length;
+			_created = System.currentTimeMillis();
+			_expires = _created + maxAge * 1000;
+		}
+
+		int getLength() {
+			return _length;
+		}
+
+		boolean isExpired(long time) {
+			return time >= _expires;
+		}
+
+		void writeTo(HttpServletResponse response, String encoding) throws IOException {
+			if (_contentType != null)
+				response.setContentType(_contentType);
+			response.setHeader("Cache-Control", _cacheControl);
+			response.setHeader("Age", Long.toString((System.currentTimeMillis() - _created) / 1000));
+			response.addHeader("Content-Encoding", encoding);
+			response.setContentLength(_length);
+
+			ServletOutputStream out = response.getOutputStream();
+			out.write(_content, 0, _length);
+			out.close();
+		}
+	}
+
+	private final long _maxSize;
+	private long _size;
+	private final LinkedHashMap<String, Entry> _entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+	public CompressedResponseCache(long maxSize) {
+		_maxSize = maxSize;
+	}
+
+	/**
+	 * Single responses may use at most an eighth of the cache.
+	 */
+	public int getMaxEntrySize() {
+		return (int) Math.min(_maxSize / 8, Integer.MAX_VALUE);
+	}
+
+	public Entry get(String key) {
+		return get(key, System.currentTimeMillis());
+	}
+
+	synchronized Entry get(String key, long time) {
+		Entry entry = _entries.get(key);
+		if (entry != null && entry.isExpired(time)) {
+			_entries.remove(key);
+			_size -= entry.getLength();
+			return null;
+		}
+		return entry;
+	}
+
+	public synchronized void put(String key, Entry entry) {
+		if (entry.getLength() > getMaxEntrySize())
+			return;
+
+		Entry old = _entries.put(key, entry);
+		if (old != null)
+			_size -= old.getLength();
+		_size += entry.getLength();
+
+		long time = System.currentTimeMillis();
+		Iterator<Map.Entry<String, Entry>> iter = _entries.entrySet().iterator();
+		while (iter.hasNext()) {
+			Entry e = iter.next().getValue();
+			if (_size > _maxSize || e.isExpired(time)) {
+				iter.remove();
+				_size -= e.getLength();
+			}
+			if (_size <= _maxSize)
+				break;
+		}
+	}
+
+	public static String getKey(HttpServletRequest request, String encoding) {
+		String query = request.getQueryString();
+		return encoding + " " + request.getRequestURI() + (query == null ? "" : "?" + query);
+	}
+
+	/**
+	 * @return the number of seconds the response may be cached according to the Cache-Control header, 0 if it must
+	 * not be cached
+	 */
+	public static long getMaxAge(String cacheControl) {
+		if (cacheControl == null)
+			return 0;
+
+		long maxAge = 0;
+		for (String token : cacheControl.split(",")) {
+			String directive = token.trim().toLowerCase(Locale.ENGLISH);
+			if (directive.equals("no-store") || directive.equals("no-cache") || directive.startsWith("private"))
+				return 0;
+
+			if (directive.startsWith("max-age=")) {
+				try {
+					maxAge = Long.parseLong(directive.substring(8).trim());
+				} catch (NumberFormatException ex) {
+					return 0;
+				}
+			}
+		}
+		return Math.max(maxAge, 0);
+	}
+}
@@ -15,6 +15,8 @@ package heigit.ors.servlet.filters;
 
 import java.io.IOException;
 
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
@@ -24,43 +26,77 @@ import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+/**
+ * Compresses the responses with the content encoding preferred by the client, Brotli, gzip or deflate. The
+ * compression is configured by the init parameters of the filter, see {@link CompressionSettings}.
+ */
 public class CompressionFilter implements Filter 
 {
+	private CompressionSettings _settings = new CompressionSettings();
+	private CompressedResponseCache _cache = null;
+
 	public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain) throws IOException, ServletException 
 	{
 		if (req instanceof HttpServletRequest)
 		{
 			HttpServletRequest request = (HttpServletRequest) req;
 			HttpServletResponse response = (HttpServletResponse) res;
-			String acceptEncoding = request.getHeader("accept-encoding");
+			String encoding = _settings.selectEncoding(request.getHeader("accept-encoding"));
 			
-			if (acceptEncoding != null) {
-				/* Commented out as jBrotli library crashes the server.
-				 * Java frames: (J=compiled Java code, j=interpreted, Vv=VM code)
-                 *J 4868  org.meteogroup.jbrotli.BrotliStreamCompressor.freeNativeResources()I 
-				 * if (acceptEncoding.indexOf(ContentEncodingType.BROTLI) != -1) {
-					BrotliResponseWrapper wrappedResponse = new BrotliResponseWrapper(response);
-					chain.doFilter(req, wrappedResponse);
-					wrappedResponse.finishResponse();
-					return;
+			if (encoding != null) {
+				response.addHeader("Vary", "Accept-Encoding");
+
+				String cacheKey = null;
+				if (_cache != null && "GET".equals(request.getMethod())) {
+					cacheKey = CompressedResponseCache.getKey(request, encoding);
+					CompressedResponseCache.Entry entry = _cache.get(cacheKey);
+					if (entry != null) {
+						entry.writeTo(response, encoding);
+						return;
+					}
 				}
-				else*/ if(acceptEncoding.indexOf(ContentEncodingType.GZIP) != -1) {
-					GZIPResponseWrapper wrappedResponse = new GZIPResponseWrapper(response);
-					chain.doFilter(req, wrappedResponse);
+
+				CompressionResponseWrapper wrappedResponse = new CompressionResponseWrapper(response, _settings, encoding, cacheKey != null ? _cache : null, cacheKey);
+				chain.doFilter(req, wrappedResponse);
+				finishResponse(request, wrappedResponse);
+				return;
+			}
+
+			chain.doFilter(req, res);
+		}
+	}
+
+	/**
+	 * Completes the compressed stream, for asynchronously processed requests once their processing has completed. The
+	 * encoder of a request which fails or times out is released right away, the container may not complete it.
+	 */
+	private static void finishResponse(HttpServletRequest request, CompressionResponseWrapper wrappedResponse) {
+		if (request.isAsyncStarted()) {
+			request.getAsyncContext().addListener(new AsyncListener() {
+				public void onComplete(AsyncEvent event) {
 					wrappedResponse.finishResponse();
-					return;
 				}
-				else if (acceptEncoding.indexOf(ContentEncodingType.DEFLATE) != -1) {
-                   // todo
+
+				public void onTimeout(AsyncEvent event) {
+					wrappedResponse.releaseResponse();
 				}
-			}
 
-			chain.doFilter(req, res);
+				public void onError(AsyncEvent event) {
+					wrappedResponse.releaseResponse();
+				}
+
+				public void onStartAsync(AsyncEvent event) {
+				}
+			});
 		}
+		else
+			wrappedResponse.finishResponse();
 	}
 
 	public void init(FilterConfig filterConfig) {
-
+		_settings = CompressionSettings.fromConfig(filterConfig);
+		if (_settings.getCacheSize() > 0)
+			_cache = new CompressedResponseCache(_settings.getCacheSize());
 	}
 
 	public void destroy() {
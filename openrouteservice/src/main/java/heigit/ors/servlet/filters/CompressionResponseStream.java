@@ -0,0 +1,256 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the 
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1 
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library; 
+ *  if not, see <https://www.gnu.org/licenses/>.  
+ */
+package heigit.ors.servlet.filters;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+
+import heigit.ors.io.BrotliOutputStream;
+import heigit.ors.io.ByteArrayOutputStreamEx;
+
+/**
+ * Compresses the response while it is written. The first bytes up to the minimum size are buffered, responses which
+ * are closed before reaching it are sent uncompressed with their content length. Larger responses are compressed with
+ * the level of their content type and streamed to the client, flushes are passed on to the encoder so that the data
+ * written so far reaches the client. A flush before the minimum size is reached is deferred, as the response may still
+ * turn out to be too small to be compressed.
+ */
+class CompressionResponseStream extends ServletOutputStream { 
+	private static final int BUFFER_SIZE = 8192;
+
+	private final HttpServletResponse _response;
+	private final CompressionSettings _settings;
+	private final String _encoding;
+	// the maximum number of compressed bytes to keep for the cache, 0 if the response is not cached
+	private final int _captureSize;
+	private byte[] _buffer;
+	private int _count;
+	// the encoder, or the response stream if the response is not compressed, null while buffering
+	private OutputStream _out = null;
+	private CaptureOutputStream _capture = null;
+	private boolean _closed = false;
+
+	public CompressionResponseStream(HttpServletResponse response, CompressionSettings settings, String encoding, int captureSize) {
+		super();
+
+		_response = response;
+		_settings = settings;
+		_encoding = encoding;
+		_captureSize = captureSize;
+		_buffer = new byte[settings.getMinSize()];
+	}
+
+	public void close() throws IOException {
+		if (_closed) 
+			throw new IOException("This output stream has already been closed");
+		_closed = true;
+
+		if (_out == null) {
+			ServletOutputStream out = _response.getOutputStream();
+			_response.setContentLength(_count);
+			out.write(_buffer, 0, _count);
+			out.close();
+		}
+		else
+			_out.close();
+	}
+	
+	public boolean isClosed() {
+		return _closed;
+	}
+
+	/**
+	 * Closes the stream without completing the response, e.g. after an error or a timeout of an asynchronous request.
+	 * Only the native memory of the encoder is released, nothing is written and nothing is kept for the cache.
+	 */
+	public void release() {
+		if (_closed)
+			return;
+		_closed = true;
+		_capture = null;
+
+		if (_out instanceof Encoder)
+			((Encoder) _out).release();
+	}
+
+	/**
+	 * @return the compressed content if the response has been compressed and kept for the cache, null otherwise
+	 */
+	public ByteArrayOutputStreamEx getCapturedContent() {
+		return _closed && _capture != null ? _capture.getContent() : null;
+	}
+
+	public void flush() throws IOException {
+		if (_closed) 
+			throw new IOException("Cannot flush a closed output stream");
+		
+		if (_out != null)
+			_out.flush();
+	}
+
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	public void write(byte b[]) throws IOException {
+		write(b, 0, b.length);
+	}
+
+	public void write(byte b[], int off, int len) throws IOException {
+		if (_closed) 
+			throw new IOException("Cannot write to a closed output stream");
+		
+		if (_out == null) {
+			if (_count + len <= _buffer.length) {
+				System.arraycopy(b, off, _buffer, _count, len);
+				_count += len;
+				return;
+			}
+			start();
+		}
+
+		_out.write(b, off, len);
+	}
+
+	/**
+	 * Decides on the compression once the minimum size has been exceeded, the headers are set by then.
+	 */
+	private void start() throws IOException {
+		ServletOutputStream out = _response.getOutputStream();
+		int level = _settings.getLevel(_response.getContentType());
+
+		if (level > 0) {
+			_response.addHeader("Content-Encoding", _encoding);
+
+			OutputStream target = out;
+			if (_captureSize > 0 && _response.getStatus() == HttpServletResponse.SC_OK && CompressedResponseCache.getMaxAge(_response.getHeader("Cache-Control")) > 0) {
+				_capture = new CaptureOutputStream(out, _captureSize);
+				target = _capture;
+			}
+			_out = createEncoder(_encoding, level, target);
+		}
+		else
+			_out = out;
+
+		_out.write(_buffer, 0, _count);
+		_buffer = null;
+	}
+
+	static OutputStream createEncoder(String encoding, int level, OutputStream out) throws IOException {
+		if (ContentEncodingType.BROTLI.equals(encoding))
+			return new BrotliOutputStream(out, Math.min(level, BrotliOutputStream.MAX_QUALITY));
+
+		int zlibLevel = Math.min(level, Deflater.BEST_COMPRESSION);
+		if (ContentEncodingType.DEFLATE.equals(encoding))
+			return new DeflateEncoder(out, zlibLevel);
+
+		return new GZipEncoder(out, zlibLevel);
+	}
+
+	@Override
+	public boolean isReady() {
+		return false;
+	}
+
+	@Override
+	public void setWriteListener(WriteListener arg0) {
+	}
+
+	/**
+	 * An encoder holding native memory which has to be released if the stream is not closed.
+	 */
+	private interface Encoder {
+		void release();
+	}
+
+	/**
+	 * The deflate content encoding is the zlib format.
+	 */
+	private static class DeflateEncoder extends DeflaterOutputStream implements Encoder {
+		public DeflateEncoder(OutputStream out, int level) {
+			super(out, new Deflater(level), BUFFER_SIZE, true);
+		}
+
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				def.end();
+			}
+		}
+
+		public void release() {
+			def.end();
+		}
+	}
+
+	private static class GZipEncoder extends GZIPOutputStream implements Encoder {
+		public GZipEncoder(OutputStream out, int level) throws IOException {
+			super(out, BUFFER_SIZE, true);
+			def.setLevel(level);
+		}
+
+		public void release() {
+			def.end();
+		}
+	}
+
+	/**
+	 * Writes through to the response and keeps a copy of the written bytes, as long as they are within the limit.
+	 */
+	private static class CaptureOutputStream extends OutputStream {
+		private final OutputStream _out;
+		private final int _limit;
+		private ByteArrayOutputStreamEx _content = new ByteArrayOutputStreamEx(BUFFER_SIZE);
+
+		public CaptureOutputStream(OutputStream out, int limit) {
+			_out = out;
+			_limit = limit;
+		}
+
+		public ByteArrayOutputStreamEx getContent() {
+			return _content;
+		}
+
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		public void write(byte b[], int off, int len) throws IOException {
+			_out.write(b, off, len);
+
+			if (_content != null) {
+				if (_content.size() + len > _limit)
+					_content = null;
+				else
+					_content.write(b, off, len);
+			}
+		}
+
+		public void flush() throws IOException {
+			_out.flush();
+		}
+
+		public void close() throws IOException {
+			_out.close();
+		}
+	}
+}
@@ -0,0 +1,139 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the 
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1 
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library; 
+ *  if not, see <https://www.gnu.org/licenses/>.  
+ */
+package heigit.ors.servlet.filters;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import heigit.ors.io.ByteArrayOutputStreamEx;
+
+class CompressionResponseWrapper extends HttpServletResponseWrapper {
+	protected HttpServletResponse _origResponse = null;
+	protected CompressionResponseStream _stream = null;
+	protected PrintWriter _writer = null;
+	// set if the content has already been encoded, it is passed through unchanged then
+	protected boolean _encoded = false;
+	private final CompressionSettings _settings;
+	private final String _encoding;
+	private final CompressedResponseCache _cache;
+	private final String _cacheKey;
+
+	/**
+	 * @param cache the cache to store the compressed response in if it is cacheable, or null
+	 */
+	public CompressionResponseWrapper(HttpServletResponse response, CompressionSettings settings, String encoding, CompressedResponseCache cache, String cacheKey) {
+		super(response);
+		_origResponse = response;
+		_settings = settings;
+		_encoding = encoding;
+		_cache = cache;
+		_cacheKey = cacheKey;
+	}
+
+	public CompressionResponseStream createOutputStream() throws IOException {
+		return new CompressionResponseStream(_origResponse, _settings, _encoding, _cache != null ? _cache.getMaxEntrySize() : 0);
+	}
+
+	public void finishResponse() {
+		try {
+			if (_writer != null) 
+				_writer.close();
+			else {
+				if (_stream != null && !_stream.isClosed()) 
+					_stream.close();
+			}
+		} catch (IOException e) 
+		{
+
+		}
+
+		if (_stream != null && _cache != null) {
+			ByteArrayOutputStreamEx content = _stream.getCapturedContent();
+			long maxAge = CompressedResponseCache.getMaxAge(getHeader("Cache-Control"));
+			if (content != null && maxAge > 0 && getStatus() == SC_OK)
+				_cache.put(_cacheKey, new CompressedResponseCache.Entry(getContentType(), getHeader("Cache-Control"), content.toByteArray(), maxAge));
+		}
+	}
+
+	/**
+	 * Releases the encoder of a response which is not completed normally, nothing is written or cached.
+	 */
+	public void releaseResponse() {
+		if (_stream != null)
+			_stream.release();
+	}
+
+	public void flushBuffer() throws IOException {
+		if (_stream != null && !_stream.isClosed())
+			_stream.flush();
+	}
+
+	public ServletOutputStream getOutputStream() throws IOException {
+		if (_writer != null) 
+			throw new IllegalStateException("getWriter() has already been called!");
+
+		if (_encoded && _stream == null)
+			return _origResponse.getOutputStream();
+
+		if (_stream == null)
+			_stream = createOutputStream();
+
+		return (_stream);
+	}
+
+	public PrintWriter getWriter() throws IOException {
+		if (_writer != null) 
+			return (_writer);
+
+		if (_stream != null) 
+			throw new IllegalStateException("getOutputStream() has already been called!");
+
+		_stream = createOutputStream();
+		_writer = new PrintWriter(new OutputStreamWriter(_stream, "UTF-8"));
+		return (_writer);
+	}
+
+	public void setContentLength(int length) {
+		if (_encoded)
+			_origResponse.setContentLength(length);
+	}
+
+	public void setContentLengthLong(long length) {
+		if (_encoded)
+			_origResponse.setContentLengthLong(length);
+	}
+
+	public void setHeader(String name, String value) {
+		checkContentEncoding(name);
+		super.setHeader(name, value);
+	}
+
+	public void addHeader(String name, String value) {
+		checkContentEncoding(name);
+		super.addHeader(name, value);
+	}
+
+	private void checkContentEncoding(String name) {
+		if ("Content-Encoding".equalsIgnoreCase(name)) {
+			if (_stream != null)
+				throw new IllegalStateException("The content encoding must be set before the output stream is obtained.");
+			_encoded = true;
+		}
+	}
+}
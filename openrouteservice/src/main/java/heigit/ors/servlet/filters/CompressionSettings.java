@@ -0,0 +1,204 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.servlet.filters;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.servlet.FilterConfig;
+
+/**
+ * Settings of the {@link CompressionFilter}, read from the init parameters of the filter:
+ * <ul>
+ * <li>compression.encodings: the supported content encodings in the order of preference, by default
+ * "br, gzip, deflate"</li>
+ * <li>compression.min.size: responses with less bytes are not compressed, by default 1024</li>
+ * <li>compression.levels: compression levels per content type like "application/json=6, image/*=0, *=6". Gzip and
+ * deflate use levels from 1 to 9, Brotli qualities from 1 to 11. A level of 0 disables the compression of the
+ * content type, types without a level of their own use the level of "*", by default 6.</li>
+ * <li>compression.cache.size: the number of bytes of compressed responses which are kept in memory and sent again to
+ * the same GET requests as long as the responses allow it by their Cache-Control header, by default 0 to not cache
+ * at all</li>
+ * </ul>
+ */
+class CompressionSettings {
+	public static final String PARAM_ENCODINGS = "compression.encodings";
+	public static final String PARAM_MIN_SIZE = "compression.min.size";
+	public static final String PARAM_LEVELS = "compression.levels";
+	public static final String PARAM_CACHE_SIZE = "compression.cache.size";
+
+	public static final int DEFAULT_LEVEL = 6;
+	public static final int DEFAULT_MIN_SIZE = 1024;
+
+	private final List<String> _encodings = new ArrayList<String>();
+	private final Map<String, Integer> _levels = new HashMap<String, Integer>();
+	private int _defaultLevel = DEFAULT_LEVEL;
+	private int _minSize = DEFAULT_MIN_SIZE;
+	private long _cacheSize = 0;
+
+	public CompressionSettings() {
+		_encodings.add(ContentEncodingType.BROTLI);
+		_encodings.add(ContentEncodingType.GZIP);
+		_encodings.add(ContentEncodingType.DEFLATE);
+	}
+
+	public static CompressionSettings fromConfig(FilterConfig config) {
+		CompressionSettings settings = new CompressionSettings();
+
+		String value = config.getInitParameter(PARAM_ENCODINGS);
+		if (value != null)
+			settings.setEncodings(value);
+		value = config.getInitParameter(PARAM_MIN_SIZE);
+		if (value != null)
+			settings.setMinSize(Integer.parseInt(value.trim()));
+		value = config.getInitParameter(PARAM_LEVELS);
+		if (value != null)
+			settings.setLevels(value);
+		value = config.getInitParameter(PARAM_CACHE_SIZE);
+		if (value != null)
+			settings.setCacheSize(Long.parseLong(value.trim()));
+
+		return settings;
+	}
+
+	public List<String> getEncodings() {
+		return _encodings;
+	}
+
+	/**
+	 * @param value comma separated list of content encodings
+	 * @throws IllegalArgumentException if an encoding is not supported
+	 */
+	public void setEncodings(String value) {
+		_encodings.clear();
+		for (String token : value.split(",")) {
+			String encoding = token.trim().toLowerCase(Locale.ENGLISH);
+			if (encoding.isEmpty())
+				continue;
+			if (!ContentEncodingType.BROTLI.equals(encoding) && !ContentEncodingType.GZIP.equals(encoding) && !ContentEncodingType.DEFLATE.equals(encoding))
+				throw new IllegalArgumentException("Content encoding '" + encoding + "' is not supported.");
+			_encodings.add(encoding);
+		}
+	}
+
+	public int getMinSize() {
+		return _minSize;
+	}
+
+	public void setMinSize(int minSize) {
+		if (minSize < 0)
+			throw new IllegalArgumentException("The minimum size must not be negative.");
+		_minSize = minSize;
+	}
+
+	/**
+	 * @param value comma separated list of content type and level pairs, content types may be "*" or end with "/*"
+	 */
+	public void setLevels(String value) {
+		_levels.clear();
+		_defaultLevel = DEFAULT_LEVEL;
+
+		for (String token : value.split(",")) {
+			if (token.trim().isEmpty())
+				continue;
+
+			int pos = token.indexOf('=');
+			if (pos < 0)
+				throw new IllegalArgumentException("Compression level '" + token.trim() + "' must be given as content type=level.");
+
+			String contentType = token.substring(0, pos).trim().toLowerCase(Locale.ENGLISH);
+			int level = Integer.parseInt(token.substring(pos + 1).trim());
+			if (level < 0)
+				throw new IllegalArgumentException("The compression level of '" + contentType + "' must not be negative.");
+
+			if ("*".equals(contentType))
+				_defaultLevel = level;
+			else
+				_levels.put(contentType, level);
+		}
+	}
+
+	/**
+	 * @return the level of the content type, parameters like the charset are ignored. 0 means the content is not to
+	 * be compressed.
+	 */
+	public int getLevel(String contentType) {
+		if (contentType == null)
+			return _defaultLevel;
+
+		int pos = contentType.indexOf(';');
+		String type = (pos < 0 ? contentType : contentType.substring(0, pos)).trim().toLowerCase(Locale.ENGLISH);
+
+		Integer level = _levels.get(type);
+		if (level == null) {
+			pos = type.indexOf('/');
+			if (pos > 0)
+				level = _levels.get(type.substring(0, pos) + "/*");
+		}
+
+		return level == null ? _defaultLevel : level;
+	}
+
+	public long getCacheSize() {
+		return _cacheSize;
+	}
+
+	public void setCacheSize(long cacheSize) {
+		_cacheSize = cacheSize;
+	}
+
+	/**
+	 * Selects the most preferred supported encoding the client accepts, encodings with a quality value of 0 are
+	 * refused.
+	 *
+	 * @param acceptEncoding value of the Accept-Encoding header
+	 * @return the selected encoding, or null if the response is not to be compressed
+	 */
+	public String selectEncoding(String acceptEncoding) {
+		if (acceptEncoding == null)
+			return null;
+
+		Map<String, Double> accepted = new HashMap<String, Double>();
+		for (String token : acceptEncoding.split(",")) {
+			String[] parts = token.split(";");
+			String coding = parts[0].trim().toLowerCase(Locale.ENGLISH);
+			double quality = 1.0;
+			for (int i = 1; i < parts.length; i++) {
+				String param = parts[i].trim();
+				if (param.startsWith("q=") || param.startsWith("Q=")) {
+					try {
+						quality = Double.parseDouble(param.substring(2).trim());
+					} catch (NumberFormatException ex) {
+						quality = 0.0;
+					}
+				}
+			}
+			if (!coding.isEmpty())
+				accepted.put(coding, quality);
+		}
+
+		for (String encoding : _encodings) {
+			Double quality = accepted.get(encoding);
+			if (quality == null)
+				quality = accepted.get("*");
+			if (quality != null && quality > 0)
+				return encoding;
+		}
+
+		return null;
+	}
+}
@@ -55,7 +55,9 @@ public class StatusCodeHandlerFilter implements Filter {
 		}
 
 		// 	flush to prevent servlet container to add anymore  headers or content
-		response.flushBuffer();
+		// asynchronously processed responses are still being written and flushed when they are completed
+		if (!request.isAsyncStarted())
+			response.flushBuffer();
 	}
 
 	@Override
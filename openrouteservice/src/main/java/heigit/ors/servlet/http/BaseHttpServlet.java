@@ -13,15 +13,21 @@
  */
 package heigit.ors.servlet.http;
 
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.servlet.AsyncContext;
 import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.log4j.Logger;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import heigit.ors.common.RequestDeadline;
 import heigit.ors.common.StatusCode;
 import heigit.ors.exceptions.InternalServerException;
+import heigit.ors.exceptions.RequestTimeoutException;
 import heigit.ors.exceptions.StatusCodeException;
 import heigit.ors.servlet.util.ServletUtility;
 import heigit.ors.util.AppInfo;
@@ -32,6 +38,72 @@ public class BaseHttpServlet extends HttpServlet
 	
     protected static Logger LOGGER = Logger.getLogger(BaseHttpServlet.class.getName());
 
+    protected interface RequestTask
+    {
+    	void run() throws Exception;
+    }
+
+    /**
+     * Runs the task on a thread of the executor and releases the container thread in the meantime. Errors of the task
+     * are written as usual. If the executor is saturated the request is answered with 503 and a Retry-After header
+     * right away. Without async support of the container the task is run on the calling thread. The deadline of the
+     * request is available to the task through {@link RequestDeadline#current()}.
+     */
+    protected void processAsync(HttpServletRequest request, HttpServletResponse response, ServiceRequestExecutor executor, RequestTask task)
+    {
+    	RequestDeadline deadline = executor.createDeadline(request);
+
+    	if (!request.isAsyncSupported())
+    	{
+    		runTask(response, deadline, task);
+    		return;
+    	}
+
+    	AsyncContext asyncContext = request.startAsync(request, response);
+    	// the duration of a request is limited by the service settings, not by the container
+    	asyncContext.setTimeout(0);
+
+    	try
+    	{
+    		executor.execute(() -> {
+    			try
+    			{
+    				runTask(response, deadline, task);
+    			}
+    			finally
+    			{
+    				asyncContext.complete();
+    			}
+    		});
+    	}
+    	catch (RejectedExecutionException ex)
+    	{
+    		response.setHeader("Retry-After", Integer.toString(executor.getRetryAfter()));
+    		writeError(response, new StatusCodeException(StatusCode.SERVICE_UNAVAILABLE, "The " + executor.getServiceName() + " service is busy, please try again later."));
+    		asyncContext.complete();
+    	}
+    }
+
+    private void runTask(HttpServletResponse response, RequestDeadline deadline, RequestTask task)
+    {
+    	RequestDeadline.setCurrent(deadline);
+    	try
+    	{
+    		// the request may have used up its time in the queue
+    		if (deadline != null)
+    			deadline.check();
+
+    		task.run();
+    	}
+    	catch (Exception ex) {
+    		writeError(response, ex);
+    	}
+    	finally
+    	{
+    		RequestDeadline.setCurrent(null);
+    	}
+    }
+
     protected void writeError(HttpServletResponse res, Exception ex)
     {
       writeError(res, ex, StatusCode.BAD_REQUEST);
@@ -66,6 +138,11 @@ public class BaseHttpServlet extends HttpServlet
 				statusCode = sce.getStatusCode();
 				errorCode = sce.getInternalCode();
 			}
+			else if (ex instanceof RequestTimeoutException)
+			{
+				statusCode = StatusCode.SERVICE_UNAVAILABLE;
+				errorCode = ((RequestTimeoutException)ex).getInternalCode();
+			}
 			
 			if (errorCode > 0)
 			{
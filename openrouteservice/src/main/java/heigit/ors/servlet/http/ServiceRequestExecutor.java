@@ -0,0 +1,233 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the 
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1 
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library; 
+ *  if not, see <https://www.gnu.org/licenses/>.  
+ */
+package heigit.ors.servlet.http;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.json.JSONObject;
+
+import com.graphhopper.util.Helper;
+
+import heigit.ors.common.RequestDeadline;
+import heigit.ors.config.AppConfig;
+
+/**
+ * Bounded worker pool of a service which processes its requests apart from the container threads, so that a burst of
+ * expensive requests of one service does not hold up the requests of the others. A request is rejected when all
+ * threads are busy and the queue is full.
+ * <p>
+ * The pool is configured by the parameters request_threads (defaults to the number of processors),
+ * request_queue_size (defaults to 100) and request_retry_after (seconds suggested to rejected clients, defaults to 5)
+ * of the service in app.config. The parameter request_timeout limits the time in milliseconds from the arrival of a
+ * request until it has to be answered, clients can lower it with the header X-Request-Timeout.
+ */
+public class ServiceRequestExecutor
+{
+	public static final String TIMEOUT_HEADER = "X-Request-Timeout";
+
+	private static final Map<String, ServiceRequestExecutor> _executors = new LinkedHashMap<String, ServiceRequestExecutor>();
+
+	private final String _serviceName;
+	private final int _threads;
+	private final int _queueSize;
+	private final int _retryAfter;
+	private final long _timeout;
+	private final int _timeoutErrorCode;
+	private final ThreadPoolExecutor _executor;
+	private final AtomicInteger _inFlight = new AtomicInteger();
+	private final AtomicLong _completed = new AtomicLong();
+	private final AtomicLong _rejected = new AtomicLong();
+
+	/**
+	 * @param timeout the time budget of a request in milliseconds, 0 for none
+	 * @param timeoutErrorCode the internal error code of requests exceeding their time budget
+	 */
+	public ServiceRequestExecutor(String serviceName, int threads, int queueSize, int retryAfter, long timeout, int timeoutErrorCode)
+	{
+		_serviceName = serviceName;
+		_threads = threads;
+		_queueSize = queueSize;
+		_retryAfter = retryAfter;
+		_timeout = timeout;
+		_timeoutErrorCode = timeoutErrorCode;
+
+		BlockingQueue<Runnable> queue = queueSize > 0 ? new ArrayBlockingQueue<Runnable>(queueSize) : new SynchronousQueue<Runnable>();
+		AtomicInteger threadCount = new AtomicInteger();
+		_executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, queue, runnable -> {
+			Thread thread = new Thread(runnable, "ORS-" + serviceName + "-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		_executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * @return the executor of the service, created from the settings of the service on first use
+	 */
+	public static ServiceRequestExecutor getInstance(String serviceName, int timeoutErrorCode)
+	{
+		synchronized (_executors)
+		{
+			ServiceRequestExecutor executor = _executors.get(serviceName);
+			if (executor == null)
+			{
+				executor = new ServiceRequestExecutor(serviceName,
+						getIntParameter(serviceName, "request_threads", Runtime.getRuntime().availableProcessors()),
+						getIntParameter(serviceName, "request_queue_size", 100),
+						getIntParameter(serviceName, "request_retry_after", 5),
+						getIntParameter(serviceName, "request_timeout", 0),
+						timeoutErrorCode);
+				_executors.put(serviceName, executor);
+			}
+			return executor;
+		}
+	}
+
+	private static int getIntParameter(String serviceName, String paramName, int defaultValue)
+	{
+		String value = AppConfig.Global().getServiceParameter(serviceName, paramName);
+		return Helper.isEmpty(value) ? defaultValue : Integer.parseInt(value);
+	}
+
+	public static List<ServiceRequestExecutor> getInstances()
+	{
+		synchronized (_executors)
+		{
+			return new ArrayList<ServiceRequestExecutor>(_executors.values());
+		}
+	}
+
+	public static void shutdownAll()
+	{
+		synchronized (_executors)
+		{
+			for (ServiceRequestExecutor executor : _executors.values())
+				executor._executor.shutdownNow();
+			_executors.clear();
+		}
+	}
+
+	/**
+	 * @throws RejectedExecutionException if the queue is full
+	 */
+	public void execute(Runnable task)
+	{
+		try
+		{
+			_executor.execute(() -> {
+				_inFlight.incrementAndGet();
+				try
+				{
+					task.run();
+				}
+				finally
+				{
+					_inFlight.decrementAndGet();
+					_completed.incrementAndGet();
+				}
+			});
+		}
+		catch (RejectedExecutionException ex)
+		{
+			_rejected.incrementAndGet();
+			throw ex;
+		}
+	}
+
+	/**
+	 * @return the deadline of a request which arrives now or null if its time is not limited
+	 */
+	public RequestDeadline createDeadline(HttpServletRequest request)
+	{
+		long timeout = _timeout;
+
+		String value = request.getHeader(TIMEOUT_HEADER);
+		if (!Helper.isEmpty(value))
+		{
+			try
+			{
+				// the client may only shorten the time budget of the service
+				long clientTimeout = Long.parseLong(value.trim());
+				if (clientTimeout > 0 && (timeout <= 0 || clientTimeout < timeout))
+					timeout = clientTimeout;
+			}
+			catch (NumberFormatException ex)
+			{
+				// the time budget of the service applies
+			}
+		}
+
+		return timeout > 0 ? new RequestDeadline(timeout, _timeoutErrorCode) : null;
+	}
+
+	public String getServiceName()
+	{
+		return _serviceName;
+	}
+
+	/**
+	 * @return the seconds after which rejected clients should try again
+	 */
+	public int getRetryAfter()
+	{
+		return _retryAfter;
+	}
+
+	public int getInFlight()
+	{
+		return _inFlight.get();
+	}
+
+	public int getQueued()
+	{
+		return _executor.getQueue().size();
+	}
+
+	public long getCompleted()
+	{
+		return _completed.get();
+	}
+
+	public long getRejected()
+	{
+		return _rejected.get();
+	}
+
+	public JSONObject getMetrics()
+	{
+		JSONObject jMetrics = new JSONObject(true);
+		jMetrics.put("threads", _threads);
+		jMetrics.put("in_flight", getInFlight());
+		jMetrics.put("queued", getQueued());
+		jMetrics.put("queue_size", _queueSize);
+		jMetrics.put("completed", getCompleted());
+		jMetrics.put("rejected", getRejected());
+		if (_timeout > 0)
+			jMetrics.put("timeout", _timeout);
+		return jMetrics;
+	}
+}
@@ -23,6 +23,7 @@ package heigit.ors.servlet.listeners;
 import heigit.ors.isochrones.statistics.StatisticsProviderFactory;
 import heigit.ors.routing.RoutingProfileManager;
 import heigit.ors.routing.RoutingProfileManagerStatus;
+import heigit.ors.servlet.http.ServiceRequestExecutor;
 import org.apache.commons.logging.LogFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -58,6 +59,8 @@ public class ORSInitContextListener implements ServletContextListener
 			if (RoutingProfileManagerStatus.isReady())
 				RoutingProfileManager.getInstance().destroy();
 
+			ServiceRequestExecutor.shutdownAll();
+
 			StatisticsProviderFactory.releaseProviders();
 			
 			LogFactory.release(Thread.currentThread().getContextClassLoader());
@@ -1,91 +0,0 @@
-/*  This file is part of Openrouteservice.
- *
- *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the 
- *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1 
- *  of the License, or (at your option) any later version.
-
- *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
- *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
- *  See the GNU Lesser General Public License for more details.
-
- *  You should have received a copy of the GNU Lesser General Public License along with this library; 
- *  if not, see <https://www.gnu.org/licenses/>.  
- */
-package heigit.ors.servlet.requests;
-
-import javax.servlet.http.HttpServletRequestWrapper;
-import javax.servlet.http.HttpServletRequest;
-import javax.servlet.ReadListener;
-import javax.servlet.ServletInputStream;
-
-import java.io.*;
-
-import heigit.ors.util.StreamUtility;
-
-public class MultiReadHttpServletRequest extends HttpServletRequestWrapper {
-
-    private byte[] body;
-
-    public MultiReadHttpServletRequest(HttpServletRequest httpServletRequest) throws IOException {
-        super(httpServletRequest);
-        // Read the request body and save it as a byte array
-        InputStream is = super.getInputStream();
-        body = StreamUtility.toByteArray(is, 4096);
-    }
-
-    @Override
-    public ServletInputStream getInputStream() throws IOException {
-        return new ServletInputStreamImpl(new ByteArrayInputStream(body));
-    }
-
-    @Override
-    public BufferedReader getReader() throws IOException {
-        String enc = getCharacterEncoding();
-        if(enc == null) enc = "UTF-8";
-        return new BufferedReader(new InputStreamReader(getInputStream(), enc));
-    }
-
-    private class ServletInputStreamImpl extends ServletInputStream {
-
-        private InputStream is;
-
-        public ServletInputStreamImpl(InputStream is) {
-            this.is = is;
-        }
-
-        public int read() throws IOException {
-            return is.read();
-        }
-
-        public boolean markSupported() {
-            return false;
-        }
-
-        public synchronized void mark(int i) {
-            throw new RuntimeException(new IOException("mark/reset not supported"));
-        }
-
-        public synchronized void reset() throws IOException {
-            throw new IOException("mark/reset not supported");
-        }
-
-		@Override
-		public boolean isFinished() {
-			// TODO Auto-generated method stub
-			return false;
-		}
-
-		@Override
-		public boolean isReady() {
-			// TODO Auto-generated method stub
-			return true;
-		}
-
-		@Override
-		public void setReadListener(ReadListener readListener) {
-			// TODO Auto-generated method stub
-			
-		}
-    }
-
-}
\ No newline at end of file
@@ -72,6 +72,20 @@ public class ServletUtility
 		write(response, bytes, "application/json", encoding, statusCode);
 	}
 
+	/**
+	 * Sets the headers of a response whose content is written to the returned stream while it is generated, its length
+	 * is not known in advance.
+	 */
+	public static OutputStream getOutputStream(HttpServletResponse response, String contentType, String encoding) throws IOException
+	{
+		response.setHeader("Content-Type", contentType);
+		response.setCharacterEncoding(encoding);
+		response.setContentType(contentType);
+		response.addHeader("Vary", "Accept-Encoding");
+
+		return response.getOutputStream();
+	}
+
 	public static void write(HttpServletResponse response, byte[] bytes, String contentType) throws IOException
 	{
 		write(response, bytes, contentType, "UTF-8");
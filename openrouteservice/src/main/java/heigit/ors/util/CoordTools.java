@@ -526,4 +526,80 @@ public class CoordTools {
 
 		return coords;
 	}
+
+	/**
+	 * Parses coordinates like "8.68,49.41|8.69,49.42" the same way as {@link #parse(String, String, boolean, boolean)},
+	 * but scans the value for the separators instead of splitting it into strings and parses the numbers without
+	 * copying them.
+	 *
+	 * @throws NumberFormatException if a coordinate has less than two values or a value is not a number
+	 */
+	public static Coordinate[] parse(String value, char separator, boolean is3D, boolean inverseXY)
+	{
+		// trailing separators are ignored like by String.split
+		int end = value.length();
+		while (end > 0 && value.charAt(end - 1) == separator)
+			end--;
+
+		int count = end == 0 ? 0 : 1;
+		for (int i = 0; i < end; i++)
+		{
+			if (value.charAt(i) == separator)
+				count++;
+		}
+
+		Coordinate[] coords = new Coordinate[count];
+		// start and end of the first three values of a coordinate
+		int[] bounds = new int[6];
+		int start = 0;
+
+		for (int i = 0; i < count; i++)
+		{
+			int stop = value.indexOf(separator, start);
+			if (stop < 0 || stop > end)
+				stop = end;
+			int last = stop;
+			while (last > start && value.charAt(last - 1) == ',')
+				last--;
+
+			int n = 0;
+			int pos = start;
+			while (true)
+			{
+				int comma = value.indexOf(',', pos);
+				if (comma < 0 || comma > last)
+					comma = last;
+				if (n < 3)
+				{
+					bounds[2 * n] = pos;
+					bounds[2 * n + 1] = comma;
+				}
+				n++;
+				if (comma == last)
+					break;
+				pos = comma + 1;
+			}
+
+			if (n < 2)
+				throw new NumberFormatException("A coordinate consists of at least two values.");
+
+			double x = DoubleParser.parse(value, bounds[0], bounds[1]);
+			double y = DoubleParser.parse(value, bounds[2], bounds[3]);
+			if (inverseXY)
+			{
+				double tmp = x;
+				x = y;
+				y = tmp;
+			}
+
+			if (is3D && n == 3)
+				coords[i] = new Coordinate(x, y, DoubleParser.parse(value, bounds[4], bounds[5]));
+			else
+				coords[i] = new Coordinate(x, y);
+
+			start = stop + 1;
+		}
+
+		return coords;
+	}
 }
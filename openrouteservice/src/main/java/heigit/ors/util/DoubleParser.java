@@ -0,0 +1,118 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.util;
+
+/**
+ * Parses decimal numbers from a range of characters without creating a String for them. Numbers with at most 15
+ * significant digits and a decimal exponent within &plusmn;22, which covers coordinates and most other request values,
+ * are converted exactly by a single multiplication or division of two doubles. All others are passed on to
+ * {@link Double#parseDouble(String)}, so the result is always the same as the one of it.
+ */
+public final class DoubleParser {
+	private static final int MAX_DIGITS = 15;
+	private static final int MAX_EXPONENT = 22;
+	private static final double[] POWERS_OF_TEN = new double[MAX_EXPONENT + 1];
+
+	static {
+		POWERS_OF_TEN[0] = 1.0;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++)
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+	}
+
+	private DoubleParser() {
+	}
+
+	public static double parse(CharSequence value) {
+		return parse(value, 0, value.length());
+	}
+
+	/**
+	 * @throws NumberFormatException if the characters from start (inclusive) to end (exclusive) are not a number
+	 */
+	public static double parse(CharSequence value, int start, int end) {
+		int pos = start;
+		boolean negative = false;
+		if (pos < end && (value.charAt(pos) == '-' || value.charAt(pos) == '+')) {
+			negative = value.charAt(pos) == '-';
+			pos++;
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean hasDigits = false;
+		char c = 0;
+
+		for (; pos < end; pos++) {
+			c = value.charAt(pos);
+			if (c < '0' || c > '9')
+				break;
+			hasDigits = true;
+			if (mantissa != 0 || c != '0') {
+				mantissa = mantissa * 10 + (c - '0');
+				digits++;
+			}
+		}
+
+		if (pos < end && c == '.') {
+			for (pos++; pos < end; pos++) {
+				c = value.charAt(pos);
+				if (c < '0' || c > '9')
+					break;
+				hasDigits = true;
+				if (mantissa != 0 || c != '0') {
+					mantissa = mantissa * 10 + (c - '0');
+					digits++;
+				}
+				exponent--;
+				// also stops the mantissa from overflowing
+				if (digits > MAX_DIGITS)
+					return parseSlow(value, start, end);
+			}
+		}
+
+		if (!hasDigits || digits > MAX_DIGITS)
+			return parseSlow(value, start, end);
+
+		if (pos < end && (c == 'e' || c == 'E')) {
+			pos++;
+			boolean negativeExponent = false;
+			if (pos < end && (value.charAt(pos) == '-' || value.charAt(pos) == '+')) {
+				negativeExponent = value.charAt(pos) == '-';
+				pos++;
+			}
+			if (pos == end)
+				return parseSlow(value, start, end);
+
+			int exp = 0;
+			for (; pos < end; pos++) {
+				c = value.charAt(pos);
+				if (c < '0' || c > '9' || exp > 1000)
+					return parseSlow(value, start, end);
+				exp = exp * 10 + (c - '0');
+			}
+			exponent += negativeExponent ? -exp : exp;
+		}
+
+		if (pos != end || exponent < -MAX_EXPONENT || exponent > MAX_EXPONENT)
+			return parseSlow(value, start, end);
+
+		double result = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+		return negative ? -result : result;
+	}
+
+	private static double parseSlow(CharSequence value, int start, int end) {
+		return Double.parseDouble(value.subSequence(start, end).toString());
+	}
+}
@@ -0,0 +1,481 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Reads a JSON document token by token from a stream of UTF-8 text, the counterpart of {@link JsonStreamWriter}. A
+ * request body can be parsed while it is received instead of being read into a String and a tree of
+ * {@link JSONObject}s first: large arrays like the locations of a request are read into primitive arrays by
+ * {@link #readCoordinates(int)}, small members can still be read as org.json values by {@link #readValue()}.
+ * <p>
+ * Syntax errors and documents nested deeper than the maximum depth are reported by {@link JSONException}s.
+ */
+public class JsonStreamReader {
+	public enum Token {
+		BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+	}
+
+	private static final int DEFAULT_BUFFER_SIZE = 8192;
+	public static final int DEFAULT_MAX_DEPTH = 32;
+
+	// states of the open objects and arrays
+	private static final int EMPTY_DOCUMENT = 0;
+	private static final int NONEMPTY_DOCUMENT = 1;
+	private static final int EMPTY_ARRAY = 2;
+	private static final int NONEMPTY_ARRAY = 3;
+	private static final int EMPTY_OBJECT = 4;
+	private static final int NONEMPTY_OBJECT = 5;
+	private static final int DANGLING_NAME = 6;
+
+	private final Reader _reader;
+	private final char[] _buffer;
+	private int _position;
+	private int _limit;
+	private final int[] _stack;
+	private int _depth;
+	private Token _peeked;
+	private boolean _booleanValue;
+	// the characters of the peeked number
+	private final StringBuilder _text = new StringBuilder();
+
+	public JsonStreamReader(InputStream in) {
+		this(new InputStreamReader(in, StandardCharsets.UTF_8), DEFAULT_MAX_DEPTH);
+	}
+
+	public JsonStreamReader(Reader reader, int maxDepth) {
+		_reader = reader;
+		_buffer = new char[DEFAULT_BUFFER_SIZE];
+		_stack = new int[maxDepth + 1];
+		_stack[0] = EMPTY_DOCUMENT;
+		_depth = 1;
+	}
+
+	/**
+	 * @return the type of the next token without consuming it
+	 */
+	public Token peek() throws IOException {
+		if (_peeked != null)
+			return _peeked;
+
+		int c;
+		switch (_stack[_depth - 1]) {
+		case EMPTY_DOCUMENT:
+			_stack[_depth - 1] = NONEMPTY_DOCUMENT;
+			return _peeked = peekValue(nextNonWhitespace());
+		case NONEMPTY_DOCUMENT:
+			if (nextNonWhitespace() != -1)
+				throw syntaxError("Expected the end of the document");
+			return _peeked = Token.END_DOCUMENT;
+		case EMPTY_ARRAY:
+			c = nextNonWhitespace();
+			if (c == ']')
+				return _peeked = Token.END_ARRAY;
+			_stack[_depth - 1] = NONEMPTY_ARRAY;
+			return _peeked = peekValue(c);
+		case NONEMPTY_ARRAY:
+			c = nextNonWhitespace();
+			if (c == ']')
+				return _peeked = Token.END_ARRAY;
+			if (c != ',')
+				throw syntaxError("Expected ',' or ']'");
+			return _peeked = peekValue(nextNonWhitespace());
+		case EMPTY_OBJECT:
+		case NONEMPTY_OBJECT:
+			c = nextNonWhitespace();
+			if (c == '}')
+				return _peeked = Token.END_OBJECT;
+			if (_stack[_depth - 1] == NONEMPTY_OBJECT) {
+				if (c != ',')
+					throw syntaxError("Expected ',' or '}'");
+				c = nextNonWhitespace();
+			}
+			if (c != '"')
+				throw syntaxError("Expected a name");
+			_stack[_depth - 1] = DANGLING_NAME;
+			return _peeked = Token.NAME;
+		default:
+			if (nextNonWhitespace() != ':')
+				throw syntaxError("Expected ':'");
+			_stack[_depth - 1] = NONEMPTY_OBJECT;
+			return _peeked = peekValue(nextNonWhitespace());
+		}
+	}
+
+	public boolean hasNext() throws IOException {
+		Token token = peek();
+		return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+	}
+
+	public void beginObject() throws IOException {
+		expect(Token.BEGIN_OBJECT);
+		push(EMPTY_OBJECT);
+	}
+
+	public void endObject() throws IOException {
+		expect(Token.END_OBJECT);
+		_depth--;
+	}
+
+	public void beginArray() throws IOException {
+		expect(Token.BEGIN_ARRAY);
+		push(EMPTY_ARRAY);
+	}
+
+	public void endArray() throws IOException {
+		expect(Token.END_ARRAY);
+		_depth--;
+	}
+
+	public String nextName() throws IOException {
+		expect(Token.NAME);
+		return readString();
+	}
+
+	/**
+	 * @return the next string, numbers are returned as they are written
+	 */
+	public String nextString() throws IOException {
+		Token token = peek();
+		if (token == Token.NUMBER) {
+			_peeked = null;
+			return _text.toString();
+		}
+		expect(Token.STRING);
+		return readString();
+	}
+
+	/**
+	 * @return the next number, strings containing a number are accepted as well
+	 */
+	public double nextDouble() throws IOException {
+		Token token = peek();
+		CharSequence value;
+		if (token == Token.NUMBER) {
+			_peeked = null;
+			value = _text;
+		} else {
+			expect(Token.STRING);
+			value = readString();
+		}
+
+		try {
+			double result = DoubleParser.parse(value);
+			if (Double.isNaN(result) || Double.isInfinite(result))
+				throw syntaxError("Expected a finite number");
+			return result;
+		} catch (NumberFormatException ex) {
+			throw syntaxError("Expected a number but was '" + value + "'");
+		}
+	}
+
+	public boolean nextBoolean() throws IOException {
+		expect(Token.BOOLEAN);
+		return _booleanValue;
+	}
+
+	public void nextNull() throws IOException {
+		expect(Token.NULL);
+	}
+
+	public void skipValue() throws IOException {
+		int depth = 0;
+		do {
+			switch (peek()) {
+			case BEGIN_OBJECT:
+				beginObject();
+				depth++;
+				break;
+			case BEGIN_ARRAY:
+				beginArray();
+				depth++;
+				break;
+			case END_OBJECT:
+				endObject();
+				depth--;
+				break;
+			case END_ARRAY:
+				endArray();
+				depth--;
+				break;
+			case NAME:
+			case STRING:
+				_peeked = null;
+				skipString();
+				break;
+			case END_DOCUMENT:
+				throw syntaxError("Unexpected end of the document");
+			default:
+				_peeked = null;
+				break;
+			}
+		} while (depth > 0);
+	}
+
+	/**
+	 * Reads the next value as {@link JSONObject}, {@link JSONArray}, String, Boolean, number or
+	 * {@link JSONObject#NULL}, the same values {@link JSONObject#JSONObject(String)} creates.
+	 */
+	public Object readValue() throws IOException {
+		switch (peek()) {
+		case BEGIN_OBJECT:
+			beginObject();
+			JSONObject object = new JSONObject(true);
+			while (hasNext()) {
+				String name = nextName();
+				object.put(name, readValue());
+			}
+			endObject();
+			return object;
+		case BEGIN_ARRAY:
+			beginArray();
+			JSONArray array = new JSONArray();
+			while (hasNext())
+				array.put(readValue());
+			endArray();
+			return array;
+		case STRING:
+			return nextString();
+		case NUMBER:
+			_peeked = null;
+			return JSONObject.stringToValue(_text.toString());
+		case BOOLEAN:
+			return nextBoolean();
+		case NULL:
+			nextNull();
+			return JSONObject.NULL;
+		default:
+			throw syntaxError("Expected a value");
+		}
+	}
+
+	/**
+	 * Reads an array of positions like [[8.68, 49.41], [8.69, 49.42]] into an array of alternating x and y values.
+	 * Further values of a position like the elevation are skipped. If the array contains more than maxCount positions,
+	 * reading stops after maxCount + 1 of them, so that the caller can reject the request without reading the rest
+	 * of it.
+	 *
+	 * @param maxCount the maximum number of positions expected, 0 for no limit
+	 * @throws JSONException if the value is no array of positions with at least two numbers each
+	 */
+	public double[] readCoordinates(int maxCount) throws IOException {
+		double[] coords = new double[32];
+		int length = 0;
+
+		beginArray();
+		while (hasNext()) {
+			if (length == coords.length)
+				coords = Arrays.copyOf(coords, length * 2);
+
+			beginArray();
+			for (int i = 0; i < 2; i++) {
+				if (!hasNext())
+					throw syntaxError("Expected a position of at least two numbers");
+				coords[length++] = nextDouble();
+			}
+			while (hasNext())
+				skipValue();
+			endArray();
+
+			if (maxCount > 0 && length > maxCount * 2)
+				return Arrays.copyOf(coords, length);
+		}
+		endArray();
+
+		return Arrays.copyOf(coords, length);
+	}
+
+	private Token peekValue(int c) throws IOException {
+		switch (c) {
+		case '{':
+			return Token.BEGIN_OBJECT;
+		case '[':
+			return Token.BEGIN_ARRAY;
+		case '"':
+			return Token.STRING;
+		case 't':
+			expectLiteral("rue");
+			_booleanValue = true;
+			return Token.BOOLEAN;
+		case 'f':
+			expectLiteral("alse");
+			_booleanValue = false;
+			return Token.BOOLEAN;
+		case 'n':
+			expectLiteral("ull");
+			return Token.NULL;
+		case -1:
+			throw syntaxError("Unexpected end of the document");
+		default:
+			if (c != '-' && (c < '0' || c > '9'))
+				throw syntaxError("Unexpected character '" + (char) c + "'");
+			readNumber(c);
+			return Token.NUMBER;
+		}
+	}
+
+	private void readNumber(int first) throws IOException {
+		_text.setLength(0);
+		_text.append((char) first);
+		while (true) {
+			if (_position == _limit && !fill())
+				return;
+			char c = _buffer[_position];
+			if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '-' || c == '+') {
+				_text.append(c);
+				_position++;
+			} else {
+				return;
+			}
+		}
+	}
+
+	private void expectLiteral(String rest) throws IOException {
+		for (int i = 0; i < rest.length(); i++) {
+			if (read() != rest.charAt(i))
+				throw syntaxError("Unexpected literal");
+		}
+	}
+
+	private void expect(Token token) throws IOException {
+		Token peeked = peek();
+		if (peeked != token)
+			throw syntaxError("Expected " + token + " but was " + peeked);
+		_peeked = null;
+	}
+
+	private void push(int state) {
+		if (_depth == _stack.length)
+			throw syntaxError("Nesting is too deep");
+		_stack[_depth++] = state;
+	}
+
+	/**
+	 * Reads the rest of a string after its opening quote.
+	 */
+	private String readString() throws IOException {
+		StringBuilder sb = null;
+		while (true) {
+			int start = _position;
+			while (_position < _limit) {
+				char c = _buffer[_position++];
+				if (c == '"') {
+					if (sb == null)
+						return new String(_buffer, start, _position - start - 1);
+					sb.append(_buffer, start, _position - start - 1);
+					return sb.toString();
+				} else if (c == '\\') {
+					if (sb == null)
+						sb = new StringBuilder(Math.max(2 * (_position - start), 16));
+					sb.append(_buffer, start, _position - start - 1);
+					sb.append(readEscape());
+					start = _position;
+				} else if (c < 0x20) {
+					throw syntaxError("Unescaped control character in a string");
+				}
+			}
+
+			if (sb == null)
+				sb = new StringBuilder(Math.max(2 * (_position - start), 16));
+			sb.append(_buffer, start, _position - start);
+			if (!fill())
+				throw syntaxError("Unterminated string");
+		}
+	}
+
+	private void skipString() throws IOException {
+		while (true) {
+			int c = read();
+			if (c == '"')
+				return;
+			if (c == '\\')
+				readEscape();
+			else if (c == -1)
+				throw syntaxError("Unterminated string");
+		}
+	}
+
+	private char readEscape() throws IOException {
+		int c = read();
+		switch (c) {
+		case 'b':
+			return '\b';
+		case 't':
+			return '\t';
+		case 'n':
+			return '\n';
+		case 'f':
+			return '\f';
+		case 'r':
+			return '\r';
+		case 'u':
+			int value = 0;
+			for (int i = 0; i < 4; i++) {
+				int digit = Character.digit(read(), 16);
+				if (digit < 0)
+					throw syntaxError("Invalid unicode escape");
+				value = (value << 4) | digit;
+			}
+			return (char) value;
+		case '"':
+		case '\\':
+		case '/':
+			return (char) c;
+		default:
+			throw syntaxError("Invalid escape");
+		}
+	}
+
+	private int nextNonWhitespace() throws IOException {
+		while (true) {
+			int c = read();
+			if (c != ' ' && c != '\n' && c != '\r' && c != '\t')
+				return c;
+		}
+	}
+
+	private int read() throws IOException {
+		if (_position == _limit && !fill())
+			return -1;
+		return _buffer[_position++];
+	}
+
+	private boolean fill() throws IOException {
+		_position = 0;
+		_limit = 0;
+		int n;
+		do {
+			n = _reader.read(_buffer, 0, _buffer.length);
+		} while (n == 0);
+
+		if (n < 0)
+			return false;
+		_limit = n;
+		return true;
+	}
+
+	private JSONException syntaxError(String message) {
+		return new JSONException(message + ".");
+	}
+}
@@ -0,0 +1,444 @@
+/*  This file is part of Openrouteservice.
+ *
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
+ */
+package heigit.ors.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Writes JSON text as UTF-8 directly to an output stream through a fixed byte buffer. The output is identical to the
+ * one of {@link JSONObject#toString()} for the same content, so a response can be streamed instead of being built as
+ * a tree of {@link JSONObject}s, converted to a String and encoded as a whole.
+ * <p>
+ * Commas and colons are inserted automatically, members are added by calling {@link #name(String)} followed by one of
+ * the value methods.
+ */
+public class JsonStreamWriter {
+	private static final int DEFAULT_BUFFER_SIZE = 8192;
+	// numbers with up to this many decimals are written without going through Double.toString
+	private static final int MAX_DECIMALS = 8;
+	private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes();
+	private static final byte[] NULL = "null".getBytes();
+	private static final byte[] TRUE = "true".getBytes();
+	private static final byte[] FALSE = "false".getBytes();
+
+	private final OutputStream _out;
+	private final byte[] _buffer;
+	private int _position;
+	// digits of integers are put together backwards in here
+	private final byte[] _digits = new byte[20];
+	// true for every open object or array which does not have any members yet
+	private boolean[] _empty = new boolean[16];
+	private int _depth;
+	private boolean _afterName;
+
+	public JsonStreamWriter(OutputStream out) {
+		this(out, DEFAULT_BUFFER_SIZE);
+	}
+
+	public JsonStreamWriter(OutputStream out, int bufferSize) {
+		_out = out;
+		_buffer = new byte[Math.max(bufferSize, 64)];
+	}
+
+	public JsonStreamWriter beginObject() throws IOException {
+		beforeValue();
+		push();
+		writeByte('{');
+		return this;
+	}
+
+	public JsonStreamWriter endObject() throws IOException {
+		_depth--;
+		writeByte('}');
+		return this;
+	}
+
+	public JsonStreamWriter beginArray() throws IOException {
+		beforeValue();
+		push();
+		writeByte('[');
+		return this;
+	}
+
+	public JsonStreamWriter endArray() throws IOException {
+		_depth--;
+		writeByte(']');
+		return this;
+	}
+
+	/**
+	 * Starts a member of the current object, its value has to be written next.
+	 */
+	public JsonStreamWriter name(String name) throws IOException {
+		if (_empty[_depth])
+			_empty[_depth] = false;
+		else
+			writeByte(',');
+
+		writeString(name);
+		writeByte(':');
+		_afterName = true;
+		return this;
+	}
+
+	/**
+	 * Writes the characters as string, e.g. the line of a {@link PolylineEncoder} without creating a String first.
+	 */
+	public JsonStreamWriter value(CharSequence value) throws IOException {
+		beforeValue();
+		if (value == null)
+			writeBytes(NULL);
+		else
+			writeString(value);
+		return this;
+	}
+
+	public JsonStreamWriter value(boolean value) throws IOException {
+		beforeValue();
+		writeBytes(value ? TRUE : FALSE);
+		return this;
+	}
+
+	public JsonStreamWriter value(long value) throws IOException {
+		beforeValue();
+		writeLong(value);
+		return this;
+	}
+
+	/**
+	 * Writes the number like {@link JSONObject#numberToString(Number)} does for a Double, without boxing it.
+	 *
+	 * @throws JSONException if the value is not finite
+	 */
+	public JsonStreamWriter value(double value) throws IOException {
+		if (Double.isNaN(value) || Double.isInfinite(value))
+			throw new JSONException("JSON does not allow non-finite numbers.");
+
+		beforeValue();
+		writeDouble(value);
+		return this;
+	}
+
+	/**
+	 * Writes the value rounded to the given number of decimals (at most 8). The output is the same as the one of
+	 * {@code value(FormatUtility.roundToDecimals(value, decimals))}, but the digits are taken from the rounded integer
+	 * instead of searching the shortest representation of the rounded double.
+	 */
+	public JsonStreamWriter value(double value, int decimals) throws IOException {
+		if (decimals < 0 || decimals > MAX_DECIMALS)
+			throw new IllegalArgumentException("The number of decimals must be within 0 and " + MAX_DECIMALS + ".");
+
+		long factor = DoubleFormatUtil.tenPow(decimals);
+		long scaled = Math.round(value * factor);
+		long abs = Math.abs(scaled);
+
+		// Double.toString uses the exponent notation outside of [1e-3, 1e7), Long.MIN_VALUE stays negative
+		if (abs < 0 || abs >= 10000000L * factor || (abs != 0 && abs * 1000 < factor))
+			return value(scaled / (double) factor);
+
+		beforeValue();
+		if (scaled < 0)
+			writeByte('-');
+
+		while (factor > 1 && abs % 10 == 0) {
+			abs /= 10;
+			factor /= 10;
+		}
+
+		if (factor == 1)
+			writeLong(abs);
+		else
+			writeDecimal(abs, factor);
+		return this;
+	}
+
+	public JsonStreamWriter value(int[] values) throws IOException {
+		if (values == null)
+			return nullValue();
+
+		beginArray();
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0)
+				writeByte(',');
+			writeLong(values[i]);
+		}
+		_empty[_depth] = false;
+		return endArray();
+	}
+
+	public JsonStreamWriter nullValue() throws IOException {
+		beforeValue();
+		writeBytes(NULL);
+		return this;
+	}
+
+	/**
+	 * Writes a value which is already serialized as JSON, e.g. a small {@link JSONObject} built elsewhere.
+	 */
+	public JsonStreamWriter rawValue(String json) throws IOException {
+		beforeValue();
+		int length = json.length();
+		for (int i = 0; i < length; i++)
+			writeChar(json, i, json.charAt(i));
+		return this;
+	}
+
+	/**
+	 * Ends a complete value with a line break, so that several values can be written as newline delimited JSON.
+	 */
+	public JsonStreamWriter lineBreak() throws IOException {
+		if (_depth > 0)
+			throw new IllegalStateException("Line breaks are only allowed between top level values.");
+		writeByte('\n');
+		return this;
+	}
+
+	/**
+	 * Passes the buffered bytes on to the underlying stream.
+	 */
+	public void flush() throws IOException {
+		if (_position > 0) {
+			_out.write(_buffer, 0, _position);
+			_position = 0;
+		}
+		_out.flush();
+	}
+
+	private void beforeValue() throws IOException {
+		if (_afterName) {
+			_afterName = false;
+		} else if (_depth > 0) {
+			// values of arrays are separated here, members of objects in name()
+			if (_empty[_depth])
+				_empty[_depth] = false;
+			else
+				writeByte(',');
+		}
+	}
+
+	private void push() {
+		if (++_depth == _empty.length)
+			_empty = Arrays.copyOf(_empty, _depth * 2);
+		_empty[_depth] = true;
+	}
+
+	private void writeDouble(double value) throws IOException {
+		double abs = Math.abs(value);
+
+		if (abs < 1e7) {
+			if (abs == 0) {
+				// Double.toString keeps the sign of negative zero
+				if (Double.doubleToRawLongBits(value) != 0)
+					writeByte('-');
+				writeByte('0');
+				return;
+			}
+
+			if (abs == Math.rint(abs)) {
+				if (value < 0)
+					writeByte('-');
+				writeLong((long) abs);
+				return;
+			}
+
+			// Double.toString prints values within [1e-3, 1e7) without exponent. If the value is the double closest to a
+			// decimal with few decimals, Double.toString prints exactly that decimal.
+			if (abs >= 1e-3) {
+				for (int decimals = 1; decimals <= MAX_DECIMALS; decimals++) {
+					long factor = DoubleFormatUtil.tenPow(decimals);
+					double scaled = Math.rint(abs * factor);
+					if (scaled / factor == abs) {
+						if (value < 0)
+							writeByte('-');
+						writeDecimal((long) scaled, factor);
+						return;
+					}
+				}
+			}
+		}
+
+		// exponent notation and values with many significant digits
+		writeAscii(JSONObject.doubleToString(value));
+	}
+
+	private void writeDecimal(long scaled, long factor) throws IOException {
+		writeLong(scaled / factor);
+		writeByte('.');
+
+		long fraction = scaled % factor;
+		// fraction is not divisible by 10, otherwise fewer decimals would have matched
+		for (long digit = factor / 10; digit > fraction; digit /= 10)
+			writeByte('0');
+		writeLong(fraction);
+	}
+
+	private void writeLong(long value) throws IOException {
+		if (value == Long.MIN_VALUE) {
+			writeAscii(Long.toString(value));
+			return;
+		}
+
+		if (value < 0) {
+			writeByte('-');
+			value = -value;
+		}
+
+		int count = 0;
+		do {
+			_digits[count++] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while (value != 0);
+
+		ensureCapacity(count);
+		while (count > 0)
+			_buffer[_position++] = _digits[--count];
+	}
+
+	/**
+	 * Quotes and escapes the string in the same way as {@link JSONObject#quote(String)}.
+	 */
+	private void writeString(CharSequence value) throws IOException {
+		writeByte('"');
+
+		int length = value.length();
+		char c = 0;
+		for (int i = 0; i < length; i++) {
+			char prev = c;
+			c = value.charAt(i);
+
+			// printable ASCII characters other than the escaped ones are copied as they are
+			if (c >= ' ' && c < 0x7F && c != '"' && c != '\\' && c != '/') {
+				if (_position == _buffer.length)
+					drain();
+				_buffer[_position++] = (byte) c;
+				continue;
+			}
+
+			switch (c) {
+			case '\\':
+			case '"':
+				writeByte('\\');
+				writeByte(c);
+				break;
+			case '/':
+				if (prev == '<')
+					writeByte('\\');
+				writeByte(c);
+				break;
+			case '\b':
+				writeEscape('b');
+				break;
+			case '\t':
+				writeEscape('t');
+				break;
+			case '\n':
+				writeEscape('n');
+				break;
+			case '\f':
+				writeEscape('f');
+				break;
+			case '\r':
+				writeEscape('r');
+				break;
+			default:
+				if (c < ' ' || (c >= 0x80 && c < 0xA0) || (c >= 0x2000 && c < 0x2100)) {
+					ensureCapacity(6);
+					_buffer[_position++] = '\\';
+					_buffer[_position++] = 'u';
+					_buffer[_position++] = HEX_DIGITS[(c >> 12) & 0xF];
+					_buffer[_position++] = HEX_DIGITS[(c >> 8) & 0xF];
+					_buffer[_position++] = HEX_DIGITS[(c >> 4) & 0xF];
+					_buffer[_position++] = HEX_DIGITS[c & 0xF];
+				} else {
+					i += writeChar(value, i, c);
+				}
+			}
+		}
+
+		writeByte('"');
+	}
+
+	private void writeEscape(char c) throws IOException {
+		writeByte('\\');
+		writeByte(c);
+	}
+
+	/**
+	 * Encodes the character at index i as UTF-8 like {@link String#getBytes(String)} does, unpaired surrogates are
+	 * replaced by '?'.
+	 *
+	 * @return 1 if the low surrogate following the character has been consumed as well, else 0
+	 */
+	private int writeChar(CharSequence value, int i, char c) throws IOException {
+		ensureCapacity(4);
+		byte[] buffer = _buffer;
+
+		if (c < 0x80) {
+			buffer[_position++] = (byte) c;
+		} else if (c < 0x800) {
+			buffer[_position++] = (byte) (0xC0 | (c >> 6));
+			buffer[_position++] = (byte) (0x80 | (c & 0x3F));
+		} else if (Character.isSurrogate(c)) {
+			if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, value.charAt(i + 1));
+				buffer[_position++] = (byte) (0xF0 | (codePoint >> 18));
+				buffer[_position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+				buffer[_position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+				buffer[_position++] = (byte) (0x80 | (codePoint & 0x3F));
+				return 1;
+			}
+			buffer[_position++] = '?';
+		} else {
+			buffer[_position++] = (byte) (0xE0 | (c >> 12));
+			buffer[_position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+			buffer[_position++] = (byte) (0x80 | (c & 0x3F));
+		}
+
+		return 0;
+	}
+
+	private void writeAscii(String value) throws IOException {
+		int length = value.length();
+		ensureCapacity(length);
+		for (int i = 0; i < length; i++)
+			_buffer[_position++] = (byte) value.charAt(i);
+	}
+
+	private void writeBytes(byte[] bytes) throws IOException {
+		ensureCapacity(bytes.length);
+		System.arraycopy(bytes, 0, _buffer, _position, bytes.length);
+		_position += bytes.length;
+	}
+
+	private void writeByte(int b) throws IOException {
+		if (_position == _buffer.length)
+			drain();
+		_buffer[_position++] = (byte) b;
+	}
+
+	private void ensureCapacity(int count) throws IOException {
+		if (_position + count > _buffer.length)
+			drain();
+	}
+
+	private void drain() throws IOException {
+		_out.write(_buffer, 0, _position);
+		_position = 0;
+	}
+}
@@ -1,60 +1,170 @@
 /*  This file is part of Openrouteservice.
  *
- *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the 
- *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1 
+ *  Openrouteservice is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version 2.1
  *  of the License, or (at your option) any later version.
 
- *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
- *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ *  This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
  *  See the GNU Lesser General Public License for more details.
 
- *  You should have received a copy of the GNU Lesser General Public License along with this library; 
- *  if not, see <https://www.gnu.org/licenses/>.  
+ *  You should have received a copy of the GNU Lesser General Public License along with this library;
+ *  if not, see <https://www.gnu.org/licenses/>.
  */
 package heigit.ors.util;
 
+import java.util.Arrays;
+
+import com.graphhopper.util.PointList;
 import com.vividsolutions.jts.geom.Coordinate;
 
-public class PolylineEncoder {
+/**
+ * Encodes lines in the encoded polyline format, with the elevation in centimeters as optional third value. The
+ * characters are written into an array which is reused by all lines encoded with the same instance, so the encoder
+ * itself does not allocate any objects once the array has grown to the length of the longest line.
+ * <p>
+ * The encoder is the {@link CharSequence} of the last encoded line, which can be passed on without creating a String,
+ * e.g. to {@link JsonStreamWriter#value(CharSequence)}. Instances are not thread safe.
+ */
+public class PolylineEncoder implements CharSequence {
+	// a coordinate takes at most 3 values, a value at most 13 characters
+	private static final int MAX_CHARS_PER_POINT = 39;
+
+	private char[] _chars;
+	private int _length;
+	private long _prevLat;
+	private long _prevLon;
+	private long _prevEle;
+
+	public PolylineEncoder() {
+		this(256);
+	}
+
+	public PolylineEncoder(int capacity) {
+		_chars = new char[Math.max(capacity, MAX_CHARS_PER_POINT)];
+	}
+
+	public PolylineEncoder encode(PointList points, boolean includeElevation) {
+		int size = points.getSize();
+		reset(size);
+
+		boolean is3D = points.is3D();
+		for (int i = 0; i < size; i++) {
+			double ele = is3D ? points.getEle(i) : Double.NaN;
+			appendPoint(points.getLat(i), points.getLon(i), ele, includeElevation);
+		}
+
+		return this;
+	}
+
+	/**
+	 * @param elevations the elevations of the points, or null to encode a line without elevation
+	 */
+	public PolylineEncoder encode(double[] lats, double[] lons, double[] elevations, int count) {
+		reset(count);
+
+		for (int i = 0; i < count; i++)
+			appendPoint(lats[i], lons[i], elevations != null ? elevations[i] : 0, elevations != null);
+
+		return this;
+	}
+
+	public PolylineEncoder encode(Coordinate[] coords, boolean includeElevation) {
+		reset(coords.length);
+
+		for (int i = 0; i < coords.length; i++) {
+			Coordinate c = coords[i];
+			appendPoint(c.y, c.x, c.z, includeElevation);
+		}
+
+		return this;
+	}
+
+	/**
+	 * @deprecated use an instance of the encoder instead, which does not need to copy the characters
+	 */
+	@Deprecated
 	public static String encode(final Coordinate[] coords, boolean includeElevation, StringBuffer buffer) {
-		long lat, lon;
-	    long prevLat = 0;
-	    long prevLon = 0;
-	    long elev = 0;
-	    long prevEle = 0;
-	    
-	    buffer.setLength(0);
-
-	    for (final Coordinate c : coords) {
-	      lat = Math.round(c.y * 1e5);
-	      lon = Math.round(c.x * 1e5);
-
-	      encode(lat - prevLat, buffer);
-	      encode(lon - prevLon, buffer);
-	      
-	      if (includeElevation)
-	      {
-	    	  elev = (long)Math.floor(c.z * 100);
-	    	  encode(elev - prevEle, buffer);
-              prevEle = elev;
-	      }
-	      
-	      prevLat = lat;
-	      prevLon = lon;
-	    }
-	    
-	    return buffer.toString();
-	}
-		
-	private static void encode(long v, StringBuffer buffer) {
-	    v = v < 0 ? ~(v << 1) : v << 1;
-	    
-	    while (v >= 0x20) 
-	    {
-	      buffer.append(Character.toChars((int) ((0x20 | (v & 0x1f)) + 63)));
-	      v >>= 5;
-	    }
-	    
-	    buffer.append(Character.toChars((int) (v + 63)));
+		PolylineEncoder encoder = new PolylineEncoder();
+		encoder.encode(coords, includeElevation);
+
+		buffer.setLength(0);
+		buffer.append(encoder._chars, 0, encoder._length);
+		return buffer.toString();
+	}
+
+	/**
+	 * @return the array holding the characters of the last encoded line, it is only valid up to {@link #length()}
+	 */
+	public char[] getChars() {
+		return _chars;
+	}
+
+	@Override
+	public int length() {
+		return _length;
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (index >= _length)
+			throw new IndexOutOfBoundsException(Integer.toString(index));
+		return _chars[index];
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		if (end > _length)
+			throw new IndexOutOfBoundsException(Integer.toString(end));
+		return new String(_chars, start, end - start);
+	}
+
+	@Override
+	public String toString() {
+		return new String(_chars, 0, _length);
+	}
+
+	private void reset(int pointCount) {
+		_length = 0;
+		_prevLat = 0;
+		_prevLon = 0;
+		_prevEle = 0;
+
+		// most deltas of route geometries fit into 2 or 3 characters
+		int estimate = pointCount * 8;
+		if (estimate > _chars.length)
+			_chars = new char[estimate];
+	}
+
+	private void appendPoint(double lat, double lon, double ele, boolean includeElevation) {
+		if (_length + MAX_CHARS_PER_POINT > _chars.length)
+			_chars = Arrays.copyOf(_chars, _chars.length * 2);
+
+		long latE5 = Math.round(lat * 1e5);
+		long lonE5 = Math.round(lon * 1e5);
+		appendValue(latE5 - _prevLat);
+		appendValue(lonE5 - _prevLon);
+		_prevLat = latE5;
+		_prevLon = lonE5;
+
+		if (includeElevation) {
+			// a missing elevation (NaN) is encoded as 0
+			long eleCm = (long) Math.floor(ele * 100);
+			appendValue(eleCm - _prevEle);
+			_prevEle = eleCm;
+		}
+	}
+
+	private void appendValue(long v) {
+		v = v < 0 ? ~(v << 1) : v << 1;
+
+		char[] chars = _chars;
+		int length = _length;
+		while (v >= 0x20) {
+			chars[length++] = (char) ((0x20 | (v & 0x1f)) + 63);
+			v >>= 5;
+		}
+		chars[length++] = (char) (v + 63);
+		_length = length;
 	}
 }
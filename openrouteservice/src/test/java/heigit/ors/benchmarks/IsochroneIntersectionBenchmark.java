@@ -0,0 +1,100 @@
+package heigit.ors.benchmarks;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import heigit.ors.isochrones.Isochrone;
+import heigit.ors.isochrones.IsochroneMap;
+import heigit.ors.isochrones.IsochroneMapCollection;
+import heigit.ors.isochrones.IsochroneUtility;
+import heigit.ors.isochrones.IsochronesIntersection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the indexed computation of isochrone intersections with a plain comparison of all pairs, on synthetic
+ * requests with irregular isochrones of several locations spread over a city sized area.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args=IsochroneIntersectionBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IsochroneIntersectionBenchmark {
+    @Param({"2", "5", "10"})
+    private int locations;
+
+    @Param({"10"})
+    private int ranges;
+
+    private IsochroneMapCollection maps;
+
+    @Setup
+    public void setup() {
+        GeometryFactory geomFactory = new GeometryFactory();
+        Random random = new Random(42);
+        maps = new IsochroneMapCollection();
+
+        for (int i = 0; i < locations; i++) {
+            double x = 8.6 + random.nextDouble() * 0.2;
+            double y = 49.4 + random.nextDouble() * 0.2;
+            IsochroneMap map = new IsochroneMap(i, new Coordinate(x, y));
+
+            for (int r = 1; r <= ranges; r++) {
+                double radius = 0.01 * r;
+                // jagged rings with a few hundred vertices like the contours of real isochrones
+                Coordinate[] ring = new Coordinate[257];
+                for (int k = 0; k < 256; k++) {
+                    double angle = 2 * Math.PI * k / 256;
+                    double dist = radius * (0.8 + 0.2 * random.nextDouble());
+                    ring[k] = new Coordinate(x + dist * Math.cos(angle), y + dist * Math.sin(angle));
+                }
+                ring[256] = ring[0];
+                map.addIsochrone(new Isochrone(geomFactory.createPolygon(geomFactory.createLinearRing(ring), null), radius, radius));
+            }
+
+            maps.add(map);
+        }
+    }
+
+    @Benchmark
+    public List<IsochronesIntersection> indexed() {
+        return IsochroneUtility.computeIntersections(maps);
+    }
+
+    @Benchmark
+    public List<Geometry> pairwise() {
+        List<Geometry> result = new ArrayList<>();
+        for (int m1 = 0; m1 < maps.size(); m1++) {
+            for (Isochrone iso1 : maps.getIsochrone(m1).getIsochrones()) {
+                for (int m2 = m1 + 1; m2 < maps.size(); m2++) {
+                    for (Isochrone iso2 : maps.getIsochrone(m2).getIsochrones()) {
+                        if (iso1.getEnvelope().intersects(iso2.getEnvelope())) {
+                            Geometry geom = iso1.getGeometry().intersection(iso2.getGeometry());
+                            if (!geom.isEmpty())
+                                result.add(geom);
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+}
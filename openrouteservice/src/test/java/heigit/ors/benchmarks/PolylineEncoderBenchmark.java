@@ -0,0 +1,114 @@
+package heigit.ors.benchmarks;
+
+import com.graphhopper.util.PointList;
+import com.vividsolutions.jts.geom.Coordinate;
+import heigit.ors.util.JsonStreamWriter;
+import heigit.ors.util.PolylineEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares encoding the geometry of a 50k point route with the former StringBuffer based encoder, the reusable
+ * {@link PolylineEncoder} and streaming the encoded line into a {@link JsonStreamWriter}. Use -prof gc to see the
+ * allocation rates.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args=PolylineEncoderBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PolylineEncoderBenchmark {
+    private static final int POINTS = 50000;
+
+    private PointList points;
+    private Coordinate[] coordinates;
+    private PolylineEncoder encoder;
+    private JsonStreamWriter writer;
+
+    @Setup
+    public void setup() {
+        // random walk with steps of a few meters like the points of a long route
+        Random random = new Random(42);
+        points = new PointList(POINTS, true);
+        coordinates = new Coordinate[POINTS];
+        double lat = 49.4, lon = 8.7, ele = 110;
+        for (int i = 0; i < POINTS; i++) {
+            lat += (random.nextDouble() - 0.5) * 0.001;
+            lon += (random.nextDouble() - 0.5) * 0.001;
+            ele += (random.nextDouble() - 0.5) * 2;
+            points.add(lat, lon, ele);
+            coordinates[i] = new Coordinate(lon, lat, ele);
+        }
+
+        encoder = new PolylineEncoder();
+        writer = new JsonStreamWriter(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+    }
+
+    @Benchmark
+    public String stringBuffer() {
+        StringBuffer buffer = new StringBuffer();
+        long prevLat = 0, prevLon = 0, prevEle = 0;
+        for (Coordinate c : coordinates) {
+            long lat = Math.round(c.y * 1e5);
+            long lon = Math.round(c.x * 1e5);
+            long ele = (long) Math.floor(c.z * 100);
+            encodeValue(lat - prevLat, buffer);
+            encodeValue(lon - prevLon, buffer);
+            encodeValue(ele - prevEle, buffer);
+            prevLat = lat;
+            prevLon = lon;
+            prevEle = ele;
+        }
+        return buffer.toString();
+    }
+
+    @Benchmark
+    public String encoderToString() {
+        return encoder.encode(points, true).toString();
+    }
+
+    @Benchmark
+    public int encoderReused() {
+        return encoder.encode(points, true).length();
+    }
+
+    @Benchmark
+    public JsonStreamWriter encoderStreamed() throws IOException {
+        writer.value(encoder.encode(points, true));
+        writer.flush();
+        return writer;
+    }
+
+    private static void encodeValue(long v, StringBuffer buffer) {
+        v = v < 0 ? ~(v << 1) : v << 1;
+        while (v >= 0x20) {
+            buffer.append(Character.toChars((int) ((0x20 | (v & 0x1f)) + 63)));
+            v >>= 5;
+        }
+        buffer.append(Character.toChars((int) (v + 63)));
+    }
+}
@@ -0,0 +1,108 @@
+package heigit.ors.benchmarks;
+
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.ExtendedStorageSequence;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.storage.GraphExtension;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.PMap;
+import heigit.ors.routing.graphhopper.extensions.ORSDefaultFlagEncoderFactory;
+import heigit.ors.routing.graphhopper.extensions.flagencoders.FlagEncoderNames;
+import heigit.ors.routing.graphhopper.extensions.storages.GreenIndexGraphStorage;
+import heigit.ors.routing.graphhopper.extensions.storages.HillIndexGraphStorage;
+import heigit.ors.routing.graphhopper.extensions.storages.NoiseIndexGraphStorage;
+import heigit.ors.routing.graphhopper.extensions.weighting.AvoidHillsWeighting;
+import heigit.ors.routing.graphhopper.extensions.weighting.GreenWeighting;
+import heigit.ors.routing.graphhopper.extensions.weighting.QuietWeighting;
+import heigit.ors.routing.graphhopper.extensions.weighting.SoftWeightingEvaluator;
+import heigit.ors.routing.graphhopper.extensions.weighting.WeightingSequence;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the per-edge cost of summing the soft weightings one by one with the fused {@link SoftWeightingEvaluator}.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args=SoftWeightingBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SoftWeightingBenchmark {
+    private static final int EDGES = 100000;
+
+    private EdgeIteratorState[] edges;
+    private WeightingSequence sequence;
+    private SoftWeightingEvaluator evaluator;
+
+    @Setup
+    public void setup() {
+        EncodingManager encodingManager = new EncodingManager(new ORSDefaultFlagEncoderFactory(), FlagEncoderNames.CAR_ORS, 4);
+        FlagEncoder encoder = encodingManager.getEncoder(FlagEncoderNames.CAR_ORS);
+
+        GreenIndexGraphStorage green = new GreenIndexGraphStorage();
+        NoiseIndexGraphStorage noise = new NoiseIndexGraphStorage();
+        HillIndexGraphStorage hills = new HillIndexGraphStorage(new HashMap<String, String>());
+        ArrayList<GraphExtension> extensions = new ArrayList<>();
+        extensions.add(green);
+        extensions.add(noise);
+        extensions.add(hills);
+
+        GraphHopperStorage graphStorage = new GraphHopperStorage(new GHDirectory("", DAType.RAM_STORE), encodingManager, false, new ExtendedStorageSequence(extensions));
+        graphStorage.create(EDGES);
+
+        Random random = new Random(42);
+        edges = new EdgeIteratorState[EDGES];
+        for (int i = 0; i < EDGES; i++) {
+            edges[i] = graphStorage.edge(i, i + 1, 100, true);
+            green.setEdgeValue(edges[i].getEdge(), (byte) random.nextInt(64));
+            noise.setEdgeValue(edges[i].getEdge(), (byte) random.nextInt(4));
+            hills.setEdgeValue(edges[i].getEdge(), random.nextInt(16), random.nextInt(16));
+        }
+
+        PMap props = new PMap();
+        props.put("factor", "0.5");
+        ArrayList<Weighting> weightings = new ArrayList<>();
+        weightings.add(new GreenWeighting(encoder, props, graphStorage));
+        weightings.add(new QuietWeighting(encoder, props, graphStorage));
+        weightings.add(new AvoidHillsWeighting(encoder, new PMap(), graphStorage));
+
+        sequence = new WeightingSequence(weightings);
+        evaluator = new SoftWeightingEvaluator(weightings.toArray(new Weighting[weightings.size()]));
+    }
+
+    @Benchmark
+    public double weightingSequence() {
+        double sum = 0;
+        for (EdgeIteratorState edge : edges)
+            sum += sequence.calcWeight(edge, false, -1);
+        return sum;
+    }
+
+    @Benchmark
+    public double fusedEvaluator() {
+        double sum = 0;
+        for (EdgeIteratorState edge : edges)
+            sum += evaluator.calcWeight(edge, false, -1);
+        return sum;
+    }
+}
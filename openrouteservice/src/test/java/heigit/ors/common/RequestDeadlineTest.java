@@ -0,0 +1,72 @@
+package heigit.ors.common;
+
+import heigit.ors.exceptions.RequestTimeoutException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RequestDeadlineTest {
+    @Test
+    public void TestExpiredDeadlineThrows() throws Exception {
+        RequestDeadline deadline = new RequestDeadline(1, 2011);
+        Thread.sleep(5);
+
+        assertTrue(deadline.isExpired());
+        assertEquals(0, deadline.getRemainingTime());
+        try {
+            deadline.check();
+            fail("The deadline has passed.");
+        } catch (RequestTimeoutException ex) {
+            assertEquals(2011, ex.getInternalCode());
+        }
+    }
+
+    @Test
+    public void TestCounterCheckReadsClockPeriodically() throws Exception {
+        RequestDeadline deadline = new RequestDeadline(1, 6009);
+        Thread.sleep(5);
+
+        // only multiples of 1024 look at the clock
+        deadline.check(1);
+        deadline.check(1023);
+        try {
+            deadline.check(1024);
+            fail("The deadline has passed.");
+        } catch (RequestTimeoutException ex) {
+            assertEquals(6009, ex.getInternalCode());
+        }
+    }
+
+    @Test
+    public void TestPendingDeadlinePasses() {
+        RequestDeadline deadline = new RequestDeadline(60000, 3009);
+
+        assertFalse(deadline.isExpired());
+        assertTrue(deadline.getRemainingTime() > 0);
+        deadline.check();
+        deadline.check(0);
+    }
+
+    @Test
+    public void TestCurrentDeadlineIsBoundToThread() throws Exception {
+        RequestDeadline deadline = new RequestDeadline(60000, 3009);
+        RequestDeadline.setCurrent(deadline);
+        try {
+            assertSame(deadline, RequestDeadline.current());
+
+            RequestDeadline[] other = new RequestDeadline[1];
+            Thread thread = new Thread(() -> other[0] = RequestDeadline.current());
+            thread.start();
+            thread.join();
+            assertNull(other[0]);
+        } finally {
+            RequestDeadline.setCurrent(null);
+        }
+        assertNull(RequestDeadline.current());
+    }
+}
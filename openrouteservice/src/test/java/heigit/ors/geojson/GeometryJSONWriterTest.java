@@ -0,0 +1,72 @@
+package heigit.ors.geojson;
+
+import com.graphhopper.util.PointList;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.geom.Polygon;
+import heigit.ors.util.JsonStreamWriter;
+import org.json.JSONArray;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class GeometryJSONWriterTest {
+    private final GeometryFactory factory = new GeometryFactory();
+
+    @Test
+    public void TestPolygonMatchesGeometryJSON() throws Exception {
+        // clockwise shell and counterclockwise hole, both have to be reversed
+        LinearRing shell = factory.createLinearRing(new Coordinate[] { new Coordinate(8.6812345, 49.4123456),
+                new Coordinate(8.6912345, 49.4023456), new Coordinate(8.6712345, 49.4023456), new Coordinate(8.6812345, 49.4123456) });
+        LinearRing hole = factory.createLinearRing(new Coordinate[] { new Coordinate(8.6812, 49.41),
+                new Coordinate(8.6802, 49.405), new Coordinate(8.6822, 49.405), new Coordinate(8.6812, 49.41) });
+        Polygon poly = factory.createPolygon(shell, new LinearRing[] { hole });
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonStreamWriter writer = new JsonStreamWriter(out);
+        new GeometryJSONWriter(writer).writeCoordinates(poly);
+        writer.flush();
+
+        assertEquals(GeometryJSON.toJSON(poly).toString(), out.toString("UTF-8"));
+    }
+
+    @Test
+    public void TestPointListMatchesGeometryJSON() throws Exception {
+        PointList points = new PointList(3, true);
+        points.add(49.4123456, 8.6812345, 110.26);
+        points.add(49.4023456, 8.6912345, 115);
+        points.add(-0.0000001, 0.0000004, -1.04);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonStreamWriter writer = new JsonStreamWriter(out);
+        new GeometryJSONWriter(writer).writeCoordinates(points, true);
+        writer.flush();
+
+        Coordinate[] coords = new Coordinate[points.getSize()];
+        for (int i = 0; i < coords.length; i++)
+            coords[i] = new Coordinate(points.getLon(i), points.getLat(i), points.getEle(i));
+        assertEquals(GeometryJSON.toJSON(coords, true).toString(), out.toString("UTF-8"));
+    }
+
+    @Test
+    public void TestQuantizeDropsCollapsedPoints() throws Exception {
+        LinearRing shell = factory.createLinearRing(new Coordinate[] { new Coordinate(0, 0), new Coordinate(1, 0),
+                new Coordinate(1.001, 0.001), new Coordinate(1, 1), new Coordinate(0, 1), new Coordinate(0, 0) });
+        // collapses to less than 4 points, so it is written completely
+        LinearRing hole = factory.createLinearRing(new Coordinate[] { new Coordinate(0.5, 0.5), new Coordinate(0.501, 0.5),
+                new Coordinate(0.501, 0.501), new Coordinate(0.5, 0.5) });
+        Polygon poly = factory.createPolygon(shell, new LinearRing[] { hole });
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonStreamWriter writer = new JsonStreamWriter(out);
+        new GeometryJSONWriter(writer, 2, 1).setQuantize(true).writeCoordinates(poly);
+        writer.flush();
+
+        JSONArray rings = new JSONArray(out.toString("UTF-8"));
+        assertEquals("[[0,0],[1,0],[1,1],[0,1],[0,0]]", rings.getJSONArray(0).toString());
+        assertEquals(4, rings.getJSONArray(1).length());
+    }
+}
@@ -25,9 +25,22 @@
 
 package heigit.ors.globalResponseProcessor.geoJson;
 
+import com.graphhopper.PathWrapper;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.shapes.BBox;
 import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.LineString;
+import heigit.ors.common.DistanceUnit;
+import heigit.ors.geojson.GeometryJSON;
+import heigit.ors.routing.RouteExtraInfo;
+import heigit.ors.routing.RouteResult;
+import heigit.ors.routing.RouteSegment;
+import heigit.ors.routing.RouteSegmentItem;
+import heigit.ors.routing.RouteStep;
+import heigit.ors.routing.RouteSummary;
+import heigit.ors.routing.RoutingRequest;
+import heigit.ors.services.routing.requestprocessors.json.JsonRoutingResponseWriter;
 import org.geotools.feature.DefaultFeatureCollection;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.json.JSONArray;
@@ -40,6 +53,7 @@ import org.opengis.feature.simple.SimpleFeatureType;
 import org.skyscreamer.jsonassert.JSONAssert;
 import org.skyscreamer.jsonassert.JSONCompareMode;
 
+import java.io.ByteArrayOutputStream;
 import java.util.HashMap;
 
 import static heigit.ors.globalResponseProcessor.geoJson.SimpleFeatureTypes.*;
@@ -131,4 +145,125 @@ public class GeoJsonResponseWriterTest {
         JSONObject resultJSON = GeoJsonResponseWriter.addProperties(defaultFeatureCollection, featurePropertiesMap, defaultFeatureCollectionProperties);
         JSONAssert.assertEquals(expectedJSON, resultJSON, JSONCompareMode.NON_EXTENSIBLE);
     }
+
+    /**
+     * This method makes sure that the streamed export of {@link GeoJsonResponseWriter#writeGeoJson(RoutingRequest, RouteResult[], java.io.OutputStream)}
+     * writes the same FeatureCollection as {@link GeoJsonResponseWriter#toGeoJson(RoutingRequest, RouteResult[])}.
+     *
+     * @throws Exception If something goes wrong, the function will raise an {@link Exception}.
+     */
+    @Test
+    public void testWriteGeoJsonMatchesToGeoJson() throws Exception {
+        assertSameFeatureCollection(createRequest(true, true), new RouteResult[]{createRoute(true)});
+    }
+
+    /**
+     * This method compares both exports for several routes without instructions and elevation.
+     *
+     * @throws Exception If something goes wrong, the function will raise an {@link Exception}.
+     */
+    @Test
+    public void testWriteGeoJsonMatchesToGeoJsonWithoutInstructions() throws Exception {
+        assertSameFeatureCollection(createRequest(false, false), new RouteResult[]{createRoute(false), createRoute(false)});
+    }
+
+    private static void assertSameFeatureCollection(RoutingRequest request, RouteResult[] routes) throws Exception {
+        // the info block depends on the service configuration, both exports get the same one
+        String info = "{\"service\":\"routing\",\"engine\":{\"version\":\"4.7.0\"}}";
+
+        BBox bbox = new BBox(0, 0, 0, 0);
+        JSONObject jsonRoutes = new JSONObject(true);
+        jsonRoutes.put("routes", JsonRoutingResponseWriter.toJsonArray(request, routes, bbox));
+        jsonRoutes.put("bbox", GeometryJSON.toJSON(bbox.minLon, bbox.minLat, bbox.maxLon, bbox.maxLat));
+        jsonRoutes.put("info", new JSONObject(info));
+        JSONObject expectedJSON = GeoJsonResponseWriter.toGeoJson(jsonRoutes, routes);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GeoJsonResponseWriter.writeGeoJson(request, routes, info, out);
+        JSONObject resultJSON = new JSONObject(new String(out.toByteArray(), "UTF-8"));
+
+        // the feature ids are generated anew for every export
+        removeFeatureIds(expectedJSON);
+        removeFeatureIds(resultJSON);
+        JSONAssert.assertEquals(expectedJSON, resultJSON, JSONCompareMode.STRICT);
+    }
+
+    private static void removeFeatureIds(JSONObject featureCollection) {
+        JSONArray features = featureCollection.getJSONArray("features");
+        for (int i = 0; i < features.length(); i++)
+            features.getJSONObject(i).remove("id");
+    }
+
+    private static RoutingRequest createRequest(boolean includeInstructions, boolean includeElevation) {
+        RoutingRequest request = new RoutingRequest();
+        request.setIncludeGeometry(true);
+        request.setIncludeInstructions(includeInstructions);
+        request.setIncludeElevation(includeElevation);
+        request.setGeometryFormat("geojson");
+        request.setUnits(DistanceUnit.Meters);
+        request.setAttributes(new String[]{"detourfactor", "percentage", "avgspeed"});
+
+        return request;
+    }
+
+    private static RouteResult createRoute(boolean includeElevation) throws Exception {
+        // no coordinate lies halfway between two values of six decimals, so that both exports round them alike
+        PointList points = new PointList(4, includeElevation);
+        if (includeElevation) {
+            points.add(49.41000012, 8.68123456, 110.3);
+            points.add(49.4153, 8.69, 112.0);
+            points.add(49.42, 8.7003, 0.1 + 0.2);
+            points.add(49.42345671, 8.71234561, 121.75);
+        } else {
+            points.add(49.41000012, 8.68123456);
+            points.add(49.4153, 8.69);
+            points.add(49.42, 8.7003);
+            points.add(49.42345671, 8.71234561);
+        }
+
+        RouteResult route = new RouteResult(1);
+        route.addPoints(points, false, includeElevation);
+        route.setWayPointsIndices(new int[]{0, 3});
+
+        RouteSummary summary = route.getSummary();
+        summary.setDistance(1234.5);
+        summary.setDuration(0.1 + 0.2);
+        summary.setAscent(12.3);
+        summary.setDescent(0.0005);
+        summary.setAverageSpeed(14.82);
+        summary.setBBox(new BBox(8.68123456, 8.71234561, 49.41000012, 49.42345671));
+
+        PathWrapper path = new PathWrapper();
+        path.setPoints(points);
+        path.setDistance(1234.5);
+        path.setTime(301000);
+        RouteSegment segment = new RouteSegment(path, DistanceUnit.Meters);
+        segment.setDetourFactor(1.37);
+
+        RouteStep step = new RouteStep();
+        step.setDistance(412.3);
+        step.setDuration(60.5);
+        step.setType(0);
+        step.setInstruction("Turn left onto <b>Hauptstra\u00dfe</b> \"B3\"");
+        step.setName("Hauptstra\u00dfe");
+        step.setWayPoints(new int[]{0, 2});
+        segment.addStep(step);
+
+        RouteStep arrival = new RouteStep();
+        arrival.setDistance(822.2);
+        arrival.setDuration(12345678.9);
+        arrival.setType(10);
+        arrival.setInstruction("Arrive at your destination");
+        arrival.setWayPoints(new int[]{2, 3});
+        segment.addStep(arrival);
+        route.addSegment(segment);
+
+        RouteExtraInfo steepness = new RouteExtraInfo("steepness");
+        steepness.setFactor(100);
+        steepness.add(new RouteSegmentItem(0, 1, 7, 300.0));
+        steepness.add(new RouteSegmentItem(1, 3, -33, 934.5));
+        route.addExtraInfo(steepness);
+
+        return route;
+    }
 }
\ No newline at end of file
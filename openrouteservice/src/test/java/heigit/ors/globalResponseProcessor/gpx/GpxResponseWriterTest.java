@@ -0,0 +1,212 @@
+package heigit.ors.globalResponseProcessor.gpx;
+
+import com.graphhopper.PathWrapper;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.shapes.BBox;
+import heigit.ors.common.DistanceUnit;
+import heigit.ors.globalResponseProcessor.gpx.beans.BoundsType;
+import heigit.ors.globalResponseProcessor.gpx.beans.CopyrightType;
+import heigit.ors.globalResponseProcessor.gpx.beans.EmailType;
+import heigit.ors.globalResponseProcessor.gpx.beans.GpxExtensions;
+import heigit.ors.globalResponseProcessor.gpx.beans.LinkType;
+import heigit.ors.globalResponseProcessor.gpx.beans.MetadataType;
+import heigit.ors.globalResponseProcessor.gpx.beans.PersonType;
+import heigit.ors.routing.RouteResult;
+import heigit.ors.routing.RouteSegment;
+import heigit.ors.routing.RouteStep;
+import heigit.ors.routing.RouteSummary;
+import heigit.ors.routing.RoutingRequest;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.math.BigDecimal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GpxResponseWriterTest {
+    @Test
+    public void TestRouteWithInstructionsAndElevation() throws Exception {
+        assertSameDocument(createRequest(true, true), new RouteResult[] { createRoute(true) });
+    }
+
+    @Test
+    public void TestRoutesWithoutInstructions() throws Exception {
+        assertSameDocument(createRequest(false, false), new RouteResult[] { createRoute(false), createRoute(false) });
+    }
+
+    @Test
+    public void TestRoutePointsAreStreamed() throws Exception {
+        String gpx = writeGPX(createRequest(true, true), new RouteResult[] { createRoute(true) });
+        Document document = parse(new InputSource(new StringReader(gpx)));
+
+        assertEquals(4, document.getElementsByTagNameNS("*", "rtept").getLength());
+        // the first point of the second step is the last one of the first step
+        assertEquals(4, document.getElementsByTagNameNS("*", "step").getLength());
+        assertEquals("2018+02:00", document.getElementsByTagNameNS("*", "year").item(0).getTextContent());
+    }
+
+    private static void assertSameDocument(RoutingRequest request, RouteResult[] routes) throws Exception {
+        String expected = GpxResponseWriter.createGpx(request, routes, "openrouteservice", createMetadata(), createExtensions()).build();
+        String actual = writeGPX(request, routes);
+
+        Node expectedRoot = parse(new InputSource(new StringReader(expected))).getDocumentElement();
+        Node actualRoot = parse(new InputSource(new StringReader(actual))).getDocumentElement();
+        assertTrue(expected + "\n" + actual, expectedRoot.isEqualNode(actualRoot));
+    }
+
+    private static String writeGPX(RoutingRequest request, RouteResult[] routes) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+        GpxResponseWriter.writeGPX(writer, request, routes, "openrouteservice", createMetadata(), createExtensions());
+        writer.close();
+
+        return new String(out.toByteArray(), "UTF-8");
+    }
+
+    private static Document parse(InputSource source) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        Document document = factory.newDocumentBuilder().parse(source);
+        removeWhitespace(document.getDocumentElement());
+        return document;
+    }
+
+    // the JAXB output is indented, the streamed one is not
+    private static void removeWhitespace(Node node) {
+        Node child = node.getFirstChild();
+        while (child != null) {
+            Node next = child.getNextSibling();
+            if (child.getNodeType() == Node.TEXT_NODE && child.getTextContent().trim().isEmpty())
+                node.removeChild(child);
+            else
+                removeWhitespace(child);
+            child = next;
+        }
+    }
+
+    private static MetadataType createMetadata() throws Exception {
+        XMLGregorianCalendar cal = DatatypeFactory.newInstance().newXMLGregorianCalendar(2018, 5, 17, 13, 45, 10, 123, 120);
+
+        PersonType person = new PersonType();
+        person.setName("openrouteservice");
+        EmailType email = new EmailType();
+        email.setId("support");
+        email.setDomain("@openrouteservice.org");
+        person.setEmail(email);
+        LinkType link = new LinkType();
+        link.setHref("https://openrouteservice.org/");
+        link.setText("https://openrouteservice.org/");
+        link.setType("text/html");
+        person.setLink(link);
+
+        CopyrightType copyright = new CopyrightType();
+        copyright.setAuthor("openrouteservice.org | OpenStreetMap contributors");
+        copyright.setLicense("LGPL 3.0");
+        copyright.setYear(cal);
+
+        BoundsType bounds = new BoundsType();
+        bounds.setMinlat(BigDecimal.valueOf(49.4100001));
+        bounds.setMinlon(BigDecimal.valueOf(8.6812345));
+        bounds.setMaxlat(BigDecimal.valueOf(49.4234567));
+        bounds.setMaxlon(BigDecimal.valueOf(8.7123456));
+
+        MetadataType metadata = new MetadataType();
+        metadata.setName("ORSRouting");
+        metadata.setDesc("This is a directions instructions file as GPX, generated from openrouteservice");
+        metadata.setAuthor(person);
+        metadata.setCopyright(copyright);
+        metadata.setTime(cal);
+        metadata.setBounds(bounds);
+
+        return metadata;
+    }
+
+    private static GpxExtensions createExtensions() {
+        GpxExtensions extensions = new GpxExtensions();
+        extensions.setAttribution("openrouteservice.org | OpenStreetMap contributors");
+        extensions.setEngine("4.7.0");
+        extensions.setBuild_date("2018-05-17T10:00:00Z");
+        extensions.setProfile("driving-car");
+        extensions.setPreference("fastest");
+        extensions.setLanguage("de & <en>");
+        extensions.setDistance_units("Meters");
+        extensions.setInstructions("true");
+        extensions.setElevation("true");
+
+        return extensions;
+    }
+
+    private static RoutingRequest createRequest(boolean includeInstructions, boolean includeElevation) {
+        RoutingRequest request = new RoutingRequest();
+        request.setIncludeGeometry(true);
+        request.setIncludeInstructions(includeInstructions);
+        request.setIncludeElevation(includeElevation);
+        request.setUnits(DistanceUnit.Meters);
+
+        return request;
+    }
+
+    private static RouteResult createRoute(boolean includeElevation) throws Exception {
+        PointList points = new PointList(4, includeElevation);
+        if (includeElevation) {
+            points.add(49.4100001, 8.6812345, 110.3);
+            points.add(49.4153, 8.69, 112.0);
+            points.add(49.42, 8.7003, 0.1 + 0.2);
+            points.add(49.4234567, 8.7123456, 121.75);
+        } else {
+            points.add(49.4100001, 8.6812345);
+            points.add(49.4153, 8.69);
+            points.add(1e-5, -0.0000001);
+            points.add(49.4234567, 8.7123456);
+        }
+
+        RouteResult route = new RouteResult(1);
+        route.addPoints(points, false, includeElevation);
+        route.setWayPointsIndices(new int[] { 0, 3 });
+
+        RouteSummary summary = route.getSummary();
+        summary.setDistance(1234.5);
+        summary.setDuration(0.1 + 0.2);
+        summary.setAscent(12.3);
+        summary.setDescent(0.0005);
+        summary.setAverageSpeed(14.82);
+        summary.setBBox(new BBox(8.6812345, 8.7123456, 49.4100001, 49.4234567));
+
+        PathWrapper path = new PathWrapper();
+        path.setPoints(points);
+        path.setDistance(1234.5);
+        path.setTime(301000);
+        RouteSegment segment = new RouteSegment(path, DistanceUnit.Meters);
+
+        RouteStep step = new RouteStep();
+        step.setDistance(412.3);
+        step.setDuration(60.5);
+        step.setType(0);
+        step.setInstruction("Turn left onto <b>Hauptstra\u00dfe</b> \"B3\"");
+        step.setName("Hauptstra\u00dfe");
+        step.setWayPoints(new int[] { 0, 2 });
+        segment.addStep(step);
+
+        RouteStep arrival = new RouteStep();
+        arrival.setDistance(822.2);
+        arrival.setDuration(12345678.9);
+        arrival.setType(10);
+        arrival.setInstruction("Arrive at your destination");
+        arrival.setName(null);
+        arrival.setWayPoints(new int[] { 2, 3 });
+        segment.addStep(arrival);
+        route.addSegment(segment);
+
+        return route;
+    }
+}
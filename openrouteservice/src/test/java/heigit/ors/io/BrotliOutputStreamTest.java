@@ -0,0 +1,114 @@
+package heigit.ors.io;
+
+import org.brotli.dec.BrotliInputStream;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BrotliOutputStreamTest {
+    @Test
+    public void TestEmptyStream() throws Exception {
+        assertRoundTrip(new byte[0], BrotliOutputStream.DEFAULT_QUALITY, false);
+    }
+
+    @Test
+    public void TestTextIsCompressed() throws Exception {
+        byte[] data = createJson(20000);
+        for (int quality = BrotliOutputStream.MIN_QUALITY; quality <= BrotliOutputStream.MAX_QUALITY; quality++) {
+            byte[] compressed = assertRoundTrip(data, quality, false);
+            assertTrue(compressed.length < data.length / 3);
+        }
+    }
+
+    @Test
+    public void TestRandomDataIsStoredUncompressed() throws Exception {
+        byte[] data = new byte[200000];
+        new Random(1).nextBytes(data);
+        byte[] compressed = assertRoundTrip(data, BrotliOutputStream.DEFAULT_QUALITY, false);
+        assertTrue(compressed.length < data.length + 100);
+    }
+
+    @Test
+    public void TestMatchesAcrossBlocksAndWindow() throws Exception {
+        // repeats 100 KB of random bytes, so that the copies refer to previous meta-blocks and the window slides
+        byte[] pattern = new byte[100000];
+        new Random(2).nextBytes(pattern);
+        byte[] data = new byte[1000000];
+        for (int i = 0; i < data.length; i++)
+            data[i] = pattern[i % pattern.length];
+
+        byte[] compressed = assertRoundTrip(data, 9, false);
+        assertTrue(compressed.length < 2 * pattern.length);
+        assertRoundTrip(new byte[1 << 20], 1, false);
+    }
+
+    @Test
+    public void TestFlushedStream() throws Exception {
+        byte[] data = createJson(5000);
+        for (int quality : new int[] { 1, 5, 11 })
+            assertRoundTrip(data, quality, true);
+    }
+
+    @Test
+    public void TestFlushMakesDataDecodable() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BrotliOutputStream brotli = new BrotliOutputStream(out);
+        byte[] data = createJson(100);
+        brotli.write(data);
+        brotli.flush();
+
+        // the stream is not finished, but everything written before the flush can be decoded
+        InputStream in = new BrotliInputStream(new ByteArrayInputStream(out.toByteArray()));
+        byte[] decoded = new byte[data.length];
+        int n = 0;
+        while (n < decoded.length)
+            n += in.read(decoded, n, decoded.length - n);
+        assertTrue(Arrays.equals(data, decoded));
+        brotli.close();
+    }
+
+    private static byte[] assertRoundTrip(byte[] data, int quality, boolean flush) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BrotliOutputStream brotli = new BrotliOutputStream(out, quality);
+        Random random = new Random(3);
+        int pos = 0;
+        while (pos < data.length) {
+            int n = Math.min(data.length - pos, 1 + random.nextInt(10000));
+            brotli.write(data, pos, n);
+            pos += n;
+            if (flush && random.nextInt(3) == 0)
+                brotli.flush();
+        }
+        brotli.close();
+
+        byte[] compressed = out.toByteArray();
+        InputStream in = new BrotliInputStream(new ByteArrayInputStream(compressed));
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) > 0)
+            decoded.write(buffer, 0, n);
+
+        assertEquals(data.length, decoded.size());
+        assertTrue(Arrays.equals(data, decoded.toByteArray()));
+        return compressed;
+    }
+
+    private static byte[] createJson(int count) throws Exception {
+        Random random = new Random(4);
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0)
+                sb.append(',');
+            sb.append("{\"distance\":").append(random.nextInt(100000) / 10.0).append(",\"duration\":").append(random.nextInt(10000) / 10.0).append('}');
+        }
+        return sb.append(']').toString().getBytes("UTF-8");
+    }
+}
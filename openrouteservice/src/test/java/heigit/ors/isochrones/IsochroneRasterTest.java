@@ -0,0 +1,70 @@
+package heigit.ors.isochrones;
+
+import com.vividsolutions.jts.geom.Envelope;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IsochroneRasterTest {
+    @Test
+    public void TestUpdateKeepsLowestCost() {
+        IsochroneRaster raster = new IsochroneRaster(new Envelope(8.0, 9.0, 49.0, 50.0), 0.25, 0.5);
+        assertEquals(4, raster.getWidth());
+        assertEquals(2, raster.getHeight());
+
+        raster.update(8.1, 49.9, 30f);
+        raster.update(8.2, 49.8, 20f);
+        raster.update(8.15, 49.7, 25f);
+        raster.update(10.0, 49.5, 1f);
+
+        assertEquals(20f, raster.getValue(0, 0), 0);
+        assertEquals(20f, raster.getValue(8.05, 49.55), 0);
+        assertTrue(Float.isNaN(raster.getValue(3, 1)));
+        assertTrue(Float.isNaN(raster.getValue(10.0, 49.5)));
+    }
+
+    @Test
+    public void TestGeoTiffLayout() throws Exception {
+        IsochroneRaster raster = new IsochroneRaster(new Envelope(8.0, 9.0, 49.0, 50.0), 0.25, 0.5);
+        raster.update(8.9, 49.1, 42f);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IsochroneRasterWriter.write(raster, out);
+        ByteBuffer tiff = ByteBuffer.wrap(out.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+
+        assertEquals('I', tiff.get(0));
+        assertEquals(42, tiff.getShort(2));
+        int ifd = tiff.getInt(4);
+        int tags = tiff.getShort(ifd);
+
+        int stripOffset = -1;
+        int previousTag = 0;
+        for (int i = 0; i < tags; i++) {
+            int entry = ifd + 2 + i * 12;
+            int tag = tiff.getShort(entry) & 0xFFFF;
+            assertTrue("tags must be sorted", tag > previousTag);
+            previousTag = tag;
+
+            if (tag == 256)
+                assertEquals(4, tiff.getInt(entry + 8));
+            else if (tag == 257)
+                assertEquals(2, tiff.getInt(entry + 8));
+            else if (tag == 273)
+                stripOffset = tiff.getInt(entry + 8);
+            else if (tag == 33922) {
+                int tiepoint = tiff.getInt(entry + 8);
+                assertEquals(8.0, tiff.getDouble(tiepoint + 24), 1e-9);
+                assertEquals(50.0, tiff.getDouble(tiepoint + 32), 1e-9);
+            }
+        }
+
+        assertEquals(out.size(), stripOffset + 4 * 2 * 4);
+        assertTrue(Float.isNaN(tiff.getFloat(stripOffset)));
+        assertEquals(42f, tiff.getFloat(stripOffset + (1 * 4 + 3) * 4), 0);
+    }
+}
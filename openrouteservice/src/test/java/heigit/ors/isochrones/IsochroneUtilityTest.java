@@ -0,0 +1,97 @@
+package heigit.ors.isochrones;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import heigit.ors.common.Pair;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class IsochroneUtilityTest {
+    private final GeometryFactory _geomFactory = new GeometryFactory();
+
+    private IsochroneMap createMap(int travellerId, double x, double y, double... radii) {
+        IsochroneMap map = new IsochroneMap(travellerId, new Coordinate(x, y));
+        for (double radius : radii)
+            map.addIsochrone(new Isochrone(_geomFactory.createPoint(new Coordinate(x, y)).buffer(radius, 16), radius, radius));
+        return map;
+    }
+
+    private void assertRefs(IsochronesIntersection intersection, int map1, int iso1, int map2, int iso2) {
+        List<Pair<Integer, Integer>> refs = intersection.getContourRefs();
+        assertEquals(2, refs.size());
+        assertEquals(map1, (int) refs.get(0).first);
+        assertEquals(iso1, (int) refs.get(0).second);
+        assertEquals(map2, (int) refs.get(1).first);
+        assertEquals(iso2, (int) refs.get(1).second);
+    }
+
+    @Test
+    public void TestIntersectionsInPairOrder() {
+        IsochroneMapCollection maps = new IsochroneMapCollection();
+        maps.add(createMap(0, 0, 0, 1, 2));
+        maps.add(createMap(1, 2.5, 0, 1, 2));
+        maps.add(createMap(2, 100, 100, 1));
+
+        List<IsochronesIntersection> intersections = IsochroneUtility.computeIntersections(maps);
+
+        // the inner rings are 2.5 apart, so only pairs with an outer ring intersect
+        assertEquals(3, intersections.size());
+        assertRefs(intersections.get(0), 0, 0, 1, 1);
+        assertRefs(intersections.get(1), 0, 1, 1, 0);
+        assertRefs(intersections.get(2), 0, 1, 1, 1);
+
+        Geometry expected = maps.getIsochrone(0).getIsochrone(1).getGeometry().intersection(maps.getIsochrone(1).getIsochrone(1).getGeometry());
+        assertEquals(expected.getArea(), intersections.get(2).getGeometry().getArea(), 1e-9);
+    }
+
+    @Test
+    public void TestManyLocationsMatchPairwiseComparison() {
+        IsochroneMapCollection maps = new IsochroneMapCollection();
+        for (int i = 0; i < 6; i++)
+            maps.add(createMap(i, (i % 3) * 1.5, (i / 3) * 1.5, 0.5, 1, 1.5));
+
+        List<IsochronesIntersection> intersections = IsochroneUtility.computeIntersections(maps);
+
+        int index = 0;
+        for (int m1 = 0; m1 < maps.size(); m1++) {
+            for (int i1 = 0; i1 < 3; i1++) {
+                Geometry geom1 = maps.getIsochrone(m1).getIsochrone(i1).getGeometry();
+                for (int m2 = m1 + 1; m2 < maps.size(); m2++) {
+                    for (int i2 = 0; i2 < 3; i2++) {
+                        if (!geom1.intersection(maps.getIsochrone(m2).getIsochrone(i2).getGeometry()).isEmpty())
+                            assertRefs(intersections.get(index++), m1, i1, m2, i2);
+                    }
+                }
+            }
+        }
+        assertEquals(index, intersections.size());
+    }
+
+    @Test
+    public void TestDisjointLocations() {
+        IsochroneMapCollection maps = new IsochroneMapCollection();
+        maps.add(createMap(0, 0, 0, 1));
+        maps.add(createMap(1, 10, 0, 1));
+
+        assertNull(IsochroneUtility.computeIntersections(maps));
+        assertNull(maps.computeIntersection());
+    }
+
+    @Test
+    public void TestCommonArea() {
+        IsochroneMapCollection maps = new IsochroneMapCollection();
+        maps.add(createMap(0, 0, 0, 2));
+        maps.add(createMap(1, 1, 0, 2));
+        maps.add(createMap(2, 0.5, 1, 2));
+
+        Geometry expected = maps.getIsochrone(0).getIsochrone(0).getGeometry()
+                .intersection(maps.getIsochrone(1).getIsochrone(0).getGeometry())
+                .intersection(maps.getIsochrone(2).getIsochrone(0).getGeometry());
+        assertEquals(expected.getArea(), maps.computeIntersection().getArea(), 1e-6);
+    }
+}
@@ -0,0 +1,62 @@
+package heigit.ors.isochrones.statistics;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import heigit.ors.isochrones.Isochrone;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class AbstractStatisticsProviderTest {
+    /**
+     * Stand-in for a data source which derives the statistics from the geometry itself.
+     */
+    private static class AreaStatisticsProvider extends AbstractStatisticsProvider {
+        private int _queries;
+
+        @Override
+        public void init(Map<String, Object> parameters) {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String getName() {
+            return "area";
+        }
+
+        @Override
+        public double[] getStatistics(Isochrone isochrone, String[] properties) {
+            _queries++;
+            double[] res = new double[properties.length];
+            for (int i = 0; i < properties.length; i++)
+                res[i] = (i + 1) * isochrone.getGeometry().getArea();
+            return res;
+        }
+    }
+
+    @Test
+    public void TestBatchKeepsOrderOfIsochrones() throws Exception {
+        GeometryFactory geomFactory = new GeometryFactory();
+        List<Isochrone> isochrones = new ArrayList<Isochrone>();
+        for (int i = 1; i <= 3; i++)
+            isochrones.add(new Isochrone(geomFactory.createPoint(new Coordinate(0, 0)).buffer(i, 16), i, i));
+
+        AreaStatisticsProvider provider = new AreaStatisticsProvider();
+        double[][] values = provider.getStatistics(isochrones, new String[] { "a", "b" });
+
+        assertEquals(3, values.length);
+        assertEquals(3, provider._queries);
+        for (int i = 0; i < 3; i++) {
+            double area = isochrones.get(i).getGeometry().getArea();
+            assertEquals(area, values[i][0], 1e-9);
+            assertEquals(2 * area, values[i][1], 1e-9);
+        }
+    }
+}
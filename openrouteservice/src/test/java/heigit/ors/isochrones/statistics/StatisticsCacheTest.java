@@ -0,0 +1,65 @@
+package heigit.ors.isochrones.statistics;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.io.WKBWriter;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StatisticsCacheTest {
+    private final GeometryFactory _geomFactory = new GeometryFactory();
+
+    private byte[] createWkb(double x, double y, double radius) {
+        return new WKBWriter().write(_geomFactory.createPoint(new Coordinate(x, y)).buffer(radius));
+    }
+
+    @Test
+    public void TestKeyDependsOnGeometryAndProperties() {
+        String[] properties = new String[] { "total_pop" };
+        String key = StatisticsCache.createKey(createWkb(8.68, 49.41, 0.01), properties);
+
+        assertEquals(key, StatisticsCache.createKey(createWkb(8.68, 49.41, 0.01), new String[] { "total_pop" }));
+        assertFalse(key.equals(StatisticsCache.createKey(createWkb(8.68, 49.41, 0.02), properties)));
+        assertFalse(key.equals(StatisticsCache.createKey(createWkb(8.68, 49.41, 0.01), new String[] { "total_pop", "total_area_km" })));
+        // the property names are separated, so their concatenation does not collide
+        assertFalse(StatisticsCache.createKey(new byte[0], new String[] { "ab", "c" }).equals(StatisticsCache.createKey(new byte[0], new String[] { "a", "bc" })));
+    }
+
+    @Test
+    public void TestGetReturnsCopy() {
+        StatisticsCache cache = new StatisticsCache(10);
+        double[] values = new double[] { 1.0, 2.0 };
+        cache.put("a", values);
+        values[0] = 5.0;
+
+        double[] cached = cache.get("a");
+        assertEquals(1.0, cached[0], 0.0);
+        cached[1] = 5.0;
+        assertEquals(2.0, cache.get("a")[1], 0.0);
+        assertNull(cache.get("b"));
+    }
+
+    @Test
+    public void TestLeastRecentlyUsedIsEvicted() {
+        StatisticsCache cache = new StatisticsCache(2);
+        cache.put("a", new double[] { 1.0 });
+        cache.put("b", new double[] { 2.0 });
+        cache.get("a");
+        cache.put("c", new double[] { 3.0 });
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+    }
+
+    @Test
+    public void TestZeroCapacityDisablesCache() {
+        StatisticsCache cache = new StatisticsCache(0);
+        cache.put("a", new double[] { 1.0 });
+
+        assertEquals(0, cache.size());
+        assertNull(cache.get("a"));
+    }
+}
@@ -0,0 +1,157 @@
+package heigit.ors.isochrones.statistics.postgresql;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.io.WKBWriter;
+import heigit.ors.isochrones.Isochrone;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PostgresSQLStatisticsProviderTest {
+    private static final String[] PROPERTIES = { "total_pop", "total_area_km" };
+
+    /**
+     * Answers every query with the given rows of index and total_pop and keeps the queries and bound geometries.
+     */
+    private static class StubDataSource {
+        final List<String> queries = new ArrayList<>();
+        final List<Map<Integer, byte[]>> geometries = new ArrayList<>();
+        final double[][] rows;
+        final DataSource proxy;
+
+        StubDataSource(double[][] rows) {
+            this.rows = rows;
+            proxy = (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(), new Class<?>[] { DataSource.class },
+                    (p, method, args) -> "getConnection".equals(method.getName()) ? createConnection() : null);
+        }
+
+        private Connection createConnection() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+                    (p, method, args) -> {
+                        if ("prepareStatement".equals(method.getName())) {
+                            queries.add((String) args[0]);
+                            geometries.add(new HashMap<>());
+                            return createStatement(geometries.get(geometries.size() - 1));
+                        }
+                        return null;
+                    });
+        }
+
+        private PreparedStatement createStatement(Map<Integer, byte[]> bound) {
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[] { PreparedStatement.class },
+                    (p, method, args) -> {
+                        switch (method.getName()) {
+                            case "setBytes":
+                                bound.put((Integer) args[0], (byte[]) args[1]);
+                                return null;
+                            case "executeQuery":
+                                return createResultSet();
+                            default:
+                                return null;
+                        }
+                    });
+        }
+
+        private ResultSet createResultSet() {
+            ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(ResultSetMetaData.class.getClassLoader(), new Class<?>[] { ResultSetMetaData.class },
+                    (p, method, args) -> {
+                        if ("getColumnCount".equals(method.getName()))
+                            return 2;
+                        if ("getColumnName".equals(method.getName()))
+                            return (Integer) args[0] == 1 ? "idx" : "total_pop";
+                        return null;
+                    });
+
+            int[] row = { -1 };
+            return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class },
+                    (p, method, args) -> {
+                        switch (method.getName()) {
+                            case "getMetaData":
+                                return metaData;
+                            case "next":
+                                return ++row[0] < rows.length;
+                            case "getInt":
+                                return (int) rows[row[0]][(Integer) args[0] - 1];
+                            case "getDouble":
+                                return rows[row[0]][(Integer) args[0] - 1];
+                            default:
+                                return null;
+                        }
+                    });
+        }
+    }
+
+    @Test
+    public void TestQueryBindsAllGeometries() {
+        assertEquals("SELECT g.idx, ROUND(SUM((ST_SummaryStats(ST_Clip(r.rast, g.poly))).sum)) AS total_pop"
+                + " FROM (SELECT v.idx, ST_Transform(ST_GeomFromWKB(v.wkb, 4326), 954009) AS poly"
+                + " FROM (VALUES (0, CAST(? AS bytea)), (1, CAST(? AS bytea)), (2, CAST(? AS bytea))) AS v(idx, wkb)) AS g"
+                + " JOIN population AS r ON ST_Intersects(g.poly, r.rast) GROUP BY g.idx;",
+                PostgresSQLStatisticsProvider.createStatisticsQuery("population", "rast", PROPERTIES, 3));
+
+        assertNull(PostgresSQLStatisticsProvider.createStatisticsQuery("population", "rast", new String[] { "total_area_km" }, 3));
+    }
+
+    @Test
+    public void TestRowsAreMappedToIsochrones() throws Exception {
+        List<Isochrone> isochrones = createIsochrones(3);
+        // the first isochrone does not intersect any cell and has no row
+        StubDataSource dataSource = new StubDataSource(new double[][] { { 2, 300 }, { 1, 150 } });
+        PostgresSQLStatisticsProvider provider = new PostgresSQLStatisticsProvider();
+        provider.init(dataSource.proxy, "population", "rast", 0);
+
+        double[][] values = provider.getStatistics(isochrones, PROPERTIES);
+
+        assertEquals(1, dataSource.queries.size());
+        assertEquals(PostgresSQLStatisticsProvider.createStatisticsQuery("population", "rast", PROPERTIES, 3), dataSource.queries.get(0));
+        WKBWriter wkbWriter = new WKBWriter();
+        for (int i = 0; i < 3; i++)
+            assertTrue(Arrays.equals(wkbWriter.write(isochrones.get(i).getGeometry()), dataSource.geometries.get(0).get(i + 1)));
+
+        assertEquals(3, values.length);
+        assertTrue(Arrays.equals(new double[] { 0, 0 }, values[0]));
+        assertTrue(Arrays.equals(new double[] { 150, 0 }, values[1]));
+        assertTrue(Arrays.equals(new double[] { 300, 0 }, values[2]));
+    }
+
+    @Test
+    public void TestCachedIsochronesAreNotQueried() throws Exception {
+        List<Isochrone> isochrones = createIsochrones(3);
+        StubDataSource dataSource = new StubDataSource(new double[][] { { 0, 100 } });
+        PostgresSQLStatisticsProvider provider = new PostgresSQLStatisticsProvider();
+        provider.init(dataSource.proxy, "population", "rast", 10);
+
+        provider.getStatistics(isochrones.subList(0, 1), PROPERTIES);
+        double[][] values = provider.getStatistics(isochrones, PROPERTIES);
+
+        // only the two isochrones which have not been queried before are bound, the first row refers to the second one
+        assertEquals(2, dataSource.queries.size());
+        assertEquals(2, dataSource.geometries.get(1).size());
+        assertEquals(100, values[0][0], 0);
+        assertEquals(100, values[1][0], 0);
+        assertEquals(0, values[2][0], 0);
+    }
+
+    private static List<Isochrone> createIsochrones(int count) {
+        GeometryFactory geomFactory = new GeometryFactory();
+        List<Isochrone> isochrones = new ArrayList<>();
+        for (int i = 1; i <= count; i++)
+            isochrones.add(new Isochrone(geomFactory.createPoint(new Coordinate(8.68, 49.41)).buffer(i * 0.01, 8), i, i));
+        return isochrones;
+    }
+}
@@ -0,0 +1,102 @@
+package heigit.ors.isochrones.statistics.raster;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class PopulationRasterTest {
+    private static final int WIDTH = 10;
+    private static final int HEIGHT = 7;
+    private static final double MIN_X = 8.0;
+    private static final double MAX_Y = 50.0;
+    private static final double CELL_SIZE = 0.1;
+    private static final float NO_DATA = -1f;
+
+    private final GeometryFactory _geomFactory = new GeometryFactory();
+    private float[] _values;
+    private PopulationRaster _raster;
+
+    @Before
+    public void setUp() throws IOException {
+        _values = new float[WIDTH * HEIGHT];
+        for (int i = 0; i < _values.length; i++)
+            _values[i] = i % 11 == 0 ? NO_DATA : i + 1;
+
+        File file = File.createTempFile("population", ".raster");
+        file.deleteOnExit();
+        // 3 x 3 tiles leave padded tiles at the east and south edges
+        PopulationRaster.write(file, _values, WIDTH, HEIGHT, 3, MIN_X, MAX_Y, CELL_SIZE, CELL_SIZE, NO_DATA);
+        _raster = PopulationRaster.open(file);
+    }
+
+    private double sumCellCentres(Geometry geometry) {
+        double sum = 0;
+        for (int row = 0; row < HEIGHT; row++) {
+            for (int col = 0; col < WIDTH; col++) {
+                Coordinate centre = new Coordinate(MIN_X + (col + 0.5) * CELL_SIZE, MAX_Y - (row + 0.5) * CELL_SIZE);
+                float value = _values[row * WIDTH + col];
+                if (value != NO_DATA && geometry.contains(_geomFactory.createPoint(centre)))
+                    sum += value;
+            }
+        }
+        return sum;
+    }
+
+    @Test
+    public void TestValuesAreReadFromTiles() {
+        for (int row = 0; row < HEIGHT; row++) {
+            for (int col = 0; col < WIDTH; col++)
+                assertEquals(_values[row * WIDTH + col], _raster.getValue(col, row), 0.0);
+        }
+    }
+
+    @Test
+    public void TestPolygonSumMatchesCellCentres() {
+        Geometry circle = _geomFactory.createPoint(new Coordinate(8.51, 49.67)).buffer(0.33, 16);
+        assertEquals(sumCellCentres(circle), _raster.getSum(circle), 1e-6);
+
+        Geometry ring = circle.difference(_geomFactory.createPoint(new Coordinate(8.49, 49.63)).buffer(0.12, 8));
+        assertEquals(sumCellCentres(ring), _raster.getSum(ring), 1e-6);
+    }
+
+    @Test
+    public void TestEnvelopeSumUsesCompleteTiles() {
+        Envelope all = new Envelope(7.9, 9.1, 49.2, 50.1);
+        assertEquals(sumCellCentres(_geomFactory.toGeometry(all)), _raster.getSum(all), 1e-6);
+
+        // covers the cells of the second and third tile of the first tile row plus a partial column
+        Envelope tiles = new Envelope(8.29, 8.99, 49.71, 50.01);
+        assertEquals(sumCellCentres(_geomFactory.toGeometry(tiles)), _raster.getSum(tiles), 1e-6);
+    }
+
+    @Test
+    public void TestGeometryOutsideRasterIsZero() {
+        assertEquals(0.0, _raster.getSum(new Envelope(10.0, 11.0, 40.0, 41.0)), 0.0);
+    }
+
+    @Test
+    public void TestOpenRejectsOtherFiles() throws IOException {
+        File file = File.createTempFile("population", ".raster");
+        file.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[128]);
+        }
+
+        try {
+            PopulationRaster.open(file);
+            fail("The file has no population raster header.");
+        } catch (IOException ex) {
+            // expected
+        }
+    }
+}
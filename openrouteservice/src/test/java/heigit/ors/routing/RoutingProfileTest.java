@@ -0,0 +1,72 @@
+package heigit.ors.routing;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import heigit.ors.common.RequestDeadline;
+import heigit.ors.isochrones.IsochroneBatchListener;
+import heigit.ors.isochrones.IsochroneMap;
+import heigit.ors.isochrones.IsochroneSearchParameters;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RoutingProfileTest {
+    @Test
+    public void TestBatchIsochronesUseParametersOfEachLocation() throws Exception {
+        List<IsochroneSearchParameters> parametersList = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            IsochroneSearchParameters parameters = new IsochroneSearchParameters(i, new Coordinate(8.68 + i * 0.01, 49.41), new double[] { 300 });
+            RouteSearchParameters routeParameters = new RouteSearchParameters();
+            routeParameters.setVehicleType(i % 3);
+            parameters.setRouteParameters(routeParameters);
+            parametersList.add(parameters);
+        }
+
+        Map<Integer, RouteSearchParameters> usedParameters = new ConcurrentHashMap<>();
+        Map<Integer, RequestDeadline> usedDeadlines = new ConcurrentHashMap<>();
+        Map<Integer, IsochroneMap> built = new ConcurrentHashMap<>();
+        Map<Integer, Exception> failed = new ConcurrentHashMap<>();
+
+        RequestDeadline deadline = new RequestDeadline(60000, 0);
+        RequestDeadline.setCurrent(deadline);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            RoutingProfile.buildIsochrones(parametersList, parameters -> {
+                usedParameters.put(parameters.getTravellerId(), parameters.getRouteParameters());
+                usedDeadlines.put(parameters.getTravellerId(), RequestDeadline.current());
+                if (parameters.getTravellerId() == 5)
+                    throw new IllegalStateException("no graph");
+                return new IsochroneMap(parameters.getTravellerId(), parameters.getLocation());
+            }, executor, new IsochroneBatchListener() {
+                @Override
+                public void isochroneMapBuilt(IsochroneMap isochroneMap) {
+                    built.put(isochroneMap.getTravellerId(), isochroneMap);
+                }
+
+                @Override
+                public void isochroneMapFailed(int travellerId, Exception ex) {
+                    failed.put(travellerId, ex);
+                }
+            });
+        } finally {
+            RequestDeadline.setCurrent(null);
+            executor.shutdown();
+        }
+
+        assertEquals(7, built.size());
+        assertEquals(1, failed.size());
+        assertTrue(failed.get(5) instanceof IllegalStateException);
+        for (IsochroneSearchParameters parameters : parametersList) {
+            assertSame(parameters.getRouteParameters(), usedParameters.get(parameters.getTravellerId()));
+            assertSame(deadline, usedDeadlines.get(parameters.getTravellerId()));
+        }
+    }
+}
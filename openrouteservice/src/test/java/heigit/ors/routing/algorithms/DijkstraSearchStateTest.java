@@ -0,0 +1,136 @@
+package heigit.ors.routing.algorithms;
+
+import heigit.ors.common.RequestDeadline;
+import heigit.ors.exceptions.RequestTimeoutException;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class DijkstraSearchStateTest {
+    private static void withMaxPooledStates(int maxPooledStates, Runnable test) {
+        int previous = DijkstraSearchState.getMaxPooledStates();
+        DijkstraSearchState.setMaxPooledStates(maxPooledStates);
+        try {
+            test.run();
+        } finally {
+            DijkstraSearchState.setMaxPooledStates(previous);
+        }
+    }
+
+    @Test
+    public void TestReleasedStatesAreReused() {
+        withMaxPooledStates(2, () -> {
+            DijkstraSearchState first = DijkstraSearchState.acquire(10);
+            DijkstraSearchState second = DijkstraSearchState.acquire(10);
+            assertNotSame(first, second);
+            first.setWeight(3, 1);
+
+            first.release();
+            DijkstraSearchState third = DijkstraSearchState.acquire(20);
+            assertSame(first, third);
+            assertEquals(0, third.getReachedCount());
+            assertEquals(20, third.getNodeCount());
+
+            second.release();
+            third.release();
+        });
+    }
+
+    @Test
+    public void TestExhaustedPoolWaitsUntilDeadline() {
+        withMaxPooledStates(1, () -> {
+            DijkstraSearchState state = DijkstraSearchState.acquire(10);
+            RequestDeadline.setCurrent(new RequestDeadline(50, 1));
+            try {
+                DijkstraSearchState.acquire(10);
+                fail();
+            } catch (RequestTimeoutException ex) {
+                assertEquals(1, ex.getInternalCode());
+            } finally {
+                RequestDeadline.setCurrent(null);
+                state.release();
+            }
+
+            // the failed attempt has not used up the capacity
+            assertSame(state, DijkstraSearchState.acquire(10));
+            state.release();
+        });
+    }
+
+    private static void assertReleaseWakesWaitingSearch(RequestDeadline deadline) {
+        withMaxPooledStates(1, () -> {
+            DijkstraSearchState state = DijkstraSearchState.acquire(10);
+            AtomicReference<DijkstraSearchState> acquired = new AtomicReference<>();
+            CountDownLatch waiting = new CountDownLatch(1);
+
+            Thread thread = new Thread(() -> {
+                RequestDeadline.setCurrent(deadline);
+                waiting.countDown();
+                acquired.set(DijkstraSearchState.acquire(10));
+            });
+            thread.start();
+            try {
+                waiting.await();
+                Thread.sleep(50);
+                assertNull(acquired.get());
+                state.release();
+                thread.join(10000);
+            } catch (InterruptedException ex) {
+                throw new AssertionError(ex);
+            }
+
+            assertSame(state, acquired.get());
+            acquired.get().release();
+        });
+    }
+
+    @Test
+    public void TestReleaseWakesWaitingSearch() {
+        assertReleaseWakesWaitingSearch(new RequestDeadline(60000, 1));
+        // requests without a timeout wait as long as it takes
+        assertReleaseWakesWaitingSearch(null);
+    }
+
+    @Test
+    public void TestUnpooledStatesAreNotAdded() {
+        withMaxPooledStates(1, () -> {
+            DijkstraSearchState pooled = DijkstraSearchState.acquire(10);
+            new DijkstraSearchState(10).release();
+            pooled.release();
+
+            assertSame(pooled, DijkstraSearchState.acquire(10));
+            pooled.release();
+        });
+    }
+
+    @Test
+    public void TestLowerLimitDiscardsStates() {
+        withMaxPooledStates(2, () -> {
+            DijkstraSearchState first = DijkstraSearchState.acquire(10);
+            DijkstraSearchState second = DijkstraSearchState.acquire(10);
+            DijkstraSearchState.setMaxPooledStates(1);
+
+            // the pool is above its limit, so the first state is discarded
+            first.release();
+            second.release();
+            DijkstraSearchState state = DijkstraSearchState.acquire(10);
+            assertSame(second, state);
+            RequestDeadline.setCurrent(new RequestDeadline(20, 1));
+            try {
+                DijkstraSearchState.acquire(10);
+                fail();
+            } catch (RequestTimeoutException ex) {
+            } finally {
+                RequestDeadline.setCurrent(null);
+                state.release();
+            }
+        });
+    }
+}
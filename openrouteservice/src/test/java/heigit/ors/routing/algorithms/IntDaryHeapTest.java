@@ -0,0 +1,78 @@
+package heigit.ors.routing.algorithms;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IntDaryHeapTest {
+    @Test
+    public void TestPollsInKeyOrder() {
+        IntDaryHeap heap = new IntDaryHeap(2, 100);
+        Random random = new Random(42);
+        double[] keys = new double[100];
+        for (int node = 0; node < 100; node++) {
+            keys[node] = random.nextDouble() * 1000;
+            heap.insert(node, keys[node]);
+        }
+
+        double previous = -1;
+        while (!heap.isEmpty()) {
+            double key = heap.peekKey();
+            int node = heap.poll();
+            assertEquals(keys[node], key, 0);
+            assertTrue(key >= previous);
+            assertFalse(heap.contains(node));
+            previous = key;
+        }
+    }
+
+    @Test
+    public void TestUpdate() {
+        IntDaryHeap heap = new IntDaryHeap(4, 10);
+        heap.update(3, 30);
+        heap.update(5, 50);
+        heap.update(7, 70);
+        heap.update(7, 10);
+        heap.update(3, 40);
+
+        assertEquals(3, heap.size());
+        assertEquals(7, heap.poll());
+        assertEquals(3, heap.peekNode());
+        assertEquals(30, heap.peekKey(), 0);
+    }
+
+    @Test
+    public void TestClear() {
+        IntDaryHeap heap = new IntDaryHeap(4, 10);
+        heap.insert(1, 1);
+        heap.insert(2, 2);
+        heap.clear();
+
+        assertTrue(heap.isEmpty());
+        assertFalse(heap.contains(1));
+        heap.insert(2, 5);
+        assertEquals(2, heap.poll());
+    }
+
+    @Test
+    public void TestSearchStateReset() {
+        DijkstraSearchState state = new DijkstraSearchState(10);
+        state.setEntry(4, 7, 2, 12.5);
+        state.setWeight(2, 0);
+        assertEquals(2, state.getReachedCount());
+        assertEquals(2, state.getParent(4));
+
+        state.reset(20);
+        assertEquals(0, state.getReachedCount());
+        assertFalse(state.isReached(4));
+        assertTrue(Double.isInfinite(state.getWeight(4)));
+
+        state.setWeight(15, 3);
+        assertTrue(state.isReached(15));
+        assertEquals(15, state.getReachedNode(0));
+    }
+}
@@ -0,0 +1,114 @@
+package heigit.ors.routing.algorithms;
+
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.FastestWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.storage.GraphExtension;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.RAMDirectory;
+import heigit.ors.routing.graphhopper.extensions.AccessibilityMap;
+import heigit.ors.routing.graphhopper.extensions.ORSDefaultFlagEncoderFactory;
+import heigit.ors.routing.graphhopper.extensions.flagencoders.FlagEncoderNames;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PHASTAlgorithmTest {
+    private final FlagEncoder _encoder;
+    private final Weighting _weighting;
+    private final GraphHopperStorage _graph;
+    private final CHGraph _chGraph;
+
+    public PHASTAlgorithmTest() {
+        EncodingManager em = new EncodingManager(new ORSDefaultFlagEncoderFactory(), FlagEncoderNames.CAR_ORS, 4);
+        _encoder = em.getEncoder(FlagEncoderNames.CAR_ORS);
+        _weighting = new FastestWeighting(_encoder);
+        _graph = new GraphHopperStorage(Collections.singletonList(_weighting), new RAMDirectory(), em, false, new GraphExtension.NoOpExtension());
+        _graph.create(100);
+
+        //      0
+        //      |
+        //  2 - 1 - 3 - 4
+        //          |
+        //          v
+        //          5
+        addEdge(0, 1, 100, true);
+        addEdge(1, 2, 200, true);
+        addEdge(1, 3, 300, true);
+        addEdge(3, 4, 100, true);
+        addEdge(3, 5, 50, false);
+        _graph.freeze();
+
+        // leaves are contracted first, so that the hierarchy needs no shortcuts
+        _chGraph = _graph.getGraph(CHGraph.class, _weighting);
+        int[] levels = new int[] {0, 5, 1, 4, 2, 3};
+        for (int node = 0; node < levels.length; node++)
+            _chGraph.setLevel(node, levels[node]);
+    }
+
+    private void addEdge(int from, int to, double distance, boolean bothDirections) {
+        _graph.edge(from, to).setDistance(distance).setFlags(_encoder.setProperties(40, true, bothDirections));
+    }
+
+    private void assertSameAsDijkstra(int source, boolean reverseDirection) {
+        DijkstraSearchState weights = new DijkstraSearchState(_graph.getNodes());
+        new PHASTAlgorithm(_graph, _chGraph, _weighting, reverseDirection).calcWeights(source, 1000, weights);
+
+        DijkstraCostCondition dijkstra = new DijkstraCostCondition(_graph, _weighting, 1000, reverseDirection, TraversalMode.NODE_BASED);
+        AccessibilityMap expected = dijkstra.calcAccessibilityMap(source);
+
+        for (int node = 0; node < _graph.getNodes(); node++) {
+            double weight = expected.getWeight(node);
+            if (Double.isInfinite(weight))
+                assertTrue(weights.getWeight(node) > 1000);
+            else
+                assertEquals(weight, weights.getWeight(node), 1e-3);
+        }
+
+        dijkstra.getSearchState().release();
+    }
+
+    @Test
+    public void TestWeightsMatchDijkstra() {
+        for (int source = 0; source < _graph.getNodes(); source++) {
+            assertSameAsDijkstra(source, false);
+            assertSameAsDijkstra(source, true);
+        }
+    }
+
+    @Test
+    public void TestOneWayInReverseSearch() {
+        DijkstraSearchState weights = new DijkstraSearchState(_graph.getNodes());
+        new PHASTAlgorithm(_graph, _chGraph, _weighting, true).calcWeights(4, 1000, weights);
+        assertTrue(Double.isInfinite(weights.getWeight(5)));
+
+        new PHASTAlgorithm(_graph, _chGraph, _weighting, false).calcWeights(4, 1000, weights);
+        assertTrue(weights.getWeight(5) < weights.getWeight(1));
+    }
+
+    @Test
+    public void TestAccessibilityMapStopsBehindLimit() {
+        PHASTAlgorithm phast = new PHASTAlgorithm(_graph, _chGraph, _weighting, false);
+        DijkstraSearchState state = new DijkstraSearchState(_graph.getNodes());
+        phast.calcWeights(4, 1000, state);
+        // node 1 is reachable, nodes 0 and 2 are only reachable through it
+        double limit = state.getWeight(1) + 1;
+        double weight2 = state.getWeight(2);
+
+        AccessibilityMap map = phast.calcAccessibilityMap(4, limit, state);
+
+        assertEquals(6, map.size());
+        assertEquals(-1, map.getParent(4));
+        assertEquals(3, map.getParent(1));
+        assertEquals(1, map.getParent(0));
+        assertEquals(1, map.getParent(2));
+        assertTrue(map.getWeight(2) > limit);
+        assertEquals(weight2, map.getWeight(2), 1e-3);
+    }
+}
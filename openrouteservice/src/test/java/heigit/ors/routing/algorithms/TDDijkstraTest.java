@@ -0,0 +1,137 @@
+package heigit.ors.routing.algorithms;
+
+import com.graphhopper.routing.AlgorithmOptions;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.RoutingAlgorithmFactorySimple;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.FastestWeighting;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.PMap;
+import heigit.ors.routing.graphhopper.extensions.ORSDefaultFlagEncoderFactory;
+import heigit.ors.routing.graphhopper.extensions.flagencoders.FlagEncoderNames;
+import heigit.ors.routing.graphhopper.extensions.storages.SpeedProfilesGraphStorage;
+import heigit.ors.routing.graphhopper.extensions.weighting.TimeDependentFastestWeighting;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TDDijkstraTest {
+    private static final long MINUTE = 60 * 1000;
+
+    private final FlagEncoder _encoder;
+    private final GraphHopperStorage _graph;
+    private final TimeDependentFastestWeighting _weighting;
+    private final EdgeIteratorState _jammedEdge;
+
+    public TDDijkstraTest() {
+        EncodingManager em = new EncodingManager(new ORSDefaultFlagEncoderFactory(), FlagEncoderNames.CAR_ORS, 4);
+        _encoder = em.getEncoder(FlagEncoderNames.CAR_ORS);
+        SpeedProfilesGraphStorage speedProfiles = new SpeedProfilesGraphStorage();
+        _graph = new GraphHopperStorage(new GHDirectory("", DAType.RAM_STORE), em, false, speedProfiles);
+        _graph.create(100);
+
+        // 20 km/h during the first bucket of the week, 100 km/h otherwise
+        double[] jammed = new double[SpeedProfilesGraphStorage.BUCKETS_PER_WEEK];
+        Arrays.fill(jammed, 100);
+        jammed[0] = 20;
+        double[] steady = new double[SpeedProfilesGraphStorage.BUCKETS_PER_WEEK];
+        Arrays.fill(steady, 60);
+
+        //     1
+        //   /   \
+        //  0     3
+        //   \   /
+        //     2
+        _jammedEdge = addEdge(0, 1, 10000);
+        speedProfiles.setEdgeValue(_jammedEdge.getEdge(), speedProfiles.addProfile(jammed));
+        speedProfiles.setEdgeValue(addEdge(0, 2, 10000).getEdge(), speedProfiles.addProfile(steady));
+        // without profile, 72 seconds at the encoder speed
+        addEdge(1, 3, 1000);
+        addEdge(2, 3, 1000);
+
+        _weighting = new TimeDependentFastestWeighting(_encoder, new PMap(), speedProfiles);
+    }
+
+    private EdgeIteratorState addEdge(int from, int to, double distance) {
+        return _graph.edge(from, to).setDistance(distance).setFlags(_encoder.setProperties(50, true, true));
+    }
+
+    private Path route(int from, int to, long departure) {
+        return new TDDijkstra(_graph, _weighting, TraversalMode.NODE_BASED, departure).calcPath(from, to);
+    }
+
+    @Test
+    public void TestBucketBoundaryWithinEdge() {
+        // one minute at 20 km/h, the remaining 9666.67 m at 100 km/h
+        long departure = 14 * MINUTE;
+        assertEquals(408000, _weighting.calcMillis(_jammedEdge, false, -1, departure), 1);
+        assertEquals(408, _weighting.calcWeight(_jammedEdge, false, -1, departure), 1e-6);
+
+        Path path = route(0, 1, departure);
+        assertEquals(408000, path.getTime(), 1);
+        assertEquals(408, path.getWeight(), 1e-6);
+    }
+
+    @Test
+    public void TestTravelTimesAreFIFO() {
+        long previousArrival = Long.MIN_VALUE;
+        for (long departure = 0; departure <= 30 * MINUTE; departure += 1000) {
+            long arrival = departure + _weighting.calcMillis(_jammedEdge, false, -1, departure);
+            assertTrue("departure " + departure, arrival >= previousArrival);
+            previousArrival = arrival;
+        }
+    }
+
+    @Test
+    public void TestRouteDependsOnDeparture() {
+        // 15 minutes at 20 km/h and 5 km at 100 km/h are slower than 10 km at 60 km/h
+        Path night = route(0, 3, 0);
+        assertArrayEquals(new int[] { 0, 2, 3 }, night.calcNodes().toArray());
+        assertEquals((600 + 72) * 1000, night.getTime(), 1);
+
+        Path morning = route(0, 3, 60 * MINUTE);
+        assertArrayEquals(new int[] { 0, 1, 3 }, morning.calcNodes().toArray());
+        assertEquals((360 + 72) * 1000, morning.getTime(), 1);
+    }
+
+    @Test
+    public void TestOneToManyMatchesTDDijkstra() {
+        DijkstraOneToManyAlgorithm algorithm = new DijkstraOneToManyAlgorithm(_graph, _weighting, TraversalMode.NODE_BASED, new DijkstraSearchState(_graph.getNodes()));
+        int[] targets = new int[] { 1, 2, 3 };
+        algorithm.prepare(new int[] { 0 }, targets);
+
+        for (long departure : new long[] { 0, 10 * MINUTE, 14 * MINUTE, 60 * MINUTE }) {
+            algorithm.setDepartureTime(departure);
+            algorithm.reset();
+            algorithm.calcPaths(0, targets);
+
+            for (int target : targets) {
+                Path path = route(0, target, departure);
+                assertEquals(path.getTime(), algorithm.getTime(target));
+                assertEquals(path.getWeight(), algorithm._searchState.getWeight(target), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    public void TestFactoryRejectsStaticWeighting() {
+        TDRoutingAlgorithmFactory factory = new TDRoutingAlgorithmFactory(new RoutingAlgorithmFactorySimple());
+        AlgorithmOptions opts = AlgorithmOptions.start().algorithm(TDDijkstra.NAME).traversalMode(TraversalMode.NODE_BASED)
+                .weighting(new FastestWeighting(_encoder)).build();
+        try {
+            factory.createAlgo(_graph, opts);
+            fail();
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package heigit.ors.routing.graphhopper.extensions.edgefilters;
+
+import com.carrotsearch.hppc.IntObjectMap;
+import com.graphhopper.coll.GHIntObjectHashMap;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.storage.GraphExtension;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.util.EdgeIteratorState;
+import heigit.ors.routing.graphhopper.extensions.ORSDefaultFlagEncoderFactory;
+import heigit.ors.routing.graphhopper.extensions.flagencoders.FlagEncoderNames;
+import heigit.ors.routing.traffic.EdgeInfo;
+import heigit.ors.routing.traffic.TrafficSnapshot;
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.Date;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BlockedEdgesEdgeFilterTest {
+    private final EncodingManager encodingManager = new EncodingManager(new ORSDefaultFlagEncoderFactory(), FlagEncoderNames.CAR_ORS + "," + FlagEncoderNames.HEAVYVEHICLE, 4);
+    private final GraphHopperStorage _graphStorage;
+    private final EdgeIteratorState[] _edges;
+    private final TrafficSnapshot _snapshot;
+
+    public BlockedEdgesEdgeFilterTest() {
+        _graphStorage = new GraphHopperStorage(new GHDirectory("", DAType.RAM_STORE), encodingManager, false, new GraphExtension.NoOpExtension());
+        _graphStorage.create(3);
+
+        _edges = new EdgeIteratorState[3];
+        for (int i = 0; i < _edges.length; i++)
+            _edges[i] = _graphStorage.edge(i, i + 1, 100, true);
+
+        BitSet blocked = new BitSet();
+        blocked.set(_edges[0].getEdge());
+        BitSet blockedHeavyVehicle = new BitSet();
+        blockedHeavyVehicle.set(_edges[1].getEdge());
+        IntObjectMap<EdgeInfo> edges = new GHIntObjectHashMap<>();
+        IntObjectMap<short[]> avoidCodes = new GHIntObjectHashMap<>();
+        _snapshot = new TrafficSnapshot(new Date(), edges, avoidCodes, blocked, blockedHeavyVehicle);
+    }
+
+    @Test
+    public void TestCarIgnoresHeavyVehicleBlocks() {
+        BlockedEdgesEdgeFilter filter = new BlockedEdgesEdgeFilter(encodingManager.getEncoder(FlagEncoderNames.CAR_ORS), _snapshot);
+
+        assertFalse(filter.accept(_edges[0]));
+        assertFalse(filter.accept(_edges[0].detach(true)));
+        assertTrue(filter.accept(_edges[1]));
+        assertTrue(filter.accept(_edges[2]));
+    }
+
+    @Test
+    public void TestHeavyVehicleBlocks() {
+        BlockedEdgesEdgeFilter filter = new BlockedEdgesEdgeFilter(encodingManager.getEncoder(FlagEncoderNames.HEAVYVEHICLE), _snapshot);
+
+        assertFalse(filter.accept(_edges[0]));
+        assertFalse(filter.accept(_edges[1]));
+        assertTrue(filter.accept(_edges[2]));
+    }
+
+    @Test
+    public void TestEmptySnapshotAcceptsAll() {
+        BlockedEdgesEdgeFilter filter = new BlockedEdgesEdgeFilter(encodingManager.getEncoder(FlagEncoderNames.HEAVYVEHICLE), TrafficSnapshot.EMPTY);
+
+        for (EdgeIteratorState edge : _edges)
+            assertTrue(filter.accept(edge));
+    }
+}
@@ -114,6 +114,35 @@ public class CountryBordersReaderTest {
         assertEquals("country3", polys[0].getName());
     }
 
+    /**
+     * Test that consecutive lookups of nearby coordinates are not answered with the candidates of the previous lookup
+     */
+    @Test
+    public void TestGetCandidateCountryConsecutive() {
+        CountryBordersPolygon[] polys = _reader.getCandidateCountry(new Coordinate(0.5, 0.5));
+        assertEquals(1, polys.length);
+        assertEquals("country1", polys[0].getName());
+
+        polys = _reader.getCandidateCountry(new Coordinate(0.9, 0.2));
+        assertEquals(1, polys.length);
+        assertEquals("country1", polys[0].getName());
+
+        polys = _reader.getCandidateCountry(new Coordinate(1, 1));
+        assertEquals(2, polys.length);
+        assertEquals("country1", polys[0].getName());
+        assertEquals("country2", polys[1].getName());
+
+        polys = _reader.getCandidateCountry(new Coordinate(1.5, 1.5));
+        assertEquals(1, polys.length);
+        assertEquals("country2", polys[0].getName());
+
+        polys = _reader.getCandidateCountry(new Coordinate(1.5, 0.5));
+        assertEquals(0, polys.length);
+
+        assertEquals(0, _reader.getCountry(new Coordinate(-0.2, -0.2)).length);
+        assertEquals(1, _reader.getCountry(new Coordinate(-0.9, -0.8)).length);
+    }
+
     /**
      * Test that the correct id is returned for a country of the given local name
      */
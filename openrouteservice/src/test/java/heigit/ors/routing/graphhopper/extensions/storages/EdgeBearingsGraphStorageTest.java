@@ -0,0 +1,53 @@
+package heigit.ors.routing.graphhopper.extensions.storages;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EdgeBearingsGraphStorageTest {
+    private static final double PRECISION = 360.0 / 256;
+
+    private final EdgeBearingsGraphStorage _storage;
+    private final byte[] _buffer = new byte[1];
+
+    public EdgeBearingsGraphStorageTest() {
+        _storage = new EdgeBearingsGraphStorage();
+        _storage.init();
+        _storage.create(2);
+    }
+
+    @Test
+    public void TestBearingsInStoredDirection() {
+        _storage.setEdgeValue(1, 7, 10, 95);
+
+        assertEquals(10, _storage.getLeavingBearing(1, 7, _buffer), PRECISION);
+        assertEquals(95, _storage.getArrivingBearing(1, 3, _buffer), PRECISION);
+    }
+
+    @Test
+    public void TestBearingsInReverseDirection() {
+        _storage.setEdgeValue(1, 7, 10, 270);
+
+        assertEquals(90, _storage.getLeavingBearing(1, 3, _buffer), PRECISION);
+        assertEquals(190, _storage.getArrivingBearing(1, 7, _buffer), PRECISION);
+    }
+
+    @Test
+    public void TestBearingWrapsAround() {
+        _storage.setEdgeValue(0, 0, 359.9, 0);
+
+        assertEquals(0, _storage.getLeavingBearing(0, 0, _buffer), PRECISION);
+        assertEquals(180, _storage.getArrivingBearing(0, 0, _buffer) % 360, PRECISION);
+    }
+
+    @Test
+    public void TestEdgesWithoutEntry() {
+        _storage.setEdgeValue(1, 0, 10, 95);
+
+        assertEquals(10, _storage.getLeavingBearing(1, 0, _buffer), PRECISION);
+        assertTrue(Double.isNaN(_storage.getLeavingBearing(0, 0, _buffer)));
+        assertTrue(Double.isNaN(_storage.getArrivingBearing(0, 1, _buffer)));
+        assertTrue(Double.isNaN(_storage.getLeavingBearing(100000, 0, _buffer)));
+    }
+}
@@ -0,0 +1,74 @@
+package heigit.ors.routing.graphhopper.extensions.storages;
+
+import com.graphhopper.storage.RAMDirectory;
+import heigit.ors.routing.graphhopper.extensions.VehicleDimensionRestrictions;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class HeavyVehicleRestrictionMasksTest {
+    private final HeavyVehicleAttributesGraphStorage _storage;
+
+    public HeavyVehicleRestrictionMasksTest() {
+        _storage = new HeavyVehicleAttributesGraphStorage(true);
+        _storage.init(null, new RAMDirectory(""));
+        _storage.create(3);
+
+        // height 3.5, weight 7.5
+        _storage.setEdgeValue(0, 0, 0, new double[] {3.5, 7.5, 0, 0, 0});
+        _storage.setEdgeValue(1, 0, 0, null);
+        // width 2.2
+        _storage.setEdgeValue(2, 0, 0, new double[] {0, 0, 2.2, 0, 0});
+    }
+
+    private float[] dimensions(float height, float weight, float width) {
+        float[] dims = new float[VehicleDimensionRestrictions.Count];
+        dims[VehicleDimensionRestrictions.MaxHeight] = height;
+        dims[VehicleDimensionRestrictions.MaxWeight] = weight;
+        dims[VehicleDimensionRestrictions.MaxWidth] = width;
+        return dims;
+    }
+
+    @Test
+    public void TestMaskIsBuiltOnRepeatedRequest() {
+        HeavyVehicleRestrictionMasks masks = _storage.getRestrictionMasks();
+
+        assertNull(masks.getMask(dimensions(4f, 0, 0)));
+        long[] mask = masks.getMask(dimensions(4f, 0, 0));
+        assertNotNull(mask);
+        assertSame(mask, masks.getMask(dimensions(4f, 0, 0)));
+
+        assertFalse(HeavyVehicleRestrictionMasks.isPassable(mask, 0));
+        assertTrue(HeavyVehicleRestrictionMasks.isPassable(mask, 1));
+        assertTrue(HeavyVehicleRestrictionMasks.isPassable(mask, 2));
+        // edges without an entry are not restricted
+        assertTrue(HeavyVehicleRestrictionMasks.isPassable(mask, 63));
+    }
+
+    @Test
+    public void TestMaskPerDimensions() {
+        HeavyVehicleRestrictionMasks masks = _storage.getRestrictionMasks();
+
+        masks.getMask(dimensions(3f, 7f, 2.5f));
+        long[] mask = masks.getMask(dimensions(3f, 7f, 2.5f));
+
+        assertTrue(HeavyVehicleRestrictionMasks.isPassable(mask, 0));
+        assertTrue(HeavyVehicleRestrictionMasks.isPassable(mask, 1));
+        assertFalse(HeavyVehicleRestrictionMasks.isPassable(mask, 2));
+    }
+
+    @Test
+    public void TestMasksClearedOnUpdate() {
+        HeavyVehicleRestrictionMasks masks = _storage.getRestrictionMasks();
+
+        masks.getMask(dimensions(4f, 0, 0));
+        assertNotNull(masks.getMask(dimensions(4f, 0, 0)));
+
+        _storage.setEdgeValue(1, 0, 0, null);
+        assertNull(masks.getMask(dimensions(4f, 0, 0)));
+    }
+}
@@ -0,0 +1,57 @@
+package heigit.ors.routing.graphhopper.extensions.storages;
+
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class SpeedProfilesGraphStorageTest {
+    private final SpeedProfilesGraphStorage _storage;
+    private final byte[] _buffer = new byte[2];
+
+    public SpeedProfilesGraphStorageTest() {
+        _storage = new SpeedProfilesGraphStorage();
+        _storage.init();
+        _storage.create(1);
+    }
+
+    @Test
+    public void TestEdgeSpeedByTime() {
+        double[] speeds = new double[SpeedProfilesGraphStorage.BUCKETS_PER_WEEK];
+        Arrays.fill(speeds, 50);
+        // Monday 08:00 - 08:15
+        speeds[8 * 4] = 20;
+
+        int profileId = _storage.addProfile(speeds);
+        _storage.setEdgeValue(3, profileId);
+
+        long mondayMorning = SpeedProfilesGraphStorage.getWeekTime(LocalDateTime.parse("2018-11-05T08:10"));
+        long tuesdayMorning = SpeedProfilesGraphStorage.getWeekTime(LocalDateTime.parse("2018-11-06T08:10"));
+
+        assertEquals(20, _storage.getEdgeSpeed(3, mondayMorning, _buffer), 0);
+        assertEquals(50, _storage.getEdgeSpeed(3, tuesdayMorning, _buffer), 0);
+        // the time wraps around at the end of the week
+        assertEquals(20, _storage.getEdgeSpeed(3, mondayMorning + SpeedProfilesGraphStorage.WEEK_MILLIS, _buffer), 0);
+    }
+
+    @Test
+    public void TestEdgesWithoutProfile() {
+        double[] speeds = new double[SpeedProfilesGraphStorage.BUCKETS_PER_WEEK];
+        Arrays.fill(speeds, 80);
+        _storage.setEdgeValue(1, _storage.addProfile(speeds));
+
+        assertEquals(0, _storage.getEdgeProfile(0, _buffer));
+        assertEquals(0, _storage.getEdgeSpeed(0, 0, _buffer), 0);
+        // beyond the allocated edges
+        assertEquals(0, _storage.getEdgeProfile(100000, _buffer));
+    }
+
+    @Test
+    public void TestWeekTime() {
+        assertEquals(0, SpeedProfilesGraphStorage.getWeekTime(LocalDateTime.parse("2018-11-05T00:00")));
+        assertEquals(6 * 24 * 3600 * 1000L + 90 * 60 * 1000L, SpeedProfilesGraphStorage.getWeekTime(LocalDateTime.parse("2018-11-11T01:30")));
+        assertEquals(SpeedProfilesGraphStorage.BUCKETS_PER_WEEK - 1, SpeedProfilesGraphStorage.getBucket(-1));
+    }
+}
@@ -0,0 +1,74 @@
+package heigit.ors.routing.graphhopper.extensions.util;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+public class OsmIdLevelIndexTest {
+    private static class DirectQuantizer implements OsmIdLevelIndex.LevelQuantizer {
+        @Override
+        public void prepare(double[] values, int count) {
+        }
+
+        @Override
+        public byte getLevel(double value) {
+            return (byte) value;
+        }
+    }
+
+    private File createCSV(String content) throws IOException {
+        File csv = File.createTempFile("osmidlevels", ".csv");
+        csv.deleteOnExit();
+        FileWriter writer = new FileWriter(csv);
+        writer.write(content);
+        writer.close();
+        new File(csv.getAbsolutePath() + ".idx").deleteOnExit();
+        return csv;
+    }
+
+    @Test
+    public void TestLookup() throws IOException {
+        File csv = createCSV("osm_id,level\n300,3\n10,1\n\n20000000000,7\n25,2\n");
+
+        OsmIdLevelIndex index = OsmIdLevelIndex.loadOrCreate(csv.getAbsolutePath(), null, new DirectQuantizer());
+
+        assertEquals(4, index.size());
+        assertEquals(1, index.getLevel(10, (byte) 0));
+        assertEquals(2, index.getLevel(25, (byte) 0));
+        assertEquals(3, index.getLevel(300, (byte) 0));
+        assertEquals(7, index.getLevel(20000000000L, (byte) 0));
+        assertEquals(-1, index.getLevel(11, (byte) -1));
+        assertEquals(-1, index.getLevel(1, (byte) -1));
+        assertEquals(-1, index.getLevel(400, (byte) -1));
+        index.close();
+    }
+
+    @Test
+    public void TestSemicolonSeparatorAndReload() throws IOException {
+        File csv = createCSV("osm_id;value\n5;4\n6;5\n");
+        String indexFile = csv.getAbsolutePath() + ".idx";
+
+        OsmIdLevelIndex.createFromCSV(csv.getAbsolutePath(), indexFile, new DirectQuantizer());
+        OsmIdLevelIndex index = OsmIdLevelIndex.open(indexFile);
+
+        assertEquals(2, index.size());
+        assertEquals(4, index.getLevel(5, (byte) 0));
+        assertEquals(5, index.getLevel(6, (byte) 0));
+        index.close();
+    }
+
+    @Test
+    public void TestEmptyIndex() throws IOException {
+        File csv = createCSV("osm_id,level\n");
+
+        OsmIdLevelIndex index = OsmIdLevelIndex.loadOrCreate(csv.getAbsolutePath(), null, new DirectQuantizer());
+
+        assertEquals(0, index.size());
+        assertEquals(9, index.getLevel(5, (byte) 9));
+        index.close();
+    }
+}
@@ -0,0 +1,49 @@
+package heigit.ors.routing.graphhopper.extensions.util;
+
+import com.graphhopper.storage.RAMDirectory;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class OsmWayEdgesIndexTest {
+    private OsmWayEdgesIndex createIndex() {
+        OsmWayEdgesIndex index = new OsmWayEdgesIndex(new RAMDirectory()).create(4);
+        index.addEdge(0, 20000000000L);
+        index.addEdge(1, 300);
+        index.addEdge(2, 20000000000L);
+        // edge 3 belongs to a way which is not indexed
+        index.addEdge(4, 300);
+        index.addEdge(5, 20000000000L);
+        index.build();
+        return index;
+    }
+
+    @Test
+    public void TestEdgeToWay() {
+        OsmWayEdgesIndex index = createIndex();
+
+        assertEquals(20000000000L, index.getOsmId(0));
+        assertEquals(300, index.getOsmId(4));
+        assertEquals(0, index.getOsmId(3));
+        assertEquals(0, index.getOsmId(100));
+    }
+
+    @Test
+    public void TestWayToEdges() {
+        OsmWayEdgesIndex index = createIndex();
+
+        assertEquals(2, index.getWaysCount());
+        assertEquals(-1, index.getWayIndex(10));
+
+        int way = index.getWayIndex(300);
+        assertEquals(2, index.getEdgesEnd(way) - index.getEdgesBegin(way));
+        assertEquals(1, index.getEdge(index.getEdgesBegin(way)));
+        assertEquals(4, index.getEdge(index.getEdgesBegin(way) + 1));
+
+        way = index.getWayIndex(20000000000L);
+        assertEquals(3, index.getEdgesEnd(way) - index.getEdgesBegin(way));
+        assertEquals(0, index.getEdge(index.getEdgesBegin(way)));
+        assertEquals(2, index.getEdge(index.getEdgesBegin(way) + 1));
+        assertEquals(5, index.getEdge(index.getEdgesBegin(way) + 2));
+    }
+}
@@ -0,0 +1,93 @@
+package heigit.ors.routing.graphhopper.extensions.weighting;
+
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.ExtendedStorageSequence;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.storage.GraphExtension;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.PMap;
+import heigit.ors.routing.graphhopper.extensions.ORSDefaultFlagEncoderFactory;
+import heigit.ors.routing.graphhopper.extensions.flagencoders.FlagEncoderNames;
+import heigit.ors.routing.graphhopper.extensions.storages.GreenIndexGraphStorage;
+import heigit.ors.routing.graphhopper.extensions.storages.HillIndexGraphStorage;
+import heigit.ors.routing.graphhopper.extensions.storages.NoiseIndexGraphStorage;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+
+public class SoftWeightingEvaluatorTest {
+    private final EncodingManager encodingManager = new EncodingManager(new ORSDefaultFlagEncoderFactory(), FlagEncoderNames.CAR_ORS, 4);
+    private final FlagEncoder encoder = encodingManager.getEncoder(FlagEncoderNames.CAR_ORS);
+    private final GraphHopperStorage _graphStorage;
+    private final EdgeIteratorState[] _edges;
+
+    public SoftWeightingEvaluatorTest() {
+        GreenIndexGraphStorage green = new GreenIndexGraphStorage();
+        NoiseIndexGraphStorage noise = new NoiseIndexGraphStorage();
+        HillIndexGraphStorage hills = new HillIndexGraphStorage(new HashMap<String, String>());
+
+        ArrayList<GraphExtension> extensions = new ArrayList<>();
+        extensions.add(green);
+        extensions.add(noise);
+        extensions.add(hills);
+
+        _graphStorage = new GraphHopperStorage(new GHDirectory("", DAType.RAM_STORE), encodingManager, false, new ExtendedStorageSequence(extensions));
+        _graphStorage.create(3);
+
+        _edges = new EdgeIteratorState[4];
+        for (int i = 0; i < _edges.length; i++) {
+            _edges[i] = _graphStorage.edge(i, i + 1, 100, true);
+            green.setEdgeValue(_edges[i].getEdge(), (byte) (i * 20));
+            noise.setEdgeValue(_edges[i].getEdge(), (byte) i);
+            hills.setEdgeValue(_edges[i].getEdge(), i * 4, 15 - i * 4);
+        }
+    }
+
+    private PMap props(String key, String value) {
+        PMap map = new PMap();
+        map.put(key, value);
+        return map;
+    }
+
+    private void assertSameWeights(Weighting[] weightings) {
+        SoftWeightingEvaluator evaluator = new SoftWeightingEvaluator(weightings);
+
+        for (EdgeIteratorState edge : _edges) {
+            for (EdgeIteratorState state : new EdgeIteratorState[] { edge, edge.detach(true) }) {
+                double expected = 0;
+                for (Weighting w : weightings)
+                    expected += w.calcWeight(state, false, -1);
+
+                assertEquals(expected, evaluator.calcWeight(state, false, -1), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void TestTableWeightings() {
+        assertSameWeights(new Weighting[] {
+                new GreenWeighting(encoder, props("factor", "0.8"), _graphStorage),
+                new QuietWeighting(encoder, props("factor", "0.5"), _graphStorage),
+                new SteepnessDifficultyWeighting(encoder, props("level", "2"), _graphStorage),
+                new AvoidHillsWeighting(encoder, props("steepness_maximum", "6"), _graphStorage)
+        });
+    }
+
+    @Test
+    public void TestWeightingsWithoutStorage() {
+        GraphHopperStorage emptyStorage = new GraphHopperStorage(new GHDirectory("", DAType.RAM_STORE), encodingManager, false, new GraphExtension.NoOpExtension());
+
+        assertSameWeights(new Weighting[] {
+                new GreenWeighting(encoder, props("factor", "0.8"), emptyStorage),
+                new SteepnessDifficultyWeighting(encoder, props("level", "1"), _graphStorage),
+                new QuietWeighting(encoder, props("factor", "1"), _graphStorage)
+        });
+    }
+}
@@ -0,0 +1,74 @@
+package heigit.ors.routing.graphhopper.extensions.weighting;
+
+import com.graphhopper.coll.GHIntObjectHashMap;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.weighting.FastestWeighting;
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.storage.GraphExtension;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.util.EdgeIteratorState;
+import heigit.ors.routing.graphhopper.extensions.ORSDefaultFlagEncoderFactory;
+import heigit.ors.routing.graphhopper.extensions.flagencoders.FlagEncoderNames;
+import heigit.ors.routing.traffic.EdgeInfo;
+import heigit.ors.routing.traffic.TrafficSnapshot;
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+
+public class TrafficAvoidWeightingTest {
+    private final EncodingManager encodingManager = new EncodingManager(new ORSDefaultFlagEncoderFactory(), FlagEncoderNames.CAR_ORS, 4);
+    private final FlagEncoder encoder = encodingManager.getEncoder(FlagEncoderNames.CAR_ORS);
+    private final GraphHopperStorage _graphStorage;
+    private final EdgeIteratorState[] _edges;
+    private final TrafficAvoidWeighting _weighting;
+
+    public TrafficAvoidWeightingTest() {
+        _graphStorage = new GraphHopperStorage(new GHDirectory("", DAType.RAM_STORE), encodingManager, false, new GraphExtension.NoOpExtension());
+        _graphStorage.create(3);
+
+        // congestion with a factor of 0.2, congestion at 10 km/h, a delay of 30 minutes and a code which is not known
+        short[][] codes = { null, { 2 }, { 70 }, { 1603 }, { 2, 70 }, { 9999 } };
+        GHIntObjectHashMap<short[]> avoidCodes = new GHIntObjectHashMap<>();
+        _edges = new EdgeIteratorState[codes.length];
+        for (int i = 0; i < _edges.length; i++) {
+            _edges[i] = _graphStorage.edge(i, i + 1, 1000, true);
+            _edges[i].setFlags(encoder.setProperties(50, true, true));
+            if (codes[i] != null)
+                avoidCodes.put(_edges[i].getEdge(), codes[i]);
+        }
+
+        TrafficSnapshot snapshot = new TrafficSnapshot(new Date(), new GHIntObjectHashMap<EdgeInfo>(), avoidCodes, new BitSet(), new BitSet());
+        _weighting = new TrafficAvoidWeighting(new FastestWeighting(encoder), encoder, snapshot);
+    }
+
+    private double travelTime(double speed) {
+        return 1000 * 3600 / (1000 * speed);
+    }
+
+    @Test
+    public void TestAvoidCodes() {
+        double speed = encoder.getSpeed(_edges[0].getFlags());
+
+        assertEquals(travelTime(speed), _weighting.calcWeight(_edges[0], false, -1), 1e-9);
+        assertEquals(travelTime(0.2 * speed), _weighting.calcWeight(_edges[1], false, -1), 1e-6);
+        assertEquals(travelTime(10), _weighting.calcWeight(_edges[2], false, -1), 1e-9);
+        assertEquals(30 * 60 + travelTime(speed), _weighting.calcWeight(_edges[3], false, -1), 1e-9);
+        // a given speed takes precedence over a speed factor
+        assertEquals(travelTime(10), _weighting.calcWeight(_edges[4], false, -1), 1e-9);
+        assertEquals(travelTime(speed), _weighting.calcWeight(_edges[5], false, -1), 1e-9);
+    }
+
+    @Test
+    public void TestWithoutSnapshot() {
+        TrafficAvoidWeighting weighting = new TrafficAvoidWeighting(new FastestWeighting(encoder), encoder, null);
+        double speed = encoder.getSpeed(_edges[0].getFlags());
+
+        for (EdgeIteratorState edge : _edges)
+            assertEquals(travelTime(speed), weighting.calcWeight(edge, false, -1), 1e-9);
+    }
+}
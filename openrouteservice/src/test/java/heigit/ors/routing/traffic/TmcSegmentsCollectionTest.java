@@ -0,0 +1,39 @@
+package heigit.ors.routing.traffic;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TmcSegmentsCollectionTest {
+    private final TmcSegmentsCollection _segments;
+
+    public TmcSegmentsCollectionTest() {
+        List<TmcSegment> list = new ArrayList<>();
+        list.add(new TmcSegment(1, "A5", 100, 101, 0, 500, null, Arrays.asList(1, 2)));
+        list.add(new TmcSegment(1, "A5", 101, 100, 1, 500, null, Arrays.asList(3)));
+        list.add(new TmcSegment(1, "A5", 101, 102, 0, 700, null, Arrays.asList(4)));
+        _segments = new TmcSegmentsCollection(list);
+    }
+
+    @Test
+    public void TestLookupIsIndependentOfOrder() {
+        List<TmcSegment> forward = _segments.getSegments(100, 101);
+        assertEquals(2, forward.size());
+        assertEquals(forward, _segments.getSegments(101, 100));
+
+        List<TmcSegment> next = _segments.getSegments(102, 101);
+        assertEquals(1, next.size());
+        assertEquals(Integer.valueOf(102), next.get(0).getTo());
+    }
+
+    @Test
+    public void TestUnknownLocations() {
+        assertTrue(_segments.getSegments(100, 102).isEmpty());
+        assertTrue(_segments.getSegments(-1, 100).isEmpty());
+    }
+}
@@ -0,0 +1,82 @@
+package heigit.ors.routing.traffic;
+
+import com.graphhopper.coll.GHIntObjectHashMap;
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.Date;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TrafficSnapshotTest {
+    static TrafficSnapshot createSnapshot(int[] blocked, int[] blockedHeavyVehicle, int[] avoidEdges, short[] avoidCodes) {
+        GHIntObjectHashMap<EdgeInfo> edges = new GHIntObjectHashMap<>();
+        GHIntObjectHashMap<short[]> codes = new GHIntObjectHashMap<>();
+        for (int edgeId : avoidEdges) {
+            codes.put(edgeId, avoidCodes);
+            edges.put(edgeId, new EdgeInfo(edgeId, avoidCodes, "message " + edgeId));
+        }
+
+        BitSet blockedEdges = new BitSet();
+        for (int edgeId : blocked)
+            blockedEdges.set(edgeId);
+        BitSet blockedEdgesHeavyVehicle = new BitSet();
+        for (int edgeId : blockedHeavyVehicle)
+            blockedEdgesHeavyVehicle.set(edgeId);
+
+        return new TrafficSnapshot(new Date(0), edges, codes, blockedEdges, blockedEdgesHeavyVehicle);
+    }
+
+    @Test
+    public void TestLookups() {
+        TrafficSnapshot snapshot = createSnapshot(new int[] { 1, 100 }, new int[] { 2 }, new int[] { 3 }, new short[] { 70, 1603 });
+
+        assertTrue(snapshot.isBlocked(1));
+        assertTrue(snapshot.isBlocked(100));
+        assertFalse(snapshot.isBlocked(2));
+        assertFalse(snapshot.isBlocked(-1));
+        assertTrue(snapshot.isBlockedForHeavyVehicles(2));
+        assertFalse(snapshot.isBlockedForHeavyVehicles(1));
+        assertFalse(snapshot.isBlockedForHeavyVehicles(-1));
+
+        assertArrayEquals(new short[] { 70, 1603 }, snapshot.getAvoidCodes(3));
+        assertNull(snapshot.getAvoidCodes(1));
+        assertTrue(snapshot.hasAvoidEdges());
+        assertEquals(snapshot.getEdgeInfo(3).getCodesAsString() + " | message 3", snapshot.getEdgeMessage(3));
+        assertNull(snapshot.getEdgeMessage(4));
+    }
+
+    @Test
+    public void TestBlockedEdgesByVehicle() {
+        TrafficSnapshot heavyVehicleOnly = createSnapshot(new int[0], new int[] { 5 }, new int[0], null);
+        assertFalse(heavyVehicleOnly.hasBlockedEdges(false));
+        assertTrue(heavyVehicleOnly.hasBlockedEdges(true));
+
+        assertFalse(TrafficSnapshot.EMPTY.hasBlockedEdges(true));
+        assertFalse(TrafficSnapshot.EMPTY.hasAvoidEdges());
+        assertNull(TrafficSnapshot.EMPTY.getEdgeInfo(0));
+    }
+
+    @Test
+    public void TestCurrentSnapshotPerThread() throws Exception {
+        TrafficSnapshot snapshot = createSnapshot(new int[] { 1 }, new int[0], new int[0], null);
+        TrafficSnapshot.setCurrent(snapshot);
+        try {
+            assertSame(snapshot, TrafficSnapshot.current());
+
+            TrafficSnapshot[] other = new TrafficSnapshot[] { snapshot };
+            Thread thread = new Thread(() -> other[0] = TrafficSnapshot.current());
+            thread.start();
+            thread.join();
+            assertNull(other[0]);
+        } finally {
+            TrafficSnapshot.setCurrent(null);
+        }
+        assertNull(TrafficSnapshot.current());
+    }
+}
@@ -0,0 +1,47 @@
+package heigit.ors.routing.traffic;
+
+import com.vividsolutions.jts.geom.Envelope;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TrafficTilesCacheTest {
+    @Test
+    public void TestTileEnvelope() {
+        Envelope world = TrafficTilesCache.getTileEnvelope(0, 0, 0);
+        assertEquals(-180.0, world.getMinX(), 1e-9);
+        assertEquals(180.0, world.getMaxX(), 1e-9);
+        assertEquals(-85.0511, world.getMinY(), 1e-4);
+        assertEquals(85.0511, world.getMaxY(), 1e-4);
+
+        // tile containing Heidelberg
+        Envelope env = TrafficTilesCache.getTileEnvelope(12, 2146, 1399);
+        assertTrue(env.contains(8.68, 49.41));
+    }
+
+    @Test
+    public void TestValidTiles() {
+        assertTrue(TrafficTilesCache.isValidTile(0, 0, 0));
+        assertTrue(TrafficTilesCache.isValidTile(3, 7, 7));
+        assertFalse(TrafficTilesCache.isValidTile(3, 8, 0));
+        assertFalse(TrafficTilesCache.isValidTile(-1, 0, 0));
+        assertFalse(TrafficTilesCache.isValidTile(TrafficTilesCache.MAX_ZOOM + 1, 0, 0));
+    }
+
+    @Test
+    public void TestTilesAreKeyedByZoomAndPosition() {
+        TrafficTilesCache cache = new TrafficTilesCache(new Date());
+        byte[] data = new byte[] {1, 2, 3};
+        cache.putTile(10, 5, 6, data);
+
+        assertTrue(Arrays.equals(data, cache.getTile(10, 5, 6)));
+        assertNull(cache.getTile(10, 6, 5));
+        assertNull(cache.getTile(11, 5, 6));
+    }
+}
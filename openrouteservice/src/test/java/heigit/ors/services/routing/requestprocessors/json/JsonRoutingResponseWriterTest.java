@@ -0,0 +1,155 @@
+package heigit.ors.services.routing.requestprocessors.json;
+
+import com.graphhopper.PathWrapper;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.shapes.BBox;
+import com.vividsolutions.jts.geom.Coordinate;
+import heigit.ors.common.DistanceUnit;
+import heigit.ors.routing.RouteExtraInfo;
+import heigit.ors.routing.RouteResult;
+import heigit.ors.routing.RouteSegment;
+import heigit.ors.routing.RouteSegmentItem;
+import heigit.ors.routing.RouteStep;
+import heigit.ors.routing.RouteStepManeuver;
+import heigit.ors.routing.RouteSummary;
+import heigit.ors.routing.RoutingRequest;
+import heigit.ors.util.JsonStreamWriter;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JsonRoutingResponseWriterTest {
+    @Test
+    public void TestEncodedPolyline() throws Exception {
+        assertSameOutput(createRequest(null, false), new RouteResult[] { createRoute(false) });
+    }
+
+    @Test
+    public void TestGeoJsonWithElevation() throws Exception {
+        assertSameOutput(createRequest("geojson", true), new RouteResult[] { createRoute(true) });
+    }
+
+    @Test
+    public void TestPolylineOfSeveralRoutes() throws Exception {
+        assertSameOutput(createRequest("polyline", false), new RouteResult[] { createRoute(false), createRoute(false) });
+    }
+
+    @Test
+    public void TestWithoutInstructions() throws Exception {
+        RoutingRequest request = createRequest("geojson", false);
+        request.setIncludeInstructions(false);
+        request.setAttributes(null);
+
+        assertSameOutput(request, new RouteResult[] { createRoute(false) });
+    }
+
+    private static void assertSameOutput(RoutingRequest request, RouteResult[] routes) throws Exception {
+        BBox expectedBBox = new BBox(0, 0, 0, 0);
+        String expected = JsonRoutingResponseWriter.toJsonArray(request, routes, expectedBBox).toString();
+
+        BBox bbox = new BBox(0, 0, 0, 0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // a small buffer has to be drained many times while writing
+        JsonStreamWriter writer = new JsonStreamWriter(out, 64);
+        JsonRoutingResponseWriter.writeRoutes(writer, request, routes, bbox);
+        writer.flush();
+
+        assertEquals(expected, new String(out.toByteArray(), "UTF-8"));
+        assertTrue(Arrays.equals(expected.getBytes("UTF-8"), out.toByteArray()));
+        assertEquals(expectedBBox.toString(), bbox.toString());
+    }
+
+    private static RoutingRequest createRequest(String geometryFormat, boolean includeElevation) {
+        RoutingRequest request = new RoutingRequest();
+        request.setIncludeGeometry(true);
+        request.setIncludeInstructions(true);
+        request.setIncludeElevation(includeElevation);
+        request.setIncludeManeuvers(true);
+        request.setIncludeRoundaboutExits(true);
+        request.setGeometryFormat(geometryFormat);
+        request.setUnits(DistanceUnit.Meters);
+        request.setAttributes(new String[] { "detourfactor", "percentage", "avgspeed" });
+
+        return request;
+    }
+
+    private static RouteResult createRoute(boolean includeElevation) throws Exception {
+        PointList points = new PointList(4, includeElevation);
+        if (includeElevation) {
+            points.add(49.4100001, 8.6812345, 110.3);
+            points.add(49.4153, 8.69, 112.0);
+            points.add(49.42, 8.7003, 0.1 + 0.2);
+            points.add(49.4234567, 8.7123456, 121.75);
+        } else {
+            points.add(49.4100001, 8.6812345);
+            points.add(49.4153, 8.69);
+            points.add(49.42, 8.7003);
+            points.add(49.4234567, 8.7123456);
+        }
+
+        RouteResult route = new RouteResult(1);
+        route.addPoints(points, false, includeElevation);
+        route.setWayPointsIndices(new int[] { 0, 3 });
+
+        RouteSummary summary = route.getSummary();
+        summary.setDistance(1234.5);
+        summary.setDuration(0.1 + 0.2);
+        summary.setAscent(12.3);
+        summary.setDescent(0.0005);
+        summary.setAverageSpeed(14.82);
+        summary.setBBox(new BBox(8.6812345, 8.7123456, 49.4100001, 49.4234567));
+
+        PathWrapper path = new PathWrapper();
+        path.setPoints(points);
+        path.setDistance(1234.5);
+        path.setTime(301000);
+        RouteSegment segment = new RouteSegment(path, DistanceUnit.Meters);
+        segment.setDetourFactor(1.37);
+
+        RouteStep step = new RouteStep();
+        step.setDistance(412.3);
+        step.setDuration(60.5);
+        step.setType(0);
+        step.setInstruction("Turn left onto <b>Hauptstra\u00dfe</b> \"B3\"\t/ \ud83d\ude00 \u2028");
+        step.setName("Hauptstra\u00dfe");
+        step.setWayPoints(new int[] { 0, 2 });
+        RouteStepManeuver maneuver = new RouteStepManeuver();
+        maneuver.setBearingBefore(12);
+        maneuver.setBearingAfter(283);
+        maneuver.setLocation(new Coordinate(8.6812345, 49.4100001));
+        step.setManeuver(maneuver);
+        segment.addStep(step);
+
+        RouteStep roundabout = new RouteStep();
+        roundabout.setDistance(822.2);
+        roundabout.setDuration(12345678.9);
+        roundabout.setType(7);
+        roundabout.setInstruction(null);
+        roundabout.setMessage("Restricted \\ access");
+        roundabout.setMessageType(1);
+        roundabout.setExitNumber(2);
+        roundabout.setRoundaboutExitBearings(new int[] { 90, 180, 270 });
+        roundabout.setWayPoints(new int[] { 2, 3 });
+        segment.addStep(roundabout);
+        route.addSegment(segment);
+
+        RouteExtraInfo surface = new RouteExtraInfo("surface");
+        surface.add(new RouteSegmentItem(0, 2, 1, 500.0));
+        surface.add(new RouteSegmentItem(2, 3, 3, 734.5));
+        route.addExtraInfo(surface);
+
+        RouteExtraInfo steepness = new RouteExtraInfo("steepness");
+        steepness.setFactor(100);
+        steepness.add(new RouteSegmentItem(0, 1, 7, 300.0));
+        steepness.add(new RouteSegmentItem(1, 3, -33, 934.5));
+        route.addExtraInfo(steepness);
+
+        route.addExtraInfo(new RouteExtraInfo("tollways"));
+
+        return route;
+    }
+}
@@ -0,0 +1,300 @@
+package heigit.ors.servlet.filters;
+
+import org.junit.Test;
+
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CompressionFilterTest {
+    private static final byte[] CONTENT = createContent(5000);
+
+    @Test
+    public void TestSmallResponseIsNotCompressed() throws Exception {
+        StubResponse response = new StubResponse();
+        CompressionResponseWrapper wrapper = new CompressionResponseWrapper(response.proxy, new CompressionSettings(), "gzip", null, null);
+        wrapper.setContentType("application/json");
+        byte[] content = Arrays.copyOf(CONTENT, 100);
+        wrapper.getOutputStream().write(content);
+        wrapper.finishResponse();
+
+        assertNull(response.getHeader("Content-Encoding"));
+        assertEquals(100, response.contentLength);
+        assertTrue(Arrays.equals(content, response.body.toByteArray()));
+    }
+
+    @Test
+    public void TestLevelZeroDisablesCompressionOfContentType() throws Exception {
+        CompressionSettings settings = new CompressionSettings();
+        settings.setLevels("image/*=0, *=6");
+
+        StubResponse response = new StubResponse();
+        CompressionResponseWrapper wrapper = new CompressionResponseWrapper(response.proxy, settings, "gzip", null, null);
+        wrapper.setContentType("image/png");
+        wrapper.getOutputStream().write(CONTENT);
+        wrapper.finishResponse();
+
+        assertNull(response.getHeader("Content-Encoding"));
+        assertTrue(Arrays.equals(CONTENT, response.body.toByteArray()));
+
+        response = new StubResponse();
+        wrapper = new CompressionResponseWrapper(response.proxy, settings, "gzip", null, null);
+        wrapper.setContentType("application/json");
+        wrapper.getOutputStream().write(CONTENT);
+        wrapper.finishResponse();
+
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertTrue(Arrays.equals(CONTENT, decode(new GZIPInputStream(new ByteArrayInputStream(response.body.toByteArray())))));
+    }
+
+    @Test
+    public void TestDeflateUsesZlibFormat() throws Exception {
+        StubResponse response = new StubResponse();
+        CompressionResponseWrapper wrapper = new CompressionResponseWrapper(response.proxy, new CompressionSettings(), "deflate", null, null);
+        wrapper.setContentType("application/json");
+        ServletOutputStream out = wrapper.getOutputStream();
+        out.write(CONTENT, 0, 2000);
+        out.flush();
+        out.write(CONTENT, 2000, CONTENT.length - 2000);
+        wrapper.finishResponse();
+
+        byte[] body = response.body.toByteArray();
+        assertEquals("deflate", response.getHeader("Content-Encoding"));
+        // zlib header of the deflate method with a 32 KB window
+        assertEquals(0x78, body[0] & 0xFF);
+        assertEquals(0, ((body[0] & 0xFF) << 8 | (body[1] & 0xFF)) % 31);
+        assertTrue(Arrays.equals(CONTENT, decode(new InflaterInputStream(new ByteArrayInputStream(body)))));
+    }
+
+    @Test
+    public void TestReleasedResponseIsNeitherCompletedNorCached() throws Exception {
+        CompressedResponseCache cache = new CompressedResponseCache(1000000);
+        StubResponse response = new StubResponse();
+        CompressionResponseWrapper wrapper = new CompressionResponseWrapper(response.proxy, new CompressionSettings(), "deflate", cache, "key");
+        wrapper.setContentType("application/json");
+        wrapper.setHeader("Cache-Control", "public, max-age=60");
+        ServletOutputStream out = wrapper.getOutputStream();
+        out.write(CONTENT);
+        int written = response.body.size();
+
+        // an asynchronous request which timed out, the container completes it afterwards
+        wrapper.releaseResponse();
+        wrapper.finishResponse();
+
+        assertEquals(written, response.body.size());
+        assertNull(cache.get("key"));
+        try {
+            out.write(CONTENT);
+            fail();
+        } catch (IOException ex) {
+        }
+    }
+
+    @Test
+    public void TestEncodedContentIsPassedThrough() throws Exception {
+        StubResponse response = new StubResponse();
+        CompressionResponseWrapper wrapper = new CompressionResponseWrapper(response.proxy, new CompressionSettings(), "br", null, null);
+        wrapper.setContentType("application/json");
+        wrapper.setHeader("Content-Encoding", "gzip");
+        wrapper.setContentLength(CONTENT.length);
+        wrapper.getOutputStream().write(CONTENT);
+        wrapper.finishResponse();
+
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertEquals(CONTENT.length, response.contentLength);
+        assertTrue(Arrays.equals(CONTENT, response.body.toByteArray()));
+    }
+
+    @Test
+    public void TestCachedResponseIsReplayed() throws Exception {
+        CompressionFilter filter = new CompressionFilter();
+        filter.init(createConfig(CompressionSettings.PARAM_CACHE_SIZE, "1000000"));
+        AtomicInteger calls = new AtomicInteger();
+
+        StubResponse first = new StubResponse();
+        filter.doFilter(createRequest("gzip"), first.proxy, (req, res) -> {
+            calls.incrementAndGet();
+            HttpServletResponse response = (HttpServletResponse) res;
+            response.setContentType("application/json");
+            response.setHeader("Cache-Control", "public, max-age=60");
+            response.getOutputStream().write(CONTENT);
+        });
+
+        StubResponse second = new StubResponse();
+        filter.doFilter(createRequest("gzip"), second.proxy, (req, res) -> calls.incrementAndGet());
+
+        assertEquals(1, calls.get());
+        assertEquals("gzip", second.getHeader("Content-Encoding"));
+        assertEquals("application/json", second.contentType);
+        assertEquals("public, max-age=60", second.getHeader("Cache-Control"));
+        assertNotNull(second.getHeader("Age"));
+        assertEquals(first.body.size(), second.contentLength);
+        assertTrue(Arrays.equals(first.body.toByteArray(), second.body.toByteArray()));
+
+        // other encodings are cached separately
+        filter.doFilter(createRequest("deflate"), new StubResponse().proxy, (req, res) -> calls.incrementAndGet());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void TestCachedResponsesExpire() {
+        CompressedResponseCache cache = new CompressedResponseCache(1000000);
+        cache.put("a", new CompressedResponseCache.Entry("application/json", "max-age=10", new byte[100], 10));
+
+        long time = System.currentTimeMillis();
+        assertNotNull(cache.get("a", time));
+        assertNull(cache.get("a", time + 11000));
+        // the expired entry has been removed
+        assertNull(cache.get("a", time));
+    }
+
+    @Test
+    public void TestLeastRecentlyUsedResponsesAreEvicted() {
+        CompressedResponseCache cache = new CompressedResponseCache(8000);
+        assertEquals(1000, cache.getMaxEntrySize());
+
+        cache.put("too large", createEntry(1001));
+        assertNull(cache.get("too large"));
+
+        for (int i = 0; i < 8; i++)
+            cache.put(Integer.toString(i), createEntry(1000));
+        assertNotNull(cache.get("0"));
+
+        cache.put("8", createEntry(1000));
+        assertNotNull(cache.get("0"));
+        assertNull(cache.get("1"));
+        assertNotNull(cache.get("2"));
+        assertNotNull(cache.get("8"));
+    }
+
+    private static CompressedResponseCache.Entry createEntry(int length) {
+        return new CompressedResponseCache.Entry("application/json", "max-age=60", new byte[length], 60);
+    }
+
+    private static byte[] createContent(int count) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < count; i++)
+            sb.append(i > 0 ? "," : "").append("{\"distance\":").append(i * 7 % 1000).append('}');
+        return sb.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] decode(InputStream in) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) > 0)
+            out.write(buffer, 0, n);
+        return out.toByteArray();
+    }
+
+    private static FilterConfig createConfig(String name, String value) {
+        return (FilterConfig) Proxy.newProxyInstance(FilterConfig.class.getClassLoader(), new Class<?>[] { FilterConfig.class },
+                (proxy, method, args) -> "getInitParameter".equals(method.getName()) && name.equals(args[0]) ? value : null);
+    }
+
+    private static HttpServletRequest createRequest(String acceptEncoding) {
+        return (HttpServletRequest) Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(), new Class<?>[] { HttpServletRequest.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getHeader":
+                            return "accept-encoding".equalsIgnoreCase((String) args[0]) ? acceptEncoding : null;
+                        case "getMethod":
+                            return "GET";
+                        case "getRequestURI":
+                            return "/ors/routes";
+                        case "getQueryString":
+                            return "profile=driving-car";
+                        case "isAsyncStarted":
+                            return false;
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    /**
+     * Keeps the status, headers and body written to the response.
+     */
+    private static class StubResponse {
+        final Map<String, String> headers = new HashMap<>();
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        String contentType;
+        long contentLength = -1;
+        int status = HttpServletResponse.SC_OK;
+        final HttpServletResponse proxy;
+
+        private final ServletOutputStream _out = new ServletOutputStream() {
+            public void write(int b) {
+                body.write(b);
+            }
+
+            public boolean isReady() {
+                return true;
+            }
+
+            public void setWriteListener(WriteListener listener) {
+            }
+        };
+
+        StubResponse() {
+            proxy = (HttpServletResponse) Proxy.newProxyInstance(HttpServletResponse.class.getClassLoader(), new Class<?>[] { HttpServletResponse.class },
+                    (p, method, args) -> {
+                        switch (method.getName()) {
+                            case "getOutputStream":
+                                return _out;
+                            case "setContentType":
+                                contentType = (String) args[0];
+                                return null;
+                            case "getContentType":
+                                return contentType;
+                            case "setContentLength":
+                            case "setContentLengthLong":
+                                contentLength = ((Number) args[0]).longValue();
+                                return null;
+                            case "setHeader":
+                                headers.put(((String) args[0]).toLowerCase(Locale.ENGLISH), (String) args[1]);
+                                return null;
+                            case "addHeader":
+                                headers.merge(((String) args[0]).toLowerCase(Locale.ENGLISH), (String) args[1], (a, b) -> a + ", " + b);
+                                return null;
+                            case "getHeader":
+                                return getHeader((String) args[0]);
+                            case "containsHeader":
+                                return getHeader((String) args[0]) != null;
+                            case "setStatus":
+                                status = (Integer) args[0];
+                                return null;
+                            case "getStatus":
+                                return status;
+                            default:
+                                return method.getReturnType() == boolean.class ? (Object) false : (method.getReturnType() == int.class ? (Object) 0 : null);
+                        }
+                    });
+        }
+
+        String getHeader(String name) {
+            return headers.get(name.toLowerCase(Locale.ENGLISH));
+        }
+    }
+}
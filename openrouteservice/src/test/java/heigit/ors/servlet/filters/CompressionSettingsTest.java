@@ -0,0 +1,56 @@
+package heigit.ors.servlet.filters;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CompressionSettingsTest {
+    @Test
+    public void TestSelectEncoding() {
+        CompressionSettings settings = new CompressionSettings();
+
+        assertEquals("br", settings.selectEncoding("gzip, deflate, br"));
+        assertEquals("gzip", settings.selectEncoding("gzip, deflate"));
+        assertEquals("gzip", settings.selectEncoding("br;q=0, GZIP;q=0.5"));
+        assertEquals("deflate", settings.selectEncoding("deflate"));
+        assertEquals("br", settings.selectEncoding("*"));
+        assertNull(settings.selectEncoding("identity"));
+        assertNull(settings.selectEncoding("*;q=0"));
+        assertNull(settings.selectEncoding(null));
+
+        settings.setEncodings("gzip");
+        assertEquals("gzip", settings.selectEncoding("br, gzip"));
+        assertNull(settings.selectEncoding("br"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void TestUnsupportedEncoding() {
+        new CompressionSettings().setEncodings("br, compress");
+    }
+
+    @Test
+    public void TestLevels() {
+        CompressionSettings settings = new CompressionSettings();
+        assertEquals(CompressionSettings.DEFAULT_LEVEL, settings.getLevel("application/json"));
+
+        settings.setLevels("application/json=4, image/*=0, *=9");
+        assertEquals(4, settings.getLevel("application/json; charset=UTF-8"));
+        assertEquals(4, settings.getLevel("Application/JSON"));
+        assertEquals(0, settings.getLevel("image/png"));
+        assertEquals(9, settings.getLevel("application/xml"));
+        assertEquals(9, settings.getLevel(null));
+
+        settings.setLevels("application/xml=1");
+        assertEquals(CompressionSettings.DEFAULT_LEVEL, settings.getLevel("application/json"));
+    }
+
+    @Test
+    public void TestCacheControlMaxAge() {
+        assertEquals(60, CompressedResponseCache.getMaxAge("public, max-age=60"));
+        assertEquals(0, CompressedResponseCache.getMaxAge("private, max-age=60"));
+        assertEquals(0, CompressedResponseCache.getMaxAge("no-store"));
+        assertEquals(0, CompressedResponseCache.getMaxAge("public"));
+        assertEquals(0, CompressedResponseCache.getMaxAge(null));
+    }
+}
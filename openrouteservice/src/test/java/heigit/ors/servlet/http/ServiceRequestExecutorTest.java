@@ -0,0 +1,88 @@
+package heigit.ors.servlet.http;
+
+import heigit.ors.common.RequestDeadline;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ServiceRequestExecutorTest {
+    @Test
+    public void TestRejectsWhenQueueIsFull() throws Exception {
+        ServiceRequestExecutor executor = new ServiceRequestExecutor("test", 1, 1, 7, 0, 0);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(2);
+
+        Runnable blocking = () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            finished.countDown();
+        };
+
+        executor.execute(blocking);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.execute(finished::countDown);
+
+        assertEquals(1, executor.getInFlight());
+        assertEquals(1, executor.getQueued());
+
+        try {
+            executor.execute(() -> fail("The request must not be run."));
+            fail("The request must be rejected.");
+        } catch (RejectedExecutionException ex) {
+            // expected
+        }
+        assertEquals(1, executor.getRejected());
+        assertEquals(7, executor.getRetryAfter());
+
+        release.countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        // the counters are updated after the tasks have returned
+        long deadline = System.currentTimeMillis() + 5000;
+        while (executor.getCompleted() < 2 && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+
+        assertEquals(2, executor.getCompleted());
+        assertEquals(0, executor.getInFlight());
+        assertEquals(0, executor.getQueued());
+    }
+
+    @Test
+    public void TestClientCanOnlyLowerTimeout() {
+        ServiceRequestExecutor executor = new ServiceRequestExecutor("test", 1, 1, 7, 1000, 42);
+
+        RequestDeadline deadline = executor.createDeadline(createRequest(null));
+        assertEquals(1000, deadline.getTimeout());
+        assertEquals(42, deadline.getErrorCode());
+
+        assertEquals(200, executor.createDeadline(createRequest("200")).getTimeout());
+        assertEquals(1000, executor.createDeadline(createRequest("5000")).getTimeout());
+        assertEquals(1000, executor.createDeadline(createRequest("abc")).getTimeout());
+    }
+
+    @Test
+    public void TestDeadlineWithoutTimeout() {
+        ServiceRequestExecutor executor = new ServiceRequestExecutor("test", 1, 1, 7, 0, 42);
+
+        assertNull(executor.createDeadline(createRequest(null)));
+        assertEquals(300, executor.createDeadline(createRequest("300")).getTimeout());
+    }
+
+    private static HttpServletRequest createRequest(String timeoutHeader) {
+        return (HttpServletRequest) Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(), new Class<?>[] { HttpServletRequest.class },
+                (proxy, method, args) -> "getHeader".equals(method.getName()) && ServiceRequestExecutor.TIMEOUT_HEADER.equals(args[0]) ? timeoutHeader : null);
+    }
+}
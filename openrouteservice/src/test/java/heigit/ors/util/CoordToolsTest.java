@@ -0,0 +1,49 @@
+package heigit.ors.util;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class CoordToolsTest {
+    @Test
+    public void TestParseMatchesSplit() {
+        String[] values = { "8.681495,49.41461", "8.681495,49.41461,110|8.686507,49.41943|8.687872,49.420318,1,2|",
+                "-180,-90|180,90,0.5||", "8.68,49.41,|8.69 , 49.42,1e2" };
+        for (String value : values) {
+            for (int flags = 0; flags < 4; flags++) {
+                boolean is3D = (flags & 1) != 0;
+                boolean inverseXY = (flags & 2) != 0;
+                Coordinate[] expected = CoordTools.parse(value, "\\|", is3D, inverseXY);
+                Coordinate[] actual = CoordTools.parse(value, '|', is3D, inverseXY);
+
+                assertEquals(value, expected.length, actual.length);
+                for (int i = 0; i < expected.length; i++) {
+                    assertEquals(value, expected[i].x, actual[i].x, 0);
+                    assertEquals(value, expected[i].y, actual[i].y, 0);
+                    assertEquals(value, Double.isNaN(expected[i].z), Double.isNaN(actual[i].z));
+                    if (!Double.isNaN(expected[i].z))
+                        assertEquals(value, expected[i].z, actual[i].z, 0);
+                }
+            }
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void TestParseSingleValue() {
+        CoordTools.parse("8.68,49.41|8.69", '|', false, false);
+    }
+
+    @Test
+    public void TestParseMalformedValues() {
+        String[] values = { "8.68,49.41|a,49.42", "8.68,49.41||8.69,49.42", ",49.41|8.69,49.42", "8.68;49.41" };
+        for (String value : values) {
+            try {
+                CoordTools.parse(value, '|', false, false);
+                fail(value);
+            } catch (NumberFormatException ex) {
+            }
+        }
+    }
+}
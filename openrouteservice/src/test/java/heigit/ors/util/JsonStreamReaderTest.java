@@ -0,0 +1,117 @@
+package heigit.ors.util;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JsonStreamReaderTest {
+    @Test
+    public void TestValuesMatchJSONObject() throws Exception {
+        String json = "{\"profile\":\"driving-car\",\"id\":\"a\\\"b\\\\c\\u00e4\\n\",\"optimized\":false,\"units\":null,"
+                + "\"range\":[300, 600.5, -1e3, 12345678901],\"options\":{\"avoid_features\":\"highways\",\"nested\":[[],{}]},"
+                + "\"name\":\"Hauptstra\u00dfe\"}";
+
+        Object value = reader(json).readValue();
+        assertTrue(value instanceof JSONObject);
+        assertTrue(new JSONObject(json).similar(value));
+    }
+
+    @Test
+    public void TestLongStringsAcrossBuffers() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20000; i++)
+            sb.append(i % 10 == 0 ? "\\u00df" : "a\\/");
+
+        JSONArray expected = new JSONArray("[\"" + sb + "\"]");
+        assertEquals(expected.toString(), reader("[\"" + sb + "\"]").readValue().toString());
+    }
+
+    @Test
+    public void TestStreamingMembers() throws Exception {
+        JsonStreamReader reader = reader(" { \"locations\" : [[8.681495,49.41461,110],[8.686507, 49.41943],[\"8.687872\",\"49.420318\"]], \"metrics\":[\"distance\"], \"x\":true } ");
+
+        reader.beginObject();
+        assertEquals("locations", reader.nextName());
+        double[] coords = reader.readCoordinates(0);
+        assertEquals(6, coords.length);
+        assertEquals(8.681495, coords[0], 0);
+        assertEquals(49.41461, coords[1], 0);
+        assertEquals(49.41943, coords[3], 0);
+        assertEquals(8.687872, coords[4], 0);
+
+        assertEquals("metrics", reader.nextName());
+        reader.skipValue();
+        assertEquals("x", reader.nextName());
+        assertTrue(reader.nextBoolean());
+        assertFalse(reader.hasNext());
+        reader.endObject();
+        assertEquals(JsonStreamReader.Token.END_DOCUMENT, reader.peek());
+    }
+
+    @Test
+    public void TestCoordinatesStopAfterLimit() throws Exception {
+        // the rest of the document is not read once the limit is exceeded, so it may even be malformed
+        JsonStreamReader reader = reader("[[1,2],[3,4],[5,6],[7,8],[9,");
+
+        double[] coords = reader.readCoordinates(2);
+        assertEquals(6, coords.length);
+        assertEquals(5, coords[4], 0);
+    }
+
+    @Test
+    public void TestNumbersMatchParseDouble() throws Exception {
+        String[] values = { "0", "-0", "-0.0", "1", "8.6812345", "49.41461", "-180", "0.1", "1e-3", "1E+7", "123456789012345",
+                "1234567890123456789", "0.30000000000000004", "4.9e-324", "1.7976931348623157e308", "1e23", "9007199254740993",
+                "0.000000000000000000000000001" };
+        for (String value : values)
+            assertSameNumber(value);
+
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            assertSameNumber(Double.toString((random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(40) - 20)));
+            assertSameNumber(String.format(Locale.ENGLISH, "%.6f", (random.nextDouble() - 0.5) * 360));
+        }
+    }
+
+    @Test
+    public void TestMalformedDocuments() throws Exception {
+        String[] documents = { "", "{", "{\"a\":1,}", "[1 2]", "{\"a\" 1}", "{a:1}", "[tru]", "\"abc", "{} {}", "[\"\\x\"]",
+                "[[[[[[[[[[[[[[[[[[[[[[[[[[[[[[[[[[[1]]]]]]]]]]]]]]]]]]]]]]]]]]]]]]]]]]]" };
+        for (String document : documents) {
+            try {
+                JsonStreamReader reader = reader(document);
+                reader.readValue();
+                reader.peek();
+                fail(document);
+            } catch (JSONException ex) {
+            }
+        }
+
+        try {
+            reader("[[8.68],[8.69,49.42]]").readCoordinates(0);
+            fail();
+        } catch (JSONException ex) {
+        }
+    }
+
+    private static void assertSameNumber(String value) throws Exception {
+        double expected = Double.parseDouble(value);
+        assertEquals(value, expected, reader(value).nextDouble(), 0);
+        assertEquals(value, 1 / expected, 1 / reader("\"" + value + "\"").nextDouble(), 0);
+    }
+
+    private static JsonStreamReader reader(String json) {
+        return new JsonStreamReader(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,108 @@
+package heigit.ors.util;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JsonStreamWriterTest {
+    @Test
+    public void TestNumbersMatchJSONObject() throws Exception {
+        double[] values = { 0, -0.0, 1, -7, 0.5, 0.1 + 0.2, 1e-3, 9.99e-4, 1234567.8, 9999999.5, 1e7, 12345678.9, 8.6812345,
+                -180, 49.4234567, 0.07, 1.0E-5, 1e300, Long.MAX_VALUE, Double.MIN_VALUE };
+        for (double value : values)
+            assertSameNumber(value);
+
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            assertSameNumber(Math.round(random.nextGaussian() * 1e8) / Math.pow(10, random.nextInt(9)));
+            assertSameNumber((random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(20) - 10));
+        }
+    }
+
+    @Test
+    public void TestRoundedNumbersMatchRoundToDecimals() throws Exception {
+        double[] values = { 0, -0.0, -0.0000001, 8.6812345, 49.41, -180, 0.0004, 0.00049999, 9999999.9999999, 1e7, 1e300,
+                Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };
+        for (double value : values) {
+            for (int decimals = 0; decimals <= 8; decimals++)
+                assertSameRoundedNumber(value, decimals);
+        }
+
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            int decimals = random.nextInt(9);
+            assertSameRoundedNumber((random.nextDouble() - 0.5) * 360, decimals);
+            assertSameRoundedNumber((random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(20) - 10), decimals);
+        }
+    }
+
+    @Test
+    public void TestStringsMatchJSONObject() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (char c = 0; c < 0x3000; c++)
+            sb.append(c);
+        sb.append("</b> <\\/ \ud83d\ude00 \ud800x \udc00");
+        String text = sb.toString();
+
+        JSONObject expected = new JSONObject(true);
+        expected.put(text, text);
+        expected.put("ints", new JSONArray(new int[] { 1, -2, Integer.MAX_VALUE }));
+        expected.put("long", Long.MIN_VALUE);
+        expected.put("bool", false);
+        expected.put("empty", new JSONArray());
+        expected.put("nested", new JSONObject(true).put("a", new JSONArray().put(new JSONObject())));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonStreamWriter writer = new JsonStreamWriter(out, 64);
+        writer.beginObject();
+        writer.name(text).value(text);
+        writer.name("ints").value(new int[] { 1, -2, Integer.MAX_VALUE });
+        writer.name("long").value(Long.MIN_VALUE);
+        writer.name("bool").value(false);
+        writer.name("empty").beginArray().endArray();
+        writer.name("nested").beginObject().name("a").beginArray().beginObject().endObject().endArray().endObject();
+        writer.endObject();
+        writer.flush();
+
+        assertTrue(Arrays.equals(expected.toString().getBytes("UTF-8"), out.toByteArray()));
+    }
+
+    @Test
+    public void TestNonFiniteNumbersAreRejected() throws Exception {
+        JsonStreamWriter writer = new JsonStreamWriter(new ByteArrayOutputStream());
+        writer.beginArray();
+        try {
+            writer.value(Double.NaN);
+            fail("NaN is not valid JSON.");
+        } catch (JSONException ex) {
+            // expected
+        }
+    }
+
+    private static void assertSameNumber(double value) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonStreamWriter writer = new JsonStreamWriter(out);
+        writer.beginArray().value(value).endArray();
+        writer.flush();
+
+        assertEquals(new JSONArray().put(value).toString(), new String(out.toByteArray(), "UTF-8"));
+    }
+
+    private static void assertSameRoundedNumber(double value, int decimals) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonStreamWriter writer = new JsonStreamWriter(out);
+        writer.beginArray().value(value, decimals).endArray();
+        writer.flush();
+
+        assertEquals(new JSONArray().put(FormatUtility.roundToDecimals(value, decimals)).toString(), new String(out.toByteArray(), "UTF-8"));
+    }
+}
@@ -0,0 +1,120 @@
+package heigit.ors.util;
+
+import com.graphhopper.util.PointList;
+import com.vividsolutions.jts.geom.Coordinate;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+public class PolylineEncoderTest {
+    @Test
+    public void TestReferenceLine() {
+        PointList points = new PointList(3, false);
+        points.add(38.5, -120.2);
+        points.add(40.7, -120.95);
+        points.add(43.252, -126.453);
+
+        Assert.assertEquals("_p~iF~ps|U_ulLnnqC_mqNvxq`@", new PolylineEncoder().encode(points, false).toString());
+    }
+
+    @Test
+    public void TestInputsGiveSameLine() {
+        Random random = new Random(1);
+        int count = 1000;
+        double[] lats = new double[count];
+        double[] lons = new double[count];
+        double[] elevations = new double[count];
+        Coordinate[] coords = new Coordinate[count];
+        PointList points = new PointList(count, true);
+
+        for (int i = 0; i < count; i++) {
+            lats[i] = random.nextDouble() * 180 - 90;
+            lons[i] = random.nextDouble() * 360 - 180;
+            elevations[i] = random.nextDouble() * 5000 - 100;
+            coords[i] = new Coordinate(lons[i], lats[i], elevations[i]);
+            points.add(lats[i], lons[i], elevations[i]);
+        }
+
+        for (boolean includeElevation : new boolean[] { false, true }) {
+            String expected = encodeWithStringBuffer(coords, includeElevation);
+            PolylineEncoder encoder = new PolylineEncoder(8);
+
+            Assert.assertEquals(expected, encoder.encode(points, includeElevation).toString());
+            Assert.assertEquals(expected, encoder.encode(coords, includeElevation).toString());
+            Assert.assertEquals(expected, encoder.encode(lats, lons, includeElevation ? elevations : null, count).toString());
+            Assert.assertEquals(expected, PolylineEncoder.encode(coords, includeElevation, new StringBuffer()));
+        }
+    }
+
+    @Test
+    public void TestMissingElevationIsZero() {
+        PointList points = new PointList(2, false);
+        points.add(49.41, 8.69);
+        points.add(49.42, 8.68);
+        Coordinate[] coords = { new Coordinate(8.69, 49.41), new Coordinate(8.68, 49.42) };
+
+        Assert.assertEquals(encodeWithStringBuffer(coords, true), new PolylineEncoder().encode(points, true).toString());
+    }
+
+    @Test
+    public void TestEncoderIsReused() {
+        PolylineEncoder encoder = new PolylineEncoder();
+        Coordinate[] longLine = new Coordinate[500];
+        for (int i = 0; i < longLine.length; i++)
+            longLine[i] = new Coordinate(8 + i * 0.001, 49 - i * 0.002);
+        Coordinate[] shortLine = { new Coordinate(8.69, 49.41), new Coordinate(8.68, 49.42) };
+
+        encoder.encode(longLine, false);
+        char[] chars = encoder.getChars();
+        Assert.assertEquals(encodeWithStringBuffer(shortLine, false), encoder.encode(shortLine, false).toString());
+        Assert.assertSame(chars, encoder.getChars());
+        Assert.assertEquals(encodeWithStringBuffer(shortLine, false).length(), encoder.length());
+    }
+
+    @Test
+    public void TestStreamedLineIsQuoted() throws Exception {
+        // the deltas of this line contain backslashes, which have to be escaped
+        Coordinate[] coords = { new Coordinate(0.0001, -0.00015), new Coordinate(-1.5, 1.5) };
+        PolylineEncoder encoder = new PolylineEncoder().encode(coords, false);
+        Assert.assertTrue(encoder.toString().indexOf('\\') >= 0);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonStreamWriter writer = new JsonStreamWriter(out);
+        writer.value(encoder);
+        writer.flush();
+
+        Assert.assertEquals(JSONObject.quote(encoder.toString()), out.toString("UTF-8"));
+    }
+
+    // the encoder as it was implemented before, kept as reference for the output
+    private static String encodeWithStringBuffer(Coordinate[] coords, boolean includeElevation) {
+        StringBuffer buffer = new StringBuffer();
+        long prevLat = 0, prevLon = 0, prevEle = 0;
+        for (Coordinate c : coords) {
+            long lat = Math.round(c.y * 1e5);
+            long lon = Math.round(c.x * 1e5);
+            encodeValue(lat - prevLat, buffer);
+            encodeValue(lon - prevLon, buffer);
+            if (includeElevation) {
+                long ele = (long) Math.floor(c.z * 100);
+                encodeValue(ele - prevEle, buffer);
+                prevEle = ele;
+            }
+            prevLat = lat;
+            prevLon = lon;
+        }
+        return buffer.toString();
+    }
+
+    private static void encodeValue(long v, StringBuffer buffer) {
+        v = v < 0 ? ~(v << 1) : v << 1;
+        while (v >= 0x20) {
+            buffer.append(Character.toChars((int) ((0x20 | (v & 0x1f)) + 63)));
+            v >>= 5;
+        }
+        buffer.append(Character.toChars((int) (v + 63)));
+    }
+}